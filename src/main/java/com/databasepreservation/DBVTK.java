@@ -19,6 +19,7 @@ import org.springframework.boot.web.servlet.filter.OrderedRequestContextFilter;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.core.Ordered;
 import org.springframework.web.filter.RequestContextFilter;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
@@ -28,6 +29,7 @@ import com.databasepreservation.common.client.ViewerConstants;
 import com.databasepreservation.common.filter.OnOffFilter;
 import com.databasepreservation.common.server.BrowserServiceImpl;
 import com.databasepreservation.common.server.ViewerConfiguration;
+import com.databasepreservation.common.server.index.utils.ExportStreamIterator;
 
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
@@ -91,6 +93,16 @@ public class DBVTK {
     };
   }
 
+  @Bean
+  public ApplicationListener<ContextClosedEvent> closeSolrExportConnections() {
+    return new ApplicationListener<ContextClosedEvent>() {
+      @Override
+      public void onApplicationEvent(ContextClosedEvent event) {
+        ExportStreamIterator.closeClientCache();
+      }
+    };
+  }
+
   @Bean
   public RequestContextFilter requestContextFilter() {
     OrderedRequestContextFilter filter = new OrderedRequestContextFilter();
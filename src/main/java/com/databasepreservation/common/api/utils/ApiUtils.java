@@ -5,7 +5,14 @@
 package com.databasepreservation.common.api.utils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.WebApplicationException;
@@ -16,6 +23,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.roda.core.data.common.RodaConstants;
 
@@ -29,6 +37,10 @@ public class ApiUtils {
   private static final String CONTENT_DISPOSITION_FILENAME_ARGUMENT = "filename=";
   private static final String CONTENT_DISPOSITION_INLINE = "inline; ";
   private static final String CONTENT_DISPOSITION_ATTACHMENT = "attachment; ";
+  private static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+  private static final String HEADER_CONTENT_RANGE = "Content-Range";
+  private static final String BYTES_UNIT = "bytes";
+  private static final Pattern BYTE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
 
   /**
    * Get media type
@@ -113,6 +125,88 @@ public class ApiUtils {
       .build();
   }
 
+  /**
+   * Response with a file whose download can be resumed. The file is sent whole,
+   * or only the byte range asked in the <code>Range</code> header, unless the
+   * <code>If-Range</code> header tells the file changed since the client got
+   * the beginning. Several ranges in the same request are not supported, the
+   * whole file is sent instead.
+   *
+   * @param range
+   *          the <code>Range</code> header, may be null
+   * @param ifRange
+   *          the <code>If-Range</code> header, may be null
+   * @param ifNoneMatch
+   *          the <code>If-None-Match</code> header, may be null
+   */
+  public static Response rangeResponse(Path file, String filename, String mediaType, String range, String ifRange,
+    String ifNoneMatch) throws IOException {
+    final long size = Files.size(file);
+    final Date lastModified = new Date(Files.getLastModifiedTime(file).toMillis());
+    final String tagValue = Long.toHexString(size) + "-" + Long.toHexString(lastModified.getTime());
+    final EntityTag tag = new EntityTag(tagValue);
+
+    if (matchesTag(ifNoneMatch, tagValue)) {
+      return Response.notModified(tag).build();
+    }
+
+    long start = 0;
+    long end = size - 1;
+    boolean partial = false;
+    Matcher matcher = range == null ? null : BYTE_RANGE.matcher(range.trim());
+    if (matcher != null && matcher.matches() && (ifRange == null || ifRange.trim().equals("\"" + tagValue + "\""))
+      && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+      try {
+        if (matcher.group(1).isEmpty()) {
+          // the last bytes of the file
+          start = Math.max(0, size - Long.parseLong(matcher.group(2)));
+        } else {
+          start = Long.parseLong(matcher.group(1));
+          if (!matcher.group(2).isEmpty()) {
+            end = Math.min(end, Long.parseLong(matcher.group(2)));
+          }
+        }
+      } catch (NumberFormatException e) {
+        start = size;
+      }
+      if (start >= size || start > end) {
+        return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+          .header(HEADER_CONTENT_RANGE, BYTES_UNIT + " */" + size).tag(tag).build();
+      }
+      partial = true;
+    }
+
+    final long offset = start;
+    final long length = end - start + 1;
+    StreamingOutput so = new StreamingOutput() {
+      @Override
+      public void write(OutputStream output) throws IOException, WebApplicationException {
+        try (InputStream in = Files.newInputStream(file)) {
+          IOUtils.copyLarge(in, output, offset, length);
+        }
+      }
+    };
+
+    Response.ResponseBuilder builder = partial
+      ? Response.status(Response.Status.PARTIAL_CONTENT).header(HEADER_CONTENT_RANGE,
+        BYTES_UNIT + " " + start + "-" + end + "/" + size)
+      : Response.ok();
+    return builder.entity(so).type(mediaType).header(HttpHeaders.CONTENT_LENGTH, length)
+      .header(HEADER_ACCEPT_RANGES, BYTES_UNIT)
+      .header(HttpHeaders.CONTENT_DISPOSITION,
+        CONTENT_DISPOSITION_ATTACHMENT + CONTENT_DISPOSITION_FILENAME_ARGUMENT + "\"" + filename + "\"")
+      .tag(tag).lastModified(lastModified).build();
+  }
+
+  private static boolean matchesTag(String header, String tagValue) {
+    if (StringUtils.isBlank(header)) {
+      return false;
+    }
+    String quoted = "\"" + tagValue + "\"";
+    return Arrays.stream(header.split(",")).map(String::trim)
+      .anyMatch(candidate -> "*".equals(candidate) || quoted.equals(StringUtils.removeStart(candidate, "W/")));
+  }
+
   private static String contentDisposition(boolean inline) {
     return inline ? CONTENT_DISPOSITION_INLINE : CONTENT_DISPOSITION_ATTACHMENT;
   }
@@ -3,8 +3,11 @@ package com.databasepreservation.common.api.utils;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -19,16 +22,54 @@ import com.databasepreservation.common.client.models.structure.ViewerType;
 import com.databasepreservation.common.client.tools.ViewerStringUtils;
 import com.github.jknack.handlebars.Handlebars;
 import com.github.jknack.handlebars.Template;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
+ * Applies the export templates of the columns to the rows being exported.
+ *
+ * Templates are compiled once and shared by all the exports, keyed by their
+ * text, so that a template that is changed in the collection configuration is
+ * compiled again the next time it is used. The names under which the cells of
+ * a table are given to its templates are worked out once for each
+ * {@link TableStatus}, which is read again from the configuration by every
+ * export.
+ *
  * @author Miguel Guimarães <mguimaraes@keep.pt>
  */
 public class HandlebarsUtils {
+  private static final int MAX_COMPILED_TEMPLATES = 1000;
+  private static final Handlebars HANDLEBARS = new Handlebars();
+  private static final Pattern WHITESPACE = Pattern.compile("\\s");
+
+  private static final LoadingCache<String, Template> TEMPLATES = CacheBuilder.newBuilder()
+    .maximumSize(MAX_COMPILED_TEMPLATES).build(new CacheLoader<String, Template>() {
+      @Override
+      public Template load(String template) throws IOException {
+        return HANDLEBARS.compileInline(template);
+      }
+    });
+
+  // template variable name of each column, by column id
+  private static final LoadingCache<TableStatus, Map<String, String>> TEMPLATE_NAMES = CacheBuilder.newBuilder()
+    .weakKeys().build(new CacheLoader<TableStatus, Map<String, String>>() {
+      @Override
+      public Map<String, String> load(TableStatus tableConfiguration) {
+        Map<String, String> names = new LinkedHashMap<>();
+        for (ColumnStatus column : tableConfiguration.getColumns()) {
+          names.put(column.getId(), WHITESPACE.matcher(column.getCustomName()).replaceAll("_"));
+        }
+        return names;
+      }
+    });
 
   public static List<String> getCellValues(ViewerRow row, TableStatus configTable, List<String> fieldsToReturn) {
     List<String> values = new ArrayList<>();
     fieldsToReturn.remove(ViewerConstants.SOLR_ROWS_TABLE_ID);
     fieldsToReturn.remove(ViewerConstants.SOLR_ROWS_TABLE_UUID);
+    Map<String, String> templateValues = null;
 
     for (String solrColumnName : fieldsToReturn) {
       final ColumnStatus columnConfig = configTable.getColumnById(solrColumnName);
@@ -42,10 +83,8 @@ public class HandlebarsUtils {
             if (nestedRow.getNestedUUID().equals(solrColumnName)) {
               if (template != null && !template.isEmpty()) {
                 final Map<String, String> map = cellsToJson(nestedRow.getCells(), columnConfig.getNestedColumns());
-                Handlebars handlebars = new Handlebars();
                 try {
-                  Template handlebarTemplate = handlebars.compileInline(template);
-                  stringBuilder.append(handlebarTemplate.apply(map));
+                  stringBuilder.append(getTemplate(template).apply(map));
                 } catch (IOException e) {
                   e.printStackTrace();
                 }
@@ -60,7 +99,14 @@ public class HandlebarsUtils {
           values.add("");
         } else {
           if (columnConfig != null) {
-            final String applied = applyExportTemplate(row, configTable, columnConfig.getColumnIndex());
+            final String template = columnConfig.getExportStatus().getTemplateStatus().getTemplate();
+            String applied = null;
+            if (!ViewerStringUtils.isBlank(template)) {
+              if (templateValues == null) {
+                templateValues = cellsToObject(row.getCells(), configTable);
+              }
+              applied = applyTemplate(template, templateValues);
+            }
             if (StringUtils.isNotBlank(applied)) {
               values.add(applied);
             } else {
@@ -75,7 +121,6 @@ public class HandlebarsUtils {
   }
 
   public static String applyExportTemplate(ViewerRow row, TableStatus tableConfiguration, int columnIndex) {
-    Map<String, String> map = cellsToObject(row.getCells(), tableConfiguration);
     final String template = tableConfiguration.getColumnByIndex(columnIndex).getExportStatus().getTemplateStatus()
       .getTemplate();
 
@@ -83,22 +128,34 @@ public class HandlebarsUtils {
       return null;
     }
 
-    Handlebars handlebars = new Handlebars();
+    return applyTemplate(template, cellsToObject(row.getCells(), tableConfiguration));
+  }
+
+  private static String applyTemplate(String template, Map<String, String> values) {
     try {
-      Template handlebarTemplate = handlebars.compileInline(template);
-      return handlebarTemplate.apply(map);
+      return getTemplate(template).apply(values);
     } catch (IOException e) {
       throw new RESTException(e);
     }
   }
 
+  private static Template getTemplate(String template) throws IOException {
+    try {
+      return TEMPLATES.get(template);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+    } catch (UncheckedExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
   private static Map<String, String> cellsToObject(Map<String, ViewerCell> cells, TableStatus tableConfiguration) {
     Map<String, String> map = new HashMap<>();
 
-    for (ColumnStatus column : tableConfiguration.getColumns()) {
-      if (cells.get(column.getId()) != null) {
-        map.put(ViewerStringUtils.replaceAllFor(column.getCustomName(), "\\s", "_"),
-          cells.get(column.getId()).getValue());
+    for (Map.Entry<String, String> name : TEMPLATE_NAMES.getUnchecked(tableConfiguration).entrySet()) {
+      final ViewerCell cell = cells.get(name.getKey());
+      if (cell != null) {
+        map.put(name.getValue(), cell.getValue());
       }
     }
 
@@ -1,8 +1,5 @@
 package com.databasepreservation.common.api.v1;
 
-import static com.databasepreservation.common.client.ViewerConstants.SOLR_INDEX_ROW_COLLECTION_NAME_PREFIX;
-import static com.databasepreservation.common.client.ViewerConstants.SOLR_SEARCHES_DATABASE_UUID;
-
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -20,6 +17,7 @@ import java.util.zip.ZipFile;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
@@ -34,6 +32,8 @@ import org.roda.core.data.exceptions.NotFoundException;
 import org.roda.core.data.exceptions.RequestNotValidException;
 import org.roda.core.data.utils.JsonUtils;
 import org.roda.core.data.v2.index.sublist.Sublist;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobParameters;
@@ -47,6 +47,7 @@ import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteExcep
 import org.springframework.batch.core.repository.JobRestartException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
 
 import com.databasepreservation.common.api.utils.ApiUtils;
@@ -54,19 +55,20 @@ import com.databasepreservation.common.api.utils.DownloadUtils;
 import com.databasepreservation.common.api.utils.HandlebarsUtils;
 import com.databasepreservation.common.api.utils.StreamResponse;
 import com.databasepreservation.common.api.utils.ViewerStreamingOutput;
-import com.databasepreservation.common.api.v1.utils.IterableIndexResultsCSVOutputStream;
+import com.databasepreservation.common.api.v1.utils.ExportOutputStreams;
 import com.databasepreservation.common.api.v1.utils.ResultsCSVOutputStream;
-import com.databasepreservation.common.api.v1.utils.ZipOutputStream;
 import com.databasepreservation.common.api.v1.utils.ZipOutputStreamSingleRow;
 import com.databasepreservation.common.client.ViewerConstants;
 import com.databasepreservation.common.client.common.search.SavedSearch;
 import com.databasepreservation.common.client.common.search.SearchInfo;
 import com.databasepreservation.common.client.exceptions.RESTException;
 import com.databasepreservation.common.client.exceptions.SavedSearchException;
+import com.databasepreservation.common.client.index.BatchFindRequest;
+import com.databasepreservation.common.client.index.BatchIndexResult;
+import com.databasepreservation.common.client.index.CursorIndexResult;
 import com.databasepreservation.common.client.index.FindRequest;
+import com.databasepreservation.common.client.index.GroupedIndexResult;
 import com.databasepreservation.common.client.index.IndexResult;
-import com.databasepreservation.common.client.index.filter.Filter;
-import com.databasepreservation.common.client.index.filter.SimpleFilterParameter;
 import com.databasepreservation.common.client.models.activity.logs.LogEntryState;
 import com.databasepreservation.common.client.models.progress.ProgressData;
 import com.databasepreservation.common.client.models.status.collection.CollectionStatus;
@@ -85,13 +87,15 @@ import com.databasepreservation.common.exceptions.ViewerException;
 import com.databasepreservation.common.server.ConfigurationManager;
 import com.databasepreservation.common.server.ViewerConfiguration;
 import com.databasepreservation.common.server.ViewerFactory;
-import com.databasepreservation.common.server.controller.SIARDController;
+import com.databasepreservation.common.server.controller.JobController;
 import com.databasepreservation.common.server.index.DatabaseRowsSolrManager;
-import com.databasepreservation.common.server.index.factory.SolrClientFactory;
-import com.databasepreservation.common.server.index.schema.SolrDefaultCollectionRegistry;
-import com.databasepreservation.common.server.index.utils.IterableIndexResult;
 import com.databasepreservation.common.server.index.utils.JsonTransformer;
 import com.databasepreservation.common.server.index.utils.SolrUtils;
+import com.databasepreservation.common.server.jobs.ExportArea;
+import com.databasepreservation.common.server.jobs.ExportBatchConfiguration;
+import com.databasepreservation.common.server.jobs.ExportJobRequest;
+import com.databasepreservation.common.server.jobs.IngestBatchConfiguration;
+import com.databasepreservation.common.server.jobs.IngestCancellationRegistry;
 import com.databasepreservation.common.utils.ControllerAssistant;
 import com.databasepreservation.common.utils.LobPathManager;
 
@@ -104,6 +108,8 @@ import io.swagger.annotations.ApiParam;
 @Service
 @Path(ViewerConstants.ENDPOINT_DATABASE)
 public class CollectionResource implements CollectionService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CollectionResource.class);
+
   @Context
   private HttpServletRequest request;
 
@@ -119,6 +125,22 @@ public class CollectionResource implements CollectionService {
   @Qualifier("customJobOperator")
   JobOperator jobOperator;
 
+  @Autowired
+  @Qualifier(IngestBatchConfiguration.INGEST_JOB)
+  Job ingestJob;
+
+  @Autowired
+  @Qualifier("ingestJobLauncher")
+  JobLauncher ingestJobLauncher;
+
+  @Autowired
+  @Qualifier(ExportBatchConfiguration.EXPORT_JOB)
+  Job exportJob;
+
+  @Autowired
+  @Qualifier("exportJobLauncher")
+  JobLauncher exportJobLauncher;
+
   @Autowired
   org.springframework.batch.core.configuration.JobRegistry JobRegistry;
 
@@ -156,16 +178,46 @@ public class CollectionResource implements CollectionService {
   }
 
   @Override
-  public String createCollection(String databaseUUID) {
+  public synchronized String createCollection(String databaseUUID) {
     ControllerAssistant controllerAssistant = new ControllerAssistant() {};
 
     LogEntryState state = LogEntryState.SUCCESS;
     User user = controllerAssistant.checkRoles(request);
 
+    // check if the database is not already being ingested (or waiting to be)
+    for (JobExecution runningJobExecution : jobExplorer.findRunningJobExecutions(IngestBatchConfiguration.INGEST_JOB)) {
+      if (runningJobExecution.getJobParameters().getString(ViewerConstants.CONTROLLER_DATABASE_ID_PARAM)
+        .equals(databaseUUID)) {
+        throw new RESTException("An ingestion job already exists for this database",
+          com.google.gwt.http.client.Response.SC_CONFLICT);
+      }
+    }
+
+    final String jobUUID = SolrUtils.randomUUID();
+    JobParametersBuilder jobBuilder = new JobParametersBuilder();
+    jobBuilder.addDate(ViewerConstants.SOLR_SEARCHES_DATE_ADDED, new Date());
+    jobBuilder.addString(ViewerConstants.INDEX_ID, jobUUID);
+    jobBuilder.addString(ViewerConstants.CONTROLLER_DATABASE_ID_PARAM, databaseUUID);
+    JobParameters jobParameters = jobBuilder.toJobParameters();
+
     try {
-      final ViewerDatabase database = ViewerFactory.getSolrManager().retrieve(ViewerDatabase.class, databaseUUID);
-      return SIARDController.loadFromLocal(database.getPath(), databaseUUID);
-    } catch (GenericException | NotFoundException e) {
+      IngestCancellationRegistry.clear(databaseUUID);
+      ProgressData.getInstance(databaseUUID).reset();
+      JobController.addSolrIngestJob(jobUUID, databaseUUID, IngestBatchConfiguration.INGEST_JOB);
+      // returns as soon as the job is queued
+      ingestJobLauncher.run(ingestJob, jobParameters);
+      return jobUUID;
+    } catch (TaskRejectedException e) {
+      state = LogEntryState.FAILURE;
+      try {
+        JobController.failSolrJob(jobUUID, "Rejected, too many ingestion jobs waiting");
+      } catch (GenericException | NotFoundException ex) {
+        LOGGER.debug("Cannot update job on SOLR", ex);
+      }
+      throw new RESTException("Too many ingestion jobs waiting, try again later",
+        com.google.gwt.http.client.Response.SC_SERVICE_UNAVAILABLE);
+    } catch (JobExecutionAlreadyRunningException | JobRestartException | JobInstanceAlreadyCompleteException
+      | JobParametersInvalidException | GenericException | NotFoundException e) {
       state = LogEntryState.FAILURE;
       throw new RESTException(e);
     } finally {
@@ -197,13 +249,10 @@ public class CollectionResource implements CollectionService {
     User user = controllerAssistant.checkRoles(request);
 
     try {
-      final String collectionName = SOLR_INDEX_ROW_COLLECTION_NAME_PREFIX + databaseUUID;
-      if (SolrClientFactory.get().deleteCollection(collectionName)) {
-        Filter savedSearchFilter = new Filter(new SimpleFilterParameter(SOLR_SEARCHES_DATABASE_UUID, databaseUUID));
-        SolrUtils.delete(ViewerFactory.getSolrClient(), SolrDefaultCollectionRegistry.get(SavedSearch.class),
-          savedSearchFilter);
-
+      if (ViewerFactory.getSolrManager().deleteRowsCollection(databaseUUID)) {
         ViewerFactory.getSolrManager().markDatabaseCollection(databaseUUID, ViewerDatabaseStatus.METADATA_ONLY);
+        // a new ingestion must not resume from the rows that were just deleted
+        ViewerFactory.getConfigurationManager().deleteIngestCheckpoint(databaseUUID);
         return true;
       }
     } catch (GenericException | RequestNotValidException e) {
@@ -421,6 +470,89 @@ public class CollectionResource implements CollectionService {
     }
   }
 
+  @Override
+  public CursorIndexResult<ViewerRow> findRowsWithCursor(String databaseUUID, String collectionUUID, String schema,
+    String table, FindRequest findRequest, String cursor) {
+    ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    LogEntryState state = LogEntryState.SUCCESS;
+    User user = controllerAssistant.checkRoles(request);
+
+    long count = 0;
+
+    try {
+      // only the page size of the sublist is used, the cursor gives the offset
+      final Sublist sublist = findRequest.sublist != null ? findRequest.sublist : new Sublist();
+      final CursorIndexResult<ViewerRow> viewerRowIndexResult = ViewerFactory.getSolrManager().findRows(databaseUUID,
+        findRequest.filter, findRequest.sorter, sublist.getMaximumElementCount(), cursor, findRequest.fieldsToReturn,
+        findRequest.extraParameters);
+      count = viewerRowIndexResult.getTotalCount();
+      return viewerRowIndexResult;
+    } catch (GenericException | RequestNotValidException e) {
+      state = LogEntryState.FAILURE;
+      throw new RESTException(e);
+    } finally {
+      // register action
+      controllerAssistant.registerAction(user, databaseUUID, state, ViewerConstants.CONTROLLER_DATABASE_ID_PARAM,
+        databaseUUID, ViewerConstants.CONTROLLER_FILTER_PARAM, JsonUtils.getJsonFromObject(findRequest.filter),
+        ViewerConstants.API_QUERY_PARAM_CURSOR, cursor, ViewerConstants.CONTROLLER_RETRIEVE_COUNT, count);
+    }
+  }
+
+  @Override
+  public GroupedIndexResult<ViewerRow> findRowsGroupedByTable(String databaseUUID, String collectionUUID,
+    FindRequest findRequest, Integer rowsPerTable) {
+    ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    LogEntryState state = LogEntryState.SUCCESS;
+    User user = controllerAssistant.checkRoles(request);
+
+    long count = 0;
+
+    try {
+      final GroupedIndexResult<ViewerRow> groupedIndexResult = ViewerFactory.getSolrManager().findRowsGroupedByTable(
+        databaseUUID, findRequest.filter, rowsPerTable != null ? rowsPerTable : 0, findRequest.fieldsToReturn);
+      count = groupedIndexResult.getTotalCount();
+      return groupedIndexResult;
+    } catch (GenericException | RequestNotValidException e) {
+      state = LogEntryState.FAILURE;
+      throw new RESTException(e);
+    } finally {
+      // register action
+      controllerAssistant.registerAction(user, databaseUUID, state, ViewerConstants.CONTROLLER_DATABASE_ID_PARAM,
+        databaseUUID, ViewerConstants.CONTROLLER_FILTER_PARAM, JsonUtils.getJsonFromObject(findRequest.filter),
+        ViewerConstants.CONTROLLER_RETRIEVE_COUNT, count);
+    }
+  }
+
+  @Override
+  public BatchIndexResult<ViewerRow> findRowsBatch(String databaseUUID, String collectionUUID,
+    BatchFindRequest batchRequest) {
+    ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    LogEntryState state = LogEntryState.SUCCESS;
+    User user = controllerAssistant.checkRoles(request);
+
+    long count = 0;
+
+    try {
+      final BatchIndexResult<ViewerRow> batchIndexResult = ViewerFactory.getSolrManager().findRows(databaseUUID,
+        batchRequest);
+      for (IndexResult<ViewerRow> result : batchIndexResult.getResults()) {
+        count += result.getTotalCount();
+      }
+      return batchIndexResult;
+    } catch (GenericException | RequestNotValidException e) {
+      state = LogEntryState.FAILURE;
+      throw new RESTException(e);
+    } finally {
+      // register a single action for the whole batch
+      controllerAssistant.registerAction(user, databaseUUID, state, ViewerConstants.CONTROLLER_DATABASE_ID_PARAM,
+        databaseUUID, ViewerConstants.CONTROLLER_FILTER_PARAM, JsonUtils.getJsonFromObject(batchRequest),
+        ViewerConstants.CONTROLLER_RETRIEVE_COUNT, count);
+    }
+  }
+
   @Override
   public ViewerRow retrieveRow(String databaseUUID, String collectionUUID, String schema, String table,
     String rowIndex) {
@@ -574,13 +706,9 @@ public class CollectionResource implements CollectionService {
         .getConfigurationCollection(databaseUUID, databaseUUID);
       final TableStatus configTable = configurationCollection.getTableStatusByTableId(schema + "." + table);
 
-      if (Boolean.FALSE.equals(exportLobs) && StringUtils.isBlank(zipFilename)) {
-        return handleCSVExport(solrManager, databaseUUID, configTable, findRequest, filename, exportDescription,
-          fieldsToHeader);
-      } else {
-        return handleCSVExportWithLobs(solrManager, configurationCollection, database, databaseUUID, configTable,
-          findRequest, zipFilename, filename, exportDescription, fieldsToHeader);
-      }
+      return ApiUtils.okResponse(new StreamResponse(ExportOutputStreams.create(solrManager, configurationCollection,
+        database, configTable, findRequest, filename, zipFilename, exportDescription, exportLobs, fieldsToHeader,
+        null)));
     } catch (GenericException | RequestNotValidException | NotFoundException e) {
       state = LogEntryState.FAILURE;
       throw new RESTException(e);
@@ -604,6 +732,104 @@ public class CollectionResource implements CollectionService {
     }
   }
 
+  @POST
+  @Path("{databaseUUID}/collection/{collectionUUID}/data/{schema}/{table}/find/export/job")
+  @Produces({MediaType.TEXT_PLAIN})
+  @ApiOperation(value = "Export the rows as CSV in a background job", notes = "Returns the job identifier, the file is downloaded from the job once it completes", response = String.class)
+  public String submitExportJob(
+    @ApiParam(value = "The database unique identifier", required = true) @PathParam("databaseUUID") String databaseUUID,
+    @ApiParam(value = "The collection unique identifier", required = true) @PathParam("collectionUUID") String collectionUUID,
+    @ApiParam(value = "The schema name", required = true) @PathParam("schema") String schema,
+    @ApiParam(value = "The table name", required = true) @PathParam("table") String table,
+    @ApiParam(value = "Find request to filter/limit the search") @QueryParam("f") String findRequestJson,
+    @ApiParam(value = "The CSV filename") @QueryParam("filename") String filename,
+    @ApiParam(value = "The Zip filename") @QueryParam("zipFilename") String zipFilename,
+    @ApiParam(value = "Export description", allowableValues = "true, false") @QueryParam("descriptions") boolean exportDescription,
+    @ApiParam(value = "Export LOBs", allowableValues = "true, false") @QueryParam("lobs") boolean exportLobs,
+    @ApiParam(value = "Fields to export", required = true) @QueryParam("fl") String fieldsToHeader) {
+    ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    LogEntryState state = LogEntryState.SUCCESS;
+    User user = controllerAssistant.checkRoles(request);
+
+    final String jobUUID = SolrUtils.randomUUID();
+    FindRequest findRequest = null;
+
+    try {
+      // fail now, instead of in the job, if the request is not valid
+      findRequest = JsonUtils.getObjectFromJson(findRequestJson, FindRequest.class);
+      final TableStatus configTable = ViewerFactory.getConfigurationManager()
+        .getConfigurationCollection(databaseUUID, databaseUUID).getTableStatusByTableId(schema + "." + table);
+      if (configTable == null) {
+        throw new NotFoundException("Table " + schema + "." + table + " not found");
+      }
+
+      ExportJobRequest exportRequest = new ExportJobRequest();
+      exportRequest.setDatabaseUUID(databaseUUID);
+      exportRequest.setCollectionUUID(collectionUUID);
+      exportRequest.setTableId(schema + "." + table);
+      exportRequest.setFindRequestJson(findRequestJson);
+      exportRequest.setFilename(filename);
+      exportRequest.setZipFilename(zipFilename);
+      exportRequest.setExportDescriptions(exportDescription);
+      exportRequest.setExportLobs(exportLobs);
+      exportRequest.setFieldsToHeader(fieldsToHeader);
+      exportRequest.setDownloadFilename(ExportOutputStreams.isZip(exportLobs, zipFilename) ? zipFilename : filename);
+      exportRequest.setMediaType(ExportOutputStreams.getMediaType(exportLobs, zipFilename));
+      exportRequest.setOwner(user.getName());
+      if (!ExportArea.getInstance().addJob(jobUUID, exportRequest)) {
+        state = LogEntryState.FAILURE;
+        throw new RESTException("Not enough room for more exports, try again later",
+          com.google.gwt.http.client.Response.SC_SERVICE_UNAVAILABLE);
+      }
+
+      JobParametersBuilder jobBuilder = new JobParametersBuilder();
+      jobBuilder.addDate(ViewerConstants.SOLR_SEARCHES_DATE_ADDED, new Date());
+      jobBuilder.addString(ViewerConstants.INDEX_ID, jobUUID);
+      jobBuilder.addString(ViewerConstants.CONTROLLER_DATABASE_ID_PARAM, databaseUUID);
+      jobBuilder.addString(ViewerConstants.CONTROLLER_COLLECTION_ID_PARAM, collectionUUID);
+      jobBuilder.addString(ViewerConstants.CONTROLLER_TABLE_ID_PARAM, configTable.getUuid());
+
+      JobController.addSolrExportJob(jobUUID, databaseUUID, collectionUUID, configTable.getUuid(),
+        ExportBatchConfiguration.EXPORT_JOB);
+      // returns as soon as the job is queued
+      exportJobLauncher.run(exportJob, jobBuilder.toJobParameters());
+      return jobUUID;
+    } catch (TaskRejectedException e) {
+      state = LogEntryState.FAILURE;
+      ExportArea.getInstance().delete(jobUUID);
+      try {
+        JobController.failSolrJob(jobUUID, "Rejected, too many export jobs waiting");
+      } catch (GenericException | NotFoundException ex) {
+        LOGGER.debug("Cannot update job on SOLR", ex);
+      }
+      throw new RESTException("Too many export jobs waiting, try again later",
+        com.google.gwt.http.client.Response.SC_SERVICE_UNAVAILABLE);
+    } catch (JobExecutionAlreadyRunningException | JobRestartException | JobInstanceAlreadyCompleteException
+      | JobParametersInvalidException | GenericException | NotFoundException | ViewerException e) {
+      state = LogEntryState.FAILURE;
+      ExportArea.getInstance().delete(jobUUID);
+      throw new RESTException(e);
+    } finally {
+      if (findRequest != null) {
+        Object[] list = new Object[] {ViewerConstants.CONTROLLER_DATABASE_ID_PARAM, databaseUUID,
+          ViewerConstants.CONTROLLER_TABLE_ID_PARAM, schema + "." + table, ViewerConstants.CONTROLLER_FILTER_PARAM,
+          JsonUtils.getJsonFromObject(findRequest.filter), ViewerConstants.CONTROLLER_EXPORT_DESCRIPTIONS_PARAM,
+          exportDescription, ViewerConstants.CONTROLLER_EXPORT_LOBS_PARAM, exportLobs,
+          ViewerConstants.CONTROLLER_FILENAME_PARAM, filename, ViewerConstants.CONTROLLER_SUBLIST_PARAM,
+          findRequest.sublist == null ? JsonUtils.getJsonFromObject(Sublist.NONE)
+            : JsonUtils.getJsonFromObject(findRequest.sublist)};
+
+        if (StringUtils.isNotBlank(zipFilename)) {
+          list = appendValue(list, ViewerConstants.CONTROLLER_ZIP_FILENAME_PARAM);
+          list = appendValue(list, zipFilename);
+        }
+        // register action
+        controllerAssistant.registerAction(user, state, list);
+      }
+    }
+  }
+
   @GET
   @Path("{databaseUUID}/collection/{collectionUUID}/data/{schema}/{table}/{rowIndex}/export")
   @Produces({MediaType.APPLICATION_OCTET_STREAM})
@@ -678,39 +904,6 @@ public class CollectionResource implements CollectionService {
       configTable, row, zipFilename, filename, fieldsToReturn, exportDescriptions)));
   }
 
-  private Response handleCSVExport(DatabaseRowsSolrManager solrManager, final String databaseUUID,
-    final TableStatus configTable, final FindRequest findRequest, final String filename,
-    final boolean exportDescriptions, String fieldsToHeader) throws GenericException, RequestNotValidException {
-    if (findRequest.sublist == null) {
-      final IterableIndexResult allRows = solrManager.findAllRows(databaseUUID, findRequest.filter, findRequest.sorter,
-        findRequest.fieldsToReturn, findRequest.extraParameters);
-      return ApiUtils.okResponse(new ViewerStreamingOutput(new IterableIndexResultsCSVOutputStream(allRows, configTable,
-        filename, exportDescriptions, ',', fieldsToHeader)).toStreamResponse());
-    } else {
-      final IndexResult<ViewerRow> rows = solrManager.findRows(databaseUUID, findRequest.filter, findRequest.sorter,
-        findRequest.sublist, null, findRequest.fieldsToReturn, findRequest.extraParameters);
-
-      return ApiUtils.okResponse(new ViewerStreamingOutput(
-        new ResultsCSVOutputStream(rows, configTable, filename, exportDescriptions, ',', fieldsToHeader))
-          .toStreamResponse());
-    }
-  }
-
-  private Response handleCSVExportWithLobs(DatabaseRowsSolrManager solrManager,
-    CollectionStatus configurationCollection, ViewerDatabase database, final String databaseUUID,
-    final TableStatus configTable, final FindRequest findRequest, final String zipFilename, final String filename,
-    final boolean exportDescription, String fieldsToHeader) {
-    List<String> fields = findRequest.fieldsToReturn;
-    fields.add(ViewerConstants.INDEX_ID);
-    final IterableIndexResult allRows = solrManager.findAllRows(databaseUUID, findRequest.filter, findRequest.sorter,
-      fields, findRequest.extraParameters);
-    final IterableIndexResult clone = solrManager.findAllRows(databaseUUID, findRequest.filter, findRequest.sorter,
-      fields, findRequest.extraParameters);
-    return ApiUtils.okResponse(new StreamResponse(
-      new ZipOutputStream(configurationCollection, databaseUUID, database, configTable, allRows, clone, zipFilename,
-        filename, findRequest.fieldsToReturn, findRequest.sublist, exportDescription, fieldsToHeader)));
-  }
-
   private Object[] appendValue(Object[] obj, Object newObj) {
     ArrayList<Object> temp = new ArrayList<>(Arrays.asList(obj));
     temp.add(newObj);
@@ -1,12 +1,22 @@
 package com.databasepreservation.common.api.v1;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import org.roda.core.data.exceptions.AuthorizationDeniedException;
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
 import org.roda.core.data.exceptions.RequestNotValidException;
@@ -28,7 +38,14 @@ import com.databasepreservation.common.client.services.DatabaseService;
 import com.databasepreservation.common.server.ViewerConfiguration;
 import com.databasepreservation.common.server.ViewerFactory;
 import com.databasepreservation.common.server.controller.SIARDController;
+import com.databasepreservation.common.server.index.FederatedRowsSearch;
+import com.databasepreservation.common.server.index.schema.SolrRowsCollectionRegistry;
+import com.databasepreservation.common.server.index.schema.collections.RowsCollection;
 import com.databasepreservation.common.utils.ControllerAssistant;
+import com.databasepreservation.common.utils.UserUtility;
+
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 
 /**
  * @author Miguel Guimarães <mguimaraes@keep.pt>
@@ -120,6 +137,87 @@ public class DatabaseResource implements DatabaseService {
     }
   }
 
+  @POST
+  @Path("/search/rows")
+  @Produces(ViewerConstants.MEDIA_TYPE_APPLICATION_NDJSON)
+  @ApiOperation(value = "Searches the rows of several databases", notes = "Searches the given databases, or all the ones the user can access, at the same time. Each database is written as a JSON line as soon as it answers, and the best rows of all of them, by score, are written in the last line. Only the filter, the maximum element count of the sublist and the fields to return of the find request are used.", response = Response.class)
+  public Response findRowsAcrossDatabases(
+    @ApiParam(ViewerConstants.API_QUERY_PARAM_FILTER) FindRequest findRequest,
+    @ApiParam(value = "The databases to search, all the accessible ones if none is given") @QueryParam(ViewerConstants.API_QUERY_PARAM_DATABASE) List<String> databaseUUIDs,
+    @ApiParam(value = "The time in milliseconds each database has to answer, at most the configured federated search timeout") @QueryParam(ViewerConstants.API_QUERY_PARAM_TIMEOUT) Long timeoutMs) {
+    ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    User user = controllerAssistant.checkRoles(request);
+
+    ViewerConfiguration configuration = ViewerConfiguration.getInstance();
+    int maxRows = configuration.getViewerConfigurationAsInt(100, ViewerConfiguration.PROPERTY_SOLR_FEDERATED_MAX_ROWS);
+    int rows = findRequest.sublist != null ? Math.min(findRequest.sublist.getMaximumElementCount(), maxRows) : maxRows;
+    long timeout = timeoutMs != null ? timeoutMs
+      : configuration.getViewerConfigurationAsInt(10000, ViewerConfiguration.PROPERTY_SOLR_FEDERATED_TIMEOUT_MS);
+    List<String> databases = getSearchableDatabases(databaseUUIDs);
+
+    StreamingOutput output = out -> {
+      LogEntryState state = LogEntryState.SUCCESS;
+      long count = 0;
+      try {
+        long[] found = new long[1];
+        List<FederatedRowsSearch.ScoredRow> merged = ViewerFactory.getSolrManager().findRowsAcrossDatabases(databases,
+          findRequest.filter, rows, findRequest.fieldsToReturn, timeout, hits -> {
+            found[0] += hits.getTotalCount();
+            writeJsonLine(out, Collections.singletonMap("database", hits));
+          });
+        count = found[0];
+        writeJsonLine(out, Collections.singletonMap("merged", merged));
+      } catch (IOException | RuntimeException e) {
+        state = LogEntryState.FAILURE;
+        throw e;
+      } finally {
+        // register action
+        controllerAssistant.registerAction(user, state, ViewerConstants.CONTROLLER_FILTER_PARAM,
+          JsonUtils.getJsonFromObject(findRequest.filter), ViewerConstants.CONTROLLER_DATABASE_ID_PARAM,
+          JsonUtils.getJsonFromObject(databases), ViewerConstants.CONTROLLER_RETRIEVE_COUNT, count);
+      }
+    };
+
+    return Response.ok(output, ViewerConstants.MEDIA_TYPE_APPLICATION_NDJSON).build();
+  }
+
+  /**
+   * @return the databases among the given ones, or all of them when none is
+   *         given, that have rows and that the user can access. Asking for a
+   *         database the user cannot access is an error.
+   */
+  private List<String> getSearchableDatabases(List<String> databaseUUIDs) {
+    boolean all = databaseUUIDs == null || databaseUUIDs.isEmpty();
+    List<String> candidates = new ArrayList<>();
+    if (all) {
+      for (RowsCollection collection : SolrRowsCollectionRegistry.registry()) {
+        candidates.add(collection.getDatabaseUUID());
+      }
+    } else {
+      candidates.addAll(databaseUUIDs);
+    }
+
+    List<String> databases = new ArrayList<>();
+    for (String databaseUUID : candidates) {
+      try {
+        UserUtility.Authorization.checkDatabaseAccessPermission(request, databaseUUID);
+        databases.add(databaseUUID);
+      } catch (AuthorizationDeniedException | NotFoundException | GenericException e) {
+        if (!all) {
+          throw new RESTException(e);
+        }
+      }
+    }
+    return databases;
+  }
+
+  private static void writeJsonLine(OutputStream out, Object value) throws IOException {
+    out.write(JsonUtils.getJsonFromObject(value).getBytes(StandardCharsets.UTF_8));
+    out.write('\n');
+    out.flush();
+  }
+
   @Override
   public ViewerDatabase retrieve(String databaseUUID) {
     ControllerAssistant controllerAssistant = new ControllerAssistant() {};
@@ -1,14 +1,41 @@
 package com.databasepreservation.common.api.v1;
 
+import java.io.IOException;
+
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 
 import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
 import org.roda.core.data.exceptions.RequestNotValidException;
 import org.roda.core.data.utils.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParametersInvalidException;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobExecutionNotRunningException;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.launch.JobOperator;
+import org.springframework.batch.core.launch.NoSuchJobExecutionException;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import com.databasepreservation.common.api.utils.ApiUtils;
 import com.databasepreservation.common.client.ViewerConstants;
 import com.databasepreservation.common.client.exceptions.RESTException;
 import com.databasepreservation.common.client.index.FindRequest;
@@ -17,10 +44,21 @@ import com.databasepreservation.common.client.models.activity.logs.LogEntryState
 import com.databasepreservation.common.client.models.structure.ViewerJob;
 import com.databasepreservation.common.client.models.user.User;
 import com.databasepreservation.common.client.services.JobService;
+import com.databasepreservation.common.exceptions.ViewerException;
 import com.databasepreservation.common.server.ViewerFactory;
+import com.databasepreservation.common.server.jobs.ExportArea;
+import com.databasepreservation.common.server.jobs.ExportBatchConfiguration;
+import com.databasepreservation.common.server.jobs.ExportJobRequest;
+import com.databasepreservation.common.server.jobs.IngestBatchConfiguration;
+import com.databasepreservation.common.server.jobs.IngestCancellationRegistry;
+import com.databasepreservation.common.server.jobs.JobProgressService;
 import com.databasepreservation.common.utils.ControllerAssistant;
 import com.databasepreservation.common.utils.I18nUtility;
 import com.databasepreservation.common.utils.UserUtility;
+import com.google.gwt.http.client.Response;
+
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 
 /**
  * @author Gabriel Barros <gbarros@keep.pt>
@@ -28,9 +66,26 @@ import com.databasepreservation.common.utils.UserUtility;
 @Service
 @Path(ViewerConstants.ENDPOINT_JOB)
 public class JobResource implements JobService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(JobResource.class);
+
   @Context
   private HttpServletRequest request;
 
+  @Autowired
+  @Qualifier("customJobOperator")
+  JobOperator jobOperator;
+
+  @Autowired
+  @Qualifier("customJobLauncher")
+  JobLauncher jobLauncher;
+
+  @Autowired
+  @Qualifier("denormalizeJob")
+  Job denormalizeJob;
+
+  @Autowired
+  JobExplorer jobExplorer;
+
   @Override
   public IndexResult<ViewerJob> find(FindRequest findRequest, String locale) {
     ControllerAssistant controllerAssistant = new ControllerAssistant() {};
@@ -41,6 +96,9 @@ public class JobResource implements JobService {
     try {
       final IndexResult<ViewerJob> result = ViewerFactory.getSolrManager().find(ViewerJob.class, findRequest.filter,
         findRequest.sorter, findRequest.sublist, findRequest.facets);
+      for (ViewerJob job : result.getResults()) {
+        JobProgressService.getInstance().fillProgress(job);
+      }
       return I18nUtility.translate(result, ViewerJob.class, locale);
     } catch (GenericException | RequestNotValidException e) {
       state = LogEntryState.FAILURE;
@@ -51,4 +109,163 @@ public class JobResource implements JobService {
         JsonUtils.getJsonFromObject(findRequest.filter));
     }
   }
+
+  @Override
+  public ViewerJob retrieve(String jobUUID) {
+    ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    LogEntryState state = LogEntryState.SUCCESS;
+    User user = controllerAssistant.checkRoles(request);
+
+    try {
+      if (!canAccessJob(user, jobUUID)) {
+        state = LogEntryState.FAILURE;
+        throw new RESTException("Job " + jobUUID + " not found", Response.SC_NOT_FOUND);
+      }
+      ViewerJob job = ViewerFactory.getSolrManager().retrieve(ViewerJob.class, jobUUID);
+      // the stored progress lags behind the one of a running job
+      JobProgressService.getInstance().fillProgress(job);
+      return job;
+    } catch (GenericException | NotFoundException e) {
+      state = LogEntryState.FAILURE;
+      throw new RESTException(e);
+    } finally {
+      // register action
+      controllerAssistant.registerAction(user, state, ViewerConstants.INDEX_ID, jobUUID);
+    }
+  }
+
+  @Override
+  public Boolean stop(String jobUUID) {
+    ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    LogEntryState state = LogEntryState.SUCCESS;
+    User user = controllerAssistant.checkRoles(request);
+
+    try {
+      if (!canAccessJob(user, jobUUID)) {
+        state = LogEntryState.FAILURE;
+        throw new RESTException("Job " + jobUUID + " not found", Response.SC_NOT_FOUND);
+      }
+      final ViewerJob job = ViewerFactory.getSolrManager().retrieve(ViewerJob.class, jobUUID);
+      if (IngestBatchConfiguration.INGEST_JOB.equals(job.getName())) {
+        // the conversion does not run in Spring Batch steps, it checks this
+        // registry itself
+        IngestCancellationRegistry.cancel(job.getDatabaseUuid());
+      } else if (ExportBatchConfiguration.EXPORT_JOB.equals(job.getName())) {
+        // the export runs in a single step, it checks the export area itself
+        ExportArea.getInstance().cancel(jobUUID);
+      }
+
+      for (JobExecution runningJobExecution : jobExplorer.findRunningJobExecutions(job.getName())) {
+        if (jobUUID.equals(runningJobExecution.getJobParameters().getString(ViewerConstants.INDEX_ID))) {
+          jobOperator.stop(runningJobExecution.getId());
+          return true;
+        }
+      }
+      return false;
+    } catch (GenericException | NotFoundException e) {
+      state = LogEntryState.FAILURE;
+      throw new RESTException(e);
+    } catch (NoSuchJobExecutionException | JobExecutionNotRunningException e) {
+      LOGGER.debug("Job {} is no longer running", jobUUID, e);
+      return false;
+    } finally {
+      // register action
+      controllerAssistant.registerAction(user, state, ViewerConstants.INDEX_ID, jobUUID);
+    }
+  }
+
+  @Override
+  public Boolean restart(String jobUUID) {
+    ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    LogEntryState state = LogEntryState.SUCCESS;
+    User user = controllerAssistant.checkRoles(request);
+
+    try {
+      final ViewerJob job = ViewerFactory.getSolrManager().retrieve(ViewerJob.class, jobUUID);
+      if (!denormalizeJob.getName().equals(job.getName())) {
+        throw new RESTException("Only denormalization jobs can be restarted", Response.SC_BAD_REQUEST);
+      }
+
+      JobInstance jobInstance = job.getJobId() == null ? null : jobExplorer.getJobInstance(job.getJobId());
+      if (jobInstance == null) {
+        throw new RESTException("Job " + jobUUID + " is no longer known", Response.SC_NOT_FOUND);
+      }
+      JobExecution lastExecution = jobExplorer.getLastJobExecution(jobInstance);
+      if (lastExecution == null) {
+        throw new RESTException("Job " + jobUUID + " is no longer known", Response.SC_NOT_FOUND);
+      }
+      if (lastExecution.isRunning()) {
+        throw new RESTException("Job " + jobUUID + " is still running", Response.SC_CONFLICT);
+      }
+      if (lastExecution.getStatus() != BatchStatus.FAILED && lastExecution.getStatus() != BatchStatus.STOPPED) {
+        throw new RESTException("Job " + jobUUID + " did not fail nor was it stopped", Response.SC_CONFLICT);
+      }
+
+      // same parameters, so Spring Batch restarts the instance and only runs the
+      // steps (and partitions) that did not complete
+      jobLauncher.run(denormalizeJob, lastExecution.getJobParameters());
+      return true;
+    } catch (GenericException | NotFoundException e) {
+      state = LogEntryState.FAILURE;
+      throw new RESTException(e);
+    } catch (JobExecutionAlreadyRunningException e) {
+      state = LogEntryState.FAILURE;
+      throw new RESTException(e, Response.SC_CONFLICT);
+    } catch (JobRestartException | JobInstanceAlreadyCompleteException | JobParametersInvalidException e) {
+      state = LogEntryState.FAILURE;
+      throw new RESTException(e);
+    } finally {
+      // register action
+      controllerAssistant.registerAction(user, state, ViewerConstants.INDEX_ID, jobUUID);
+    }
+  }
+
+  @GET
+  @Path("/{jobUUID}/download")
+  @Produces({MediaType.APPLICATION_OCTET_STREAM})
+  @ApiOperation(value = "Downloads the file of a completed export job", notes = "Supports the Range, If-Range and If-None-Match headers to resume an interrupted download", response = javax.ws.rs.core.Response.class)
+  public javax.ws.rs.core.Response downloadExport(
+    @ApiParam(value = "The job unique identifier", required = true) @PathParam("jobUUID") String jobUUID,
+    @HeaderParam("Range") String range, @HeaderParam("If-Range") String ifRange,
+    @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+    ControllerAssistant controllerAssistant = new ControllerAssistant() {};
+
+    LogEntryState state = LogEntryState.SUCCESS;
+    User user = controllerAssistant.checkRoles(request);
+
+    try {
+      if (!canAccessJob(user, jobUUID)) {
+        state = LogEntryState.FAILURE;
+        throw new RESTException("Job " + jobUUID + " not found", Response.SC_NOT_FOUND);
+      }
+      final ExportJobRequest exportRequest = ExportArea.getInstance().getRequest(jobUUID);
+      return ApiUtils.rangeResponse(ExportArea.getInstance().getResult(jobUUID),
+        exportRequest.getDownloadFilename(), exportRequest.getMediaType(), range, ifRange, ifNoneMatch);
+    } catch (NotFoundException | ViewerException | IOException e) {
+      state = LogEntryState.FAILURE;
+      throw new RESTException(e);
+    } finally {
+      // register action
+      controllerAssistant.registerAction(user, state, ViewerConstants.INDEX_ID, jobUUID);
+    }
+  }
+
+  /**
+   * Administrators may access any job, other users only the export jobs they
+   * submitted; the jobs of other users are reported as not found.
+   */
+  private static boolean canAccessJob(User user, String jobUUID) {
+    if (UserUtility.userIsAdmin(user)) {
+      return true;
+    }
+    try {
+      return user.getName() != null && user.getName().equals(ExportArea.getInstance().getRequest(jobUUID).getOwner());
+    } catch (NotFoundException | ViewerException e) {
+      LOGGER.debug("Job {} is not an export job", jobUUID, e);
+      return false;
+    }
+  }
 }
@@ -0,0 +1,79 @@
+package com.databasepreservation.common.api.v1.utils;
+
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+
+import com.databasepreservation.common.api.utils.ExtraMediaType;
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.client.index.FindRequest;
+import com.databasepreservation.common.client.index.IndexResult;
+import com.databasepreservation.common.client.models.status.collection.CollectionStatus;
+import com.databasepreservation.common.client.models.status.collection.TableStatus;
+import com.databasepreservation.common.client.models.structure.ViewerDatabase;
+import com.databasepreservation.common.client.models.structure.ViewerRow;
+import com.databasepreservation.common.server.index.DatabaseRowsSolrManager;
+import com.databasepreservation.common.server.index.utils.IterableIndexResult;
+
+/**
+ * Builds the CSV, or ZIP with LOBs, export of the rows of a table matching a
+ * find request, written to the HTTP response or by an export job.
+ */
+public final class ExportOutputStreams {
+
+  private ExportOutputStreams() {
+  }
+
+  /**
+   * @return true if the export is a ZIP with the LOBs and the CSV file
+   */
+  public static boolean isZip(boolean exportLobs, String zipFilename) {
+    return exportLobs || StringUtils.isNotBlank(zipFilename);
+  }
+
+  public static String getMediaType(boolean exportLobs, String zipFilename) {
+    return isZip(exportLobs, zipFilename) ? ExtraMediaType.APPLICATION_ZIP : ExtraMediaType.TEXT_CSV;
+  }
+
+  /**
+   * @param rowListener
+   *          called for each exported row when all the rows are exported, may be
+   *          null
+   */
+  public static CSVOutputStream create(DatabaseRowsSolrManager solrManager, CollectionStatus configurationCollection,
+    ViewerDatabase database, TableStatus configTable, FindRequest findRequest, String filename, String zipFilename,
+    boolean exportDescriptions, boolean exportLobs, String fieldsToHeader, Runnable rowListener)
+    throws GenericException, RequestNotValidException {
+    final String databaseUUID = database.getUuid();
+
+    if (!isZip(exportLobs, zipFilename)) {
+      if (findRequest.sublist == null) {
+        final IterableIndexResult allRows = solrManager.findAllRows(databaseUUID, findRequest.filter,
+          findRequest.sorter, findRequest.fieldsToReturn, findRequest.extraParameters).onEachRow(rowListener);
+        return new IterableIndexResultsCSVOutputStream(allRows, configTable, filename, exportDescriptions, ',',
+          fieldsToHeader);
+      } else {
+        final IndexResult<ViewerRow> rows = solrManager.findRows(databaseUUID, findRequest.filter,
+          findRequest.sorter, findRequest.sublist, null, findRequest.fieldsToReturn, findRequest.extraParameters);
+        return new ResultsCSVOutputStream(rows, configTable, filename, exportDescriptions, ',', fieldsToHeader);
+      }
+    }
+
+    List<String> fields = findRequest.fieldsToReturn;
+    fields.add(ViewerConstants.INDEX_ID);
+    if (findRequest.sublist == null) {
+      final IterableIndexResult allRows = solrManager
+        .findAllRows(databaseUUID, findRequest.filter, findRequest.sorter, fields, findRequest.extraParameters)
+        .onEachRow(rowListener);
+      return new ZipOutputStream(configurationCollection, databaseUUID, database, configTable, allRows, zipFilename,
+        filename, exportDescriptions, fieldsToHeader);
+    } else {
+      final IndexResult<ViewerRow> rows = solrManager.findRows(databaseUUID, findRequest.filter, findRequest.sorter,
+        findRequest.sublist, null, fields, findRequest.extraParameters);
+      return new ZipOutputStream(configurationCollection, databaseUUID, database, configTable, rows, zipFilename,
+        filename, exportDescriptions, fieldsToHeader);
+    }
+  }
+}
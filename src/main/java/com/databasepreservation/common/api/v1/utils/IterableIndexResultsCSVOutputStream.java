@@ -49,16 +49,20 @@ public class IterableIndexResultsCSVOutputStream extends CSVOutputStream {
     CSVPrinter printer = null;
     boolean isFirst = true;
 
-    for (ViewerRow row : results) {
-      if (isFirst) {
-        printer = getFormat()
-          .withHeader(configTable.getCSVHeaders(fieldsToReturn, exportDescription).toArray(new String[0]))
-          .print(writer);
-        isFirst = false;
-      }
+    try {
+      for (ViewerRow row : results) {
+        if (isFirst) {
+          printer = getFormat()
+            .withHeader(configTable.getCSVHeaders(fieldsToReturn, exportDescription).toArray(new String[0]))
+            .print(writer);
+          isFirst = false;
+        }
 
-      printer.printRecord(HandlebarsUtils.getCellValues(row, configTable, fieldsToReturn));
+        printer.printRecord(HandlebarsUtils.getCellValues(row, configTable, fieldsToReturn));
 
+      }
+    } finally {
+      results.close();
     }
 
     writer.flush();
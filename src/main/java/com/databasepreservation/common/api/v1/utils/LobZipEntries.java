@@ -0,0 +1,162 @@
+package com.databasepreservation.common.api.v1.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Adds LOBs to the ZIP of an export without compressing them again when that
+ * gains nothing. LOBs that are already compressed in the SIARD archive are
+ * copied with their compressed bytes as they are, and LOBs whose media type is
+ * already compressed (images, videos, PDF...) are stored instead of deflated.
+ */
+final class LobZipEntries {
+  private static final Set<String> INCOMPRESSIBLE_TYPES = new HashSet<>(Arrays.asList("application/pdf",
+    "application/zip", "application/gzip", "application/x-7z-compressed", "application/x-rar-compressed",
+    "application/x-bzip2", "application/x-xz", "image/jpeg", "image/png", "image/gif", "image/webp"));
+  private static final List<String> INCOMPRESSIBLE_TYPE_PREFIXES = Arrays.asList("audio/", "video/");
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private LobZipEntries() {
+  }
+
+  /**
+   * @return true if the content of the media type is already compressed, so
+   *         that deflating it only costs time
+   */
+  static boolean isIncompressible(String applicationType) {
+    if (applicationType == null) {
+      return false;
+    }
+    String mediaType = applicationType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+    return INCOMPRESSIBLE_TYPES.contains(mediaType)
+      || INCOMPRESSIBLE_TYPE_PREFIXES.stream().anyMatch(mediaType::startsWith);
+  }
+
+  /**
+   * Adds a LOB stored in a file.
+   */
+  static void addEntry(ZipArchiveOutputStream out, Path file, String name, String applicationType)
+    throws IOException {
+    addEntry(out, null, file, name, applicationType);
+  }
+
+  /**
+   * Adds a LOB stored in a file, compressing it on the threads of the scatter
+   * creator when there is one.
+   */
+  static void addEntry(ZipArchiveOutputStream out, ParallelScatterZipCreator scatter, Path file, String name,
+    String applicationType) throws IOException {
+    if (scatter != null) {
+      scatter.addArchiveEntry(scatterEntry(name, applicationType), () -> openInputStream(file));
+      return;
+    }
+
+    ZipArchiveEntry entry = new ZipArchiveEntry(name);
+    if (isIncompressible(applicationType)) {
+      // a stored entry must tell its size and CRC before its content
+      entry.setMethod(ZipArchiveEntry.STORED);
+      entry.setSize(Files.size(file));
+      entry.setCrc(crc(file));
+    }
+    out.putArchiveEntry(entry);
+    Files.copy(file, out);
+    out.closeArchiveEntry();
+  }
+
+  /**
+   * Adds a LOB stored in an entry of the SIARD archive, copying its compressed
+   * bytes with their CRC and sizes when it is deflated or stored.
+   */
+  static void copyEntry(ZipArchiveOutputStream out, ZipFile archive, ZipArchiveEntry source, String name,
+    String applicationType) throws IOException {
+    copyEntry(out, null, archive, source, name, applicationType);
+  }
+
+  /**
+   * Adds a LOB stored in an entry of the SIARD archive. Entries that cannot be
+   * copied as they are decompressed and compressed again on the threads of the
+   * scatter creator when there is one.
+   */
+  static void copyEntry(ZipArchiveOutputStream out, ParallelScatterZipCreator scatter, ZipFile archive,
+    ZipArchiveEntry source, String name, String applicationType) throws IOException {
+    boolean sizesKnown = source.getCrc() >= 0 && source.getSize() >= 0 && source.getCompressedSize() >= 0;
+    boolean copyable = source.getMethod() == ZipArchiveEntry.DEFLATED || source.getMethod() == ZipArchiveEntry.STORED;
+    ZipArchiveEntry entry = new ZipArchiveEntry(name);
+    entry.setTime(source.getTime());
+
+    if (sizesKnown && copyable) {
+      entry.setMethod(source.getMethod());
+      entry.setCrc(source.getCrc());
+      entry.setSize(source.getSize());
+      entry.setCompressedSize(source.getCompressedSize());
+      try (InputStream in = archive.getRawInputStream(source)) {
+        out.addRawArchiveEntry(entry, in);
+      }
+    } else if (scatter != null) {
+      ZipArchiveEntry scatterEntry = scatterEntry(name, applicationType);
+      scatterEntry.setTime(source.getTime());
+      scatter.addArchiveEntry(scatterEntry, () -> {
+        try {
+          return archive.getInputStream(source);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } else {
+      if (sizesKnown && isIncompressible(applicationType)) {
+        entry.setMethod(ZipArchiveEntry.STORED);
+        entry.setCrc(source.getCrc());
+        entry.setSize(source.getSize());
+      }
+      out.putArchiveEntry(entry);
+      try (InputStream in = archive.getInputStream(source)) {
+        IOUtils.copy(in, out);
+      }
+      out.closeArchiveEntry();
+    }
+  }
+
+  /**
+   * The scatter creator computes the size and CRC of stored entries itself.
+   */
+  private static ZipArchiveEntry scatterEntry(String name, String applicationType) {
+    ZipArchiveEntry entry = new ZipArchiveEntry(name);
+    entry.setMethod(isIncompressible(applicationType) ? ZipArchiveEntry.STORED : ZipArchiveEntry.DEFLATED);
+    return entry;
+  }
+
+  private static InputStream openInputStream(Path file) {
+    try {
+      return Files.newInputStream(file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static long crc(Path file) throws IOException {
+    CRC32 crc = new CRC32();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream in = Files.newInputStream(file)) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        crc.update(buffer, 0, read);
+      }
+    }
+    return crc.getValue();
+  }
+}
@@ -0,0 +1,56 @@
+package com.databasepreservation.common.api.v1.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import com.databasepreservation.common.server.ViewerConfiguration;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Threads that compress the LOBs of ZIP exports. Each export gets at most
+ * export.zip.threads of them, and all the exports share at most
+ * export.zip.max_threads, so that the exports running at the same time cannot
+ * take all the processors of the server. An export that gets a single thread
+ * compresses its LOBs itself.
+ */
+final class ZipCompressionThreads {
+  private static final Semaphore AVAILABLE = new Semaphore(Math.max(0, ViewerConfiguration.getInstance()
+    .getViewerConfigurationAsInt(Runtime.getRuntime().availableProcessors(),
+      ViewerConfiguration.PROPERTY_EXPORT_ZIP_MAX_THREADS)));
+  private static final int PER_EXPORT = Math.min(Runtime.getRuntime().availableProcessors(),
+    ViewerConfiguration.getInstance().getViewerConfigurationAsInt(0, ViewerConfiguration.PROPERTY_EXPORT_ZIP_THREADS));
+
+  private ZipCompressionThreads() {
+  }
+
+  /**
+   * Takes as many of the free threads as an export may use, which must be
+   * released when the export ends.
+   *
+   * @return the number of threads taken, 0 or 1 meaning none
+   */
+  static int acquire() {
+    for (int threads = PER_EXPORT; threads > 1; threads--) {
+      if (AVAILABLE.tryAcquire(threads)) {
+        return threads;
+      }
+    }
+    return 0;
+  }
+
+  static void release(int threads) {
+    if (threads > 1) {
+      AVAILABLE.release(threads);
+    }
+  }
+
+  /**
+   * @return a pool with the threads taken, which the scatter creator shuts down
+   *         when it writes the compressed entries
+   */
+  static ExecutorService newPool(int threads) {
+    return Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat("zip-export-compression-%d").setDaemon(true).build());
+  }
+}
@@ -1,30 +1,37 @@
 package com.databasepreservation.common.api.v1.utils;
 
-import java.io.ByteArrayOutputStream;
-import java.io.FileInputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.zip.ZipFile;
 
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
 import org.apache.commons.compress.archivers.zip.Zip64Mode;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.parallel.FileBasedScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
 import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.io.IOUtils;
-import org.roda.core.data.v2.index.sublist.Sublist;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.databasepreservation.common.api.utils.ExtraMediaType;
 import com.databasepreservation.common.api.utils.HandlebarsUtils;
 import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.client.index.IndexResult;
 import com.databasepreservation.common.client.models.status.collection.CollectionStatus;
 import com.databasepreservation.common.client.models.status.collection.ColumnStatus;
 import com.databasepreservation.common.client.models.status.collection.LargeObjectConsolidateProperty;
@@ -38,25 +45,54 @@ import com.databasepreservation.common.server.index.utils.IterableIndexResult;
 import com.databasepreservation.common.utils.LobPathManager;
 
 /**
+ * Exports rows as a ZIP with their LOBs and a CSV file, reading the rows only
+ * once: the LOBs of each row are added to the ZIP while its record is written to
+ * a temporary CSV file, which is added at the end. The memory used does not
+ * depend on the number of rows. When the export gets compression threads, see
+ * {@link ZipCompressionThreads}, its LOBs are compressed on them.
+ *
  * @author Miguel Guimarães <mguimaraes@keep.pt>
  */
 public class ZipOutputStream extends CSVOutputStream {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ZipOutputStream.class);
+  private static final String CSV_SPOOL_PREFIX = "dbvtk-export-";
+  private static final String SCATTER_PREFIX = "dbvtk-export-lobs-";
+
   private final CollectionStatus configurationCollection;
   private final String databaseUUID;
   private final ViewerDatabase database;
   private final TableStatus configTable;
   private final String zipFilename;
   private final String csvFilename;
-  private final IterableIndexResult viewerRows;
-  private final IterableIndexResult viewerRowsClone;
+  private final Iterable<ViewerRow> viewerRows;
+  private final IterableIndexResult iterableViewerRows;
   private final List<String> fieldsToReturn;
-  private Sublist sublist;
   private final boolean exportDescriptions;
 
+  /**
+   * Exports all the rows, which are closed at the end.
+   */
   public ZipOutputStream(final CollectionStatus configurationCollection, final String databaseUUID,
     final ViewerDatabase database, final TableStatus configTable, final IterableIndexResult viewerRows,
-    final IterableIndexResult viewerRowsClone, final String zipFilename, final String csvFilename,
-    List<String> fieldsToReturn, Sublist sublist, boolean exportDescriptions, String fieldsToHeader) {
+    final String zipFilename, final String csvFilename, boolean exportDescriptions, String fieldsToHeader) {
+    this(configurationCollection, databaseUUID, database, configTable, viewerRows, viewerRows, zipFilename,
+      csvFilename, exportDescriptions, fieldsToHeader);
+  }
+
+  /**
+   * Exports a page of rows, already fetched from Solr.
+   */
+  public ZipOutputStream(final CollectionStatus configurationCollection, final String databaseUUID,
+    final ViewerDatabase database, final TableStatus configTable, final IndexResult<ViewerRow> viewerRows,
+    final String zipFilename, final String csvFilename, boolean exportDescriptions, String fieldsToHeader) {
+    this(configurationCollection, databaseUUID, database, configTable, viewerRows.getResults(), null, zipFilename,
+      csvFilename, exportDescriptions, fieldsToHeader);
+  }
+
+  private ZipOutputStream(final CollectionStatus configurationCollection, final String databaseUUID,
+    final ViewerDatabase database, final TableStatus configTable, final Iterable<ViewerRow> viewerRows,
+    final IterableIndexResult iterableViewerRows, final String zipFilename, final String csvFilename,
+    boolean exportDescriptions, String fieldsToHeader) {
     super(zipFilename, ',');
     this.configurationCollection = configurationCollection;
     this.databaseUUID = databaseUUID;
@@ -65,51 +101,74 @@ public class ZipOutputStream extends CSVOutputStream {
     this.zipFilename = zipFilename;
     this.csvFilename = csvFilename;
     this.viewerRows = viewerRows;
+    this.iterableViewerRows = iterableViewerRows;
     this.fieldsToReturn = Stream.of(fieldsToHeader.split(",")).collect(Collectors.toList());
-    this.viewerRowsClone = viewerRowsClone;
-    this.sublist = sublist;
     this.exportDescriptions = exportDescriptions;
   }
 
   @Override
   public void consumeOutputStream(OutputStream out) throws IOException {
-    ZipFile siardArchive = new ZipFile(database.getPath());
+    final Path csvSpool = Files.createTempFile(CSV_SPOOL_PREFIX, ".csv");
+    final int threads = ZipCompressionThreads.acquire();
+    final ExecutorService compressionPool = threads > 1 ? ZipCompressionThreads.newPool(threads) : null;
+    final ScatterFiles scatterFiles = new ScatterFiles();
 
-    boolean all = false;
-    if (sublist == null) {
-      sublist = Sublist.NONE;
-      all = true;
-    }
-    Iterator<ViewerRow> iterator = viewerRows.iterator();
-    int nIndex = 0;
-
-    int maxIndex = sublist.getFirstElementIndex() + sublist.getMaximumElementCount();
-
-    try (ZipArchiveOutputStream zipArchiveOutputStream = new ZipArchiveOutputStream(out)) {
+    try (ZipFile siardArchive = new ZipFile(database.getPath());
+      ZipArchiveOutputStream zipArchiveOutputStream = new ZipArchiveOutputStream(out)) {
       zipArchiveOutputStream.setUseZip64(Zip64Mode.AsNeeded);
       zipArchiveOutputStream.setMethod(ZipArchiveOutputStream.DEFLATED);
+      // LOBs that must be compressed are compressed in parallel to temporary
+      // files and added to the ZIP once all the rows are read
+      final ParallelScatterZipCreator scatter = compressionPool != null
+        ? new ParallelScatterZipCreator(compressionPool, scatterFiles)
+        : null;
 
       final List<ColumnStatus> binaryColumns = configTable.getBinaryColumns();
-      while (iterator.hasNext() && (nIndex < maxIndex || all)) {
-        ViewerRow row = iterator.next();
-        if (nIndex < (sublist.getFirstElementIndex())) {
-          nIndex++;
-          continue;
-        } else {
-          writeToZipFile(siardArchive, zipArchiveOutputStream, row, binaryColumns);
+      try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(csvSpool)))) {
+        CSVPrinter printer = null;
+        for (ViewerRow row : viewerRows) {
+          writeToZipFile(siardArchive, zipArchiveOutputStream, scatter, row, binaryColumns);
+
+          if (printer == null) {
+            printer = new CSVPrinter(writer, getFormat()
+              .withHeader(configTable.getCSVHeaders(fieldsToReturn, exportDescriptions).toArray(new String[0])));
+          }
+          printer.printRecord(HandlebarsUtils.getCellValues(row, configTable, fieldsToReturn));
         }
-        nIndex++;
       }
 
-      nIndex = 0;
-      final ByteArrayOutputStream byteArrayOutputStream = writeCSVFile(nIndex, all);
+      if (scatter != null) {
+        writeScatteredEntries(scatter, zipArchiveOutputStream);
+      }
+
       zipArchiveOutputStream.putArchiveEntry(new ZipArchiveEntry(csvFilename));
-      zipArchiveOutputStream.write(byteArrayOutputStream.toByteArray());
-      byteArrayOutputStream.close();
+      Files.copy(csvSpool, zipArchiveOutputStream);
       zipArchiveOutputStream.closeArchiveEntry();
 
       zipArchiveOutputStream.finish();
       zipArchiveOutputStream.flush();
+    } finally {
+      if (compressionPool != null) {
+        compressionPool.shutdownNow();
+      }
+      ZipCompressionThreads.release(threads);
+      scatterFiles.deleteAll();
+      Files.deleteIfExists(csvSpool);
+      if (iterableViewerRows != null) {
+        iterableViewerRows.close();
+      }
+    }
+  }
+
+  private void writeScatteredEntries(ParallelScatterZipCreator scatter, ZipArchiveOutputStream out)
+    throws IOException {
+    try {
+      scatter.writeTo(out);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while compressing the LOBs", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Could not compress the LOBs", e.getCause());
     }
   }
 
@@ -132,84 +191,57 @@ public class ZipOutputStream extends CSVOutputStream {
     return null;
   }
 
-  private void writeToZipFile(ZipFile siardArchive, ZipArchiveOutputStream out, ViewerRow row,
-    List<ColumnStatus> binaryColumns) throws IOException {
+  private void writeToZipFile(ZipFile siardArchive, ZipArchiveOutputStream out, ParallelScatterZipCreator scatter,
+    ViewerRow row, List<ColumnStatus> binaryColumns) throws IOException {
 
     for (Map.Entry<String, ViewerCell> cellEntry : row.getCells().entrySet()) {
       final ColumnStatus binaryColumn = findBinaryColumn(binaryColumns, cellEntry.getKey());
 
       if (binaryColumn != null) {
         if (configurationCollection.getConsolidateProperty().equals(LargeObjectConsolidateProperty.CONSOLIDATED)) {
-          handleWriteConsolidateLobs(out, binaryColumn, row);
+          handleWriteConsolidateLobs(out, scatter, binaryColumn, row);
         } else {
           if (configTable.getColumnByIndex(binaryColumn.getColumnIndex()).isExternalLob()) {
-            handleWriteExternalLobs(out, binaryColumn, row, cellEntry.getValue());
+            handleWriteExternalLobs(out, scatter, binaryColumn, row, cellEntry.getValue());
           } else {
-            handleWriteInternalLobs(out, siardArchive, binaryColumn, row, cellEntry.getValue());
+            handleWriteInternalLobs(out, scatter, siardArchive, binaryColumn, row, cellEntry.getValue());
           }
         }
       }
     }
   }
 
-  private ByteArrayOutputStream writeCSVFile(int nIndex, boolean all) throws IOException {
-    ByteArrayOutputStream listBytes = new ByteArrayOutputStream();
-    try (final OutputStreamWriter writer = new OutputStreamWriter(listBytes)) {
-      CSVPrinter printer = null;
-      boolean isFirst = true;
-
-      int maxIndex = sublist.getFirstElementIndex() + sublist.getMaximumElementCount();
-
-      Iterator<ViewerRow> iterator = viewerRowsClone.iterator();
-      while (iterator.hasNext() && (nIndex < maxIndex || all)) {
-        ViewerRow row = iterator.next();
-        if (nIndex < sublist.getFirstElementIndex()) {
-          nIndex++;
-          continue;
-        } else {
-          if (isFirst) {
-            printer = new CSVPrinter(writer, getFormat()
-              .withHeader(configTable.getCSVHeaders(fieldsToReturn, exportDescriptions).toArray(new String[0])));
-            isFirst = false;
-          }
-
-          printer.printRecord(HandlebarsUtils.getCellValues(row, configTable, fieldsToReturn));
-        }
-        nIndex++;
-      }
-      viewerRowsClone.close();
-    }
-
-    return listBytes;
-  }
-
-  private void handleWriteConsolidateLobs(ZipArchiveOutputStream out, ColumnStatus binaryColumn, ViewerRow row)
-    throws IOException {
+  private void handleWriteConsolidateLobs(ZipArchiveOutputStream out, ParallelScatterZipCreator scatter,
+    ColumnStatus binaryColumn, ViewerRow row) throws IOException {
     final Path consolidatedPath = LobPathManager.getConsolidatedPath(ViewerFactory.getViewerConfiguration(),
       databaseUUID, configTable.getId(), binaryColumn.getColumnIndex(), row.getUuid());
 
-    InputStream in = new FileInputStream(consolidatedPath.toFile());
     final String templateFilename = getTemplateFilename(row, binaryColumn, consolidatedPath.getFileName().toString());
-    addEntryToZip(out, in, templateFilename);
+    LobZipEntries.addEntry(out, scatter, consolidatedPath,
+      ViewerConstants.INTERNAL_ZIP_LOB_FOLDER + templateFilename, binaryColumn.getApplicationType());
   }
 
-  private void handleWriteInternalLobs(ZipArchiveOutputStream out, ZipFile siardArchive, ColumnStatus binaryColumn,
-    ViewerRow row, ViewerCell cell) throws IOException {
+  private void handleWriteInternalLobs(ZipArchiveOutputStream out, ParallelScatterZipCreator scatter,
+    ZipFile siardArchive, ColumnStatus binaryColumn, ViewerRow row, ViewerCell cell) throws IOException {
     final String templateFilename = getTemplateFilename(row, binaryColumn, cell.getValue());
-    final InputStream in = siardArchive.getInputStream(
-      siardArchive.getEntry(LobPathManager.getZipFilePath(configTable, binaryColumn.getColumnIndex(), row)));
-    addEntryToZip(out, in, templateFilename);
+    final String entryName = LobPathManager.getZipFilePath(configTable, binaryColumn.getColumnIndex(), row);
+    final ZipArchiveEntry entry = siardArchive.getEntry(entryName);
+    if (entry == null) {
+      throw new IOException("LOB " + entryName + " not found in " + database.getPath());
+    }
+    LobZipEntries.copyEntry(out, scatter, siardArchive, entry,
+      ViewerConstants.INTERNAL_ZIP_LOB_FOLDER + templateFilename, binaryColumn.getApplicationType());
   }
 
-  private void handleWriteExternalLobs(ZipArchiveOutputStream out, ColumnStatus binaryColumn, ViewerRow row,
-    ViewerCell cell) throws IOException {
+  private void handleWriteExternalLobs(ZipArchiveOutputStream out, ParallelScatterZipCreator scatter,
+    ColumnStatus binaryColumn, ViewerRow row, ViewerCell cell) throws IOException {
     final String lobLocation = cell.getValue();
     final Path lobPath = Paths.get(lobLocation);
     final Path completeLobPath = ViewerFactory.getViewerConfiguration().getSIARDFilesPath().resolve(lobPath);
 
     final String templateFilename = getTemplateFilename(row, binaryColumn, completeLobPath.getFileName().toString());
-    InputStream inputStream = new FileInputStream(lobPath.toFile());
-    addEntryToZip(out, inputStream, templateFilename);
+    LobZipEntries.addEntry(out, scatter, lobPath, ViewerConstants.INTERNAL_ZIP_LOB_FOLDER + templateFilename,
+      binaryColumn.getApplicationType());
   }
 
   private String getTemplateFilename(ViewerRow row, ColumnStatus binaryColumn, String defaultValue) {
@@ -221,10 +253,35 @@ public class ZipOutputStream extends CSVOutputStream {
     return handlebarsFilename;
   }
 
-  private void addEntryToZip(ZipArchiveOutputStream out, InputStream in, String templateFilename) throws IOException {
-    out.putArchiveEntry(new ZipArchiveEntry(ViewerConstants.INTERNAL_ZIP_LOB_FOLDER + templateFilename));
-    IOUtils.copy(in, out);
-    in.close();
-    out.closeArchiveEntry();
+  /**
+   * Creates the temporary files the LOBs are compressed to and deletes them at
+   * the end of the export, also when it fails before they are written to the
+   * ZIP.
+   */
+  private static class ScatterFiles implements ScatterGatherBackingStoreSupplier {
+    private final List<Path> files = new ArrayList<>();
+    private boolean deleted = false;
+
+    @Override
+    public synchronized ScatterGatherBackingStore get() throws IOException {
+      if (deleted) {
+        throw new IOException("The export already ended");
+      }
+      Path file = Files.createTempFile(SCATTER_PREFIX, ".tmp");
+      files.add(file);
+      return new FileBasedScatterGatherBackingStore(file.toFile());
+    }
+
+    synchronized void deleteAll() {
+      deleted = true;
+      for (Path file : files) {
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException e) {
+          LOGGER.warn("Could not delete the temporary file {}", file, e);
+        }
+      }
+      files.clear();
+    }
   }
 }
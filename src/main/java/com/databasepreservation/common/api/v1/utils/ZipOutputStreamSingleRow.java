@@ -1,22 +1,19 @@
 package com.databasepreservation.common.api.v1.utils;
 
 import java.io.ByteArrayOutputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipFile;
 
 import org.apache.commons.compress.archivers.zip.Zip64Mode;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.io.IOUtils;
 
 import com.databasepreservation.common.api.utils.ExtraMediaType;
 import com.databasepreservation.common.api.utils.HandlebarsUtils;
@@ -61,12 +58,13 @@ public class ZipOutputStreamSingleRow extends CSVOutputStream {
 
   @Override
   public void consumeOutputStream(OutputStream out) throws IOException {
-    try (ZipArchiveOutputStream zipArchiveOutputStream = new ZipArchiveOutputStream(out)) {
+    try (ZipFile siardArchive = new ZipFile(database.getPath());
+      ZipArchiveOutputStream zipArchiveOutputStream = new ZipArchiveOutputStream(out)) {
       zipArchiveOutputStream.setUseZip64(Zip64Mode.AsNeeded);
       zipArchiveOutputStream.setMethod(ZipArchiveOutputStream.DEFLATED);
 
       final List<ColumnStatus> binaryColumns = configTable.getBinaryColumns();
-      writeToZipFile(new ZipFile(database.getPath()), zipArchiveOutputStream, row, binaryColumns);
+      writeToZipFile(siardArchive, zipArchiveOutputStream, row, binaryColumns);
 
       final ByteArrayOutputStream byteArrayOutputStream = writeCSVFile();
       zipArchiveOutputStream.putArchiveEntry(new ZipArchiveEntry(csvFilename));
@@ -132,17 +130,21 @@ public class ZipOutputStreamSingleRow extends CSVOutputStream {
     final Path consolidatedPath = LobPathManager.getConsolidatedPath(ViewerFactory.getViewerConfiguration(),
       database.getUuid(), configTable.getId(), binaryColumn.getColumnIndex(), row.getUuid());
 
-    InputStream in = new FileInputStream(consolidatedPath.toFile());
     final String templateFilename = getTemplateFilename(row, binaryColumn, consolidatedPath.getFileName().toString());
-    addEntryToZip(out, in, templateFilename);
+    LobZipEntries.addEntry(out, consolidatedPath, ViewerConstants.INTERNAL_ZIP_LOB_FOLDER + templateFilename,
+      binaryColumn.getApplicationType());
   }
 
   private void handleWriteInternalLobs(ZipArchiveOutputStream out, ZipFile siardArchive, ColumnStatus binaryColumn,
     ViewerRow row, ViewerCell cell) throws IOException {
     final String templateFilename = getTemplateFilename(row, binaryColumn, cell.getValue());
-    final InputStream in = siardArchive.getInputStream(
-      siardArchive.getEntry(LobPathManager.getZipFilePath(configTable, binaryColumn.getColumnIndex(), row)));
-    addEntryToZip(out, in, templateFilename);
+    final String entryName = LobPathManager.getZipFilePath(configTable, binaryColumn.getColumnIndex(), row);
+    final ZipArchiveEntry entry = siardArchive.getEntry(entryName);
+    if (entry == null) {
+      throw new IOException("LOB " + entryName + " not found in " + database.getPath());
+    }
+    LobZipEntries.copyEntry(out, siardArchive, entry, ViewerConstants.INTERNAL_ZIP_LOB_FOLDER + templateFilename,
+      binaryColumn.getApplicationType());
   }
 
   private void handleWriteExternalLobs(ZipArchiveOutputStream out, ColumnStatus binaryColumn, ViewerRow row,
@@ -152,8 +154,8 @@ public class ZipOutputStreamSingleRow extends CSVOutputStream {
     final Path completeLobPath = ViewerFactory.getViewerConfiguration().getSIARDFilesPath().resolve(lobPath);
 
     final String templateFilename = getTemplateFilename(row, binaryColumn, completeLobPath.getFileName().toString());
-    InputStream inputStream = new FileInputStream(lobPath.toFile());
-    addEntryToZip(out, inputStream, templateFilename);
+    LobZipEntries.addEntry(out, lobPath, ViewerConstants.INTERNAL_ZIP_LOB_FOLDER + templateFilename,
+      binaryColumn.getApplicationType());
   }
 
   private String getTemplateFilename(ViewerRow row, ColumnStatus binaryColumn, String defaultValue) {
@@ -164,11 +166,4 @@ public class ZipOutputStreamSingleRow extends CSVOutputStream {
     }
     return handlebarsFilename;
   }
-
-  private void addEntryToZip(ZipArchiveOutputStream out, InputStream in, String templateFilename) throws IOException {
-    out.putArchiveEntry(new ZipArchiveEntry(ViewerConstants.INTERNAL_ZIP_LOB_FOLDER + templateFilename));
-    IOUtils.copy(in, out);
-    in.close();
-    out.closeArchiveEntry();
-  }
 }
@@ -9,6 +9,7 @@ import java.util.Map;
 import com.databasepreservation.common.client.configuration.observer.CollectionObserver;
 import com.databasepreservation.common.client.index.facets.FacetParameter;
 import com.databasepreservation.common.client.index.facets.Facets;
+import com.databasepreservation.common.client.index.facets.RangeFacetParameter;
 import com.databasepreservation.common.client.index.facets.SimpleFacetParameter;
 
 /**
@@ -222,6 +223,8 @@ public class ClientConfigurationManager {
         FacetParameter parameter = null;
         if (SimpleFacetParameter.class.getSimpleName().equalsIgnoreCase(type)) {
           parameter = buildSimpleFacetParameter(listId, parameterName);
+        } else if (RangeFacetParameter.class.getSimpleName().equalsIgnoreCase(type)) {
+          parameter = buildRangeFacetParameter(listId, parameterName);
         }
 
         if (parameter != null) {
@@ -263,6 +266,23 @@ public class ClientConfigurationManager {
       }
     }
 
+    private static RangeFacetParameter buildRangeFacetParameter(String listId, String parameterName) {
+      String name = buildNameArg(listId, parameterName);
+      if (name == null) {
+        return null;
+      }
+
+      // missing start, end or gap are taken from the values of the field
+      RangeFacetParameter parameter = new RangeFacetParameter(name, buildStartArg(listId, parameterName),
+        buildEndArg(listId, parameterName), buildGapArg(listId, parameterName));
+      Integer minCount = buildMinCountArg(listId, parameterName);
+      if (minCount != null) {
+        parameter.setMinCount(minCount);
+      }
+      parameter.setValues(buildValuesArg(listId, parameterName));
+      return parameter;
+    }
+
     private static String buildNameArg(String listId, String parameterName) {
       return parameterName;
     }
@@ -71,15 +71,19 @@ public class ViewerConstants {
   public static final String VIEWER_INDEX_FOLDER = "index";
   public static final String VIEWER_ACTIVITY_LOG_FOLDER = "activity-logs";
   public static final String VIEWER_DATABASES_FOLDER = "databases";
+  public static final String VIEWER_EXPORTS_FOLDER = "exports";
   public static final String VIEWER_H2_DATA_FOLDER = "h2/data";
 
   public static final String MEDIA_TYPE_APPLICATION_OCTET_STREAM = "application/octet-stream";
   public static final String MEDIA_TYPE_TEXT_HTML = "text/html";
+  public static final String MEDIA_TYPE_APPLICATION_NDJSON = "application/x-ndjson";
 
   public static final String MATERIALIZED_VIEW_PREFIX = "VIEW_";
   public static final String CUSTOM_VIEW_PREFIX = "CUSTOM_VIEW_";
   public static final String DATABASE_STATUS_PREFIX = "database-";
   public static final String DENORMALIZATION_STATUS_PREFIX = "denormalization-";
+  public static final String DENORMALIZATION_APPLIED_PREFIX = "denormalization-applied-";
+  public static final String INGEST_CHECKPOINT_PREFIX = "ingest-checkpoint-";
 
   public static final String INTERNAL_ZIP_LOB_FOLDER = "lobs/";
 
@@ -171,6 +175,8 @@ public class ViewerConstants {
   public static final String SOLR_BATCH_JOB_EXIT_DESCRIPTION = "exitCodeDescription";
   public static final String SOLR_BATCH_JOB_ROWS_TO_PROCESS = "rowsToProcess";
   public static final String SOLR_BATCH_JOB_ROWS_PROCESSED = "rowsProcessed";
+  public static final String SOLR_BATCH_JOB_ROWS_PER_SECOND = "rowsPerSecond";
+  public static final String SOLR_BATCH_JOB_ESTIMATED_SECONDS_REMAINING = "estimatedSecondsRemaining";
 
   public static final String ACTIVITY_LOG_PROPERTY = "activityLogEntry";
 
@@ -213,6 +219,7 @@ public class ViewerConstants {
   public static final String SOLR_ROWS_NESTED_ORIGINAL_UUID = "nestedOriginalUUID";
   public static final String SOLR_ROWS_NESTED_TABLE_ID = "nestedTableId";
   public static final String SOLR_ROWS_NESTED = "nested";
+  public static final String SOLR_ROWS_NESTED_ROOT = "_root_";
 
   /*
    * DYNAMIC FIELD TYPES (suffixes)
@@ -314,6 +321,10 @@ public class ViewerConstants {
   public static final String API_QUERY_PARAM_SUBLIST = "sl";
   public static final String API_QUERY_PARAM_FACETS = "facets";
   public static final String API_QUERY_PARAM_LOCALE = "locale";
+  public static final String API_QUERY_PARAM_CURSOR = "cursor";
+  public static final String API_QUERY_PARAM_ROWS_PER_TABLE = "rowsPerTable";
+  public static final String API_QUERY_PARAM_DATABASE = "database";
+  public static final String API_QUERY_PARAM_TIMEOUT = "timeout";
   public static final String API_QUERY_PARAM_SEARCH = "search";
   public static final String API_PATH_PARAM_REPORT = "report";
   public static final String API_QUERY_PARAM_RESOURCE_ID = "resource_id";
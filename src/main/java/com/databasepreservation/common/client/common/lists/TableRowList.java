@@ -78,6 +78,7 @@ public class TableRowList extends AsyncTableCell<ViewerRow, TableRowListWrapper>
   private ViewerDatabase database;
   private ViewerTable viewerTable;
   private CollectionStatus collectionConfiguration;
+  private IndexResult<ViewerRow> firstPage;
 
   public TableRowList(ViewerDatabase database, ViewerTable table, Filter filter, Facets facets, String summary,
     boolean selectable, boolean exportable, CollectionStatus status, Boolean isNested) {
@@ -88,6 +89,15 @@ public class TableRowList extends AsyncTableCell<ViewerRow, TableRowListWrapper>
     this.collectionConfiguration = status;
   }
 
+  /**
+   * Rows already found for the first page of the list, shown instead of
+   * fetching them the next time the list loads its first page unsorted. The
+   * rows must hold all their fields, so lists with nested columns fetch them.
+   */
+  public void setFirstPage(IndexResult<ViewerRow> firstPage) {
+    this.firstPage = firstPage;
+  }
+
   public void setColumnVisibility(Map<String, Boolean> columnDisplayNameToVisibleState) {
     this.columnDisplayNameToVisibleState = columnDisplayNameToVisibleState;
   }
@@ -352,6 +362,16 @@ public class TableRowList extends AsyncTableCell<ViewerRow, TableRowListWrapper>
       }
     }
 
+    IndexResult<ViewerRow> preloaded = firstPage;
+    firstPage = null;
+    if (preloaded != null && !hasNested && sublist.getFirstElementIndex() == 0 && columnSortList.size() == 0
+      && preloaded.getResults().size() >= Math.min(sublist.getMaximumElementCount(), preloaded.getTotalCount())) {
+      currentSubList = sublist;
+      currentSorter = new Sorter();
+      callback.onSuccess(null, preloaded);
+      return;
+    }
+
     if (hasNested) {
       DataTransformationUtils.buildNestedFieldsToReturn(wrapper.getTable(), wrapper.getStatus(), extraParameters,
         fieldsToReturn);
@@ -114,8 +114,9 @@ public class TableSearchPanel extends Composite {
     this.database = database;
     this.table = table;
 
-    tableRowList = new TableRowList(database, table, initialFilter, null, null, false, table.getCountRows() != 0,
-      status, isNested);
+    tableRowList = new TableRowList(database, table, initialFilter,
+      status.getTableStatusByTableId(table.getId()).getFacets(), null, false, table.getCountRows() != 0, status,
+      isNested);
     tableRowList.setColumnVisibility(columnDisplayNameToVisibleState);
 
     GWT.log("initial filter: " + initialFilter);
@@ -110,6 +110,7 @@ public class ActivityLogUtils {
           ViewerConstants.CONTROLLER_FILENAME_PARAM);
         return panel;
       case "exportFindToCSV":
+      case "submitExportJob":
         handleDatabaseInfo(panel, wrapper);
         handleTableInfo(panel, wrapper);
         handleExportOptions(panel, wrapper, false);
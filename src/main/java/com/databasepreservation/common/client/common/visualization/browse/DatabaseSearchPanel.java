@@ -5,24 +5,32 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.roda.core.data.v2.index.sublist.Sublist;
+
 import com.databasepreservation.common.client.ObserverManager;
 import com.databasepreservation.common.client.ViewerConstants;
 import com.databasepreservation.common.client.common.LoadingDiv;
 import com.databasepreservation.common.client.common.RightPanel;
 import com.databasepreservation.common.client.common.breadcrumb.BreadcrumbPanel;
+import com.databasepreservation.common.client.common.dialogs.Dialogs;
 import com.databasepreservation.common.client.common.lists.TableRowList;
 import com.databasepreservation.common.client.common.utils.CommonClientUtils;
 import com.databasepreservation.common.client.common.utils.TableRowListWrapper;
 import com.databasepreservation.common.client.configuration.observer.ICollectionStatusObserver;
+import com.databasepreservation.common.client.index.FindRequest;
+import com.databasepreservation.common.client.index.GroupedIndexResult;
 import com.databasepreservation.common.client.index.IndexResult;
+import com.databasepreservation.common.client.index.facets.Facets;
 import com.databasepreservation.common.client.index.filter.BasicSearchFilterParameter;
 import com.databasepreservation.common.client.index.filter.Filter;
+import com.databasepreservation.common.client.index.sort.Sorter;
 import com.databasepreservation.common.client.models.status.collection.CollectionStatus;
 import com.databasepreservation.common.client.models.status.collection.TableStatus;
 import com.databasepreservation.common.client.models.structure.ViewerDatabase;
 import com.databasepreservation.common.client.models.structure.ViewerRow;
 import com.databasepreservation.common.client.models.structure.ViewerSchema;
 import com.databasepreservation.common.client.models.structure.ViewerTable;
+import com.databasepreservation.common.client.services.CollectionService;
 import com.databasepreservation.common.client.tools.BreadcrumbManager;
 import com.databasepreservation.common.client.tools.FontAwesomeIconManager;
 import com.databasepreservation.common.client.tools.HistoryManager;
@@ -48,6 +56,8 @@ import config.i18n.client.ClientMessages;
  */
 public class DatabaseSearchPanel extends RightPanel implements ICollectionStatusObserver {
   private static final ClientMessages messages = GWT.create(ClientMessages.class);
+  // rows of the first page of a table list
+  private static final int FIRST_PAGE_SIZE = 20;
   private static Map<String, DatabaseSearchPanel> instances = new HashMap<>();
   private final CollectionStatus status;
 
@@ -88,6 +98,7 @@ public class DatabaseSearchPanel extends RightPanel implements ICollectionStatus
   LoadingDiv loading;
 
   private final List<TableSearchPanelContainer> tableSearchPanelContainers;
+  private final Callback<TableSearchPanelContainer, Void> searchCompletedCallback;
 
   private ViewerDatabase database;
 
@@ -103,7 +114,7 @@ public class DatabaseSearchPanel extends RightPanel implements ICollectionStatus
     mainHeader.setWidget(CommonClientUtils.getHeaderHTML(
       FontAwesomeIconManager.getTag(FontAwesomeIconManager.DATABASE_SEARCH), messages.searchAllRecords(), "h1"));
 
-    Callback<TableSearchPanelContainer, Void> searchCompletedCallback = new Callback<TableSearchPanelContainer, Void>() {
+    searchCompletedCallback = new Callback<TableSearchPanelContainer, Void>() {
       @Override
       public void onFailure(Void reason) {
         // do nothing. errors have already been handled
@@ -168,10 +179,25 @@ public class DatabaseSearchPanel extends RightPanel implements ICollectionStatus
       filter = new Filter(new BasicSearchFilterParameter(ViewerConstants.INDEX_SEARCH, searchText));
     }
 
-    for (TableSearchPanelContainer tableSearchPanelContainer : tableSearchPanelContainers) {
-      tableSearchPanelContainer.doSearch(filter);
-    }
-
+    // find the first page of rows of every table in a single request and only
+    // list the tables that have some; the lists only fetch the next pages
+    final Filter searchFilter = filter;
+    FindRequest findRequest = new FindRequest(ViewerRow.class.getName(), filter, new Sorter(), new Sublist(),
+      Facets.NONE);
+    CollectionService.Util.call((GroupedIndexResult<ViewerRow> result) -> {
+      for (TableSearchPanelContainer tableSearchPanelContainer : tableSearchPanelContainers) {
+        IndexResult<ViewerRow> firstPage = result.getGroups().get(tableSearchPanelContainer.getTableId());
+        if (firstPage != null) {
+          tableSearchPanelContainer.doSearch(searchFilter, firstPage);
+        } else {
+          tableSearchPanelContainer.hideLoading(false);
+        }
+      }
+      searchCompletedCallback.onSuccess(null);
+    }, errorMessage -> {
+      loading.setVisible(false);
+      Dialogs.showErrors(messages.searchAllRecords(), errorMessage, messages.basicActionClose());
+    }).findRowsGroupedByTable(database.getUuid(), database.getUuid(), findRequest, FIRST_PAGE_SIZE);
   }
 
   @Override
@@ -260,14 +286,20 @@ public class DatabaseSearchPanel extends RightPanel implements ICollectionStatus
       stillSearching = false;
     }
 
-    void doSearch(Filter filter) {
+    void doSearch(Filter filter, IndexResult<ViewerRow> firstPage) {
       if (tableRowList == null) {
         init(filter);
+        tableRowList.setFirstPage(firstPage);
       } else {
+        tableRowList.setFirstPage(firstPage);
         tableRowList.setFilter(filter);
       }
     }
 
+    String getTableId() {
+      return table.getId();
+    }
+
     boolean stillSearching() {
       return stillSearching;
     }
@@ -17,9 +17,13 @@ import com.databasepreservation.common.client.common.visualization.manager.SIARD
 import com.databasepreservation.common.client.models.status.collection.CollectionStatus;
 import com.databasepreservation.common.client.models.structure.ViewerDatabase;
 import com.databasepreservation.common.client.models.structure.ViewerDatabaseStatus;
+import com.databasepreservation.common.client.models.structure.ViewerJob;
+import com.databasepreservation.common.client.models.structure.ViewerJobStatus;
 import com.databasepreservation.common.client.services.CollectionService;
+import com.databasepreservation.common.client.services.JobService;
 import com.databasepreservation.common.client.tools.HistoryManager;
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.Button;
 
 import config.i18n.client.ClientMessages;
@@ -27,6 +31,7 @@ import config.i18n.client.ClientMessages;
 public class BrowseNavigationPanel {
 
   private static final ClientMessages messages = GWT.create(ClientMessages.class);
+  private static final int INGEST_JOB_POLL_INTERVAL_MS = 2000;
   private static Map<String, BrowseNavigationPanel> instances = new HashMap<>();
   private ViewerDatabase database;
   private Button btnDelete;
@@ -66,16 +71,8 @@ public class BrowseNavigationPanel {
           btnIngestClicked = true;
 
           HistoryManager.gotoIngestSIARDData(database.getUuid(), database.getMetadata().getName());
-          CollectionService.Util.call((String databaseUUID) -> {
-            HistoryManager.gotoDatabase(databaseUUID);
-            Dialogs.showInformationDialog(messages.SIARDHomePageDialogTitleForBrowsing(),
-              messages.SIARDHomePageTextForIngestSuccess(), messages.basicActionClose(), "btn btn-link");
-          }, (String errorMessage) -> {
-            instances.clear();
-            HistoryManager.gotoSIARDInfo(database.getUuid());
-            Dialogs.showErrors(messages.SIARDHomePageDialogTitleForBrowsing(), errorMessage,
-              messages.basicActionClose());
-          }).createCollection(database.getUuid());
+          CollectionService.Util.call((String jobUUID) -> waitForIngestJob(jobUUID), this::handleIngestError)
+            .createCollection(database.getUuid());
         }
       } else {
         Dialogs.showInformationDialog(messages.SIARDHomePageDialogTitleForBrowsing(),
@@ -88,6 +85,36 @@ public class BrowseNavigationPanel {
     }
   }
 
+  /**
+   * The ingestion runs as a background job, poll it until it ends.
+   */
+  private void waitForIngestJob(String jobUUID) {
+    Timer timer = new Timer() {
+      @Override
+      public void run() {
+        JobService.Util.call((ViewerJob job) -> {
+          if (ViewerJobStatus.COMPLETED.equals(job.getStatus())) {
+            HistoryManager.gotoDatabase(database.getUuid());
+            Dialogs.showInformationDialog(messages.SIARDHomePageDialogTitleForBrowsing(),
+              messages.SIARDHomePageTextForIngestSuccess(), messages.basicActionClose(), "btn btn-link");
+          } else if (ViewerJobStatus.FAILED.equals(job.getStatus()) || ViewerJobStatus.STOPPED.equals(job.getStatus())
+            || ViewerJobStatus.ABANDONED.equals(job.getStatus())) {
+            handleIngestError(job.getExitDescription());
+          } else {
+            schedule(INGEST_JOB_POLL_INTERVAL_MS);
+          }
+        }, (String errorMessage) -> schedule(INGEST_JOB_POLL_INTERVAL_MS)).retrieve(jobUUID);
+      }
+    };
+    timer.schedule(INGEST_JOB_POLL_INTERVAL_MS);
+  }
+
+  private void handleIngestError(String errorMessage) {
+    instances.clear();
+    HistoryManager.gotoSIARDInfo(database.getUuid());
+    Dialogs.showErrors(messages.SIARDHomePageDialogTitleForBrowsing(), errorMessage, messages.basicActionClose());
+  }
+
   private void deleteButton() {
     btnDelete = new Button();
     btnDelete.setText(messages.SIARDHomePageButtonTextForDeleteIngested());
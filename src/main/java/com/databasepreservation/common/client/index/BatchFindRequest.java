@@ -0,0 +1,40 @@
+package com.databasepreservation.common.client.index;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Several find and count requests over the rows of one database (possibly of
+ * different tables) that are run together and answered in a single response.
+ */
+public class BatchFindRequest implements Serializable {
+
+  private static final long serialVersionUID = -2716035741586405216L;
+
+  /** Find requests, answered in the same order. */
+  public List<FindRequest> findRequests;
+  /** Count requests, answered in the same order. */
+  public List<CountRequest> countRequests;
+
+  /**
+   * Constructor.
+   */
+  public BatchFindRequest() {
+    this(new ArrayList<>(), new ArrayList<>());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param findRequests
+   *          Find requests.
+   * @param countRequests
+   *          Count requests.
+   */
+  public BatchFindRequest(final List<FindRequest> findRequests, final List<CountRequest> countRequests) {
+    this.findRequests = findRequests;
+    this.countRequests = countRequests;
+  }
+
+}
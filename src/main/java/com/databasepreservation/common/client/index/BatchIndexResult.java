@@ -0,0 +1,45 @@
+package com.databasepreservation.common.client.index;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The answer to a {@link BatchFindRequest}: the results of its find requests
+ * and the counts of its count requests, each in the order they were asked.
+ */
+public class BatchIndexResult<T extends Serializable> implements Serializable {
+
+  private List<IndexResult<T>> results;
+  private List<Long> counts;
+
+  public BatchIndexResult() {
+    this(new ArrayList<>(), new ArrayList<>());
+  }
+
+  public BatchIndexResult(List<IndexResult<T>> results, List<Long> counts) {
+    this.results = results;
+    this.counts = counts;
+  }
+
+  public List<IndexResult<T>> getResults() {
+    return results;
+  }
+
+  public void setResults(List<IndexResult<T>> results) {
+    this.results = results;
+  }
+
+  public List<Long> getCounts() {
+    return counts;
+  }
+
+  public void setCounts(List<Long> counts) {
+    this.counts = counts;
+  }
+
+  @Override
+  public String toString() {
+    return "BatchIndexResult [results=" + results + ", counts=" + counts + "]";
+  }
+}
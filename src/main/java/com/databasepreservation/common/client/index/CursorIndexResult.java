@@ -0,0 +1,50 @@
+package com.databasepreservation.common.client.index;
+
+import java.io.Serializable;
+import java.util.List;
+
+import com.databasepreservation.common.client.index.facets.FacetFieldResult;
+
+/**
+ * A page of results found with a cursor. Besides the page itself it carries
+ * the opaque tokens that ask for the pages right before and after it, null
+ * when there is no such page.
+ */
+public class CursorIndexResult<T extends Serializable> extends IndexResult<T> {
+
+  private String previousCursor;
+  private String nextCursor;
+
+  public CursorIndexResult() {
+    super();
+  }
+
+  public CursorIndexResult(long offset, long limit, long totalCount, List<T> results,
+    List<FacetFieldResult> facetResults, String previousCursor, String nextCursor) {
+    super(offset, limit, totalCount, results, facetResults);
+    this.previousCursor = previousCursor;
+    this.nextCursor = nextCursor;
+  }
+
+  public String getPreviousCursor() {
+    return previousCursor;
+  }
+
+  public void setPreviousCursor(String previousCursor) {
+    this.previousCursor = previousCursor;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+
+  @Override
+  public String toString() {
+    return "CursorIndexResult [previousCursor=" + previousCursor + ", nextCursor=" + nextCursor + ", "
+      + super.toString() + "]";
+  }
+}
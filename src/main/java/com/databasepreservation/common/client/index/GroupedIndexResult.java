@@ -0,0 +1,49 @@
+package com.databasepreservation.common.client.index;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Results of a search grouped by the value of a field, e.g. the rows of a
+ * database grouped by table. Each group holds how many results it has and its
+ * first results, the groups with more results coming first.
+ */
+public class GroupedIndexResult<T extends Serializable> implements Serializable {
+
+  private long totalCount;
+  private Map<String, IndexResult<T>> groups;
+
+  public GroupedIndexResult() {
+    this(0, new LinkedHashMap<>());
+  }
+
+  public GroupedIndexResult(long totalCount, Map<String, IndexResult<T>> groups) {
+    this.totalCount = totalCount;
+    this.groups = groups;
+  }
+
+  /**
+   * @return the number of results of all the groups
+   */
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  public void setTotalCount(long totalCount) {
+    this.totalCount = totalCount;
+  }
+
+  public Map<String, IndexResult<T>> getGroups() {
+    return groups;
+  }
+
+  public void setGroups(Map<String, IndexResult<T>> groups) {
+    this.groups = groups;
+  }
+
+  @Override
+  public String toString() {
+    return "GroupedIndexResult [totalCount=" + totalCount + ", groups=" + groups + "]";
+  }
+}
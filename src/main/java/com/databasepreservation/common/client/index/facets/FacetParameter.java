@@ -31,6 +31,9 @@ public abstract class FacetParameter implements Serializable {
   private List<String> values;
   private int minCount = DEFAULT_MIN_COUNT;
   private SORT sort = DEFAULT_SORT;
+  // facets computed inside each bucket of this one, only with the JSON Facet
+  // API
+  private List<FacetParameter> subFacets = new ArrayList<>();
 
   public FacetParameter() {
     this(null);
@@ -88,8 +91,17 @@ public abstract class FacetParameter implements Serializable {
     this.sort = sort;
   }
 
+  public List<FacetParameter> getSubFacets() {
+    return subFacets;
+  }
+
+  public void setSubFacets(List<FacetParameter> subFacets) {
+    this.subFacets = subFacets;
+  }
+
   @Override
   public String toString() {
-    return "FacetParameter [name=" + name + ", values=" + values + ", minCount=" + minCount + ", sort=" + sort + "]";
+    return "FacetParameter [name=" + name + ", values=" + values + ", minCount=" + minCount + ", sort=" + sort
+      + ", subFacets=" + subFacets + "]";
   }
 }
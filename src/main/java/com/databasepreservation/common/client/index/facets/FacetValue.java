@@ -8,6 +8,7 @@
 package com.databasepreservation.common.client.index.facets;
 
 import java.io.Serializable;
+import java.util.List;
 
 public class FacetValue implements Serializable {
   private static final long serialVersionUID = 8898599554012120196L;
@@ -15,6 +16,7 @@ public class FacetValue implements Serializable {
   private String label;
   private String value;
   private long count;
+  private List<FacetFieldResult> subFacets;
 
   public FacetValue() {
     super();
@@ -43,6 +45,17 @@ public class FacetValue implements Serializable {
     this.count = count;
   }
 
+  /**
+   * @return the sub-facets computed inside this value, null if none were asked
+   */
+  public List<FacetFieldResult> getSubFacets() {
+    return subFacets;
+  }
+
+  public void setSubFacets(List<FacetFieldResult> subFacets) {
+    this.subFacets = subFacets;
+  }
+
   public String getLabel() {
     return label;
   }
@@ -10,11 +10,15 @@ package com.databasepreservation.common.client.index.facets;
 public class RangeFacetParameter extends FacetParameter {
 
   private static final long serialVersionUID = 2190074263722637165L;
+  public static final int DEFAULT_BUCKETS = 10;
 
   // INFO these are strings because one might pass dates or numbers
   private String start;
   private String end;
   private String gap;
+  // when start, end or gap are missing they are taken from the minimum and
+  // maximum values, split in about this many buckets
+  private int buckets = DEFAULT_BUCKETS;
 
   public RangeFacetParameter() {
     super();
@@ -32,6 +36,11 @@ public class RangeFacetParameter extends FacetParameter {
 
   }
 
+  public RangeFacetParameter(String name, int buckets) {
+    super(name);
+    this.buckets = buckets;
+  }
+
   public String getStart() {
     return start;
   }
@@ -56,4 +65,12 @@ public class RangeFacetParameter extends FacetParameter {
     this.gap = gap;
   }
 
+  public int getBuckets() {
+    return buckets;
+  }
+
+  public void setBuckets(int buckets) {
+    this.buckets = buckets;
+  }
+
 }
@@ -16,6 +16,9 @@ public class SimpleFacetParameter extends FacetParameter {
   public static final int DEFAULT_LIMIT = 100;
 
   private int limit = DEFAULT_LIMIT;
+  // how Solr computes the facet with the JSON Facet API (dv, uif, stream, ...),
+  // null to let it choose
+  private String method;
 
   public SimpleFacetParameter() {
     super();
@@ -62,8 +65,17 @@ public class SimpleFacetParameter extends FacetParameter {
     this.limit = limit;
   }
 
+  public String getMethod() {
+    return method;
+  }
+
+  public void setMethod(String method) {
+    this.method = method;
+  }
+
   @Override
   public String toString() {
-    return "SimpleFacetParameter [ super=" + super.toString() + ", limit=" + this.limit + "]";
+    return "SimpleFacetParameter [ super=" + super.toString() + ", limit=" + this.limit + ", method=" + this.method
+      + "]";
   }
 }
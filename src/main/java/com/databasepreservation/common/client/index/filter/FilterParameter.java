@@ -39,6 +39,7 @@ public abstract class FilterParameter implements Serializable {
   private static final long serialVersionUID = 3744111668897879761L;
 
   private String name;
+  private boolean cacheable = true;
 
   /**
    * Constructs an empty {@link FilterParameter}.
@@ -92,4 +93,21 @@ public abstract class FilterParameter implements Serializable {
     this.name = name;
   }
 
+  /**
+   * @return whether the index may cache the documents matched by this
+   *         parameter, false for expensive or one-off parameters
+   */
+  public boolean isCacheable() {
+    return cacheable;
+  }
+
+  /**
+   * @param cacheable
+   *          whether the index may cache the documents matched by this
+   *          parameter
+   */
+  public void setCacheable(boolean cacheable) {
+    this.cacheable = cacheable;
+  }
+
 }
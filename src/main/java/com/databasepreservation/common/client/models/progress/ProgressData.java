@@ -37,6 +37,18 @@ public class ProgressData implements Serializable {
     this.previousProcessedRows = value;
   }
 
+  /**
+   * Adds rows processed by one of several tables being ingested at the same
+   * time.
+   */
+  public synchronized void addProcessedRows(long delta) {
+    this.processedRows += delta;
+  }
+
+  public synchronized void incrementProcessedTables() {
+    this.processedTables++;
+  }
+
   public void setPreviousProcessedRows(long previousProcessedRows) {
     this.previousProcessedRows = previousProcessedRows;
   }
@@ -2,12 +2,22 @@ package com.databasepreservation.common.client.models.status.collection;
 
 import java.io.Serializable;
 
+import com.databasepreservation.common.client.index.facets.RangeFacetParameter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * @author Miguel Guimarães <mguimaraes@keep.pt>
  */
 public class FacetsStatus implements Serializable {
 
   private String parameter;
+  // range (histogram) facet, for numeric and date columns
+  @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+  private boolean range;
+  private String start;
+  private String end;
+  private String gap;
+  private int buckets = RangeFacetParameter.DEFAULT_BUCKETS;
 
   public FacetsStatus() {
   }
@@ -19,4 +29,56 @@ public class FacetsStatus implements Serializable {
   public void setParameter(String parameter) {
     this.parameter = parameter;
   }
+
+  public boolean isRange() {
+    return range;
+  }
+
+  public void setRange(boolean range) {
+    this.range = range;
+  }
+
+  public String getStart() {
+    return start;
+  }
+
+  public void setStart(String start) {
+    this.start = start;
+  }
+
+  public String getEnd() {
+    return end;
+  }
+
+  public void setEnd(String end) {
+    this.end = end;
+  }
+
+  public String getGap() {
+    return gap;
+  }
+
+  public void setGap(String gap) {
+    this.gap = gap;
+  }
+
+  public int getBuckets() {
+    return buckets;
+  }
+
+  public void setBuckets(int buckets) {
+    this.buckets = buckets;
+  }
+
+  /**
+   * @return the range facet of the column, with the start, end and gap that
+   *         are set, the others being taken from the values of the column
+   */
+  public RangeFacetParameter toRangeFacetParameter(String solrName) {
+    RangeFacetParameter parameter = new RangeFacetParameter(solrName, buckets);
+    parameter.setStart(start);
+    parameter.setEnd(end);
+    parameter.setGap(gap);
+    return parameter;
+  }
 }
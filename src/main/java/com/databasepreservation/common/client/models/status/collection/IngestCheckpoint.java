@@ -0,0 +1,60 @@
+package com.databasepreservation.common.client.models.status.collection;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Checkpoints of an interrupted ingestion, one per table that started being
+ * ingested. Stored next to the collection status and removed once the
+ * ingestion finishes.
+ */
+@JsonPropertyOrder({"databaseUUID", "tables"})
+public class IngestCheckpoint implements Serializable {
+
+  private String databaseUUID;
+  private Map<String, TableIngestCheckpoint> tables;
+
+  public IngestCheckpoint() {
+    tables = new LinkedHashMap<>();
+  }
+
+  public IngestCheckpoint(String databaseUUID) {
+    this();
+    this.databaseUUID = databaseUUID;
+  }
+
+  public String getDatabaseUUID() {
+    return databaseUUID;
+  }
+
+  public void setDatabaseUUID(String databaseUUID) {
+    this.databaseUUID = databaseUUID;
+  }
+
+  public Map<String, TableIngestCheckpoint> getTables() {
+    return tables;
+  }
+
+  public void setTables(Map<String, TableIngestCheckpoint> tables) {
+    this.tables = tables;
+  }
+
+  @JsonIgnore
+  public TableIngestCheckpoint getTable(String tableId) {
+    return tables.get(tableId);
+  }
+
+  public void putTable(TableIngestCheckpoint table) {
+    tables.put(table.getTableId(), table);
+  }
+
+  @JsonIgnore
+  public boolean isTableFinished(String tableId) {
+    TableIngestCheckpoint table = tables.get(tableId);
+    return table != null && table.isFinished();
+  }
+}
@@ -0,0 +1,50 @@
+package com.databasepreservation.common.client.models.status.collection;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Progress of the ingestion of a table that is known to be durable in Solr:
+ * the first <code>committedRows</code> rows of the table were committed.
+ */
+@JsonPropertyOrder({"tableId", "committedRows", "finished"})
+public class TableIngestCheckpoint implements Serializable {
+
+  private String tableId;
+  private long committedRows;
+  private boolean finished;
+
+  public TableIngestCheckpoint() {
+  }
+
+  public TableIngestCheckpoint(String tableId, long committedRows, boolean finished) {
+    this.tableId = tableId;
+    this.committedRows = committedRows;
+    this.finished = finished;
+  }
+
+  public String getTableId() {
+    return tableId;
+  }
+
+  public void setTableId(String tableId) {
+    this.tableId = tableId;
+  }
+
+  public long getCommittedRows() {
+    return committedRows;
+  }
+
+  public void setCommittedRows(long committedRows) {
+    this.committedRows = committedRows;
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  public void setFinished(boolean finished) {
+    this.finished = finished;
+  }
+}
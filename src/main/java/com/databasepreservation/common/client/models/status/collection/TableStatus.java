@@ -3,9 +3,13 @@ package com.databasepreservation.common.client.models.status.collection;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+import com.databasepreservation.common.client.index.facets.FacetParameter;
+import com.databasepreservation.common.client.index.facets.Facets;
 import com.databasepreservation.common.client.models.structure.ViewerColumn;
 import com.databasepreservation.common.client.models.structure.ViewerType;
 import com.databasepreservation.common.client.tools.ViewerStringUtils;
@@ -152,6 +156,22 @@ public class TableStatus implements Serializable {
     return getVisibleColumnsList().stream().filter(c -> c.getType().equals(ViewerType.dbTypes.BINARY)).collect(Collectors.toList());
   }
 
+  /**
+   * @return the facets of the columns set up with one, or null if there are
+   *         none
+   */
+  @JsonIgnore
+  public Facets getFacets() {
+    Map<String, FacetParameter> parameters = new HashMap<>();
+    for (ColumnStatus column : columns) {
+      FacetsStatus facetsStatus = column.getSearchStatus() != null ? column.getSearchStatus().getFacets() : null;
+      if (facetsStatus != null && facetsStatus.isRange()) {
+        parameters.put(column.getId(), facetsStatus.toRangeFacetParameter(column.getId()));
+      }
+    }
+    return parameters.isEmpty() ? null : new Facets(parameters);
+  }
+
   @JsonIgnore
   public ColumnStatus getColumnById(String id) {
     return columns.stream().filter(c -> c.getId().equals(id)).findFirst().orElse(null);
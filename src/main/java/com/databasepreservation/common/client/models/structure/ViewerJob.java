@@ -28,6 +28,8 @@ public class ViewerJob extends IsIndexed implements Serializable {
   private String exitDescription;
   private Long rowsToProcess;
   private Long processRows;
+  private Long rowsPerSecond;
+  private Long estimatedSecondsRemaining;
 
   @Override
   public void setUuid(String uuid) {
@@ -164,6 +166,22 @@ public class ViewerJob extends IsIndexed implements Serializable {
     this.processRows = processRows;
   }
 
+  public Long getRowsPerSecond() {
+    return rowsPerSecond;
+  }
+
+  public void setRowsPerSecond(Long rowsPerSecond) {
+    this.rowsPerSecond = rowsPerSecond;
+  }
+
+  public Long getEstimatedSecondsRemaining() {
+    return estimatedSecondsRemaining;
+  }
+
+  public void setEstimatedSecondsRemaining(Long estimatedSecondsRemaining) {
+    this.estimatedSecondsRemaining = estimatedSecondsRemaining;
+  }
+
   public String getSchemaName() {
     return schemaName;
   }
@@ -21,7 +21,11 @@ import com.databasepreservation.common.client.ViewerConstants;
 import com.databasepreservation.common.client.common.DefaultMethodCallback;
 import com.databasepreservation.common.client.common.search.SavedSearch;
 import com.databasepreservation.common.client.common.search.SearchInfo;
+import com.databasepreservation.common.client.index.BatchFindRequest;
+import com.databasepreservation.common.client.index.BatchIndexResult;
+import com.databasepreservation.common.client.index.CursorIndexResult;
 import com.databasepreservation.common.client.index.FindRequest;
+import com.databasepreservation.common.client.index.GroupedIndexResult;
 import com.databasepreservation.common.client.index.IndexResult;
 import com.databasepreservation.common.client.models.progress.ProgressData;
 import com.databasepreservation.common.client.models.status.collection.CollectionStatus;
@@ -136,6 +140,29 @@ public interface CollectionService extends DirectRestService {
     @PathParam("table") String table, @ApiParam(ViewerConstants.API_QUERY_PARAM_FILTER) FindRequest findRequest,
     @QueryParam(ViewerConstants.API_QUERY_PARAM_LOCALE) String localeString);
 
+  @POST
+  @Path("{databaseUUID}/collection/{collectionUUID}/data/{schema}/{table}/cursor")
+  @ApiOperation(value = "Find a page of rows of a table with a cursor", notes = "The page size is the maximum element count of the sublist, its first element is ignored. Pass the previous or next cursor of a result to get the page before or after it.", response = ViewerRow.class, responseContainer = "CursorIndexResult")
+  CursorIndexResult<ViewerRow> findRowsWithCursor(@PathParam("databaseUUID") String databaseUUID,
+    @PathParam("collectionUUID") String collectionUUID, @PathParam("schema") String schema,
+    @PathParam("table") String table, @ApiParam(ViewerConstants.API_QUERY_PARAM_FILTER) FindRequest findRequest,
+    @QueryParam(ViewerConstants.API_QUERY_PARAM_CURSOR) String cursor);
+
+  @POST
+  @Path("{databaseUUID}/collection/{collectionUUID}/data/search")
+  @ApiOperation(value = "Searches the rows of all the tables of a database", notes = "Returns how many rows of each table match the filter and the best rows of each table, the tables with more rows first. Only the filter and the fields to return of the find request are used.", response = GroupedIndexResult.class)
+  GroupedIndexResult<ViewerRow> findRowsGroupedByTable(@PathParam("databaseUUID") String databaseUUID,
+    @PathParam("collectionUUID") String collectionUUID,
+    @ApiParam(ViewerConstants.API_QUERY_PARAM_FILTER) FindRequest findRequest,
+    @ApiParam(value = "The number of rows returned for each table") @QueryParam(ViewerConstants.API_QUERY_PARAM_ROWS_PER_TABLE) Integer rowsPerTable);
+
+  @POST
+  @Path("{databaseUUID}/collection/{collectionUUID}/data/batch")
+  @ApiOperation(value = "Find and count rows of the tables of a database in a single request", notes = "The requests run at the same time and their results come back in the order they were asked.", response = BatchIndexResult.class)
+  BatchIndexResult<ViewerRow> findRowsBatch(@PathParam("databaseUUID") String databaseUUID,
+    @PathParam("collectionUUID") String collectionUUID,
+    @ApiParam(value = "The find and count requests", required = true) BatchFindRequest batchRequest);
+
   @GET
   @Path("/{databaseUUID}/collection/{collectionUUID}/data/{schema}/{table}/{rowIndex}")
   @ApiOperation(value = "Retrieves a specific row within a specific database", notes = "", response = ViewerRow.class)
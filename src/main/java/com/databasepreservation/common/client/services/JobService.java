@@ -2,8 +2,10 @@ package com.databasepreservation.common.client.services;
 
 import java.util.function.Consumer;
 
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
 
 import org.fusesource.restygwt.client.DirectRestService;
@@ -55,4 +57,19 @@ public interface JobService extends DirectRestService {
   @ApiOperation(value = "Find all jobs", response = IndexResult.class)
   IndexResult<ViewerJob> find(@ApiParam(ViewerConstants.API_QUERY_PARAM_FILTER) FindRequest findRequest,
     @QueryParam(ViewerConstants.API_QUERY_PARAM_LOCALE) String locale);
+
+  @GET
+  @Path("/{jobUUID}")
+  @ApiOperation(value = "Retrieves a job", response = ViewerJob.class)
+  ViewerJob retrieve(@PathParam("jobUUID") String jobUUID);
+
+  @POST
+  @Path("/{jobUUID}/stop")
+  @ApiOperation(value = "Stops a running job or cancels a job waiting to run", response = Boolean.class)
+  Boolean stop(@PathParam("jobUUID") String jobUUID);
+
+  @POST
+  @Path("/{jobUUID}/restart")
+  @ApiOperation(value = "Restarts a failed or stopped job, skipping the work it already completed", response = Boolean.class)
+  Boolean restart(@PathParam("jobUUID") String jobUUID);
 }
@@ -6,8 +6,11 @@ import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
@@ -20,7 +23,9 @@ import com.databasepreservation.common.client.common.search.SavedSearch;
 import com.databasepreservation.common.client.models.activity.logs.ActivityLogEntry;
 import com.databasepreservation.common.client.models.status.collection.CollectionStatus;
 import com.databasepreservation.common.client.models.status.collection.ColumnStatus;
+import com.databasepreservation.common.client.models.status.collection.IngestCheckpoint;
 import com.databasepreservation.common.client.models.status.collection.NestedColumnStatus;
+import com.databasepreservation.common.client.models.status.collection.TableIngestCheckpoint;
 import com.databasepreservation.common.client.models.status.collection.TableStatus;
 import com.databasepreservation.common.client.models.status.database.DatabaseStatus;
 import com.databasepreservation.common.client.models.structure.ViewerColumn;
@@ -41,6 +46,7 @@ public class ConfigurationManager {
   private final Object logFileLock = new Object();
   private final Object databaseStatusFileLock = new Object();
   private final Object collectionStatusFileLock = new Object();
+  private final Object ingestCheckpointFileLock = new Object();
   private long entryLogLineNumber = -1;
 
   public ConfigurationManager() {
@@ -281,6 +287,78 @@ public class ConfigurationManager {
     }
   }
 
+  /**
+   * Replaces, in the stored collection status, the status of the given tables
+   * by the ones in <code>source</code>. Used when several ingest workers fill
+   * in disjoint sets of tables of the same collection.
+   */
+  public void updateTableStatuses(String databaseUUID, CollectionStatus source, Collection<String> tableIds)
+    throws ViewerException {
+    synchronized (collectionStatusFileLock) {
+      try {
+        CollectionStatus current = getCollectionStatus(databaseUUID, source.getId());
+        List<TableStatus> tables = new ArrayList<>();
+        for (TableStatus table : current.getTables()) {
+          TableStatus updated = tableIds.contains(table.getId()) ? source.getTableStatusByTableId(table.getId())
+            : null;
+          tables.add(updated != null ? updated : table);
+        }
+        current.setTables(tables);
+        JsonTransformer.writeObjectToFile(current, getCollectionStatusPath(databaseUUID, current.getId()));
+      } catch (GenericException e) {
+        throw new ViewerException(e);
+      }
+    }
+  }
+
+  /**
+   * @return the checkpoints of a previous, unfinished, ingestion of the
+   *         database or <code>null</code> if there are none
+   */
+  public IngestCheckpoint getIngestCheckpoint(String databaseUUID) throws GenericException {
+    synchronized (ingestCheckpointFileLock) {
+      Path checkpointFile = getIngestCheckpointPath(databaseUUID);
+      if (!FSUtils.exists(checkpointFile)) {
+        return null;
+      }
+      return JsonUtils.readObjectFromFile(checkpointFile, IngestCheckpoint.class);
+    }
+  }
+
+  public void updateTableIngestCheckpoint(String databaseUUID, TableIngestCheckpoint tableCheckpoint)
+    throws ViewerException {
+    synchronized (ingestCheckpointFileLock) {
+      try {
+        IngestCheckpoint checkpoint = getIngestCheckpoint(databaseUUID);
+        if (checkpoint == null) {
+          checkpoint = new IngestCheckpoint(databaseUUID);
+        }
+        checkpoint.putTable(tableCheckpoint);
+        JsonTransformer.writeObjectToFile(checkpoint, getIngestCheckpointPath(databaseUUID));
+      } catch (GenericException e) {
+        throw new ViewerException(e);
+      }
+    }
+  }
+
+  public void deleteIngestCheckpoint(String databaseUUID) throws GenericException {
+    synchronized (ingestCheckpointFileLock) {
+      try {
+        Files.deleteIfExists(getIngestCheckpointPath(databaseUUID));
+      } catch (IOException e) {
+        throw new GenericException("Could not delete the ingest checkpoint of database " + databaseUUID, e);
+      }
+    }
+  }
+
+  private Path getIngestCheckpointPath(String databaseUUID) {
+    final Path databasesDirectoryPath = ViewerFactory.getViewerConfiguration().getDatabasesPath();
+    final Path databaseDirectoryPath = databasesDirectoryPath.resolve(databaseUUID);
+
+    return databaseDirectoryPath
+      .resolve(ViewerConstants.INGEST_CHECKPOINT_PREFIX + databaseUUID + ViewerConstants.JSON_EXTENSION);
+  }
+
   public void updateValidationStatus(String id, ViewerDatabaseValidationStatus status, String date,
     String validationReportPath, String dbptkVersion) {
     synchronized (databaseStatusFileLock) {
@@ -13,18 +13,34 @@ import com.databasepreservation.model.structure.TableStructure;
 public class SIARDProgressObserver implements ModuleObserver {
   private ProgressData progressData;
 
+  // partial observers share the progress with other concurrent ingestions, so
+  // they only add up their rows and tables and leave the totals untouched
+  private final boolean partial;
+  private long currentTableRows = 0;
+
   public SIARDProgressObserver(String UUID) {
+    this(UUID, false);
+  }
+
+  public SIARDProgressObserver(String UUID, boolean partial) {
     progressData = ProgressData.getInstance(UUID);
+    this.partial = partial;
   }
 
   @Override
   public void notifyOpenDatabase() {
+    if (partial) {
+      return;
+    }
     progressData.reset();
     progressData.setDatabaseStructureRetrieved(false);
   }
 
   @Override
   public void notifyStructureObtained(DatabaseStructure databaseStructure) {
+    if (partial) {
+      return;
+    }
     long totalRows = 0;
     for (SchemaStructure schema : databaseStructure.getSchemas()) {
       for (TableStructure table : schema.getTables()) {
@@ -40,6 +56,9 @@ public class SIARDProgressObserver implements ModuleObserver {
   public void notifyOpenSchema(DatabaseStructure databaseStructure, SchemaStructure schemaStructure,
     long completedSchemas, long completedTablesInSchema) {
     progressData.setCurrentSchemaName(schemaStructure.getName());
+    if (partial) {
+      return;
+    }
     progressData.setProcessedSchemas(completedSchemas);
     progressData.setTotalTables(schemaStructure.getTables().size());
   }
@@ -48,6 +67,10 @@ public class SIARDProgressObserver implements ModuleObserver {
   public void notifyOpenTable(DatabaseStructure databaseStructure, TableStructure tableStructure, long completedSchemas,
     long completedTablesInSchema) {
     progressData.setCurrentTableName(tableStructure.getName());
+    if (partial) {
+      currentTableRows = 0;
+      return;
+    }
     progressData.setCurrentProcessedTableRows(0);
     progressData.setPreviousProcessedRows(0);
     progressData.setCurrentTableTotalRows(tableStructure.getRows());
@@ -56,6 +79,11 @@ public class SIARDProgressObserver implements ModuleObserver {
   @Override
   public void notifyTableProgressSparse(DatabaseStructure databaseStructure, TableStructure tableStructure,
     long completedRows, long totalRows) {
+    if (partial) {
+      progressData.addProcessedRows(completedRows + 1 - currentTableRows);
+      currentTableRows = completedRows + 1;
+      return;
+    }
     progressData.setCurrentProcessedTableRows(completedRows + 1);
     progressData.incrementProcessedRows(completedRows + 1);
   }
@@ -63,6 +91,11 @@ public class SIARDProgressObserver implements ModuleObserver {
   @Override
   public void notifyTableProgressDetailed(DatabaseStructure databaseStructure, TableStructure tableStructure, Row row,
     long completedRows, long totalRows) {
+    if (partial) {
+      progressData.addProcessedRows(completedRows + 1 - currentTableRows);
+      currentTableRows = completedRows + 1;
+      return;
+    }
     progressData.setCurrentProcessedTableRows(completedRows + 1);
     progressData.incrementProcessedRows(completedRows + 1);
   }
@@ -70,7 +103,11 @@ public class SIARDProgressObserver implements ModuleObserver {
   @Override
   public void notifyCloseTable(DatabaseStructure databaseStructure, TableStructure tableStructure,
     long completedSchemas, long completedTablesInSchema) {
-    progressData.setProcessedTables(completedTablesInSchema);
+    if (partial) {
+      progressData.incrementProcessedTables();
+    } else {
+      progressData.setProcessedTables(completedTablesInSchema);
+    }
   }
 
   @Override
@@ -81,6 +118,9 @@ public class SIARDProgressObserver implements ModuleObserver {
 
   @Override
   public void notifyCloseDatabase(DatabaseStructure databaseStructure) {
+    if (partial) {
+      return;
+    }
     progressData.reset();
     progressData.setFinished(true);
   }
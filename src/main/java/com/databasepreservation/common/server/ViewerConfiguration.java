@@ -61,6 +61,42 @@ public class ViewerConfiguration extends ViewerAbstractConfiguration {
   public static final String PROPERTY_SOLR_HEALTHCHECK_RETRIES = "solr.healthcheck.retries";
   public static final String PROPERTY_SOLR_HEALTHCHECK_TIMEOUT = "solr.healthcheck.timeout_ms";
   public static final String PROPERTY_SOLR_STEMMING_LANGUAGE = "solr.stemming.language";
+  public static final String PROPERTY_SOLR_QUERY_CACHE_MAX_DOCUMENTS = "solr.query_cache.max_documents";
+  public static final String PROPERTY_SOLR_QUERY_CACHE_TTL_SECONDS = "solr.query_cache.ttl_seconds";
+  public static final String PROPERTY_SOLR_DATABASE_SEARCH_CACHE_MAX_DOCUMENTS = "solr.database_search_cache.max_documents";
+  public static final String PROPERTY_SOLR_FACETS_JSON_API = "solr.facets.json_api";
+  public static final String PROPERTY_SOLR_BATCH_THREADS = "solr.batch.threads";
+  public static final String PROPERTY_SOLR_BATCH_MAX_REQUESTS = "solr.batch.max_requests";
+  public static final String PROPERTY_SOLR_FEDERATED_THREADS = "solr.federated.threads";
+  public static final String PROPERTY_SOLR_FEDERATED_TIMEOUT_MS = "solr.federated.timeout_ms";
+  public static final String PROPERTY_SOLR_FEDERATED_MAX_ROWS = "solr.federated.max_rows";
+  public static final String PROPERTY_SOLR_PREFETCH_PAGES = "solr.prefetch.pages";
+  public static final String PROPERTY_SOLR_PREFETCH_THREADS = "solr.prefetch.threads";
+  public static final String PROPERTY_SOLR_EXPORT_HANDLER = "solr.export_handler.enabled";
+
+  public static final String PROPERTY_INGEST_BATCH_SIZE = "ingest.solr.batch.size";
+  public static final String PROPERTY_INGEST_BATCH_MAX_BYTES = "ingest.solr.batch.max_bytes";
+  public static final String PROPERTY_INGEST_BATCH_RETRIES = "ingest.solr.batch.retries";
+  public static final String PROPERTY_INGEST_SENDERS = "ingest.solr.senders";
+  public static final String PROPERTY_INGEST_QUEUE_CAPACITY = "ingest.solr.queue.capacity";
+  public static final String PROPERTY_INGEST_PARALLEL_TABLES = "ingest.parallel.tables";
+  public static final String PROPERTY_INGEST_CHECKPOINT_ROWS = "ingest.checkpoint.rows";
+  public static final String PROPERTY_INGEST_JOBS_CONCURRENCY = "ingest.jobs.concurrency";
+  public static final String PROPERTY_INGEST_JOBS_QUEUE_CAPACITY = "ingest.jobs.queue.capacity";
+  public static final String PROPERTY_INGEST_BULK_PROFILE = "ingest.solr.bulk_profile";
+  public static final String PROPERTY_INGEST_BULK_PROFILE_RAM_BUFFER_MB = "ingest.solr.bulk_profile.ram_buffer_mb";
+  public static final String PROPERTY_INGEST_BULK_PROFILE_SKIP_UPDATE_LOG = "ingest.solr.bulk_profile.skip_update_log";
+  public static final String PROPERTY_INGEST_OPTIMIZE_MAX_SEGMENTS = "ingest.solr.optimize.max_segments";
+  public static final String PROPERTY_DENORMALIZE_PARTITIONS = "denormalize.partitions";
+  public static final String PROPERTY_DENORMALIZE_PARTITION_THREADS = "denormalize.partitions.threads";
+  public static final String PROPERTY_JOBS_PROGRESS_FLUSH_INTERVAL_MS = "jobs.progress.flush_interval_ms";
+  public static final String PROPERTY_JOBS_PROGRESS_FLUSH_ROWS = "jobs.progress.flush_rows";
+  public static final String PROPERTY_EXPORT_ZIP_THREADS = "export.zip.threads";
+  public static final String PROPERTY_EXPORT_ZIP_MAX_THREADS = "export.zip.max_threads";
+  public static final String PROPERTY_EXPORT_JOBS_CONCURRENCY = "export.jobs.concurrency";
+  public static final String PROPERTY_EXPORT_JOBS_QUEUE_CAPACITY = "export.jobs.queue.capacity";
+  public static final String PROPERTY_EXPORT_JOBS_RETENTION_HOURS = "export.jobs.retention_hours";
+  public static final String PROPERTY_EXPORT_JOBS_QUOTA_MB = "export.jobs.quota_mb";
 
   public static final String RESOURCES_SOLR_CONFIG_PATH = "solr-config";
 
@@ -117,6 +153,7 @@ public class ViewerConfiguration extends ViewerAbstractConfiguration {
   private static Path mapDBPath;
   private static Path activityLogsPath;
   private static Path databasesPath;
+  private static Path exportsPath;
   private static Path h2Path;
 
   // Configuration related objects
@@ -330,6 +367,10 @@ public class ViewerConfiguration extends ViewerAbstractConfiguration {
     return databasesPath;
   }
 
+  public Path getExportsPath() {
+    return exportsPath;
+  }
+
   public Path getH2Path() {
     return h2Path;
   }
@@ -361,6 +402,10 @@ public class ViewerConfiguration extends ViewerAbstractConfiguration {
     return reportsPath.resolve("report-" + databaseUUID + ".md");
   }
 
+  public Path getReportPath(String databaseUUID, int partition) {
+    return reportsPath.resolve("report-" + databaseUUID + "-" + partition + ".md");
+  }
+
   public Path getReportPathForMigration(String databaseUUID) {
     return reportsPath.resolve("report-migration-" + databaseUUID + ".md");
   }
@@ -450,6 +495,7 @@ public class ViewerConfiguration extends ViewerAbstractConfiguration {
     mapDBPath = viewerHomePath.resolve(ViewerConstants.VIEWER_MAPDB_FOLDER);
     activityLogsPath = viewerHomePath.resolve(ViewerConstants.VIEWER_ACTIVITY_LOG_FOLDER);
     databasesPath = viewerHomePath.resolve(ViewerConstants.VIEWER_DATABASES_FOLDER);
+    exportsPath = viewerHomePath.resolve(ViewerConstants.VIEWER_EXPORTS_FOLDER);
 
     h2Path = viewerHomePath.resolve(ViewerConstants.VIEWER_H2_DATA_FOLDER);
 
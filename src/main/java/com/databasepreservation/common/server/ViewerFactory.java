@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 
 import com.databasepreservation.common.server.activity.log.strategies.ActivityLogStrategyFactory;
 import com.databasepreservation.common.server.index.DatabaseRowsSolrManager;
+import com.databasepreservation.common.server.index.FederatedRowsSearch;
 import com.databasepreservation.common.server.index.factory.SolrClientFactory;
 
 /**
@@ -29,7 +30,10 @@ public class ViewerFactory {
     if (!instantiated) {
       configuration = ViewerConfiguration.getInstance();
       solrClient = SolrClientFactory.get().getSolrClient();
-      solrManager = new DatabaseRowsSolrManager(solrClient);
+      int federatedTimeout = configuration.getViewerConfigurationAsInt(10000,
+        ViewerConfiguration.PROPERTY_SOLR_FEDERATED_TIMEOUT_MS);
+      solrManager = new DatabaseRowsSolrManager(solrClient,
+        SolrClientFactory.get().createSolrClient(FederatedRowsSearch.getSocketTimeout(federatedTimeout)));
       configurationManager = new ConfigurationManager();
       activityLogStrategyFactory = new ActivityLogStrategyFactory();
       instantiated = true;
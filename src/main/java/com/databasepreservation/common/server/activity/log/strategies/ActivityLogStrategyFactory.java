@@ -85,6 +85,7 @@ public class ActivityLogStrategyFactory {
           composeLogStrategy.getOperationList().add(new RowOperation());
           return composeLogStrategy;
         case "exportFindToCSV":
+        case "submitExportJob":
           composeLogStrategy.clearOperationList();
           composeLogStrategy.getOperationList().add(new DatabaseOperation());
           composeLogStrategy.getOperationList().add(new TableOperation());
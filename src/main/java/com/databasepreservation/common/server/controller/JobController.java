@@ -1,5 +1,7 @@
 package com.databasepreservation.common.server.controller;
 
+import java.util.Date;
+
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
 import org.slf4j.Logger;
@@ -47,6 +49,59 @@ public class JobController {
     solrManager.addBatchJob(viewerJob);
   }
 
+  /**
+   * Adds a queued ingestion job to the batch jobs collection, before it is
+   * launched, so it is listed while it waits for its turn.
+   */
+  public static void addSolrIngestJob(String jobUUID, String databaseUUID, String jobName)
+    throws NotFoundException, GenericException {
+    DatabaseRowsSolrManager solrManager = ViewerFactory.getSolrManager();
+    ViewerJob viewerJob = new ViewerJob();
+    viewerJob.setUuid(jobUUID);
+    viewerJob.setDatabaseUuid(databaseUUID);
+    viewerJob.setName(jobName);
+    viewerJob.setStatus(ViewerJobStatus.STARTING);
+    viewerJob.setCreateTime(new Date());
+    ViewerDatabase database = solrManager.retrieve(ViewerDatabase.class, databaseUUID);
+    viewerJob.setDatabaseName(database.getMetadata().getName());
+    solrManager.addBatchJob(viewerJob);
+  }
+
+  /**
+   * Adds a queued export job to the batch jobs collection, before it is
+   * launched, so it is listed while it waits for its turn.
+   */
+  public static void addSolrExportJob(String jobUUID, String databaseUUID, String collectionUUID, String tableUUID,
+    String jobName) throws NotFoundException, GenericException {
+    DatabaseRowsSolrManager solrManager = ViewerFactory.getSolrManager();
+    ViewerJob viewerJob = new ViewerJob();
+    viewerJob.setUuid(jobUUID);
+    viewerJob.setDatabaseUuid(databaseUUID);
+    viewerJob.setCollectionUuid(collectionUUID);
+    viewerJob.setTableUuid(tableUUID);
+    viewerJob.setName(jobName);
+    viewerJob.setStatus(ViewerJobStatus.STARTING);
+    viewerJob.setCreateTime(new Date());
+    ViewerDatabase database = solrManager.retrieve(ViewerDatabase.class, databaseUUID);
+    viewerJob.setDatabaseName(database.getMetadata().getName());
+    viewerJob.setTableName(database.getMetadata().getTable(tableUUID).getName());
+    viewerJob.setSchemaName(database.getMetadata().getTable(tableUUID).getSchemaName());
+    solrManager.addBatchJob(viewerJob);
+  }
+
+  /**
+   * Marks a job of the batch jobs collection as failed, for the jobs that fail
+   * before Spring Batch runs them, so no listener updates them.
+   */
+  public static void failSolrJob(String jobUUID, String message) throws NotFoundException, GenericException {
+    ViewerJob viewerJob = new ViewerJob();
+    viewerJob.setUuid(jobUUID);
+    viewerJob.setStatus(ViewerJobStatus.FAILED);
+    viewerJob.setEndTime(new Date());
+    viewerJob.setExitDescription(message);
+    ViewerFactory.getSolrManager().editBatchJob(viewerJob);
+  }
+
   public static void editSolrBatchJob(JobExecution jobExecution) throws NotFoundException, GenericException {
     DatabaseRowsSolrManager solrManager = ViewerFactory.getSolrManager();
     ViewerJob viewerJob = createViewerJob(jobExecution);
@@ -1,8 +1,5 @@
 package com.databasepreservation.common.server.controller;
 
-import static com.databasepreservation.common.client.ViewerConstants.SOLR_INDEX_ROW_COLLECTION_NAME_PREFIX;
-import static com.databasepreservation.common.client.ViewerConstants.SOLR_SEARCHES_DATABASE_UUID;
-
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -12,9 +9,14 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -29,18 +31,20 @@ import com.databasepreservation.DatabaseMigration;
 import com.databasepreservation.SIARDEdition;
 import com.databasepreservation.SIARDValidation;
 import com.databasepreservation.common.client.ViewerConstants;
-import com.databasepreservation.common.client.common.search.SavedSearch;
-import com.databasepreservation.common.client.index.filter.Filter;
-import com.databasepreservation.common.client.index.filter.SimpleFilterParameter;
 import com.databasepreservation.common.client.models.dbptk.Module;
 import com.databasepreservation.common.client.models.parameters.PreservationParameter;
 import com.databasepreservation.common.client.models.parameters.SIARDUpdateParameters;
+import com.databasepreservation.common.client.models.progress.ProgressData;
+import com.databasepreservation.common.client.models.status.collection.CollectionStatus;
+import com.databasepreservation.common.client.models.status.collection.IngestCheckpoint;
+import com.databasepreservation.common.client.models.status.collection.LargeObjectConsolidateProperty;
 import com.databasepreservation.common.client.models.structure.ViewerDatabase;
 import com.databasepreservation.common.client.models.structure.ViewerDatabaseFromToolkit;
 import com.databasepreservation.common.client.models.structure.ViewerDatabaseStatus;
 import com.databasepreservation.common.client.models.structure.ViewerDatabaseValidationStatus;
 import com.databasepreservation.common.client.models.structure.ViewerMetadata;
 import com.databasepreservation.common.client.models.structure.ViewerSIARDBundle;
+import com.databasepreservation.common.client.models.structure.ViewerTable;
 import com.databasepreservation.common.client.models.wizard.connection.ConnectionParameters;
 import com.databasepreservation.common.client.models.wizard.connection.ConnectionResponse;
 import com.databasepreservation.common.client.models.wizard.customViews.CustomViewsParameters;
@@ -54,8 +58,6 @@ import com.databasepreservation.common.server.ValidationProgressObserver;
 import com.databasepreservation.common.server.ViewerConfiguration;
 import com.databasepreservation.common.server.ViewerFactory;
 import com.databasepreservation.common.server.index.DatabaseRowsSolrManager;
-import com.databasepreservation.common.server.index.factory.SolrClientFactory;
-import com.databasepreservation.common.server.index.schema.SolrDefaultCollectionRegistry;
 import com.databasepreservation.common.server.index.utils.SolrUtils;
 import com.databasepreservation.common.transformers.ToolkitStructure2ViewerStructure;
 import com.databasepreservation.model.exception.ModuleException;
@@ -78,6 +80,7 @@ import com.databasepreservation.modules.siard.SIARDEditFactory;
 import com.databasepreservation.modules.siard.SIARDValidateFactory;
 import com.databasepreservation.modules.viewer.DbvtkModuleFactory;
 import com.databasepreservation.utils.ReflectionUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * @author Bruno Ferreira <bferreira@keep.pt>
@@ -660,10 +663,50 @@ public class SIARDController {
   private static void convertSIARDtoSolr(Path siardPath, String databaseUUID) throws GenericException {
     validateSIARDLocation(siardPath);
 
+    // a previous ingestion of this database that did not finish left
+    // checkpoints, continue from them instead of starting over
+    IngestCheckpoint checkpoint = ViewerFactory.getConfigurationManager().getIngestCheckpoint(databaseUUID);
+    int parallelTables = ViewerConfiguration.getInstance().getViewerConfigurationAsInt(1,
+      ViewerConfiguration.PROPERTY_INGEST_PARALLEL_TABLES);
+
+    ViewerDatabase database = null;
+    List<ViewerTable> pendingTables = null;
+    if (checkpoint != null || parallelTables > 1) {
+      try {
+        database = ViewerFactory.getSolrManager().retrieve(ViewerDatabase.class, databaseUUID);
+      } catch (NotFoundException e) {
+        throw new GenericException("Could not find the database " + databaseUUID, e);
+      }
+      pendingTables = getPendingTables(database.getMetadata(), checkpoint);
+
+      if (checkpoint != null) {
+        LOGGER.info("resuming conversion of database {}, {} of {} tables left", siardPath.toAbsolutePath(),
+          pendingTables.size(), database.getMetadata().getTables().size());
+        if (pendingTables.isEmpty()) {
+          // interrupted after the last table was committed
+          try {
+            ViewerFactory.getSolrManager().resumeDatabaseRowCollection(databaseUUID);
+          } catch (ViewerException e) {
+            throw new GenericException(e.getMessage(), e);
+          }
+          finishConversion(databaseUUID);
+          ProgressData.getInstance(databaseUUID).setFinished(true);
+          return;
+        }
+      }
+
+      if (parallelTables > 1 && pendingTables.size() > 1) {
+        convertSIARDtoSolrByTable(siardPath, database, pendingTables, checkpoint, parallelTables);
+        return;
+      }
+    }
+
     LOGGER.info("starting to convert database {}", siardPath.toAbsolutePath());
 
     // build the SIARD import module, Solr export module, and start the
     // conversion
+    DbvtkModuleFactory exportModuleFactory = new DbvtkModuleFactory();
+    String importConfigTmpPath = null;
     Path reporterPath = ViewerConfiguration.getInstance().getReportPath(databaseUUID).toAbsolutePath();
     try (Reporter reporter = new Reporter(reporterPath.getParent().toString(), reporterPath.getFileName().toString())) {
       ViewerConfiguration configuration = ViewerConfiguration.getInstance();
@@ -673,11 +716,19 @@ public class SIARDController {
       // XXX remove this workaround after fix of NPE
       databaseMigration.filterFactories(new ArrayList<>());
 
-      databaseMigration.importModule(new SIARD2ModuleFactory())
-        .importModuleParameter(SIARD2ModuleFactory.PARAMETER_FILE, siardPath.toAbsolutePath().toString())
-        .importModuleParameter(SIARD2ModuleFactory.PARAMETER_IGNORE_LOBS, "true");
+      if (pendingTables != null && pendingTables.size() < database.getMetadata().getTables().size()) {
+        // only read the tables a previous ingestion did not finish
+        databaseMigration.importModule(new ImportConfigurationModuleFactory());
+        importConfigTmpPath = SiardControllerHelper.buildModuleConfigurationForSIARDTables(
+          database.getVersion(), siardPath.toAbsolutePath().toString(), pendingTables);
+        databaseMigration.importModuleParameter(ImportConfigurationModuleFactory.PARAMETER_FILE, importConfigTmpPath);
+      } else {
+        databaseMigration.importModule(new SIARD2ModuleFactory())
+          .importModuleParameter(SIARD2ModuleFactory.PARAMETER_FILE, siardPath.toAbsolutePath().toString())
+          .importModuleParameter(SIARD2ModuleFactory.PARAMETER_IGNORE_LOBS, "true");
+      }
 
-      databaseMigration.exportModule(new DbvtkModuleFactory())
+      databaseMigration.exportModule(exportModuleFactory)
         .exportModuleParameter(DbvtkModuleFactory.PARAMETER_DATABASE_UUID, databaseUUID);
 
       databaseMigration.filter(new ObservableFilter(new SIARDProgressObserver(databaseUUID)));
@@ -694,9 +745,192 @@ public class SIARDController {
       throw new GenericException("Could not initialize conversion modules", e);
     } catch (ModuleException | RuntimeException e) {
       throw new GenericException("Could not convert the database.", e);
+    } finally {
+      exportModuleFactory.abortExportModule();
+      deleteTemporaryFile(importConfigTmpPath);
+    }
+  }
+
+  private static List<ViewerTable> getPendingTables(ViewerMetadata metadata, IngestCheckpoint checkpoint) {
+    List<ViewerTable> pendingTables = new ArrayList<>();
+    for (ViewerTable table : metadata.getTables().values()) {
+      if (checkpoint == null || !checkpoint.isTableFinished(table.getId())) {
+        pendingTables.add(table);
+      }
+    }
+    return pendingTables;
+  }
+
+  /**
+   * Commits the rows collection and makes the database available, once all its
+   * tables were ingested.
+   */
+  private static void finishConversion(String databaseUUID) throws GenericException {
+    try {
+      ViewerFactory.getSolrManager().finishDatabaseRowCollection(databaseUUID);
+      ViewerFactory.getSolrManager().markDatabaseAsReady(databaseUUID);
+      CollectionStatus collectionStatus = ViewerFactory.getConfigurationManager()
+        .getConfigurationCollection(databaseUUID, databaseUUID);
+      collectionStatus.setConsolidateProperty(LargeObjectConsolidateProperty.NOT_CONSOLIDATED);
+      ViewerFactory.getConfigurationManager().updateCollectionStatus(databaseUUID, collectionStatus);
+      ViewerFactory.getConfigurationManager().deleteIngestCheckpoint(databaseUUID);
+    } catch (ViewerException e) {
+      throw new GenericException(e.getMessage(), e);
     }
   }
 
+  /**
+   * Converts the SIARD to Solr splitting the tables in groups of similar size
+   * (by number of rows) and reading each group with its own migration, all of
+   * them writing to the same rows collection.
+   */
+  private static void convertSIARDtoSolrByTable(Path siardPath, ViewerDatabase database,
+    List<ViewerTable> pendingTables, IngestCheckpoint checkpoint, int parallelTables) throws GenericException {
+    final String databaseUUID = database.getUuid();
+    final ViewerMetadata metadata = database.getMetadata();
+    final DatabaseRowsSolrManager solrManager = ViewerFactory.getSolrManager();
+
+    List<List<ViewerTable>> partitions = partitionTablesByRows(pendingTables, parallelTables);
+    LOGGER.info("starting to convert database {} reading {} groups of tables in parallel",
+      siardPath.toAbsolutePath(), partitions.size());
+
+    long totalRows = 0;
+    for (ViewerTable table : metadata.getTables().values()) {
+      totalRows += table.getCountRows();
+    }
+    ProgressData progressData = ProgressData.getInstance(databaseUUID);
+    progressData.reset();
+    progressData.setDatabaseStructureRetrieved(true);
+    progressData.setTotalSchemas(metadata.getSchemas().size());
+    progressData.setTotalTables(metadata.getTables().size());
+    progressData.setTotalRows(totalRows);
+    for (ViewerTable table : metadata.getTables().values()) {
+      if (checkpoint != null && checkpoint.isTableFinished(table.getId())) {
+        progressData.addProcessedRows(table.getCountRows());
+        progressData.incrementProcessedTables();
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(partitions.size(),
+      new ThreadFactoryBuilder().setNameFormat("siard-ingest-" + databaseUUID + "-%d").build());
+    try {
+      if (checkpoint != null) {
+        solrManager.resumeDatabaseRowCollection(databaseUUID);
+      } else {
+        solrManager.addDatabaseRowCollection(databaseUUID);
+      }
+
+      long startTime = System.currentTimeMillis();
+
+      List<Future<Void>> results = new ArrayList<>();
+      for (int i = 0; i < partitions.size(); i++) {
+        final int partition = i;
+        final List<ViewerTable> tables = partitions.get(i);
+        results.add(executor.submit(() -> {
+          convertSIARDTablesToSolr(siardPath, database, tables, partition);
+          return null;
+        }));
+      }
+
+      for (Future<Void> result : results) {
+        result.get();
+      }
+
+      finishConversion(databaseUUID);
+
+      long duration = System.currentTimeMillis() - startTime;
+      LOGGER.info("Conversion time {}m {}s", duration / 60000, duration % 60000 / 1000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GenericException("Interrupted while converting the database.", e);
+    } catch (ExecutionException e) {
+      throw new GenericException("Could not convert the database.", e.getCause());
+    } catch (ViewerException e) {
+      throw new GenericException(e.getMessage(), e);
+    } finally {
+      executor.shutdownNow();
+      progressData.reset();
+      progressData.setFinished(true);
+    }
+  }
+
+  private static void convertSIARDTablesToSolr(Path siardPath, ViewerDatabase database, List<ViewerTable> tables,
+    int partition) throws GenericException {
+    final String databaseUUID = database.getUuid();
+    Path reporterPath = partition == 0 ? ViewerConfiguration.getInstance().getReportPath(databaseUUID)
+      : ViewerConfiguration.getInstance().getReportPath(databaseUUID, partition);
+    reporterPath = reporterPath.toAbsolutePath();
+
+    DbvtkModuleFactory exportModuleFactory = new DbvtkModuleFactory();
+    String importConfigTmpPath = null;
+    try (Reporter reporter = new Reporter(reporterPath.getParent().toString(), reporterPath.getFileName().toString())) {
+      DatabaseMigration databaseMigration = DatabaseMigration.newInstance();
+
+      // XXX remove this workaround after fix of NPE
+      databaseMigration.filterFactories(new ArrayList<>());
+
+      databaseMigration.importModule(new ImportConfigurationModuleFactory());
+      importConfigTmpPath = SiardControllerHelper.buildModuleConfigurationForSIARDTables(database.getVersion(),
+        siardPath.toAbsolutePath().toString(), tables);
+      databaseMigration.importModuleParameter(ImportConfigurationModuleFactory.PARAMETER_FILE, importConfigTmpPath);
+
+      databaseMigration.exportModule(exportModuleFactory)
+        .exportModuleParameter(DbvtkModuleFactory.PARAMETER_DATABASE_UUID, databaseUUID)
+        .exportModuleParameter(DbvtkModuleFactory.PARAMETER_PARTIAL, "true");
+
+      databaseMigration.filter(new ObservableFilter(new SIARDProgressObserver(databaseUUID, true)));
+
+      databaseMigration.reporter(reporter);
+
+      databaseMigration.migrate();
+    } catch (IOException e) {
+      throw new GenericException("Could not initialize conversion modules", e);
+    } catch (ModuleException | RuntimeException e) {
+      throw new GenericException("Could not convert the database.", e);
+    } finally {
+      exportModuleFactory.abortExportModule();
+      deleteTemporaryFile(importConfigTmpPath);
+    }
+  }
+
+  private static void deleteTemporaryFile(String path) {
+    if (path != null) {
+      try {
+        Files.deleteIfExists(Paths.get(path));
+      } catch (IOException e) {
+        LOGGER.warn("Could not delete the temporary file {}", path, e);
+      }
+    }
+  }
+
+  /**
+   * Longest-processing-time-first split of the tables: the biggest table goes
+   * to the group with the fewest rows so far.
+   */
+  private static List<List<ViewerTable>> partitionTablesByRows(List<ViewerTable> pendingTables, int parallelTables) {
+    List<ViewerTable> tables = new ArrayList<>(pendingTables);
+    tables.sort(Comparator.comparingLong(ViewerTable::getCountRows).reversed());
+
+    int count = Math.min(parallelTables, tables.size());
+    List<List<ViewerTable>> partitions = new ArrayList<>();
+    long[] rows = new long[count];
+    for (int i = 0; i < count; i++) {
+      partitions.add(new ArrayList<>());
+    }
+
+    for (ViewerTable table : tables) {
+      int lightest = 0;
+      for (int i = 1; i < count; i++) {
+        if (rows[i] < rows[lightest]) {
+          lightest = i;
+        }
+      }
+      partitions.get(lightest).add(table);
+      rows[lightest] += table.getCountRows();
+    }
+    return partitions;
+  }
+
   public static ViewerMetadata updateMetadataInformation(String databaseUUID, String siardPath,
     SIARDUpdateParameters parameters) throws GenericException {
 
@@ -827,12 +1061,7 @@ public class SIARDController {
 
     if (database.getStatus().equals(ViewerDatabaseStatus.AVAILABLE)
       || database.getStatus().equals(ViewerDatabaseStatus.ERROR)) {
-      final String collectionName = SOLR_INDEX_ROW_COLLECTION_NAME_PREFIX + databaseUUID;
-      if (SolrClientFactory.get().deleteCollection(collectionName)) {
-        Filter savedSearchFilter = new Filter(new SimpleFilterParameter(SOLR_SEARCHES_DATABASE_UUID, databaseUUID));
-        SolrUtils.delete(ViewerFactory.getSolrClient(), SolrDefaultCollectionRegistry.get(SavedSearch.class),
-          savedSearchFilter);
-
+      if (ViewerFactory.getSolrManager().deleteRowsCollection(databaseUUID)) {
         ViewerFactory.getSolrManager().markDatabaseCollection(databaseUUID, ViewerDatabaseStatus.METADATA_ONLY);
       }
     }
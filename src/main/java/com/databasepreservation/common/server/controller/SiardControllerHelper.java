@@ -18,6 +18,8 @@ import org.roda.core.data.exceptions.GenericException;
 
 import com.databasepreservation.DatabaseMigration;
 import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.client.models.structure.ViewerColumn;
+import com.databasepreservation.common.client.models.structure.ViewerTable;
 import com.databasepreservation.common.client.models.wizard.connection.ConnectionParameters;
 import com.databasepreservation.common.client.models.wizard.connection.SSHConfiguration;
 import com.databasepreservation.common.client.models.wizard.customViews.CustomViewsParameters;
@@ -62,6 +64,54 @@ public class SiardControllerHelper {
     }
   }
 
+  /**
+   * Builds an import-config that reads only the given tables (with all their
+   * columns) from the SIARD file, ignoring LOBs as in a regular ingestion.
+   */
+  public static String buildModuleConfigurationForSIARDTables(String siardVersion, String siardPath,
+    List<ViewerTable> tables) throws GenericException {
+    try {
+      File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+      final File tmpFile = File.createTempFile(SolrUtils.randomUUID(), ViewerConstants.YAML_SUFFIX, tmpDir);
+
+      ModuleConfiguration moduleConfiguration = ModuleConfigurationUtils.getDefaultModuleConfiguration();
+      Map<String, String> properties = new HashMap<>();
+      properties.put(SIARD2ModuleFactory.PARAMETER_FILE, siardPath);
+      properties.put(SIARD2ModuleFactory.PARAMETER_IGNORE_LOBS, "true");
+      ModuleConfigurationUtils.addImportParameters(moduleConfiguration, getSIARDModuleName(siardVersion), properties,
+        null);
+
+      for (ViewerTable table : tables) {
+        SchemaConfiguration schemaConfiguration = moduleConfiguration.getSchemaConfigurations()
+          .get(table.getSchemaName());
+
+        if (schemaConfiguration == null) {
+          schemaConfiguration = new SchemaConfiguration();
+        }
+
+        List<ColumnConfiguration> columns = new ArrayList<>();
+        for (ViewerColumn column : table.getColumns()) {
+          ColumnConfiguration columnConfiguration = new ColumnConfiguration();
+          columnConfiguration.setName(column.getDisplayName());
+          columns.add(columnConfiguration);
+        }
+
+        TableConfiguration tableConfiguration = new TableConfiguration();
+        tableConfiguration.setName(table.getName());
+        tableConfiguration.setColumns(columns);
+        schemaConfiguration.getTableConfigurations().add(tableConfiguration);
+        moduleConfiguration.getSchemaConfigurations().put(table.getSchemaName(), schemaConfiguration);
+      }
+
+      ObjectMapper mapper = new ObjectMapper(new YAMLFactory().disable(YAMLGenerator.Feature.WRITE_DOC_START_MARKER));
+      mapper.writeValue(tmpFile, moduleConfiguration);
+
+      return tmpFile.getPath();
+    } catch (IOException e) {
+      throw new GenericException("Could not create the import-config YAML file", e);
+    }
+  }
+
   public static String buildModuleConfiguration(ConnectionParameters connectionParameters,
     TableAndColumnsParameters tableAndColumnsParameters, CustomViewsParameters customViewsParameters)
     throws GenericException {
@@ -83,19 +133,21 @@ public class SiardControllerHelper {
   }
 
   private static void buildImportModuleConfiguration(ModuleConfiguration moduleConfiguration, String siardVersion, String siardPath) {
-    String moduleName;
+    Map<String, String> properties = new HashMap<>();
+    properties.put(SIARD2ModuleFactory.PARAMETER_FILE, siardPath);
+
+    ModuleConfigurationUtils.addImportParameters(moduleConfiguration, getSIARDModuleName(siardVersion), properties,
+      null);
+  }
+
+  private static String getSIARDModuleName(String siardVersion) {
     if (siardVersion.equals("2.0") || siardVersion.equals("2.1")) {
-      moduleName = "siard-2";
+      return "siard-2";
     } else if (siardVersion.equals("1.0")) {
-      moduleName = "siard-1";
+      return "siard-1";
     } else {
-      moduleName = "";
+      return "";
     }
-
-    Map<String, String> properties = new HashMap<>();
-    properties.put(SIARD2ModuleFactory.PARAMETER_FILE, siardPath);
-
-    ModuleConfigurationUtils.addImportParameters(moduleConfiguration, moduleName, properties, null);
   }
 
   private static void buildImportModuleConfiguration(ModuleConfiguration moduleConfiguration,
@@ -4,15 +4,22 @@ import java.io.IOException;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
 import org.apache.solr.client.solrj.request.CollectionAdminRequest;
 import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrException;
@@ -23,7 +30,9 @@ import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
 import org.roda.core.data.exceptions.RequestNotValidException;
 import com.databasepreservation.common.client.index.filter.Filter;
+import com.databasepreservation.common.client.index.filter.OneOfManyFilterParameter;
 import com.databasepreservation.common.client.index.filter.SimpleFilterParameter;
+import com.databasepreservation.common.client.index.filter.StringRangeFilterParameter;
 import org.roda.core.data.v2.index.sublist.Sublist;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,11 +40,18 @@ import org.slf4j.LoggerFactory;
 import com.databasepreservation.common.client.ViewerConstants;
 import com.databasepreservation.common.client.common.search.SavedSearch;
 import com.databasepreservation.common.client.exceptions.SavedSearchException;
+import com.databasepreservation.common.client.index.BatchFindRequest;
+import com.databasepreservation.common.client.index.BatchIndexResult;
+import com.databasepreservation.common.client.index.CountRequest;
+import com.databasepreservation.common.client.index.CursorIndexResult;
+import com.databasepreservation.common.client.index.FindRequest;
+import com.databasepreservation.common.client.index.GroupedIndexResult;
 import com.databasepreservation.common.client.index.IndexResult;
 import com.databasepreservation.common.client.index.IsIndexed;
 import com.databasepreservation.common.client.index.facets.Facets;
 import com.databasepreservation.common.client.index.sort.Sorter;
 import com.databasepreservation.common.client.models.activity.logs.ActivityLogEntry;
+import com.databasepreservation.common.client.models.structure.ViewerCell;
 import com.databasepreservation.common.client.models.structure.ViewerDatabase;
 import com.databasepreservation.common.client.models.structure.ViewerDatabaseFromToolkit;
 import com.databasepreservation.common.client.models.structure.ViewerDatabaseStatus;
@@ -45,17 +61,23 @@ import com.databasepreservation.common.client.models.structure.ViewerMetadata;
 import com.databasepreservation.common.client.models.structure.ViewerRow;
 import com.databasepreservation.common.client.models.structure.ViewerTable;
 import com.databasepreservation.common.exceptions.ViewerException;
+import com.databasepreservation.common.server.ViewerConfiguration;
 import com.databasepreservation.common.server.ViewerFactory;
+import com.databasepreservation.common.server.index.factory.SolrClientFactory;
 import com.databasepreservation.common.server.index.schema.SolrCollection;
 import com.databasepreservation.common.server.index.schema.SolrDefaultCollectionRegistry;
 import com.databasepreservation.common.server.index.schema.SolrRowsCollectionRegistry;
 import com.databasepreservation.common.server.index.schema.collections.RowsCollection;
+import com.databasepreservation.common.server.index.utils.ExportStreamIterator;
+import com.databasepreservation.common.server.index.utils.IndexResultIterator;
 import com.databasepreservation.common.server.index.utils.IterableIndexResult;
 import com.databasepreservation.common.server.index.utils.IterableNestedIndexResult;
 import com.databasepreservation.common.server.index.utils.JsonTransformer;
 import com.databasepreservation.common.server.index.utils.Pair;
 import com.databasepreservation.common.server.index.utils.SolrUtils;
 import com.databasepreservation.utils.FileUtils;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Exposes some methods to interact with a Solr Server
@@ -65,11 +87,74 @@ import com.databasepreservation.utils.FileUtils;
 public class DatabaseRowsSolrManager {
   private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseRowsSolrManager.class);
   private static final long INSERT_DOCUMENT_TIMEOUT = 60000; // 60 seconds
+  // rows skipped per request when a cursor position must be reached again
+  private static final int CURSOR_SKIP_PAGE_SIZE = 10000;
+  // changes sent without an explicit commit show up after the commitWithin of
+  // insertDocument or the auto soft commit (2 seconds), plus some margin
+  private static final long VISIBILITY_DELAY_MS = 3000;
+  // tables and rows of each table returned at most by a database search
+  private static final int DATABASE_SEARCH_MAX_TABLES = 1000;
+  private static final int DATABASE_SEARCH_MAX_ROWS_PER_TABLE = 100;
 
   private final SolrClient client;
+  private final RowsCursorCache cursorCache = new RowsCursorCache();
+  private final QueryResultCache queryCache;
+  // the database searches are cached even when the query cache is off
+  private final QueryResultCache databaseSearchCache;
+  // shared by all the batches, so that they never run more than its threads
+  // requests at the same time
+  private final ExecutorService batchExecutor;
+  private final int batchMaxRequests;
+  private final FederatedRowsSearch federatedSearch;
+  private final boolean exportHandlerEnabled;
 
   public DatabaseRowsSolrManager(SolrClient client) {
+    this(client, client);
+  }
+
+  /**
+   * @param federatedClient
+   *          client of the searches across databases, which should give up on
+   *          requests after {@link FederatedRowsSearch#getSocketTimeout}
+   */
+  public DatabaseRowsSolrManager(SolrClient client, SolrClient federatedClient) {
     this.client = client;
+    ViewerConfiguration configuration = ViewerConfiguration.getInstance();
+    int queryCacheTtlSeconds = configuration.getViewerConfigurationAsInt(300,
+      ViewerConfiguration.PROPERTY_SOLR_QUERY_CACHE_TTL_SECONDS);
+    this.queryCache = new QueryResultCache(
+      configuration.getViewerConfigurationAsInt(0, ViewerConfiguration.PROPERTY_SOLR_QUERY_CACHE_MAX_DOCUMENTS),
+      queryCacheTtlSeconds);
+    this.databaseSearchCache = new QueryResultCache("database_search_cache", configuration
+      .getViewerConfigurationAsInt(5000, ViewerConfiguration.PROPERTY_SOLR_DATABASE_SEARCH_CACHE_MAX_DOCUMENTS),
+      queryCacheTtlSeconds);
+    this.batchExecutor = Executors.newFixedThreadPool(
+      Math.max(1, configuration.getViewerConfigurationAsInt(4, ViewerConfiguration.PROPERTY_SOLR_BATCH_THREADS)),
+      new ThreadFactoryBuilder().setNameFormat("rows-batch-find-%d").setDaemon(true).build());
+    this.batchMaxRequests = configuration.getViewerConfigurationAsInt(50,
+      ViewerConfiguration.PROPERTY_SOLR_BATCH_MAX_REQUESTS);
+    this.federatedSearch = new FederatedRowsSearch(federatedClient,
+      configuration.getViewerConfigurationAsInt(8, ViewerConfiguration.PROPERTY_SOLR_FEDERATED_THREADS),
+      configuration.getViewerConfigurationAsInt(10000, ViewerConfiguration.PROPERTY_SOLR_FEDERATED_TIMEOUT_MS));
+    this.exportHandlerEnabled = configuration.getViewerConfigurationAsBoolean(true,
+      ViewerConfiguration.PROPERTY_SOLR_EXPORT_HANDLER);
+    IterableIndexResult.injectPrefetchPages(
+      configuration.getViewerConfigurationAsInt(2, ViewerConfiguration.PROPERTY_SOLR_PREFETCH_PAGES));
+    IterableIndexResult.injectPrefetchThreads(configuration.getViewerConfigurationAsInt(
+      IndexResultIterator.DEFAULT_PREFETCH_THREADS, ViewerConfiguration.PROPERTY_SOLR_PREFETCH_THREADS));
+  }
+
+  /**
+   * Drops the cached results of a collection that was changed without going
+   * through this manager, e.g. by committing it directly.
+   */
+  public void invalidateQueryCache(String collection) {
+    queryCache.invalidate(collection, VISIBILITY_DELAY_MS);
+    databaseSearchCache.invalidate(collection, VISIBILITY_DELAY_MS);
+  }
+
+  public CacheStats getQueryCacheStats() {
+    return queryCache.getStats();
   }
 
   /**
@@ -94,6 +179,67 @@ public class DatabaseRowsSolrManager {
       Pair.of(ViewerConstants.SOLR_DATABASES_STATUS, ViewerDatabaseStatus.INGESTING.toString()));
     RowsCollection collection = new RowsCollection(databaseUUID);
     collection.createRowsCollection();
+    applyBulkLoadProfile(collection);
+  }
+
+  /**
+   * Marks the database as ingesting again, reusing the rows collection left
+   * by an interrupted ingestion (it is only created if it no longer exists).
+   */
+  public void resumeDatabaseRowCollection(final String databaseUUID) throws ViewerException {
+    if (SolrRowsCollectionRegistry.get(databaseUUID) == null) {
+      addDatabaseRowCollection(databaseUUID);
+    } else {
+      updateValidationFields(databaseUUID,
+        Pair.of(ViewerConstants.SOLR_DATABASES_STATUS, ViewerDatabaseStatus.INGESTING.toString()));
+      applyBulkLoadProfile(SolrRowsCollectionRegistry.get(databaseUUID));
+    }
+  }
+
+  /**
+   * A failure fails the ingestion, like a failure to restore the browsing
+   * profile, rather than loading with a profile nobody asked for. The profile
+   * can be turned off with {@code ingest.solr.bulk_profile}.
+   */
+  private void applyBulkLoadProfile(RowsCollection collection) throws ViewerException {
+    ViewerConfiguration configuration = ViewerFactory.getViewerConfiguration();
+    if (!configuration.getViewerConfigurationAsBoolean(true, ViewerConfiguration.PROPERTY_INGEST_BULK_PROFILE)) {
+      return;
+    }
+
+    int ramBufferSizeMB = configuration.getViewerConfigurationAsInt(512,
+      ViewerConfiguration.PROPERTY_INGEST_BULK_PROFILE_RAM_BUFFER_MB);
+    boolean skipUpdateLog = configuration.getViewerConfigurationAsBoolean(false,
+      ViewerConfiguration.PROPERTY_INGEST_BULK_PROFILE_SKIP_UPDATE_LOG);
+    collection.applyBulkLoadProfile(ramBufferSizeMB, skipUpdateLog);
+  }
+
+  /**
+   * Makes the rows of a database searchable once its ingestion is over. The
+   * rows are committed, the collection is switched back to the browsing profile
+   * and, if {@code ingest.solr.optimize.max_segments} is set, its segments are
+   * merged.
+   *
+   * @param databaseUUID
+   *          the database whose rows collection was loaded
+   */
+  public void finishDatabaseRowCollection(final String databaseUUID) throws ViewerException {
+    RowsCollection collection = SolrRowsCollectionRegistry.get(databaseUUID);
+    int maxSegments = ViewerFactory.getViewerConfiguration().getViewerConfigurationAsInt(0,
+      ViewerConfiguration.PROPERTY_INGEST_OPTIMIZE_MAX_SEGMENTS);
+
+    try {
+      // commit before switching profiles, as that reloads the core
+      client.commit(collection.getIndexName());
+      invalidateQueryCache(collection.getIndexName());
+      collection.applyBrowsingProfile();
+      if (maxSegments > 0) {
+        LOGGER.info("Merging collection {} down to {} segments", collection.getIndexName(), maxSegments);
+        client.optimize(collection.getIndexName(), true, true, maxSegments);
+      }
+    } catch (SolrServerException | IOException | SolrException e) {
+      throw new ViewerException("Could not commit the rows collection " + collection.getIndexName(), e);
+    }
   }
 
   public void removeDatabase(ViewerDatabase database, Path lobFolder) throws ViewerException {
@@ -111,16 +257,15 @@ public class DatabaseRowsSolrManager {
     SolrRequest<?> request = CollectionAdminRequest.deleteCollection(rowsCollectionName);
     try {
       client.request(request);
+      invalidateQueryCache(rowsCollectionName);
       LOGGER.debug("Deleted collection {}", rowsCollectionName);
     } catch (SolrServerException | IOException | SolrException e) {
       throw new ViewerException("Error deleting collection " + rowsCollectionName, e);
     }
 
     // delete related saved searches
-    Filter savedSearchFilter = new Filter(
-      new SimpleFilterParameter(ViewerConstants.SOLR_SEARCHES_DATABASE_UUID, database.getUuid()));
     try {
-      SolrUtils.delete(client, SolrDefaultCollectionRegistry.get(SavedSearch.class), savedSearchFilter);
+      deleteSavedSearches(database.getUuid());
       LOGGER.debug("Deleted saved searches for database {}", database.getUuid());
     } catch (GenericException | RequestNotValidException e) {
       throw new ViewerException("Error deleting saved searches for database " + database.getUuid(), e);
@@ -130,12 +275,36 @@ public class DatabaseRowsSolrManager {
     try {
       SolrUtils.delete(client, SolrDefaultCollectionRegistry.get(ViewerDatabase.class),
         Collections.singletonList(database.getUuid()));
+      invalidateQueryCache(ViewerConstants.SOLR_INDEX_DATABASES_COLLECTION_NAME);
       LOGGER.debug("Deleted database {}", database.getUuid());
     } catch (GenericException e) {
       throw new ViewerException("Error deleting the database " + database.getUuid(), e);
     }
   }
 
+  /**
+   * Deletes the rows collection of a database and the searches saved for it,
+   * keeping the database itself.
+   *
+   * @return true if the rows collection was deleted
+   */
+  public boolean deleteRowsCollection(String databaseUUID) throws GenericException, RequestNotValidException {
+    final String collectionName = getRowsIndexName(databaseUUID);
+    if (!SolrClientFactory.get().deleteCollection(collectionName)) {
+      return false;
+    }
+    invalidateQueryCache(collectionName);
+    deleteSavedSearches(databaseUUID);
+    return true;
+  }
+
+  private void deleteSavedSearches(String databaseUUID) throws GenericException, RequestNotValidException {
+    Filter savedSearchFilter = new Filter(
+      new SimpleFilterParameter(ViewerConstants.SOLR_SEARCHES_DATABASE_UUID, databaseUUID));
+    SolrUtils.delete(client, SolrDefaultCollectionRegistry.get(SavedSearch.class), savedSearchFilter);
+    invalidateQueryCache(ViewerConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME);
+  }
+
   /**
    * Does nothing. Just a part of the database traversal
    *
@@ -155,6 +324,29 @@ public class DatabaseRowsSolrManager {
     }
   }
 
+  /**
+   * Creates a bulk indexer for the rows collection of a database, configured
+   * through the {@code ingest.solr.*} properties. The caller owns the indexer
+   * and must close it.
+   *
+   * @param databaseUUID
+   *          the database whose rows collection will receive the documents
+   * @return a new bulk indexer
+   */
+  public RowsBulkIndexer createRowsBulkIndexer(String databaseUUID) {
+    ViewerConfiguration configuration = ViewerFactory.getViewerConfiguration();
+    int batchSize = configuration.getViewerConfigurationAsInt(1000, ViewerConfiguration.PROPERTY_INGEST_BATCH_SIZE);
+    int batchMaxBytes = configuration.getViewerConfigurationAsInt(8 * 1024 * 1024,
+      ViewerConfiguration.PROPERTY_INGEST_BATCH_MAX_BYTES);
+    int retries = configuration.getViewerConfigurationAsInt(3, ViewerConfiguration.PROPERTY_INGEST_BATCH_RETRIES);
+    int senders = configuration.getViewerConfigurationAsInt(4, ViewerConfiguration.PROPERTY_INGEST_SENDERS);
+    int queueCapacity = configuration.getViewerConfigurationAsInt(2 * senders,
+      ViewerConfiguration.PROPERTY_INGEST_QUEUE_CAPACITY);
+
+    return new RowsBulkIndexer(client, SolrRowsCollectionRegistry.get(databaseUUID),
+      Arrays.asList(queryCache, databaseSearchCache), batchSize, batchMaxBytes, senders, queueCapacity, retries);
+  }
+
   public void addRow(ViewerDatabaseFromToolkit viewerDatabase, ViewerRow row) throws ViewerException {
     RowsCollection collection = SolrRowsCollectionRegistry.get(viewerDatabase.getUuid());
 
@@ -167,8 +359,10 @@ public class DatabaseRowsSolrManager {
 
   public <T extends IsIndexed> IndexResult<T> find(Class<T> classToReturn, Filter filter, Sorter sorter,
     Sublist sublist, Facets facets, List<String> fieldsToReturn) throws GenericException, RequestNotValidException {
-    return SolrUtils.find(client, SolrDefaultCollectionRegistry.get(classToReturn), filter, sorter, sublist, facets,
-      fieldsToReturn, new HashMap<>());
+    SolrCollection<T> collection = SolrDefaultCollectionRegistry.get(classToReturn);
+    return queryCache.get(collection.getIndexName(),
+      () -> SolrUtils.find(client, collection, filter, sorter, sublist, facets, fieldsToReturn, new HashMap<>()),
+      "find", filter, sorter, sublist, facets, fieldsToReturn);
   }
 
   public <T extends IsIndexed> IndexResult<T> find(Class<T> classToReturn, Filter filter, Sorter sorter,
@@ -178,7 +372,9 @@ public class DatabaseRowsSolrManager {
 
   public <T extends IsIndexed> Long count(Class<T> classToReturn, Filter filter)
     throws GenericException, RequestNotValidException {
-    return SolrUtils.count(client, SolrDefaultCollectionRegistry.get(classToReturn), filter);
+    SolrCollection<T> collection = SolrDefaultCollectionRegistry.get(classToReturn);
+    return queryCache.get(collection.getIndexName(), () -> SolrUtils.count(client, collection, filter), "count",
+      filter);
   }
 
   public <T extends IsIndexed> T retrieve(Class<T> classToReturn, String id)
@@ -188,17 +384,77 @@ public class DatabaseRowsSolrManager {
 
   public IndexResult<ViewerRow> findRows(String databaseUUID, Filter filter, Sorter sorter, Sublist sublist,
     Facets facets) throws GenericException, RequestNotValidException {
-    return SolrUtils.findRows(client, databaseUUID, filter, sorter, sublist, facets);
+    return findRows(databaseUUID, filter, sorter, sublist, facets, new ArrayList<>(), new HashMap<>());
   }
 
   public IndexResult<ViewerRow> findRows(String databaseUUID, Filter filter, Sorter sorter, Sublist sublist,
                                          Facets facets, List<String> fieldsToReturn) throws GenericException, RequestNotValidException {
-    return SolrUtils.findRows(client, databaseUUID, filter, sorter, sublist, facets, fieldsToReturn, new HashMap<>());
+    return findRows(databaseUUID, filter, sorter, sublist, facets, fieldsToReturn, new HashMap<>());
   }
 
   public IndexResult<ViewerRow> findRows(String databaseUUID, Filter filter, Sorter sorter, Sublist sublist,
     Facets facets, List<String> fieldsToReturn, Map<String, String> extraParameters) throws GenericException, RequestNotValidException {
-    return SolrUtils.findRows(client, databaseUUID, filter, sorter, sublist, facets, fieldsToReturn, extraParameters);
+    return queryCache.get(getRowsIndexName(databaseUUID),
+      () -> SolrUtils.findRows(client, databaseUUID, filter, sorter, sublist, facets, fieldsToReturn, extraParameters),
+      "findRows", filter, sorter, sublist, facets, fieldsToReturn,
+      extraParameters != null ? new TreeMap<>(extraParameters) : null);
+  }
+
+  /**
+   * Finds a page of rows with a Solr cursor, so that reading the page after or
+   * before one that was just read costs the same wherever it is in the table.
+   *
+   * @param cursor
+   *          a token from the previous or next cursor of an earlier result of
+   *          the same query, or null for the first page
+   */
+  public CursorIndexResult<ViewerRow> findRows(String databaseUUID, Filter filter, Sorter sorter, int pageSize,
+    String cursor, List<String> fieldsToReturn, Map<String, String> extraParameters)
+    throws GenericException, RequestNotValidException {
+    String queryKey = RowsCursorCache.getQueryKey(databaseUUID, filter, sorter, fieldsToReturn, extraParameters);
+    long offset = cursor == null ? 0 : RowsCursorCache.getOffset(cursor, queryKey);
+
+    Map.Entry<Long, String> position = cursorCache.getClosestPosition(queryKey, offset);
+    String cursorMark = position.getValue();
+    if (position.getKey() < offset) {
+      // the position was forgotten, walk to it reading only the row ids
+      cursorMark = skipRows(databaseUUID, filter, sorter, queryKey, position.getKey(), cursorMark, offset,
+        extraParameters);
+    }
+
+    Pair<IndexResult<ViewerRow>, String> page = SolrUtils.findRows(client, databaseUUID, filter, sorter, pageSize,
+      cursorMark, fieldsToReturn, extraParameters);
+    IndexResult<ViewerRow> result = page.getFirst();
+    long nextOffset = offset + result.getResults().size();
+    String nextCursor = null;
+    if (!result.getResults().isEmpty() && nextOffset < result.getTotalCount()) {
+      cursorCache.putPosition(queryKey, nextOffset, page.getSecond());
+      nextCursor = RowsCursorCache.getToken(queryKey, nextOffset);
+    }
+    String previousCursor = offset > 0 ? RowsCursorCache.getToken(queryKey, Math.max(0, offset - pageSize)) : null;
+
+    return new CursorIndexResult<>(offset, pageSize, result.getTotalCount(), result.getResults(),
+      result.getFacetResults(), previousCursor, nextCursor);
+  }
+
+  private String skipRows(String databaseUUID, Filter filter, Sorter sorter, String queryKey, long fromOffset,
+    String fromCursorMark, long toOffset, Map<String, String> extraParameters)
+    throws GenericException, RequestNotValidException {
+    List<String> idOnly = Collections.singletonList(ViewerConstants.INDEX_ID);
+    long offset = fromOffset;
+    String cursorMark = fromCursorMark;
+    while (offset < toOffset) {
+      int rows = (int) Math.min(CURSOR_SKIP_PAGE_SIZE, toOffset - offset);
+      Pair<IndexResult<ViewerRow>, String> page = SolrUtils.findRows(client, databaseUUID, filter, sorter, rows,
+        cursorMark, idOnly, extraParameters);
+      if (page.getFirst().getResults().isEmpty()) {
+        break;
+      }
+      offset += page.getFirst().getResults().size();
+      cursorMark = page.getSecond();
+      cursorCache.putPosition(queryKey, offset, cursorMark);
+    }
+    return cursorMark;
   }
 
   public IterableIndexResult findAllRows(String databaseUUID, final Filter filter, final Sorter sorter,
@@ -206,8 +462,25 @@ public class DatabaseRowsSolrManager {
     return findAllRows(databaseUUID, filter, sorter, fieldsToReturn, new HashMap<>());
   }
 
+  /**
+   * Iterates over all the rows matching the filter. In SolrCloud the rows are
+   * streamed by the /export handler when it can return all the fields to return
+   * and sort by them, otherwise they are read page by page with a cursor.
+   */
   public IterableIndexResult findAllRows(String databaseUUID, final Filter filter, final Sorter sorter,
     final List<String> fieldsToReturn, Map<String, String> extraParameters) {
+    if (exportHandlerEnabled && client instanceof CloudSolrClient && extraParameters.isEmpty()) {
+      try {
+        SolrQuery exportQuery = SolrUtils.buildExportQuery(filter, sorter, fieldsToReturn);
+        if (exportQuery != null) {
+          return new IterableIndexResult(new ExportStreamIterator((CloudSolrClient) client,
+            SolrRowsCollectionRegistry.get(databaseUUID), exportQuery));
+        }
+      } catch (RequestNotValidException | IOException e) {
+        LOGGER.warn("Could not stream the rows of database {} with the export handler, paging over them instead",
+          databaseUUID, e);
+      }
+    }
     return new IterableIndexResult(client, databaseUUID, filter, sorter, fieldsToReturn, extraParameters);
   }
 
@@ -222,7 +495,94 @@ public class DatabaseRowsSolrManager {
 
   public <T extends IsIndexed> Long countRows(String databaseUUID, Filter filter)
     throws GenericException, RequestNotValidException {
-    return SolrUtils.countRows(client, databaseUUID, filter);
+    return queryCache.get(getRowsIndexName(databaseUUID), () -> SolrUtils.countRows(client, databaseUUID, filter),
+      "countRows", filter);
+  }
+
+  /**
+   * Searches the rows of all the tables of a database in a single query,
+   * returning how many rows of each table match and the best ones. The result
+   * is kept in its own cache, even when the query cache is off, so going back to
+   * it after opening one of its tables does not query Solr again.
+   */
+  public GroupedIndexResult<ViewerRow> findRowsGroupedByTable(String databaseUUID, Filter filter, int rowsPerTable,
+    List<String> fieldsToReturn) throws GenericException, RequestNotValidException {
+    if (rowsPerTable < 0 || rowsPerTable > DATABASE_SEARCH_MAX_ROWS_PER_TABLE) {
+      throw new RequestNotValidException(
+        "The rows per table must be between 0 and " + DATABASE_SEARCH_MAX_ROWS_PER_TABLE);
+    }
+    List<String> fields = fieldsToReturn != null ? fieldsToReturn : new ArrayList<>();
+    return databaseSearchCache.get(getRowsIndexName(databaseUUID),
+      () -> SolrUtils.findRowsGroupedByTable(client, databaseUUID, filter, rowsPerTable, DATABASE_SEARCH_MAX_TABLES,
+        fields),
+      "findRowsGroupedByTable", filter, rowsPerTable, fields);
+  }
+
+  /**
+   * Searches the rows of several databases at once, reporting each database to
+   * the listener as soon as it answers.
+   *
+   * @return the best rows of all the databases, by score
+   */
+  public List<FederatedRowsSearch.ScoredRow> findRowsAcrossDatabases(List<String> databaseUUIDs, Filter filter,
+    int rows, List<String> fieldsToReturn, long timeoutMs, FederatedRowsSearch.Listener listener) throws IOException {
+    return federatedSearch.search(databaseUUIDs, filter, rows,
+      fieldsToReturn != null ? fieldsToReturn : new ArrayList<>(), timeoutMs, listener);
+  }
+
+  /**
+   * Runs the find and count requests of a batch over the rows of a database at
+   * the same time. The results come back in the order of the requests, and if
+   * one of them fails the whole batch fails.
+   */
+  public BatchIndexResult<ViewerRow> findRows(String databaseUUID, BatchFindRequest batch)
+    throws GenericException, RequestNotValidException {
+    List<FindRequest> findRequests = batch.findRequests != null ? batch.findRequests : Collections.emptyList();
+    List<CountRequest> countRequests = batch.countRequests != null ? batch.countRequests : Collections.emptyList();
+    if (findRequests.size() + countRequests.size() > batchMaxRequests) {
+      throw new RequestNotValidException("A batch can have at most " + batchMaxRequests + " requests");
+    }
+
+    List<Future<IndexResult<ViewerRow>>> results = new ArrayList<>();
+    List<Future<Long>> counts = new ArrayList<>();
+    try {
+      for (FindRequest findRequest : findRequests) {
+        results.add(batchExecutor.submit(() -> findRows(databaseUUID, findRequest.filter, findRequest.sorter,
+          findRequest.sublist, findRequest.facets, findRequest.fieldsToReturn, findRequest.extraParameters)));
+      }
+      for (CountRequest countRequest : countRequests) {
+        counts.add(batchExecutor.submit(() -> countRows(databaseUUID, countRequest.filter)));
+      }
+
+      BatchIndexResult<ViewerRow> ret = new BatchIndexResult<>();
+      for (Future<IndexResult<ViewerRow>> result : results) {
+        ret.getResults().add(getBatchResult(result));
+      }
+      for (Future<Long> count : counts) {
+        ret.getCounts().add(getBatchResult(count));
+      }
+      return ret;
+    } finally {
+      // once a request failed the ones still waiting are pointless
+      results.forEach(result -> result.cancel(false));
+      counts.forEach(count -> count.cancel(false));
+    }
+  }
+
+  private static <T> T getBatchResult(Future<T> future) throws GenericException, RequestNotValidException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GenericException("Interrupted while running the batch", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RequestNotValidException) {
+        throw (RequestNotValidException) e.getCause();
+      } else if (e.getCause() instanceof GenericException) {
+        throw (GenericException) e.getCause();
+      }
+      throw new GenericException("Could not run the batch", e.getCause());
+    }
   }
 
   public ViewerRow retrieveRows(String databaseUUID, String rowUUID) throws NotFoundException, GenericException {
@@ -240,6 +600,7 @@ public class DatabaseRowsSolrManager {
       SolrInputDocument doc = activityLogEntrySolrCollection.toSolrDocument(logEntry);
       client.add(activityLogEntrySolrCollection.getIndexName(), doc);
       client.commit(activityLogEntrySolrCollection.getIndexName(), true, true, true);
+      invalidateQueryCache(activityLogEntrySolrCollection.getIndexName());
     } catch (ViewerException | AuthorizationDeniedException | RequestNotValidException e) {
       LOGGER.debug("Solr error while converting to document", e);
     } catch (IOException e) {
@@ -255,6 +616,7 @@ public class DatabaseRowsSolrManager {
       SolrInputDocument doc = viewerJobSolrCollection.toSolrDocument(batchJob);
       client.add(viewerJobSolrCollection.getIndexName(), doc);
       client.commit(viewerJobSolrCollection.getIndexName(), true, true, true);
+      invalidateQueryCache(viewerJobSolrCollection.getIndexName());
     } catch (ViewerException | AuthorizationDeniedException | RequestNotValidException e) {
       LOGGER.debug("Solr error while converting to document", e);
     } catch (SolrServerException e) {
@@ -264,11 +626,22 @@ public class DatabaseRowsSolrManager {
     }
   }
 
-  public void editBatchJob(String jobUUID, long countRows, long processedRows){
+  /**
+   * Updates the progress of a job, see
+   * {@link com.databasepreservation.common.server.jobs.JobProgressService}.
+   *
+   * @param estimatedSecondsRemaining
+   *          null if not known
+   */
+  public void editBatchJobProgress(String jobUUID, long countRows, long processedRows, long rowsPerSecond,
+    Long estimatedSecondsRemaining) {
     SolrInputDocument doc = new SolrInputDocument();
     doc.addField(ViewerConstants.INDEX_ID, jobUUID);
     doc.addField(ViewerConstants.SOLR_BATCH_JOB_ROWS_TO_PROCESS, SolrUtils.asValueUpdate(countRows));
     doc.addField(ViewerConstants.SOLR_BATCH_JOB_ROWS_PROCESSED, SolrUtils.asValueUpdate(processedRows));
+    doc.addField(ViewerConstants.SOLR_BATCH_JOB_ROWS_PER_SECOND, SolrUtils.asValueUpdate(rowsPerSecond));
+    doc.addField(ViewerConstants.SOLR_BATCH_JOB_ESTIMATED_SECONDS_REMAINING,
+      SolrUtils.asValueUpdate(estimatedSecondsRemaining));
     try {
       insertDocument(ViewerConstants.SOLR_INDEX_BATCH_JOBS_COLLECTION_NAME, doc);
     } catch (ViewerException e) {
@@ -299,6 +672,7 @@ public class DatabaseRowsSolrManager {
       SolrInputDocument doc = savedSearchesCollection.toSolrDocument(savedSearch);
       client.add(savedSearchesCollection.getIndexName(), doc);
       client.commit(savedSearchesCollection.getIndexName(), true, true, true);
+      invalidateQueryCache(savedSearchesCollection.getIndexName());
       // Delegate
       ViewerFactory.getConfigurationManager().addSearch(savedSearch);
     } catch (ViewerException | RequestNotValidException | AuthorizationDeniedException e) {
@@ -320,6 +694,7 @@ public class DatabaseRowsSolrManager {
     try {
       client.add(ViewerConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME, doc);
       client.commit(ViewerConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME, true, true);
+      invalidateQueryCache(ViewerConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME);
       // Delegate
       ViewerFactory.getConfigurationManager().editSearch(databaseUUID, uuid, name, description);
     } catch (SolrException | SolrServerException e) {
@@ -333,6 +708,7 @@ public class DatabaseRowsSolrManager {
     try {
       client.deleteById(ViewerConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME, uuid);
       client.commit(ViewerConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME, true, true);
+      invalidateQueryCache(ViewerConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME);
     } catch (SolrServerException e) {
       throw new SavedSearchException("Solr error while attempting to save search", e);
     } catch (IOException e) {
@@ -344,6 +720,7 @@ public class DatabaseRowsSolrManager {
     try {
       client.deleteById(ViewerConstants.SOLR_INDEX_DATABASES_COLLECTION_NAME, UUID);
       client.commit(ViewerConstants.SOLR_INDEX_DATABASES_COLLECTION_NAME, true, true);
+      invalidateQueryCache(ViewerConstants.SOLR_INDEX_DATABASES_COLLECTION_NAME);
     } catch (SolrServerException e) {
       LOGGER.debug("Solr error while attempting to delete search", e);
     } catch (IOException e) {
@@ -377,6 +754,7 @@ public class DatabaseRowsSolrManager {
       try {
         response = client.add(collection, doc, 1000);
         if (response.getStatus() == 0) {
+          invalidateQueryCache(collection);
           insertedAllDocuments = true;
           break;
         } else {
@@ -510,10 +888,45 @@ public class DatabaseRowsSolrManager {
   public final void addDatabaseField(final String databaseUUID, final String documentUUID,
     List<SolrInputDocument> nestedDocuments) {
     RowsCollection collection = SolrRowsCollectionRegistry.get(databaseUUID);
+    try {
+      insertDocument(collection.getIndexName(), createAddNestedDocumentsUpdate(documentUUID, nestedDocuments));
+    } catch (ViewerException e) {
+      LOGGER.error("Could not update database progress for {}", databaseUUID, e);
+    }
+  }
+
+  /**
+   * Creates the atomic update that adds nested documents to a row, to be sent
+   * with {@link #addDatabaseField} or through a {@link RowsBulkIndexer}.
+   */
+  public SolrInputDocument createAddNestedDocumentsUpdate(final String documentUUID,
+    List<SolrInputDocument> nestedDocuments) {
+    return createAddNestedDocumentsUpdate(documentUUID, nestedDocuments, Collections.emptyList());
+  }
+
+  /**
+   * @param keptNestedRows
+   *          nested rows the row keeps, for when only part of them is rebuilt.
+   *          The search tokens of the nested documents are not stored, so an
+   *          atomic update loses them and they are set again from these rows
+   *          and the new nested documents.
+   */
+  public SolrInputDocument createAddNestedDocumentsUpdate(final String documentUUID,
+    List<SolrInputDocument> nestedDocuments, List<ViewerRow> keptNestedRows) {
     SolrInputDocument doc = new SolrInputDocument();
     doc.addField(ViewerConstants.INDEX_ID, documentUUID);
 
     List<String> fields = new ArrayList<>();
+    for (ViewerRow nestedRow : keptNestedRows) {
+      fields.add(nestedRow.getUuid());
+      fields.add(nestedRow.getNestedUUID());
+      fields.add(nestedRow.getNestedTableId());
+      fields.add(nestedRow.getNestedOriginalUUID());
+      fields.add(nestedRow.getNestedOriginalUUID());
+      for (ViewerCell cell : nestedRow.getCells().values()) {
+        fields.add(cell.getValue());
+      }
+    }
     for (SolrInputDocument nest : nestedDocuments) {
       for (SolrInputField field : nest) {
         fields.add((String) field.getValue());
@@ -526,13 +939,10 @@ public class DatabaseRowsSolrManager {
     doc.addField("type" + ViewerConstants.SOLR_DYN_TEXT_GENERAL, "parent");
 
     // add nested documents to root document
-    doc.addField(ViewerConstants.SOLR_ROWS_NESTED, SolrUtils.addValueUpdate(nestedDocuments));
-
-    try {
-      insertDocument(collection.getIndexName(), doc);
-    } catch (ViewerException e) {
-      LOGGER.error("Could not update database progress for {}", databaseUUID, e);
+    if (!nestedDocuments.isEmpty()) {
+      doc.addField(ViewerConstants.SOLR_ROWS_NESTED, SolrUtils.addValueUpdate(nestedDocuments));
     }
+    return doc;
   }
 
   public SolrInputDocument createNestedDocument(String uuid, String originalRowUUID, String tableRowUUID,
@@ -555,13 +965,47 @@ public class DatabaseRowsSolrManager {
 
   public void deleteNestedDocuments(String databaseUUID, String documentUUID) {
     RowsCollection collection = SolrRowsCollectionRegistry.get(databaseUUID);
-    SolrInputDocument doc = new SolrInputDocument();
-    doc.addField(ViewerConstants.INDEX_ID, documentUUID);
-    doc.addField(ViewerConstants.SOLR_ROWS_NESTED, SolrUtils.asValueUpdate(null));
     try {
-      insertDocument(collection.getIndexName(), doc);
+      insertDocument(collection.getIndexName(), createDeleteNestedDocumentsUpdate(documentUUID));
     } catch (ViewerException e) {
       LOGGER.error("Could not delete nested document for {}", databaseUUID, e);
     }
   }
+
+  /**
+   * Deletes the nested documents that were built from the given related tables,
+   * leaving the other nested documents of the rows in place.
+   *
+   * @param fromRowUUID
+   *          first row uuid (inclusive) whose nested documents are deleted, null
+   *          for no lower bound
+   * @param toRowUUID
+   *          last row uuid (inclusive) whose nested documents are deleted, null
+   *          for no upper bound
+   */
+  public void deleteNestedDocuments(String databaseUUID, List<String> nestedUUIDs, String fromRowUUID,
+    String toRowUUID) throws GenericException, RequestNotValidException {
+    RowsCollection collection = SolrRowsCollectionRegistry.get(databaseUUID);
+    Filter filter = new Filter(new OneOfManyFilterParameter(ViewerConstants.SOLR_ROWS_NESTED_UUID, nestedUUIDs));
+    if (fromRowUUID != null || toRowUUID != null) {
+      // nested documents point to their row through the block join root
+      filter.add(new StringRangeFilterParameter(ViewerConstants.SOLR_ROWS_NESTED_ROOT, fromRowUUID, toRowUUID));
+    }
+    SolrUtils.delete(client, collection, filter);
+    invalidateQueryCache(collection.getIndexName());
+  }
+
+  /**
+   * Creates the atomic update that removes every nested document of a row.
+   */
+  public SolrInputDocument createDeleteNestedDocumentsUpdate(String documentUUID) {
+    SolrInputDocument doc = new SolrInputDocument();
+    doc.addField(ViewerConstants.INDEX_ID, documentUUID);
+    doc.addField(ViewerConstants.SOLR_ROWS_NESTED, SolrUtils.asValueUpdate(null));
+    return doc;
+  }
+
+  private static String getRowsIndexName(String databaseUUID) {
+    return ViewerConstants.SOLR_INDEX_ROW_COLLECTION_NAME_PREFIX + databaseUUID;
+  }
 }
@@ -0,0 +1,251 @@
+package com.databasepreservation.common.server.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.client.index.filter.Filter;
+import com.databasepreservation.common.client.models.structure.ViewerRow;
+import com.databasepreservation.common.exceptions.ViewerException;
+import com.databasepreservation.common.server.index.schema.SolrRowsCollectionRegistry;
+import com.databasepreservation.common.server.index.schema.collections.RowsCollection;
+import com.databasepreservation.common.server.index.utils.SolrUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Searches the rows of several databases at once, sending the query to the rows
+ * collection of each database in parallel on a bounded pool of threads.
+ *
+ * Each database is reported to a {@link Listener} as soon as it answers, fails
+ * or runs out of time, and the best rows of all the databases are merged by
+ * score at the end. The whole filter goes in the main query, so that every
+ * clause counts towards the score; rows with the same score are ordered by
+ * database and row uuid. Solr stops searching a collection when its time is up
+ * and answers with what it found until then. A collection that still did not
+ * answer a while later is given up, and the client, which must give up on
+ * requests after {@link #getSocketTimeout(long)}, frees the thread waiting for
+ * it.
+ */
+public class FederatedRowsSearch {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FederatedRowsSearch.class);
+  private static final String SCORE_FIELD = "score";
+  // time given to a collection after its timeout to send what it found
+  private static final long TIMEOUT_GRACE_MS = 2000;
+  private static final long POLL_INTERVAL_MS = 100;
+
+  public enum Status {
+    ANSWERED, PARTIAL, TIMED_OUT, FAILED
+  }
+
+  public interface Listener {
+    void onDatabase(DatabaseHits hits) throws IOException;
+  }
+
+  public static class ScoredRow {
+    private final String databaseUUID;
+    private final float score;
+    private final ViewerRow row;
+
+    public ScoredRow(String databaseUUID, float score, ViewerRow row) {
+      this.databaseUUID = databaseUUID;
+      this.score = score;
+      this.row = row;
+    }
+
+    public String getDatabaseUUID() {
+      return databaseUUID;
+    }
+
+    public float getScore() {
+      return score;
+    }
+
+    public ViewerRow getRow() {
+      return row;
+    }
+  }
+
+  public static class DatabaseHits {
+    private final String databaseUUID;
+    private final Status status;
+    private final long totalCount;
+    private final List<ScoredRow> rows;
+    private final String error;
+
+    public DatabaseHits(String databaseUUID, Status status, long totalCount, List<ScoredRow> rows, String error) {
+      this.databaseUUID = databaseUUID;
+      this.status = status;
+      this.totalCount = totalCount;
+      this.rows = rows;
+      this.error = error;
+    }
+
+    public String getDatabaseUUID() {
+      return databaseUUID;
+    }
+
+    public Status getStatus() {
+      return status;
+    }
+
+    public long getTotalCount() {
+      return totalCount;
+    }
+
+    public List<ScoredRow> getRows() {
+      return rows;
+    }
+
+    public String getError() {
+      return error;
+    }
+  }
+
+  private final SolrClient client;
+  private final ExecutorService executor;
+  private final long maxTimeoutMs;
+
+  /**
+   * @param maxTimeoutMs
+   *          the longest time a database may be given to answer
+   */
+  public FederatedRowsSearch(SolrClient client, int threads, long maxTimeoutMs) {
+    this.client = client;
+    this.maxTimeoutMs = maxTimeoutMs;
+    this.executor = Executors.newFixedThreadPool(Math.max(1, threads),
+      new ThreadFactoryBuilder().setNameFormat("rows-federated-search-%d").setDaemon(true).build());
+  }
+
+  /**
+   * @return the socket timeout of the client of a search whose databases have
+   *         at most the given time to answer
+   */
+  public static int getSocketTimeout(long maxTimeoutMs) {
+    return (int) Math.min(Integer.MAX_VALUE, maxTimeoutMs + TIMEOUT_GRACE_MS);
+  }
+
+  /**
+   * @param rows
+   *          the number of rows returned for each database and merged at the
+   *          end
+   * @param timeoutMs
+   *          the time each database has to answer, counted from when its
+   *          search starts, at most the maximum given to the constructor
+   * @return the best rows of all the databases, by score
+   * @throws IOException
+   *           if the listener failed, in which case the search is stopped
+   */
+  public List<ScoredRow> search(List<String> databaseUUIDs, Filter filter, int rows, List<String> fieldsToReturn,
+    long timeoutMs, Listener listener) throws IOException {
+    CompletionService<DatabaseHits> completionService = new ExecutorCompletionService<>(executor);
+    Map<Future<DatabaseHits>, String> running = new HashMap<>();
+    Map<String, Long> startTimes = new ConcurrentHashMap<>();
+    List<ScoredRow> merged = new ArrayList<>();
+    long timeout = Math.min(timeoutMs, maxTimeoutMs);
+
+    try {
+      for (String databaseUUID : databaseUUIDs) {
+        running.put(completionService.submit(() -> {
+          startTimes.put(databaseUUID, System.currentTimeMillis());
+          return searchDatabase(databaseUUID, filter, rows, fieldsToReturn, timeout);
+        }), databaseUUID);
+      }
+
+      while (!running.isEmpty()) {
+        Future<DatabaseHits> done = completionService.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (done != null && running.remove(done) != null) {
+          DatabaseHits hits = getHits(done);
+          merged.addAll(hits.getRows());
+          listener.onDatabase(hits);
+        }
+
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Future<DatabaseHits>, String> entry : new ArrayList<>(running.entrySet())) {
+          Long startTime = startTimes.get(entry.getValue());
+          if (startTime != null && now - startTime > timeout + TIMEOUT_GRACE_MS) {
+            entry.getKey().cancel(true);
+            running.remove(entry.getKey());
+            listener.onDatabase(new DatabaseHits(entry.getValue(), Status.TIMED_OUT, 0, new ArrayList<>(), null));
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while searching the databases", e);
+    } finally {
+      running.keySet().forEach(future -> future.cancel(true));
+    }
+
+    merged.sort(Comparator.comparing(ScoredRow::getScore).reversed().thenComparing(ScoredRow::getDatabaseUUID)
+      .thenComparing(row -> row.getRow().getUuid()));
+    return merged.size() > rows ? new ArrayList<>(merged.subList(0, rows)) : merged;
+  }
+
+  private static DatabaseHits getHits(Future<DatabaseHits> future) throws InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException | CancellationException e) {
+      // searchDatabase reports its own failures, this is not expected
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private DatabaseHits searchDatabase(String databaseUUID, Filter filter, int rows, List<String> fieldsToReturn,
+    long timeoutMs) {
+    RowsCollection collection = SolrRowsCollectionRegistry.get(databaseUUID);
+    if (collection == null) {
+      return new DatabaseHits(databaseUUID, Status.FAILED, 0, new ArrayList<>(), "Database has no rows collection");
+    }
+
+    try {
+      // not split in filter queries, which would not score
+      SolrQuery query = new SolrQuery(SolrUtils.parseFilter(filter));
+      query.setRows(rows);
+      query.setTimeAllowed((int) Math.min(Integer.MAX_VALUE, timeoutMs));
+      query.addSort(SCORE_FIELD, SolrQuery.ORDER.desc);
+      query.addSort(ViewerConstants.INDEX_ID, SolrQuery.ORDER.asc);
+      List<String> fields = new ArrayList<>(fieldsToReturn);
+      if (fields.isEmpty()) {
+        fields.add("*");
+      }
+      fields.add(SCORE_FIELD);
+      query.setFields(fields.toArray(new String[0]));
+
+      QueryResponse response = client.query(collection.getIndexName(), query);
+      List<ScoredRow> found = new ArrayList<>();
+      for (SolrDocument doc : response.getResults()) {
+        Object score = doc.getFieldValue(SCORE_FIELD);
+        found.add(new ScoredRow(databaseUUID, score instanceof Number ? ((Number) score).floatValue() : 0,
+          collection.fromSolrDocument(doc)));
+      }
+      boolean partial = Boolean.TRUE.equals(response.getResponseHeader().get("partialResults"));
+      return new DatabaseHits(databaseUUID, partial ? Status.PARTIAL : Status.ANSWERED,
+        response.getResults().getNumFound(), found, null);
+    } catch (RequestNotValidException | ViewerException | SolrServerException | IOException | RuntimeException e) {
+      LOGGER.warn("Could not search the rows of database {}", databaseUUID, e);
+      return new DatabaseHits(databaseUUID, Status.FAILED, 0, new ArrayList<>(), e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package com.databasepreservation.common.server.index;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.utils.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.common.client.index.GroupedIndexResult;
+import com.databasepreservation.common.client.index.IndexResult;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Results of the queries made through {@link DatabaseRowsSolrManager}, kept
+ * per collection. The cache is bounded by the number of documents it holds and
+ * entries expire after a while. Every change to a collection drops its
+ * entries, and no result of that collection is kept until Solr has made the
+ * change visible, so a result that was read before the change is never served
+ * after it.
+ *
+ * Callers change the results they get (e.g. translating the facets), so the
+ * cache keeps a copy of each result and hands out a new copy on every hit.
+ * Results that cannot be copied are not kept. The hit and miss counters are
+ * exported with the other metrics.
+ */
+public class QueryResultCache {
+  public interface Query<T> {
+    T run() throws GenericException, RequestNotValidException;
+  }
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryResultCache.class);
+
+  private final Cache<Key, Object> cache;
+  private final Map<String, CollectionState> collections = new ConcurrentHashMap<>();
+
+  public QueryResultCache(long maxDocuments, long ttlSeconds) {
+    this("query_cache", maxDocuments, ttlSeconds);
+  }
+
+  /**
+   * @param name
+   *          name of the cache in the metrics
+   * @param maxDocuments
+   *          number of documents (an entry weighs the documents it holds
+   *          plus one) kept at most, 0 turns the cache off
+   */
+  public QueryResultCache(String name, long maxDocuments, long ttlSeconds) {
+    if (maxDocuments > 0) {
+      cache = CacheBuilder.newBuilder().maximumWeight(maxDocuments).weigher(QueryResultCache::weigh)
+        .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).recordStats().build();
+      GuavaCacheMetrics.monitor(Metrics.globalRegistry, cache, "dbvtk.solr." + name);
+    } else {
+      cache = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * @return the cached result of the query, or the result of running it
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(String collection, Query<T> query, Object... keyParts)
+    throws GenericException, RequestNotValidException {
+    if (cache == null) {
+      return query.run();
+    }
+
+    Key key = new Key(collection, JsonUtils.getJsonFromObject(Arrays.asList(keyParts)));
+    Object cached = cache.getIfPresent(key);
+    if (cached != null) {
+      return (T) copy(cached);
+    }
+
+    CollectionState state = getState(collection);
+    long generation = state.generation.get();
+    T result = query.run();
+    if (result != null && state.generation.get() == generation
+      && System.currentTimeMillis() >= state.notBefore.get()) {
+      try {
+        cache.put(key, copy(result));
+      } catch (SerializationException e) {
+        LOGGER.debug("Could not copy the result of {} to cache it", key.query, e);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Drops the results of a collection that was changed.
+   *
+   * @param visibilityDelayMs
+   *          time Solr may take to make the change visible (e.g. its
+   *          commitWithin), during which no result of the collection is kept
+   */
+  public void invalidate(String collection, long visibilityDelayMs) {
+    if (cache == null) {
+      return;
+    }
+
+    CollectionState state = getState(collection);
+    state.generation.incrementAndGet();
+    long notBefore = System.currentTimeMillis() + visibilityDelayMs;
+    state.notBefore.accumulateAndGet(notBefore, Math::max);
+    cache.asMap().keySet().removeIf(key -> key.collection.equals(collection));
+  }
+
+  public CacheStats getStats() {
+    return cache != null ? cache.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+  }
+
+  private static Object copy(Object value) {
+    if (value instanceof Number || value instanceof String) {
+      return value;
+    } else if (!(value instanceof Serializable)) {
+      throw new SerializationException(value.getClass().getName() + " is not serializable");
+    }
+    return SerializationUtils.clone((Serializable) value);
+  }
+
+  private CollectionState getState(String collection) {
+    return collections.computeIfAbsent(collection, k -> new CollectionState());
+  }
+
+  private static int weigh(Key key, Object value) {
+    if (value instanceof IndexResult && ((IndexResult<?>) value).getResults() != null) {
+      return ((IndexResult<?>) value).getResults().size() + 1;
+    } else if (value instanceof GroupedIndexResult) {
+      int weight = 1;
+      for (IndexResult<?> group : ((GroupedIndexResult<?>) value).getGroups().values()) {
+        weight += weigh(key, group);
+      }
+      return weight;
+    }
+    return 1;
+  }
+
+  private static class CollectionState {
+    private final AtomicLong generation = new AtomicLong(0);
+    private final AtomicLong notBefore = new AtomicLong(0);
+  }
+
+  private static final class Key {
+    private final String collection;
+    private final String query;
+
+    Key(String collection, String query) {
+      this.collection = collection;
+      this.query = query;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return collection.equals(key.collection) && query.equals(key.query);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(collection, query);
+    }
+  }
+}
@@ -0,0 +1,305 @@
+package com.databasepreservation.common.server.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.roda.core.data.exceptions.AuthorizationDeniedException;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.common.client.models.structure.ViewerRow;
+import com.databasepreservation.common.exceptions.ViewerException;
+import com.databasepreservation.common.server.index.schema.collections.RowsCollection;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Pipelined bulk indexer for the rows of a database. Documents are grouped
+ * into batches bounded by document count and by (estimated) size, and the
+ * batches are handed over through a bounded queue to a small pool of sender
+ * threads, so the producer only blocks when every sender is busy and the
+ * queue is full.
+ *
+ * A batch that fails is retried as a whole. When a batch exhausts its retries
+ * the failure is kept and reported on the next call to {@link #add},
+ * {@link #flush()} or {@link #close()}.
+ */
+public class RowsBulkIndexer implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RowsBulkIndexer.class);
+
+  private static final int COMMIT_WITHIN_MS = 10000;
+  private static final long RETRY_BASE_DELAY_MS = 1000;
+  private static final List<SolrInputDocument> POISON = new ArrayList<>();
+
+  private final SolrClient client;
+  private final RowsCollection collection;
+  private final List<QueryResultCache> queryCaches;
+  private final int batchSize;
+  private final long batchMaxBytes;
+  private final int maxRetries;
+
+  private final BlockingQueue<List<SolrInputDocument>> queue;
+  private final ExecutorService senders;
+  private final int senderCount;
+
+  private final Object pendingLock = new Object();
+  private long pendingBatches = 0;
+  private final AtomicReference<Exception> failure = new AtomicReference<>();
+  private final AtomicLong indexedDocuments = new AtomicLong(0);
+
+  private List<SolrInputDocument> currentBatch;
+  private long currentBatchBytes = 0;
+  private boolean closed = false;
+
+  public RowsBulkIndexer(SolrClient client, RowsCollection collection, List<QueryResultCache> queryCaches,
+    int batchSize, long batchMaxBytes, int senderCount, int queueCapacity, int maxRetries) {
+    this.client = client;
+    this.collection = collection;
+    this.queryCaches = queryCaches;
+    this.batchSize = Math.max(1, batchSize);
+    this.batchMaxBytes = Math.max(1, batchMaxBytes);
+    this.maxRetries = Math.max(0, maxRetries);
+    this.senderCount = Math.max(1, senderCount);
+    this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    this.currentBatch = new ArrayList<>(this.batchSize);
+
+    this.senders = Executors.newFixedThreadPool(this.senderCount, new ThreadFactoryBuilder()
+      .setNameFormat("rows-indexer-" + collection.getDatabaseUUID() + "-%d").setDaemon(true).build());
+    for (int i = 0; i < this.senderCount; i++) {
+      senders.submit(this::sendLoop);
+    }
+  }
+
+  public String getIndexName() {
+    return collection.getIndexName();
+  }
+
+  public long getIndexedDocuments() {
+    return indexedDocuments.get();
+  }
+
+  public void addRow(ViewerRow row) throws ViewerException {
+    try {
+      add(collection.toSolrDocument(row));
+    } catch (RequestNotValidException | GenericException | NotFoundException | AuthorizationDeniedException e) {
+      throw new ViewerException(e);
+    }
+  }
+
+  public void add(SolrInputDocument doc) throws ViewerException {
+    checkFailure();
+    if (closed) {
+      throw new ViewerException("Bulk indexer for collection " + getIndexName() + " is already closed");
+    }
+
+    currentBatch.add(doc);
+    currentBatchBytes += estimateSize(doc);
+
+    if (currentBatch.size() >= batchSize || currentBatchBytes >= batchMaxBytes) {
+      dispatchCurrentBatch();
+    }
+  }
+
+  /**
+   * Sends the batch being filled and waits for every in-flight batch to be
+   * acknowledged by Solr. Documents are visible to a commit issued afterwards.
+   *
+   * @throws ViewerException
+   *           if any batch could not be indexed
+   */
+  public void flush() throws ViewerException {
+    checkFailure();
+    if (!currentBatch.isEmpty()) {
+      dispatchCurrentBatch();
+    }
+
+    synchronized (pendingLock) {
+      while (pendingBatches > 0 && failure.get() == null) {
+        try {
+          pendingLock.wait(1000);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new ViewerException("Interrupted while waiting for batches to be indexed", e);
+        }
+      }
+    }
+    checkFailure();
+  }
+
+  @Override
+  public void close() throws ViewerException {
+    if (closed) {
+      return;
+    }
+
+    try {
+      flush();
+    } finally {
+      closed = true;
+      for (int i = 0; i < senderCount; i++) {
+        if (!queue.offer(POISON)) {
+          break;
+        }
+      }
+      senders.shutdown();
+      try {
+        if (!senders.awaitTermination(1, TimeUnit.MINUTES)) {
+          senders.shutdownNow();
+        }
+      } catch (InterruptedException e) {
+        senders.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+      LOGGER.debug("Bulk indexer for {} closed after indexing {} documents", getIndexName(),
+        indexedDocuments.get());
+    }
+  }
+
+  /**
+   * Stops the sender threads without waiting for the pending batches, which
+   * are discarded. Used when the ingestion fails or is cancelled; does nothing
+   * if the indexer was already closed.
+   */
+  public void abort() {
+    if (closed) {
+      return;
+    }
+
+    closed = true;
+    currentBatch = new ArrayList<>();
+    currentBatchBytes = 0;
+    queue.clear();
+    senders.shutdownNow();
+    LOGGER.debug("Bulk indexer for {} aborted after indexing {} documents", getIndexName(), indexedDocuments.get());
+  }
+
+  private void dispatchCurrentBatch() throws ViewerException {
+    List<SolrInputDocument> batch = currentBatch;
+    currentBatch = new ArrayList<>(batchSize);
+    currentBatchBytes = 0;
+
+    synchronized (pendingLock) {
+      pendingBatches++;
+    }
+
+    try {
+      // only blocks when all senders are busy and the queue is full
+      while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+        checkFailure();
+      }
+    } catch (InterruptedException e) {
+      batchDone();
+      Thread.currentThread().interrupt();
+      throw new ViewerException("Interrupted while queueing batch for indexing", e);
+    } catch (ViewerException e) {
+      batchDone();
+      throw e;
+    }
+  }
+
+  private void sendLoop() {
+    try {
+      while (true) {
+        List<SolrInputDocument> batch = queue.take();
+        if (batch == POISON) {
+          break;
+        }
+
+        try {
+          if (failure.get() == null) {
+            sendWithRetries(batch);
+          }
+        } catch (ViewerException e) {
+          failure.compareAndSet(null, e);
+        } finally {
+          batchDone();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void sendWithRetries(List<SolrInputDocument> batch) throws ViewerException {
+    Exception lastError = null;
+
+    for (int attempt = 0; attempt <= maxRetries; attempt++) {
+      if (attempt > 0) {
+        LOGGER.debug("Retrying batch of {} documents in collection {} ({}/{})", batch.size(), getIndexName(),
+          attempt, maxRetries);
+        try {
+          Thread.sleep(RETRY_BASE_DELAY_MS * attempt);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new ViewerException("Interrupted while retrying batch", e);
+        }
+      }
+
+      try {
+        UpdateResponse response = client.add(getIndexName(), batch, COMMIT_WITHIN_MS);
+        if (response.getStatus() == 0) {
+          queryCaches.forEach(queryCache -> queryCache.invalidate(getIndexName(), COMMIT_WITHIN_MS));
+          indexedDocuments.addAndGet(batch.size());
+          return;
+        }
+        LOGGER.warn("Could not insert a document batch in collection {}. Response: {}", getIndexName(), response);
+        lastError = new ViewerException("Solr returned status " + response.getStatus());
+      } catch (SolrException | SolrServerException | IOException e) {
+        LOGGER.warn("Could not insert a document batch in collection {} (attempt {})", getIndexName(), attempt + 1,
+          e);
+        lastError = e;
+      }
+    }
+
+    throw new ViewerException("Could not insert a document batch of " + batch.size() + " documents in collection "
+      + getIndexName() + " after " + (maxRetries + 1) + " attempts", lastError);
+  }
+
+  private void batchDone() {
+    synchronized (pendingLock) {
+      pendingBatches--;
+      pendingLock.notifyAll();
+    }
+  }
+
+  private void checkFailure() throws ViewerException {
+    Exception e = failure.get();
+    if (e != null) {
+      if (e instanceof ViewerException) {
+        throw (ViewerException) e;
+      }
+      throw new ViewerException(e);
+    }
+  }
+
+  /**
+   * Rough size of a document as sent over the wire, enough to keep batches of
+   * very wide rows (e.g. large text columns) from growing without bound.
+   */
+  private static long estimateSize(SolrInputDocument doc) {
+    long size = 0;
+    for (SolrInputField field : doc) {
+      size += field.getName().length();
+      for (Object value : field) {
+        size += value == null ? 0 : value.toString().length();
+      }
+    }
+    return size * 2;
+  }
+}
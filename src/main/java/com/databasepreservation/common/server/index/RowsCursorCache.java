@@ -0,0 +1,119 @@
+package com.databasepreservation.common.server.index;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.utils.JsonUtils;
+
+import com.databasepreservation.common.client.index.filter.Filter;
+import com.databasepreservation.common.client.index.sort.Sorter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Remembers the Solr cursor marks of the pages recently read with a cursor,
+ * for each query (database, filter, sorter, fields and extra parameters), so
+ * that the page before or after one that was just read starts straight from a
+ * cursor mark instead of making Solr collect every row before it.
+ *
+ * The tokens given to the clients only hold a digest of the query and the
+ * offset of the page, the cursor marks stay on the server.
+ */
+public class RowsCursorCache {
+  // offset zero always starts at the first cursor mark
+  public static final String FIRST_CURSOR_MARK = "*";
+
+  private static final char TOKEN_SEPARATOR = ':';
+  private static final int MAX_QUERIES = 500;
+  private static final int MAX_POSITIONS_PER_QUERY = 128;
+  private static final long EXPIRE_AFTER_ACCESS_MINUTES = 30;
+
+  private final Cache<String, TreeMap<Long, String>> positions = CacheBuilder.newBuilder().maximumSize(MAX_QUERIES)
+    .expireAfterAccess(EXPIRE_AFTER_ACCESS_MINUTES, TimeUnit.MINUTES).build();
+
+  public static String getQueryKey(String databaseUUID, Filter filter, Sorter sorter, List<String> fieldsToReturn,
+    Map<String, String> extraParameters) throws GenericException {
+    String query = databaseUUID + TOKEN_SEPARATOR + JsonUtils.getJsonFromObject(filter) + TOKEN_SEPARATOR
+      + JsonUtils.getJsonFromObject(sorter) + TOKEN_SEPARATOR + JsonUtils.getJsonFromObject(fieldsToReturn)
+      + TOKEN_SEPARATOR
+      + JsonUtils.getJsonFromObject(extraParameters != null ? new TreeMap<>(extraParameters) : new TreeMap<>());
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(query.getBytes(StandardCharsets.UTF_8));
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new GenericException("Could not digest the query", e);
+    }
+  }
+
+  public static String getToken(String queryKey, long offset) {
+    String token = queryKey + TOKEN_SEPARATOR + offset;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @return the offset of the page the token asks for
+   * @throws RequestNotValidException
+   *           if the token is malformed or was given for another query
+   */
+  public static long getOffset(String token, String queryKey) throws RequestNotValidException {
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      int separator = decoded.lastIndexOf(TOKEN_SEPARATOR);
+      if (separator < 0 || !queryKey.equals(decoded.substring(0, separator))) {
+        throw new RequestNotValidException("The cursor does not belong to this query");
+      }
+      long offset = Long.parseLong(decoded.substring(separator + 1));
+      if (offset < 0) {
+        throw new RequestNotValidException("Invalid cursor");
+      }
+      return offset;
+    } catch (IllegalArgumentException e) {
+      throw new RequestNotValidException("Invalid cursor", e);
+    }
+  }
+
+  /**
+   * @return the cursor mark of the closest known position at or before the
+   *         offset, the key being that position
+   */
+  public Map.Entry<Long, String> getClosestPosition(String queryKey, long offset) throws GenericException {
+    TreeMap<Long, String> queryPositions = getPositions(queryKey);
+    synchronized (queryPositions) {
+      return queryPositions.floorEntry(offset);
+    }
+  }
+
+  public void putPosition(String queryKey, long offset, String cursorMark) throws GenericException {
+    TreeMap<Long, String> queryPositions = getPositions(queryKey);
+    synchronized (queryPositions) {
+      queryPositions.put(offset, cursorMark);
+      while (queryPositions.size() > MAX_POSITIONS_PER_QUERY) {
+        // keep the positions around the one being read
+        long first = queryPositions.higherKey(0L);
+        long last = queryPositions.lastKey();
+        queryPositions.remove(offset - first > last - offset ? first : last);
+      }
+    }
+  }
+
+  private TreeMap<Long, String> getPositions(String queryKey) throws GenericException {
+    try {
+      return positions.get(queryKey, () -> {
+        TreeMap<Long, String> queryPositions = new TreeMap<>();
+        queryPositions.put(0L, FIRST_CURSOR_MARK);
+        return queryPositions;
+      });
+    } catch (ExecutionException e) {
+      throw new GenericException("Could not get the cursor positions", e);
+    }
+  }
+}
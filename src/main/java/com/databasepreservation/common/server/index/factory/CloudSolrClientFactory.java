@@ -38,6 +38,15 @@ public class CloudSolrClientFactory extends SolrClientFactory<CloudSolrClient> {
     }
 
     protected CloudSolrClient configureSolrClient() {
+        return getClientBuilder().build();
+    }
+
+    @Override
+    public CloudSolrClient createSolrClient(int socketTimeoutMs) {
+        return getClientBuilder().withSocketTimeout(socketTimeoutMs).build();
+    }
+
+    private CloudSolrClient.Builder getClientBuilder() {
         String solrCloudZooKeeperUrls = ViewerConfiguration.getInstance()
                 .getViewerConfigurationAsString("localhost:9983", ViewerConfiguration.PROPERTY_SOLR_ZOOKEEPER_HOSTS);
 
@@ -65,7 +74,7 @@ public class CloudSolrClientFactory extends SolrClientFactory<CloudSolrClient> {
             zkChroot = Optional.empty();
         }
 
-        return new CloudSolrClient.Builder(zkHosts, zkChroot).build();
+        return new CloudSolrClient.Builder(zkHosts, zkChroot);
     }
 
     protected void waitForSolrToInitialize() {
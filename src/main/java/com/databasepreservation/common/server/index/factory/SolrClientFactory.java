@@ -60,6 +60,15 @@ public abstract class SolrClientFactory<T extends SolrClient> {
         return solrClient;
     }
 
+    /**
+     * @return a client whose requests give up when Solr sends nothing for the
+     *         given time, or the shared client if it does not go through the
+     *         network
+     */
+    public SolrClient createSolrClient(int socketTimeoutMs) {
+        return getSolrClient();
+    }
+
     private Path tempSolrConf = null;
 
     protected synchronized Path createTempSolrConfigurationDir() throws IOException {
@@ -5,10 +5,12 @@ import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_
 import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_JOB_DATABASE_NAME;
 import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_JOB_DATABASE_UUID;
 import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_JOB_END_TIME;
+import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_JOB_ESTIMATED_SECONDS_REMAINING;
 import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_JOB_EXIT_CODE;
 import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_JOB_EXIT_DESCRIPTION;
 import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_JOB_ID;
 import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_JOB_NAME;
+import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_JOB_ROWS_PER_SECOND;
 import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_JOB_ROWS_PROCESSED;
 import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_JOB_ROWS_TO_PROCESS;
 import static com.databasepreservation.common.client.ViewerConstants.SOLR_BATCH_JOB_SCHEMA_NAME;
@@ -81,6 +83,9 @@ public class BatchJobsCollection extends AbstractSolrCollection<ViewerJob> {
     fields.add(new Field(SOLR_BATCH_JOB_EXIT_DESCRIPTION, Field.TYPE_STRING).setIndexed(true).setRequired(false));
     fields.add(new Field(SOLR_BATCH_JOB_ROWS_TO_PROCESS, Field.TYPE_LONG).setIndexed(true).setRequired(false));
     fields.add(new Field(SOLR_BATCH_JOB_ROWS_PROCESSED, Field.TYPE_LONG).setIndexed(true).setRequired(false));
+    fields.add(new Field(SOLR_BATCH_JOB_ROWS_PER_SECOND, Field.TYPE_LONG).setIndexed(true).setRequired(false));
+    fields.add(
+      new Field(SOLR_BATCH_JOB_ESTIMATED_SECONDS_REMAINING, Field.TYPE_LONG).setIndexed(true).setRequired(false));
 
     return fields;
   }
@@ -106,6 +111,8 @@ public class BatchJobsCollection extends AbstractSolrCollection<ViewerJob> {
     doc.addField(SOLR_BATCH_JOB_EXIT_DESCRIPTION, viewerJob.getExitDescription());
     doc.addField(SOLR_BATCH_JOB_ROWS_TO_PROCESS, viewerJob.getRowsToProcess());
     doc.addField(SOLR_BATCH_JOB_ROWS_PROCESSED, viewerJob.getProcessRows());
+    doc.addField(SOLR_BATCH_JOB_ROWS_PER_SECOND, viewerJob.getRowsPerSecond());
+    doc.addField(SOLR_BATCH_JOB_ESTIMATED_SECONDS_REMAINING, viewerJob.getEstimatedSecondsRemaining());
 
     return doc;
   }
@@ -131,6 +138,9 @@ public class BatchJobsCollection extends AbstractSolrCollection<ViewerJob> {
     viewerJob.setExitDescription(SolrUtils.objectToString(doc.get(SOLR_BATCH_JOB_EXIT_DESCRIPTION), null));
     viewerJob.setRowsToProcess(SolrUtils.objectToLong(doc.get(SOLR_BATCH_JOB_ROWS_TO_PROCESS), null));
     viewerJob.setProcessRows(SolrUtils.objectToLong(doc.get(SOLR_BATCH_JOB_ROWS_PROCESSED), null));
+    viewerJob.setRowsPerSecond(SolrUtils.objectToLong(doc.get(SOLR_BATCH_JOB_ROWS_PER_SECOND), null));
+    viewerJob.setEstimatedSecondsRemaining(
+      SolrUtils.objectToLong(doc.get(SOLR_BATCH_JOB_ESTIMATED_SECONDS_REMAINING), null));
 
     return viewerJob;
   }
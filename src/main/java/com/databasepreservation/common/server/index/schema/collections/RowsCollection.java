@@ -12,6 +12,7 @@ import static com.databasepreservation.common.client.ViewerConstants.SOLR_ROWS_N
 import static com.databasepreservation.common.client.ViewerConstants.SOLR_ROWS_TABLE_ID;
 import static com.databasepreservation.common.client.ViewerConstants.SOLR_ROWS_TABLE_UUID;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -21,8 +22,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.GenericSolrRequest;
+import org.apache.solr.client.solrj.request.RequestWriter;
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
 import org.roda.core.data.exceptions.AuthorizationDeniedException;
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
@@ -41,11 +49,25 @@ import com.databasepreservation.common.server.index.schema.Field;
 import com.databasepreservation.common.server.index.schema.SolrBootstrapUtils;
 import com.databasepreservation.common.server.index.schema.SolrCollection;
 import com.databasepreservation.common.server.index.schema.SolrRowsCollectionRegistry;
+import com.databasepreservation.common.server.index.utils.JsonTransformer;
 import com.databasepreservation.common.server.index.utils.SolrUtils;
 
 public class RowsCollection extends AbstractSolrCollection<ViewerRow> {
   private static final Logger LOGGER = LoggerFactory.getLogger(RowsCollection.class);
 
+  // editable properties changed by the bulk-load profile, see Solr Config API;
+  // the Config API rejects the whole request if any of them is not editable
+  private static final List<String> BULK_LOAD_PROPERTIES = Arrays.asList("updateHandler.autoSoftCommit.maxTime",
+    "updateHandler.commitWithin.softCommit", "query.filterCache.autowarmCount",
+    "query.queryResultCache.autowarmCount");
+
+  // user properties referenced by solrconfig.xml, with their browsing values
+  private static final String RAM_BUFFER_USER_PROPERTY = "dbvtk.ramBufferSizeMB";
+  private static final int BROWSING_RAM_BUFFER_SIZE_MB = 100;
+  private static final String UPDATE_LOG_USER_PROPERTY = "dbvtk.updateLog.enable";
+
+  private static final int CONFIG_UPDATE_TIMEOUT_SECS = 60;
+
   private String databaseUUID;
 
   public RowsCollection(String databaseUUID) {
@@ -212,4 +234,70 @@ public class RowsCollection extends AbstractSolrCollection<ViewerRow> {
     }
 
   }
+
+  /**
+   * Switches the collection to the bulk-load profile: no soft commits (a
+   * commitWithin only flushes to disk without opening a searcher), no cache
+   * warming, a large RAM buffer and, optionally, no update log. Only editable
+   * properties are set, <code>query.useColdSearcher</code> cannot be changed
+   * through the Config API.
+   *
+   * @param ramBufferSizeMB
+   *          the RAM used to buffer documents before flushing a segment
+   * @param skipUpdateLog
+   *          whether the update log is disabled while loading, which is only
+   *          safe on collections without replicas
+   */
+  public void applyBulkLoadProfile(int ramBufferSizeMB, boolean skipUpdateLog) throws ViewerException {
+    Map<String, Object> properties = new LinkedHashMap<>();
+    properties.put("updateHandler.autoSoftCommit.maxTime", -1);
+    properties.put("updateHandler.commitWithin.softCommit", false);
+    properties.put("query.filterCache.autowarmCount", 0);
+    properties.put("query.queryResultCache.autowarmCount", 0);
+
+    Map<String, Object> userProperties = new LinkedHashMap<>();
+    userProperties.put(RAM_BUFFER_USER_PROPERTY, ramBufferSizeMB);
+    userProperties.put(UPDATE_LOG_USER_PROPERTY, !skipUpdateLog);
+
+    Map<String, Object> commands = new LinkedHashMap<>();
+    commands.put("set-property", properties);
+    commands.put("set-user-property", userProperties);
+
+    LOGGER.info("Switching collection {} to the bulk-load profile", getIndexName());
+    updateConfiguration(commands);
+  }
+
+  /**
+   * Switches the collection back to the browsing profile defined in
+   * solrconfig.xml. Changing the profile reloads the core, so documents must be
+   * committed before calling this.
+   */
+  public void applyBrowsingProfile() throws ViewerException {
+    Map<String, Object> userProperties = new LinkedHashMap<>();
+    userProperties.put(RAM_BUFFER_USER_PROPERTY, BROWSING_RAM_BUFFER_SIZE_MB);
+    userProperties.put(UPDATE_LOG_USER_PROPERTY, true);
+
+    Map<String, Object> commands = new LinkedHashMap<>();
+    commands.put("unset-property", BULK_LOAD_PROPERTIES);
+    commands.put("set-user-property", userProperties);
+
+    LOGGER.info("Switching collection {} to the browsing profile", getIndexName());
+    updateConfiguration(commands);
+  }
+
+  private void updateConfiguration(Map<String, Object> commands) throws ViewerException {
+    ModifiableSolrParams params = new ModifiableSolrParams();
+    // on Solr Cloud, wait for every replica to reload with the new configuration
+    params.set("updateTimeoutSecs", CONFIG_UPDATE_TIMEOUT_SECS);
+
+    GenericSolrRequest request = new GenericSolrRequest(SolrRequest.METHOD.POST, "/config", params);
+    request.setContentWriter(
+      new RequestWriter.StringPayloadContentWriter(JsonTransformer.getJsonFromObject(commands), CommonParams.JSON_MIME));
+
+    try {
+      SolrClientFactory.get().getSolrClient().request(request, getIndexName());
+    } catch (SolrServerException | IOException | SolrException e) {
+      throw new ViewerException("Could not update the configuration of collection " + getIndexName(), e);
+    }
+  }
 }
@@ -0,0 +1,171 @@
+package com.databasepreservation.common.server.index.utils;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.io.SolrClientCache;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.stream.CloudSolrStream;
+import org.apache.solr.client.solrj.io.stream.StreamContext;
+import org.apache.solr.client.solrj.io.stream.TupleStream;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.SolrParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.client.models.structure.ViewerRow;
+import com.databasepreservation.common.exceptions.ViewerException;
+import com.databasepreservation.common.server.index.schema.collections.RowsCollection;
+
+/**
+ * Iterates over all the rows matching a query of the /export handler, reading
+ * them as they are streamed from all the shards of the rows collection instead
+ * of page by page.
+ *
+ * The export handler returns the values of the docValues of the fields, which
+ * are decoded back into the values of stored fields before building each row.
+ * The iterator must be closed to release the connections when the rows are not
+ * all consumed.
+ */
+public class ExportStreamIterator implements RowsIterator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExportStreamIterator.class);
+  // keeps the connections to the shards between exports, until shutdown
+  private static final SolrClientCache CLIENT_CACHE = new SolrClientCache();
+
+  private final RowsCollection collection;
+  private final TupleStream stream;
+  private ViewerRow next = null;
+  private boolean closed = false;
+
+  /**
+   * @param query
+   *          the query of the /export handler, see
+   *          {@link SolrUtils#buildExportQuery}
+   * @throws IOException
+   *           if the stream could not be opened
+   */
+  public ExportStreamIterator(CloudSolrClient client, RowsCollection collection, SolrParams query)
+    throws IOException {
+    this.collection = collection;
+
+    CloudSolrStream cloudStream = new CloudSolrStream(client.getZkHost(), collection.getIndexName(), query);
+    StreamContext context = new StreamContext();
+    context.setSolrClientCache(CLIENT_CACHE);
+    cloudStream.setStreamContext(context);
+    this.stream = cloudStream;
+
+    try {
+      stream.open();
+      next = read();
+    } catch (IOException | RuntimeException e) {
+      close();
+      throw e;
+    }
+  }
+
+  private ViewerRow read() throws IOException {
+    Tuple tuple = stream.read();
+    if (tuple.EXCEPTION) {
+      throw new IOException("Error exporting rows: " + tuple.getException());
+    }
+    if (tuple.EOF) {
+      close();
+      return null;
+    }
+
+    SolrDocument doc = new SolrDocument();
+    for (Object entry : tuple.getMap().entrySet()) {
+      String field = (String) ((Map.Entry) entry).getKey();
+      doc.setField(field, decodeValue(field, ((Map.Entry) entry).getValue()));
+    }
+
+    try {
+      return collection.fromSolrDocument(doc);
+    } catch (ViewerException e) {
+      throw new IOException("Could not read exported row", e);
+    }
+  }
+
+  /**
+   * Dates are exported as their ISO-8601 text, which is turned back into the
+   * Date a stored field would have.
+   */
+  private static Object decodeValue(String field, Object value) {
+    if (field.endsWith(ViewerConstants.SOLR_DYN_DATE)) {
+      return decodeDate(value);
+    }
+    return value;
+  }
+
+  private static Object decodeDate(Object value) {
+    if (value instanceof String) {
+      try {
+        return Date.from(Instant.parse((String) value));
+      } catch (DateTimeParseException e) {
+        LOGGER.debug("Could not parse exported date {}", value, e);
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return next != null;
+  }
+
+  @Override
+  public ViewerRow next() {
+    if (next == null) {
+      throw new NoSuchElementException();
+    }
+
+    ViewerRow current = next;
+    try {
+      next = read();
+    } catch (IOException | RuntimeException e) {
+      close();
+      LOGGER.error("Error getting next row from the export stream", e);
+      throw new NoSuchElementException("Error getting next item in list: " + e.getMessage());
+    }
+    return current;
+  }
+
+  /**
+   * Closes the connections to the shards kept between exports, when the
+   * application stops.
+   */
+  public static void closeClientCache() {
+    CLIENT_CACHE.close();
+  }
+
+  /**
+   * @return -1, the export handler does not tell how many rows it will stream
+   */
+  @Override
+  public long getTotalCount() {
+    return -1;
+  }
+
+  /**
+   * Stops the stream, the rows that were not consumed yet are dropped.
+   */
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      next = null;
+      try {
+        stream.close();
+      } catch (IOException e) {
+        LOGGER.warn("Could not close the export stream", e);
+      }
+    }
+  }
+}
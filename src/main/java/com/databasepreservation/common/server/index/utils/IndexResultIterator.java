@@ -1,9 +1,15 @@
 package com.databasepreservation.common.server.index.utils;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.databasepreservation.common.client.index.IndexResult;
 import com.databasepreservation.common.client.index.sort.Sorter;
@@ -16,17 +22,33 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.databasepreservation.common.client.models.structure.ViewerRow;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
+ * Iterates over all the rows matching a filter, reading them from Solr page by
+ * page with a cursor.
+ *
+ * With read-ahead the pages are fetched by a background thread, which keeps up
+ * to the given number of pages ready while the rows of the current one are
+ * consumed. The threads are shared by all the iterators and, when they are all
+ * busy, an iterator reads its pages only when it needs them. Nothing is read
+ * before the first call to {@link #hasNext()} or {@link #next()}, so the page
+ * size and retries can be set until then. The iterator must be closed to stop
+ * the read-ahead when the rows are not all consumed.
+ *
  * @author Miguel Guimarães <mguimaraes@keep.pt>
  */
-public class IndexResultIterator implements Iterator<ViewerRow> {
+public class IndexResultIterator implements RowsIterator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(IndexResultIterator.class);
 
   public static final int DEFAULT_PAGE_SIZE = 1000;
   public static final int DEFAULT_RETRIES = 100;
   public static final int DEFAULT_SLEEP_BETWEEN_RETRIES = 10000;
+  public static final int DEFAULT_PREFETCH_THREADS = 8;
+  private static final ThreadPoolExecutor PREFETCHERS = new ThreadPoolExecutor(0, DEFAULT_PREFETCH_THREADS, 60L,
+    TimeUnit.SECONDS, new SynchronousQueue<>(),
+    new ThreadFactoryBuilder().setNameFormat("rows-prefetch-%d").setDaemon(true).build());
 
   private int pageSize = DEFAULT_PAGE_SIZE;
   private int retries = DEFAULT_RETRIES;
@@ -46,13 +68,52 @@ public class IndexResultIterator implements Iterator<ViewerRow> {
 
   private ViewerRow next = null;
 
+  private final int prefetchPages;
+  private BlockingQueue<Page> prefetched = null;
+  private Future<?> prefetcher = null;
+  private volatile boolean closed = false;
+  private boolean started = false;
+  private boolean finished = false;
+
   public IndexResultIterator(SolrClient index, String databaseUUID, Filter filter, Sorter sorter, List<String> fieldsToReturn, Map<String, String> extraParameters) {
+    this(index, databaseUUID, filter, sorter, fieldsToReturn, extraParameters, 0);
+  }
+
+  /**
+   * @param prefetchPages
+   *          the number of pages read ahead at most, 0 reads each page only
+   *          when the previous one has been consumed
+   */
+  public IndexResultIterator(SolrClient index, String databaseUUID, Filter filter, Sorter sorter,
+    List<String> fieldsToReturn, Map<String, String> extraParameters, int prefetchPages) {
     this.index = index;
     this.filter = filter;
     this.sorter = sorter;
     this.databaseUUID = databaseUUID;
     this.fieldsToReturn = fieldsToReturn;
     this.extraParameters = extraParameters;
+    this.prefetchPages = prefetchPages;
+  }
+
+  /**
+   * @param threads
+   *          the number of threads reading pages ahead for all the iterators
+   */
+  public static void setPrefetchThreads(int threads) {
+    PREFETCHERS.setMaximumPoolSize(Math.max(1, threads));
+  }
+
+  private void start() {
+    started = true;
+    if (prefetchPages > 0) {
+      prefetched = new ArrayBlockingQueue<>(prefetchPages);
+      try {
+        prefetcher = PREFETCHERS.submit(this::prefetch);
+      } catch (RejectedExecutionException e) {
+        LOGGER.debug("All the prefetch threads are busy, reading the pages when they are needed");
+        prefetched = null;
+      }
+    }
 
     getCurrentAndPrepareNext();
   }
@@ -64,33 +125,18 @@ public class IndexResultIterator implements Iterator<ViewerRow> {
     if (result == null || result.getResults().size() == indexInResult) {
       indexInResult = 0;
 
-      cursorMark = nextCursorMark;
-      result = null;
-      nextCursorMark = null;
-      int availableRetries = retries;
-
-      do {
-        try {
-          Pair<IndexResult<ViewerRow>, String> page = SolrUtils.findRows(index, databaseUUID, filter, sorter, pageSize,
-            cursorMark, fieldsToReturn, extraParameters);
-          result = page.getFirst();
-          nextCursorMark = page.getSecond();
-
-        } catch (GenericException | RequestNotValidException e) {
-          if (availableRetries > 0) {
-            availableRetries--;
-            LOGGER.warn("Error getting next page from Solr, retrying in {}ms...", sleepBetweenRetries);
-            try {
-              Thread.sleep(sleepBetweenRetries);
-            } catch (InterruptedException e1) {
-              // do nothing
-            }
-          } else {
-            LOGGER.error("Error getting next page from Solr, no more retries.", e);
-            throw new NoSuchElementException("Error getting next item in list: " + e.getMessage());
-          }
-        }
-      } while (result == null);
+      if (closed || finished) {
+        this.next = null;
+        return current;
+      } else if (prefetched != null) {
+        result = takePrefetchedPage();
+      } else {
+        cursorMark = nextCursorMark;
+        Pair<IndexResult<ViewerRow>, String> page = fetchPage(cursorMark);
+        result = page.getFirst();
+        nextCursorMark = page.getSecond();
+      }
+      finished = result.getResults().isEmpty();
     }
 
     if (indexInResult < result.getResults().size()) {
@@ -102,13 +148,97 @@ public class IndexResultIterator implements Iterator<ViewerRow> {
     return current;
   }
 
+  private Pair<IndexResult<ViewerRow>, String> fetchPage(String pageCursorMark) {
+    int availableRetries = retries;
+
+    while (true) {
+      try {
+        return SolrUtils.findRows(index, databaseUUID, filter, sorter, pageSize, pageCursorMark, fieldsToReturn,
+          extraParameters);
+      } catch (GenericException | RequestNotValidException e) {
+        if (availableRetries > 0 && !closed) {
+          availableRetries--;
+          LOGGER.warn("Error getting next page from Solr, retrying in {}ms...", sleepBetweenRetries);
+          try {
+            Thread.sleep(sleepBetweenRetries);
+          } catch (InterruptedException e1) {
+            Thread.currentThread().interrupt();
+            throw new NoSuchElementException("Interrupted while getting next item in list");
+          }
+        } else {
+          LOGGER.error("Error getting next page from Solr, no more retries.", e);
+          throw new NoSuchElementException("Error getting next item in list: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the pages one after the other until an empty one, which tells that
+   * there are no more rows.
+   */
+  private void prefetch() {
+    String pageCursorMark = CursorMarkParams.CURSOR_MARK_START;
+    try {
+      boolean empty = false;
+      while (!empty && !closed) {
+        Page page;
+        try {
+          Pair<IndexResult<ViewerRow>, String> fetched = fetchPage(pageCursorMark);
+          page = new Page(fetched.getFirst(), null);
+          empty = fetched.getFirst().getResults().isEmpty();
+          pageCursorMark = fetched.getSecond();
+        } catch (RuntimeException e) {
+          // the consumer gets the failure when it reaches this page
+          page = new Page(null, e);
+          empty = true;
+        }
+        prefetched.put(page);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private IndexResult<ViewerRow> takePrefetchedPage() {
+    Page page;
+    try {
+      page = prefetched.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new NoSuchElementException("Interrupted while getting next item in list");
+    }
+    if (page.failure != null) {
+      throw new NoSuchElementException("Error getting next item in list: " + page.failure.getMessage());
+    }
+    return page.result;
+  }
+
+  /**
+   * Stops reading ahead, the rows that were not consumed yet are dropped.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    if (prefetcher != null) {
+      prefetcher.cancel(true);
+      prefetched.clear();
+    }
+  }
+
   @Override
   public boolean hasNext() {
+    if (!started) {
+      start();
+    }
     return next != null;
   }
 
   @Override
   public ViewerRow next() {
+    if (!started) {
+      start();
+    }
     return getCurrentAndPrepareNext();
   }
 
@@ -162,7 +292,21 @@ public class IndexResultIterator implements Iterator<ViewerRow> {
    *
    * @return
    */
+  @Override
   public long getTotalCount() {
+    if (!started) {
+      start();
+    }
     return result != null ? result.getTotalCount() : -1;
   }
+
+  private static class Page {
+    private final IndexResult<ViewerRow> result;
+    private final RuntimeException failure;
+
+    Page(IndexResult<ViewerRow> result, RuntimeException failure) {
+      this.result = result;
+      this.failure = failure;
+    }
+  }
 }
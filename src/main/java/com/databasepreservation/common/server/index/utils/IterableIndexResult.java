@@ -1,6 +1,5 @@
 package com.databasepreservation.common.server.index.utils;
 
-import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -19,34 +18,72 @@ public class IterableIndexResult implements CloseableIterable<ViewerRow> {
   private static int PAGE_SIZE = -1;
   private static int RETRIES = -1;
   private static int SLEEP_BETWEEN_RETRIES = -1;
+  private static int PREFETCH_PAGES = 0;
 
-  private final IndexResultIterator iterator;
+  private final RowsIterator iterator;
+  private Runnable rowListener = null;
 
   public IterableIndexResult(final SolrClient solrClient, String databaseUUID, final Filter filter, final Sorter sorter,
     final List<String> fieldsToReturn, final Map<String, String> extraParameters) {
-    iterator = new IndexResultIterator(solrClient, databaseUUID, filter, sorter, fieldsToReturn, extraParameters);
+    IndexResultIterator cursorIterator = new IndexResultIterator(solrClient, databaseUUID, filter, sorter,
+      fieldsToReturn, extraParameters, PREFETCH_PAGES);
 
     if (PAGE_SIZE > 0) {
-      iterator.setPageSize(PAGE_SIZE);
+      cursorIterator.setPageSize(PAGE_SIZE);
     }
 
     if (RETRIES > 0) {
-      iterator.setRetries(RETRIES);
+      cursorIterator.setRetries(RETRIES);
     }
 
     if (SLEEP_BETWEEN_RETRIES > 0) {
-      iterator.setSleepBetweenRetries(SLEEP_BETWEEN_RETRIES);
+      cursorIterator.setSleepBetweenRetries(SLEEP_BETWEEN_RETRIES);
     }
+
+    iterator = cursorIterator;
+  }
+
+  /**
+   * Streams the rows from the /export handler instead of paging over them.
+   */
+  public IterableIndexResult(final ExportStreamIterator exportIterator) {
+    iterator = exportIterator;
+  }
+
+  /**
+   * @param rowListener
+   *          called before each row is returned, e.g. to follow the progress of
+   *          a long export; an exception it throws stops the iteration
+   */
+  public IterableIndexResult onEachRow(Runnable rowListener) {
+    this.rowListener = rowListener;
+    return this;
   }
 
   @Override
   public Iterator<ViewerRow> iterator() {
-    return iterator;
+    if (rowListener == null) {
+      return iterator;
+    }
+
+    return new Iterator<ViewerRow>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public ViewerRow next() {
+        ViewerRow row = iterator.next();
+        rowListener.run();
+        return row;
+      }
+    };
   }
 
   @Override
-  public void close() throws IOException {
-    // do nothing
+  public void close() {
+    iterator.close();
   }
 
   public static void injectSearchPageSize(int pageSize) {
@@ -61,8 +98,16 @@ public class IterableIndexResult implements CloseableIterable<ViewerRow> {
     SLEEP_BETWEEN_RETRIES = sleepTime;
   }
 
+  public static void injectPrefetchPages(int prefetchPages) {
+    PREFETCH_PAGES = prefetchPages;
+  }
+
+  public static void injectPrefetchThreads(int prefetchThreads) {
+    IndexResultIterator.setPrefetchThreads(prefetchThreads);
+  }
+
   /**
-   * @see IndexResultIterator#getTotalCount()
+   * @see RowsIterator#getTotalCount()
    */
   public long getTotalCount() {
     return iterator.getTotalCount();
@@ -0,0 +1,21 @@
+package com.databasepreservation.common.server.index.utils;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+import com.databasepreservation.common.client.models.structure.ViewerRow;
+
+/**
+ * Iterates over all the rows matching a query, whatever the way they are read
+ * from Solr.
+ */
+interface RowsIterator extends Iterator<ViewerRow>, Closeable {
+
+  /**
+   * @return the number of rows matching the query, or -1 if it is not known
+   */
+  long getTotalCount();
+
+  @Override
+  void close();
+}
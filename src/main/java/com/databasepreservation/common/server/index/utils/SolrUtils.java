@@ -18,41 +18,59 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.FacetField;
+import org.apache.solr.client.solrj.response.FieldStatsInfo;
+import org.apache.solr.client.solrj.response.Group;
+import org.apache.solr.client.solrj.response.GroupCommand;
 import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.response.RangeFacet;
+import org.apache.solr.client.solrj.response.json.BucketBasedJsonFacet;
+import org.apache.solr.client.solrj.response.json.BucketJsonFacet;
+import org.apache.solr.client.solrj.response.json.NestedJsonFacet;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.CursorMarkParams;
 import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.params.GroupParams;
 import org.apache.solr.common.params.MapSolrParams;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.params.StatsParams;
 import org.roda.core.data.common.RodaConstants;
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
 import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.utils.JsonUtils;
 import org.roda.core.data.v2.index.sublist.Sublist;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.databasepreservation.common.client.ViewerConstants;
 import com.databasepreservation.common.client.common.search.SavedSearch;
+import com.databasepreservation.common.client.index.GroupedIndexResult;
 import com.databasepreservation.common.client.index.IndexResult;
 import com.databasepreservation.common.client.index.IsIndexed;
 import com.databasepreservation.common.client.index.facets.FacetFieldResult;
 import com.databasepreservation.common.client.index.facets.FacetParameter;
+import com.databasepreservation.common.client.index.facets.FacetValue;
 import com.databasepreservation.common.client.index.facets.Facets;
 import com.databasepreservation.common.client.index.facets.RangeFacetParameter;
 import com.databasepreservation.common.client.index.facets.SimpleFacetParameter;
@@ -71,12 +89,14 @@ import com.databasepreservation.common.client.index.filter.NotSimpleFilterParame
 import com.databasepreservation.common.client.index.filter.OneOfManyFilterParameter;
 import com.databasepreservation.common.client.index.filter.OrFiltersParameters;
 import com.databasepreservation.common.client.index.filter.SimpleFilterParameter;
+import com.databasepreservation.common.client.index.filter.StringRangeFilterParameter;
 import com.databasepreservation.common.client.index.sort.SortParameter;
 import com.databasepreservation.common.client.index.sort.Sorter;
 import com.databasepreservation.common.client.models.structure.ViewerDatabase;
 import com.databasepreservation.common.client.models.structure.ViewerRow;
 import com.databasepreservation.common.exceptions.ViewerException;
 import com.databasepreservation.common.filter.solr.TermsFilterParameter;
+import com.databasepreservation.common.server.ViewerConfiguration;
 import com.databasepreservation.common.server.index.schema.SolrCollection;
 import com.databasepreservation.common.server.index.schema.SolrRowsCollectionRegistry;
 import com.databasepreservation.common.server.index.schema.collections.RowsCollection;
@@ -87,6 +107,27 @@ import com.databasepreservation.common.server.index.schema.collections.RowsColle
 public class SolrUtils {
   private static final Logger LOGGER = LoggerFactory.getLogger(SolrUtils.class);
   private static final String DEFAULT_QUERY_PARSER_OPERATOR = "AND";
+  public static final String EXPORT_REQUEST_HANDLER = "/export";
+  private static final int EXPORT_MAX_SORT_FIELDS = 4;
+  // fields and dynamic field suffixes of the schema that are single valued and
+  // whose type has docValues, the multivalued ones are read with a cursor
+  private static final List<String> DOC_VALUES_FIELDS = Arrays.asList(ViewerConstants.INDEX_ID,
+    ViewerConstants.SOLR_ROWS_TABLE_ID, ViewerConstants.SOLR_ROWS_TABLE_UUID, ViewerConstants.SOLR_ROWS_NESTED_UUID,
+    ViewerConstants.SOLR_ROWS_NESTED_ORIGINAL_UUID, ViewerConstants.SOLR_ROWS_NESTED_TABLE_ID);
+  private static final List<String> DOC_VALUES_SUFFIXES = Arrays.asList(ViewerConstants.SOLR_DYN_STRING,
+    ViewerConstants.SOLR_DYN_INT, ViewerConstants.SOLR_DYN_LONG, ViewerConstants.SOLR_DYN_FLOAT,
+    ViewerConstants.SOLR_DYN_DOUBLE, ViewerConstants.SOLR_DYN_DATE);
+  // filter queries that are not cached are checked after the cached ones, the
+  // cheapest first
+  private static final String UNCACHED_FILTER_QUERY_PREFIX = "{!cache=false cost=50}";
+  private static final String[] DATE_GAP_UNITS = {"MILLISECONDS", "SECONDS", "MINUTES", "HOURS", "DAYS", "MONTHS",
+    "YEARS"};
+  private static final long[] DATE_GAP_UNITS_MS = {1L, 1000L, 60000L, 3600000L, 86400000L, 2629746000L,
+    31556952000L};
+  private static final String JSON_FACET_PARAM = "json.facet";
+  private static final Set<String> JSON_FACET_METHODS = new HashSet<>(
+    Arrays.asList("dv", "uif", "dvhash", "enum", "stream", "smart"));
+  private static final Pattern RANGE_FACET_VALUE_PATTERN = Pattern.compile("\\[[^\\s\\]}]+ TO [^\\s\\]}]+[\\]}]");
   private static final Set<String> NON_REPEATABLE_FIELDS = new HashSet<>(Arrays.asList(RodaConstants.AIP_TITLE,
     RodaConstants.AIP_LEVEL, RodaConstants.AIP_DATE_INITIAL, RodaConstants.AIP_DATE_FINAL));
 
@@ -130,7 +171,7 @@ public class SolrUtils {
     throws GenericException, RequestNotValidException {
     IndexResult<T> ret;
     SolrQuery query = new SolrQuery();
-    query.setQuery(parseFilter(filter));
+    setFilter(query, filter);
     final List<SolrQuery.SortClause> sortClauses = parseSorter(sorter);
     sortClauses.add(SolrQuery.SortClause.asc(RodaConstants.INDEX_UUID));
     query.setSorts(sortClauses);
@@ -148,9 +189,8 @@ public class SolrUtils {
     if (!fieldsToReturn.isEmpty()) {
       query.setFields(fieldsToReturn.toArray(new String[0]));
     }
-    parseAndConfigureFacets(facets, query);
-
     try {
+      parseAndConfigureFacets(index, collection.getIndexName(), facets, query);
       QueryResponse response = index.query(collection.getIndexName(), query);
       ret = queryResponseToIndexResult(response, collection, facets);
     } catch (SolrException e) {
@@ -159,7 +199,7 @@ public class SolrUtils {
       if (shouldReturnEmptyResult) {
         // build an empty IndexedResult
         final SolrDocumentList docList = new SolrDocumentList();
-        final List<FacetFieldResult> facetResults = processFacetFields(facets, null);
+        final List<FacetFieldResult> facetResults = processFacetFields(facets, null, null, null);
         final long offset = docList.getStart();
         final long limit = docList.size();
         final long totalCount = docList.getNumFound();
@@ -207,7 +247,7 @@ public class SolrUtils {
     Pair<IndexResult<ViewerRow>, String> ret;
     SolrQuery query = new SolrQuery();
     query.setParam("q.op", DEFAULT_QUERY_PARSER_OPERATOR);
-    query.setQuery(parseFilter(filter));
+    setFilter(query, filter);
 
     query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
     query.setRows(pageSize);
@@ -244,6 +284,57 @@ public class SolrUtils {
     return ret;
   }
 
+  /**
+   * Builds the query that streams all the rows matching the filter through the
+   * /export handler, which reads the fields from their docValues instead of
+   * paging over the stored documents. The rows are sorted as with a cursor,
+   * i.e. by the sorter and then by uuid.
+   *
+   * @return the query, or null when the export handler cannot answer it: every
+   *         field to return and to sort by must be single valued and have
+   *         docValues, and the handler sorts by a limited number of fields
+   */
+  public static SolrQuery buildExportQuery(Filter filter, Sorter sorter, List<String> fieldsToReturn)
+    throws RequestNotValidException {
+    if (fieldsToReturn == null || fieldsToReturn.isEmpty()
+      || !fieldsToReturn.stream().allMatch(SolrUtils::hasDocValues)) {
+      return null;
+    }
+
+    final List<SolrQuery.SortClause> sortClauses = parseSorter(sorter);
+    if (sortClauses.stream().noneMatch(clause -> RodaConstants.INDEX_UUID.equals(clause.getItem()))) {
+      sortClauses.add(SolrQuery.SortClause.asc(RodaConstants.INDEX_UUID));
+    }
+    if (sortClauses.size() > EXPORT_MAX_SORT_FIELDS
+      || !sortClauses.stream().allMatch(clause -> hasDocValues(clause.getItem()))) {
+      return null;
+    }
+
+    SolrQuery query = new SolrQuery();
+    query.setParam("q.op", DEFAULT_QUERY_PARSER_OPERATOR);
+    setFilter(query, filter);
+    query.setRequestHandler(EXPORT_REQUEST_HANDLER);
+    query.setSorts(sortClauses);
+    query.setFields(fieldsToReturn.toArray(new String[0]));
+    return query;
+  }
+
+  /**
+   * @return true if the field is single valued and stored with docValues by the
+   *         schema of the collections, false if it is not or if it is not known
+   */
+  public static boolean hasDocValues(String field) {
+    if (DOC_VALUES_FIELDS.contains(field)) {
+      return true;
+    }
+    for (String suffix : DOC_VALUES_SUFFIXES) {
+      if (field.endsWith(suffix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public static Pair<IndexResult<ViewerRow>, String> findRows(SolrClient index, String databaseUUID, SolrQuery query,
     Sorter sorter, int pageSize, String cursorMark) throws GenericException, RequestNotValidException {
 
@@ -272,6 +363,67 @@ public class SolrUtils {
     return ret;
   }
 
+  /**
+   * Searches the rows of all the tables of a database in a single query, grouped
+   * by table.
+   *
+   * @param rowsPerTable
+   *          the number of rows returned for each table, the best matches
+   * @param maxTables
+   *          the number of tables returned at most, the ones with more rows
+   */
+  public static GroupedIndexResult<ViewerRow> findRowsGroupedByTable(SolrClient index, String databaseUUID,
+    Filter filter, int rowsPerTable, int maxTables, List<String> fieldsToReturn)
+    throws GenericException, RequestNotValidException {
+    SolrQuery query = new SolrQuery();
+    query.setParam("q.op", DEFAULT_QUERY_PARSER_OPERATOR);
+    setFilter(query, filter);
+    query.set(GroupParams.GROUP, true);
+    query.set(GroupParams.GROUP_FIELD, ViewerConstants.SOLR_ROWS_TABLE_ID);
+    query.set(GroupParams.GROUP_LIMIT, rowsPerTable);
+    query.setRows(maxTables);
+
+    if (!fieldsToReturn.isEmpty()) {
+      List<String> fields = new ArrayList<>(fieldsToReturn);
+      if (!fields.contains(ViewerConstants.SOLR_ROWS_TABLE_ID)) {
+        fields.add(ViewerConstants.SOLR_ROWS_TABLE_ID);
+      }
+      query.setFields(fields.toArray(new String[0]));
+    }
+
+    final RowsCollection collection = SolrRowsCollectionRegistry.get(databaseUUID);
+
+    try {
+      QueryResponse response = index.query(collection.getIndexName(), query);
+      GroupCommand command = response.getGroupResponse().getValues().get(0);
+      List<Group> groups = new ArrayList<>(command.getValues());
+      groups.sort((a, b) -> Long.compare(b.getResult().getNumFound(), a.getResult().getNumFound()));
+
+      Map<String, IndexResult<ViewerRow>> tables = new LinkedHashMap<>();
+      for (Group group : groups) {
+        if (group.getGroupValue() == null) {
+          continue;
+        }
+        SolrDocumentList docs = group.getResult();
+        List<ViewerRow> rows = new ArrayList<>();
+        for (SolrDocument doc : docs) {
+          rows.add(collection.fromSolrDocument(doc));
+        }
+        tables.put(group.getGroupValue(),
+          new IndexResult<>(0, rowsPerTable, docs.getNumFound(), rows, new ArrayList<>()));
+      }
+      return new GroupedIndexResult<>(command.getMatches(), tables);
+    } catch (ViewerException e) {
+      throw new GenericException(e);
+    } catch (SolrServerException | IOException e) {
+      throw new GenericException("Could not query index", e);
+    } catch (SolrException e) {
+      throw new RequestNotValidException(e);
+    } catch (RuntimeException e) {
+      throw new GenericException("Unexpected exception while querying index", e);
+    }
+  }
+
   public static SolrQuery buildQuery(Filter filter, List<String> fieldsToReturn) throws RequestNotValidException {
     SolrQuery query = new SolrQuery();
 
@@ -336,8 +488,11 @@ public class SolrUtils {
     return ret;
   }
 
-  private static void parseAndConfigureFacets(Facets facets, SolrQuery query) {
+  private static void parseAndConfigureFacets(SolrClient index, String indexName, Facets facets, SolrQuery query)
+    throws SolrServerException, IOException, RequestNotValidException {
     if (facets != null) {
+      boolean jsonFacets = ViewerConfiguration.getInstance().getViewerConfigurationAsBoolean(false,
+        ViewerConfiguration.PROPERTY_SOLR_FACETS_JSON_API);
       query.setFacetSort(FacetParams.FACET_SORT_INDEX);
       if (!"".equals(facets.getQuery())) {
         query.addFacetQuery(facets.getQuery());
@@ -347,14 +502,33 @@ public class SolrUtils {
         FacetParameter facetParameter = parameter.getValue();
 
         if (facetParameter instanceof SimpleFacetParameter) {
-          setQueryFacetParameter(query, (SimpleFacetParameter) facetParameter);
+          if (!jsonFacets) {
+            setQueryFacetParameter(query, (SimpleFacetParameter) facetParameter);
+          }
           appendValuesUsingOROperator(filterQuery, facetParameter.getName(), facetParameter.getValues());
         } else if (facetParameter instanceof RangeFacetParameter) {
-          LOGGER.error("Unsupported facet parameter class: {}", facetParameter.getClass().getName());
+          appendRangeValuesUsingOROperator(filterQuery, facetParameter.getName(), facetParameter.getValues());
         } else {
           LOGGER.error("Unsupported facet parameter class: {}", facetParameter.getClass().getName());
         }
       }
+
+      // the ranges come before the selected values restrict the query, so that
+      // selecting a bucket keeps the others
+      List<RangeFacetParameter> rangeParameters = new ArrayList<>();
+      collectRangeFacetParameters(facets.getParameters().values(), jsonFacets, rangeParameters);
+      Map<RangeFacetParameter, String[]> ranges = getRanges(index, indexName, query, rangeParameters);
+      if (jsonFacets) {
+        Map<String, Object> jsonFacetParameters = getJsonFacets(facets.getParameters().values(), ranges);
+        if (!jsonFacetParameters.isEmpty()) {
+          query.set(JSON_FACET_PARAM, JsonUtils.getJsonFromObject(jsonFacetParameters));
+        }
+      } else {
+        for (Map.Entry<RangeFacetParameter, String[]> range : ranges.entrySet()) {
+          addRangeFacet(query, range.getKey(), range.getValue()[0], range.getValue()[1], range.getValue()[2]);
+        }
+      }
+
       if (filterQuery.length() > 0) {
         query.addFilterQuery(filterQuery.toString());
         LOGGER.trace("Query after defining facets: " + query.toString());
@@ -362,6 +536,206 @@ public class SolrUtils {
     }
   }
 
+  private static void collectRangeFacetParameters(Collection<FacetParameter> parameters, boolean withSubFacets,
+    List<RangeFacetParameter> rangeParameters) {
+    for (FacetParameter parameter : parameters) {
+      if (parameter instanceof RangeFacetParameter) {
+        rangeParameters.add((RangeFacetParameter) parameter);
+      }
+      if (withSubFacets && parameter.getSubFacets() != null) {
+        collectRangeFacetParameters(parameter.getSubFacets(), true, rangeParameters);
+      }
+    }
+  }
+
+  /**
+   * Gets the start, end and gap of the range facets. The ones that are missing
+   * come from the minimum and maximum values of the field among the documents
+   * the query finds, asked to Solr beforehand in a single request. Facets on
+   * unsupported fields or without values are left out.
+   */
+  private static Map<RangeFacetParameter, String[]> getRanges(SolrClient index, String indexName, SolrQuery query,
+    List<RangeFacetParameter> parameters) throws SolrServerException, IOException {
+    Map<RangeFacetParameter, String[]> ranges = new IdentityHashMap<>();
+    List<RangeFacetParameter> autoParameters = new ArrayList<>();
+    for (RangeFacetParameter parameter : parameters) {
+      if (getRangeFacetType(parameter.getName()) == null) {
+        LOGGER.error("Unsupported range facet field: {}", parameter.getName());
+      } else if (StringUtils.isBlank(parameter.getStart()) || StringUtils.isBlank(parameter.getEnd())
+        || StringUtils.isBlank(parameter.getGap())) {
+        autoParameters.add(parameter);
+      } else {
+        ranges.put(parameter, new String[] {parameter.getStart(), parameter.getEnd(), parameter.getGap()});
+      }
+    }
+
+    if (autoParameters.isEmpty()) {
+      return ranges;
+    }
+
+    SolrQuery statsQuery = new SolrQuery(query.getQuery());
+    if (query.getFilterQueries() != null) {
+      statsQuery.setFilterQueries(query.getFilterQueries());
+    }
+    statsQuery.setRows(0);
+    statsQuery.set(StatsParams.STATS, true);
+    for (RangeFacetParameter parameter : autoParameters) {
+      statsQuery.add(StatsParams.STATS_FIELD, "{!min=true max=true}" + parameter.getName());
+    }
+    Map<String, FieldStatsInfo> stats = index.query(indexName, statsQuery).getFieldStatsInfo();
+
+    for (RangeFacetParameter parameter : autoParameters) {
+      FieldStatsInfo fieldStats = stats != null ? stats.get(parameter.getName()) : null;
+      if (fieldStats == null || fieldStats.getMin() == null || fieldStats.getMax() == null) {
+        // no values, no buckets
+        continue;
+      }
+      String[] range = getAutoRange(getRangeFacetType(parameter.getName()), fieldStats.getMin(), fieldStats.getMax(),
+        Math.max(1, parameter.getBuckets()));
+      ranges.put(parameter,
+        new String[] {StringUtils.isBlank(parameter.getStart()) ? range[0] : parameter.getStart(),
+          StringUtils.isBlank(parameter.getEnd()) ? range[1] : parameter.getEnd(),
+          StringUtils.isBlank(parameter.getGap()) ? range[2] : parameter.getGap()});
+    }
+    return ranges;
+  }
+
+  /**
+   * Builds the JSON Facet API request of the facets, with their sub-facets.
+   * The limit and minimum count of term facets are applied by Solr, range
+   * facets return every bucket so that each one ends where the next starts.
+   */
+  private static Map<String, Object> getJsonFacets(Collection<FacetParameter> parameters,
+    Map<RangeFacetParameter, String[]> ranges) throws RequestNotValidException {
+    Map<String, Object> jsonFacets = new LinkedHashMap<>();
+    for (FacetParameter parameter : parameters) {
+      Map<String, Object> jsonFacet = new LinkedHashMap<>();
+      if (parameter instanceof SimpleFacetParameter) {
+        SimpleFacetParameter simpleParameter = (SimpleFacetParameter) parameter;
+        jsonFacet.put("type", "terms");
+        jsonFacet.put("field", parameter.getName());
+        jsonFacet.put("limit", simpleParameter.getLimit());
+        jsonFacet.put("mincount", parameter.getMinCount());
+        jsonFacet.put("sort", FacetParameter.SORT.COUNT.equals(parameter.getSort()) ? "count desc" : "index asc");
+        jsonFacet.put("numBuckets", true);
+        if (simpleParameter.getMethod() != null) {
+          if (!JSON_FACET_METHODS.contains(simpleParameter.getMethod())) {
+            throw new RequestNotValidException("Unsupported facet method: " + simpleParameter.getMethod());
+          }
+          jsonFacet.put("method", simpleParameter.getMethod());
+        }
+      } else if (parameter instanceof RangeFacetParameter && ranges.containsKey(parameter)) {
+        String[] range = ranges.get(parameter);
+        jsonFacet.put("type", "range");
+        jsonFacet.put("field", parameter.getName());
+        jsonFacet.put("start", range[0]);
+        jsonFacet.put("end", range[1]);
+        jsonFacet.put("gap", range[2]);
+        jsonFacet.put("hardend", true);
+        jsonFacet.put("include", Arrays.asList(FacetParams.FacetRangeInclude.LOWER.toString(),
+          FacetParams.FacetRangeInclude.EDGE.toString()));
+        jsonFacet.put("mincount", 0);
+      } else {
+        continue;
+      }
+
+      if (parameter.getSubFacets() != null && !parameter.getSubFacets().isEmpty()) {
+        Map<String, Object> subFacets = getJsonFacets(parameter.getSubFacets(), ranges);
+        if (!subFacets.isEmpty()) {
+          jsonFacet.put("facet", subFacets);
+        }
+      }
+      jsonFacets.put(parameter.getName(), jsonFacet);
+    }
+    return jsonFacets;
+  }
+
+  private static void addRangeFacet(SolrQuery query, RangeFacetParameter parameter, String start, String end,
+    String gap) {
+    String name = parameter.getName();
+    query.setFacet(true);
+    query.add(FacetParams.FACET_RANGE, name);
+    query.add(String.format("f.%s.%s", name, FacetParams.FACET_RANGE_START), start);
+    query.add(String.format("f.%s.%s", name, FacetParams.FACET_RANGE_END), end);
+    query.add(String.format("f.%s.%s", name, FacetParams.FACET_RANGE_GAP), gap);
+    // the last bucket stops at the end and includes it
+    query.add(String.format("f.%s.%s", name, FacetParams.FACET_RANGE_HARD_END), "true");
+    query.add(String.format("f.%s.%s", name, FacetParams.FACET_RANGE_INCLUDE),
+      FacetParams.FacetRangeInclude.LOWER.toString(), FacetParams.FacetRangeInclude.EDGE.toString());
+    // every bucket is returned, so each one ends where the next starts, those
+    // under the minimum count are left out afterwards
+    query.add(String.format("f.%s.%s", name, FacetParams.FACET_MINCOUNT), "0");
+  }
+
+  /**
+   * @return the dynamic field suffix of a field that supports range facets, or
+   *         null
+   */
+  private static String getRangeFacetType(String field) {
+    for (String suffix : Arrays.asList(ViewerConstants.SOLR_DYN_LONG, ViewerConstants.SOLR_DYN_DOUBLE,
+      ViewerConstants.SOLR_DYN_DATE)) {
+      if (field.endsWith(suffix)) {
+        return suffix;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the start, end and gap that split the values from min to max in
+   *         about the given number of buckets
+   */
+  private static String[] getAutoRange(String type, Object min, Object max, int buckets) {
+    if (ViewerConstants.SOLR_DYN_DATE.equals(type)) {
+      long from = ((Date) min).getTime();
+      long to = ((Date) max).getTime();
+      long gapMs = Math.max(1, (long) Math.ceil((to - from) / (double) buckets));
+      // the largest calendar unit that fits in the gap, to get readable buckets
+      int unit = DATE_GAP_UNITS_MS.length - 1;
+      while (unit > 0 && DATE_GAP_UNITS_MS[unit] > gapMs) {
+        unit--;
+      }
+      long units = (long) Math.ceil(gapMs / (double) DATE_GAP_UNITS_MS[unit]);
+      String start = Instant.ofEpochMilli(from).toString() + "/" + DATE_GAP_UNITS[unit];
+      String end = to > from ? Instant.ofEpochMilli(to).toString()
+        : Instant.ofEpochMilli(to).toString() + "+" + units + DATE_GAP_UNITS[unit];
+      return new String[] {start, end, "+" + units + DATE_GAP_UNITS[unit]};
+    } else if (ViewerConstants.SOLR_DYN_LONG.equals(type)) {
+      long from = (long) Math.floor(((Number) min).doubleValue());
+      long to = (long) Math.ceil(((Number) max).doubleValue());
+      long gap = Math.max(1, (long) Math.ceil((to - from) / (double) buckets));
+      return new String[] {String.valueOf(from), String.valueOf(to > from ? to : from + gap), String.valueOf(gap)};
+    } else {
+      double from = ((Number) min).doubleValue();
+      double to = ((Number) max).doubleValue();
+      double gap = to > from ? (to - from) / buckets : 1;
+      return new String[] {String.valueOf(from), String.valueOf(to > from ? to : from + gap), String.valueOf(gap)};
+    }
+  }
+
+  /**
+   * Restricts the field to the selected range facet buckets, given as Solr
+   * ranges (e.g. {@code [10 TO 20&#125;}).
+   */
+  private static void appendRangeValuesUsingOROperator(StringBuilder ret, String key, List<String> values)
+    throws RequestNotValidException {
+    if (values != null && !values.isEmpty()) {
+      appendANDOperator(ret, true);
+
+      ret.append("(");
+      for (int i = 0; i < values.size(); i++) {
+        if (!RANGE_FACET_VALUE_PATTERN.matcher(values.get(i)).matches()) {
+          throw new RequestNotValidException("Invalid range facet value: " + values.get(i));
+        }
+        if (i != 0) {
+          ret.append(" OR ");
+        }
+        ret.append(key).append(":").append(values.get(i));
+      }
+      ret.append(")");
+    }
+  }
+
   private static void setQueryFacetParameter(SolrQuery query, SimpleFacetParameter facetParameter) {
     query.addFacetField(facetParameter.getName());
     if (facetParameter.getMinCount() != FacetParameter.DEFAULT_MIN_COUNT) {
@@ -381,7 +755,8 @@ public class SolrUtils {
   public static <T extends IsIndexed> IndexResult<T> queryResponseToIndexResult(QueryResponse response,
     SolrCollection<T> collection, List<String> columnNames, Facets facets) throws GenericException {
     final SolrDocumentList docList = response.getResults();
-    final List<FacetFieldResult> facetResults = processFacetFields(facets, response.getFacetFields());
+    final List<FacetFieldResult> facetResults = processFacetFields(facets, response.getFacetFields(),
+      response.getFacetRanges(), response.getJsonFacetingResponse());
     final long offset = docList.getStart();
     final long limit = docList.size();
     final long totalCount = docList.getNumFound();
@@ -400,7 +775,8 @@ public class SolrUtils {
     return new IndexResult<>(offset, limit, totalCount, docs, facetResults);
   }
 
-  private static List<FacetFieldResult> processFacetFields(Facets facets, List<FacetField> facetFields) {
+  private static List<FacetFieldResult> processFacetFields(Facets facets, List<FacetField> facetFields,
+    List<RangeFacet> facetRanges, NestedJsonFacet jsonFacets) {
     List<FacetFieldResult> ret = new ArrayList<FacetFieldResult>();
     FacetFieldResult facetResult;
     if (facetFields != null) {
@@ -415,9 +791,94 @@ public class SolrUtils {
         ret.add(facetResult);
       }
     }
+    if (facetRanges != null) {
+      for (RangeFacet<?, ?> facet : facetRanges) {
+        ret.add(processFacetRange(facet, facets.getParameters().get(facet.getName())));
+      }
+    }
+    if (jsonFacets != null) {
+      ret.addAll(processJsonFacets(facets.getParameters().values(), jsonFacets));
+    }
     return ret;
   }
 
+  /**
+   * Reads the facets of a JSON Facet API response, or of one of its buckets,
+   * into the same results the classic facets give.
+   */
+  private static List<FacetFieldResult> processJsonFacets(Collection<FacetParameter> parameters,
+    NestedJsonFacet jsonFacets) {
+    List<FacetFieldResult> ret = new ArrayList<>();
+    for (FacetParameter parameter : parameters) {
+      BucketBasedJsonFacet facet = jsonFacets.getBucketBasedFacets(parameter.getName());
+      if (facet == null) {
+        continue;
+      }
+
+      List<BucketJsonFacet> buckets = facet.getBuckets();
+      long totalCount = facet.getNumBuckets() >= 0 ? facet.getNumBuckets() : buckets.size();
+      FacetFieldResult facetResult = new FacetFieldResult(parameter.getName(), totalCount, parameter.getValues());
+      boolean range = parameter instanceof RangeFacetParameter;
+      String end = range && StringUtils.isNotBlank(((RangeFacetParameter) parameter).getEnd())
+        ? ((RangeFacetParameter) parameter).getEnd()
+        : "*";
+      for (int i = 0; i < buckets.size(); i++) {
+        BucketJsonFacet bucket = buckets.get(i);
+        if (range && bucket.getCount() < parameter.getMinCount()) {
+          continue;
+        }
+
+        FacetValue facetValue;
+        String from = formatFacetValue(bucket.getVal());
+        if (range) {
+          boolean last = i + 1 == buckets.size();
+          String to = last ? end : formatFacetValue(buckets.get(i + 1).getVal());
+          facetValue = new FacetValue(from + " - " + to, "[" + from + " TO " + to + (last ? "]" : "}"),
+            bucket.getCount());
+        } else {
+          facetValue = new FacetValue(from, from, bucket.getCount());
+        }
+        if (parameter.getSubFacets() != null && !parameter.getSubFacets().isEmpty()) {
+          facetValue.setSubFacets(processJsonFacets(parameter.getSubFacets(), bucket));
+        }
+        LOGGER.trace("   value:{} count:{}", facetValue.getValue(), facetValue.getCount());
+        facetResult.getValues().add(facetValue);
+      }
+      ret.add(facetResult);
+    }
+    return ret;
+  }
+
+  /**
+   * Each bucket of a range facet has its Solr range (e.g. {@code [10 TO 20&#125;})
+   * as value, the one to select to restrict the results to the bucket.
+   */
+  private static FacetFieldResult processFacetRange(RangeFacet<?, ?> facet, FacetParameter facetParameter) {
+    List<RangeFacet.Count> counts = facet.getCounts();
+    FacetFieldResult facetResult = new FacetFieldResult(facet.getName(), counts.size(), facetParameter.getValues());
+    String end = formatFacetValue(facet.getEnd());
+    for (int i = 0; i < counts.size(); i++) {
+      RangeFacet.Count count = counts.get(i);
+      if (count.getCount() < facetParameter.getMinCount()) {
+        continue;
+      }
+      boolean last = i + 1 == counts.size();
+      String from = count.getValue();
+      String to = last ? end : counts.get(i + 1).getValue();
+      String value = "[" + from + " TO " + to + (last ? "]" : "}");
+      LOGGER.trace("   value:{} count:{}", value, count.getCount());
+      facetResult.addFacetValue(from + " - " + to, value, count.getCount());
+    }
+    return facetResult;
+  }
+
+  private static String formatFacetValue(Object bound) {
+    if (bound instanceof Date) {
+      return Instant.ofEpochMilli(((Date) bound).getTime()).toString();
+    }
+    return String.valueOf(bound);
+  }
+
   public static <T extends IsIndexed> Long count(SolrClient index, SolrCollection<T> collection, Filter filter)
     throws GenericException, RequestNotValidException {
     return find(index, collection, filter, null, new Sublist(0, 0)).getTotalCount();
@@ -499,6 +960,82 @@ public class SolrUtils {
     return query.toQueryString();
   }
 
+  /**
+   * Sets the filter on the query. The parameters that only restrict the results
+   * (exact matches, ranges, negations and groups of those) are sent as filter
+   * queries, which do not score the results and which Solr may cache apart
+   * from the main query. Each filter query is written in the same way whatever
+   * the order of the parameters or of their values. Parameters that are not
+   * cacheable, ranges and restrictions on the uuid are sent with cache=false.
+   * The other parameters, which score the results or depend on their place in
+   * the query, stay in the main query.
+   */
+  public static void setFilter(SolrQuery query, Filter filter) throws RequestNotValidException {
+    List<FilterParameter> queryParameters = new ArrayList<>();
+    Set<String> filterQueries = new TreeSet<>();
+
+    if (filter != null) {
+      for (FilterParameter parameter : filter.getParameters()) {
+        if (isFilterQuery(parameter)) {
+          StringBuilder filterQuery = new StringBuilder();
+          parseFilterParameter(filterQuery, getCanonicalFilterParameter(parameter), false);
+          if (filterQuery.length() > 0) {
+            filterQueries.add(isCacheableFilterQuery(parameter) ? filterQuery.toString()
+              : UNCACHED_FILTER_QUERY_PREFIX + filterQuery);
+          }
+        } else {
+          queryParameters.add(parameter);
+        }
+      }
+    }
+
+    query.setQuery(parseFilter(new Filter(queryParameters)));
+    for (String filterQuery : filterQueries) {
+      query.addFilterQuery(filterQuery);
+    }
+  }
+
+  private static boolean isFilterQuery(FilterParameter parameter) {
+    if (parameter instanceof OrFiltersParameters || parameter instanceof AndFiltersParameters) {
+      for (FilterParameter value : ((FiltersParameters) parameter).getValues()) {
+        if (!isFilterQuery(value)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return parameter instanceof SimpleFilterParameter || parameter instanceof OneOfManyFilterParameter
+      || parameter instanceof NotSimpleFilterParameter || parameter instanceof EmptyKeyFilterParameter
+      || parameter instanceof DateRangeFilterParameter || parameter instanceof DateIntervalFilterParameter
+      || parameter instanceof LongRangeFilterParameter || parameter instanceof StringRangeFilterParameter;
+  }
+
+  private static boolean isCacheableFilterQuery(FilterParameter parameter) {
+    if (!parameter.isCacheable()) {
+      return false;
+    }
+    if (parameter instanceof OrFiltersParameters || parameter instanceof AndFiltersParameters) {
+      for (FilterParameter value : ((FiltersParameters) parameter).getValues()) {
+        if (!isCacheableFilterQuery(value)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    // ranges and uuids are rarely asked for twice
+    return !(parameter instanceof DateRangeFilterParameter || parameter instanceof DateIntervalFilterParameter
+      || parameter instanceof LongRangeFilterParameter || parameter instanceof StringRangeFilterParameter
+      || RodaConstants.INDEX_UUID.equals(parameter.getName()));
+  }
+
+  private static FilterParameter getCanonicalFilterParameter(FilterParameter parameter) {
+    if (parameter instanceof OneOfManyFilterParameter) {
+      OneOfManyFilterParameter oneOfMany = (OneOfManyFilterParameter) parameter;
+      return new OneOfManyFilterParameter(oneOfMany.getName(), new ArrayList<>(new TreeSet<>(oneOfMany.getValues())));
+    }
+    return parameter;
+  }
+
   public static String parseFilter(Filter filter) throws RequestNotValidException {
     StringBuilder ret = new StringBuilder();
 
@@ -545,6 +1082,10 @@ public class SolrUtils {
       LongRangeFilterParameter param = (LongRangeFilterParameter) parameter;
       appendRange(ret, param.getName(), Long.class, param.getFromValue(), Long.class, param.getToValue(),
         prefixWithANDOperatorIfBuilderNotEmpty);
+    } else if (parameter instanceof StringRangeFilterParameter) {
+      StringRangeFilterParameter param = (StringRangeFilterParameter) parameter;
+      appendRange(ret, param.getName(), String.class, param.getFromValue(), String.class, param.getToValue(),
+        prefixWithANDOperatorIfBuilderNotEmpty);
     } else if (parameter instanceof NotSimpleFilterParameter) {
       NotSimpleFilterParameter notSimplePar = (NotSimpleFilterParameter) parameter;
       appendNotExactMatch(ret, notSimplePar.getName(), notSimplePar.getValue(), true,
@@ -6,6 +6,7 @@ import org.springframework.batch.core.configuration.JobRegistry;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
@@ -14,10 +15,14 @@ import org.springframework.batch.core.launch.support.SimpleJobOperator;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.server.ViewerConfiguration;
+
 /**
  * @author Gabriel Barros <gbarros@keep.pt>
  */
@@ -41,6 +46,22 @@ public class DenormalizeBatchConfiguration {
     return taskExecutor;
   }
 
+  /**
+   * Runs the partitions of the denormalization jobs. It is not the executor the
+   * jobs are launched on, so jobs waiting for their partitions never hold the
+   * threads those partitions need.
+   */
+  @Bean(name = "denormalizePartitionTaskExecutor")
+  public ThreadPoolTaskExecutor denormalizePartitionTaskExecutor() {
+    int threads = Math.max(1, ViewerConfiguration.getInstance().getViewerConfigurationAsInt(8,
+      ViewerConfiguration.PROPERTY_DENORMALIZE_PARTITION_THREADS));
+    ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+    taskExecutor.setCorePoolSize(threads);
+    taskExecutor.setMaxPoolSize(threads);
+    taskExecutor.setThreadNamePrefix("denormalize-partition-");
+    return taskExecutor;
+  }
+
   @Bean(name = "customJobLauncher")
   public JobLauncher jobLauncher(@Qualifier("customTaskExecutor") ThreadPoolTaskExecutor taskExecutor,
     JobRepository jobRepository) {
@@ -51,9 +72,10 @@ public class DenormalizeBatchConfiguration {
   }
 
   @Bean(name = "denormalizeJob")
-  public Job denormalizeJob(JobListener listener, Step step1) {
+  public Job denormalizeJob(JobListener listener, @Qualifier("step1") Step step1,
+    @Qualifier("denormalizePartitionStep") Step partitionStep, @Qualifier("denormalizeFinishStep") Step finishStep) {
     return jobBuilderFactory.get("denormalizeJob").incrementer(new RunIdIncrementer()).listener(listener).flow(step1)
-      .end().build();
+      .next(partitionStep).next(finishStep).end().build();
   }
 
   @Bean
@@ -61,6 +83,39 @@ public class DenormalizeBatchConfiguration {
     return stepBuilderFactory.get("step1").tasklet(new DenormalizeProcessor()).build();
   }
 
+  /**
+   * Runs the partitions of the root table concurrently. When a failed job is
+   * restarted only the partitions that did not complete run again.
+   */
+  @Bean(name = "denormalizePartitionStep")
+  public Step denormalizePartitionStep(
+    @Qualifier("denormalizePartitionTaskExecutor") ThreadPoolTaskExecutor taskExecutor,
+    @Qualifier("denormalizeWorkerStep") Step workerStep, DenormalizePartitioner partitioner) {
+    int partitions = ViewerConfiguration.getInstance().getViewerConfigurationAsInt(4,
+      ViewerConfiguration.PROPERTY_DENORMALIZE_PARTITIONS);
+    return stepBuilderFactory.get("denormalizePartitionStep").partitioner("denormalizeWorkerStep", partitioner)
+      .step(workerStep).gridSize(Math.max(1, partitions)).taskExecutor(taskExecutor).build();
+  }
+
+  @Bean(name = "denormalizeWorkerStep")
+  public Step denormalizeWorkerStep() {
+    return stepBuilderFactory.get("denormalizeWorkerStep").tasklet(new DenormalizePartitionProcessor()).build();
+  }
+
+  @Bean
+  @StepScope
+  public DenormalizePartitioner denormalizePartitioner(
+    @Value("#{jobParameters['" + ViewerConstants.CONTROLLER_DATABASE_ID_PARAM + "']}") String databaseUUID,
+    @Value("#{jobParameters['" + ViewerConstants.CONTROLLER_TABLE_ID_PARAM + "']}") String tableUUID,
+    @Value("#{jobParameters['" + ViewerConstants.INDEX_ID + "']}") String jobUUID) {
+    return new DenormalizePartitioner(databaseUUID, tableUUID, jobUUID);
+  }
+
+  @Bean(name = "denormalizeFinishStep")
+  public Step denormalizeFinishStep() {
+    return stepBuilderFactory.get("denormalizeFinishStep").tasklet(new DenormalizeFinishProcessor()).build();
+  }
+
   @Bean(name = "customJobOperator")
   public SimpleJobOperator jobOperator(JobExplorer jobExplorer, JobRepository jobRepository, JobRegistry jobRegistry,
                                        @Qualifier("customJobLauncher") JobLauncher jobLauncher) {
@@ -0,0 +1,45 @@
+package com.databasepreservation.common.server.jobs;
+
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.server.controller.JobController;
+import com.databasepreservation.common.transformers.DenormalizeTransformer;
+import com.databasepreservation.model.exception.ModuleException;
+
+/**
+ * Last step of a denormalization, run once every partition is done.
+ */
+public class DenormalizeFinishProcessor implements Tasklet {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DenormalizeFinishProcessor.class);
+
+  @Override
+  public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws ModuleException {
+    StepExecution stepExecution = chunkContext.getStepContext().getStepExecution();
+    JobExecution jobExecution = stepExecution.getJobExecution();
+    String databaseUUID = stepExecution.getJobParameters().getString(ViewerConstants.CONTROLLER_DATABASE_ID_PARAM);
+    String tableUUID = stepExecution.getJobParameters().getString(ViewerConstants.CONTROLLER_TABLE_ID_PARAM);
+    String jobUUID = stepExecution.getJobParameters().getString(ViewerConstants.INDEX_ID);
+
+    try {
+      new DenormalizeTransformer(databaseUUID, tableUUID, jobUUID).finish();
+    } catch (ModuleException e) {
+      try {
+        JobController.setMessageToSolrBatchJob(jobExecution, e.getMessage());
+      } catch (NotFoundException | GenericException ex) {
+        LOGGER.error("Cannot update job on SOLR", ex);
+      }
+      throw e;
+    }
+    return RepeatStatus.FINISHED;
+  }
+}
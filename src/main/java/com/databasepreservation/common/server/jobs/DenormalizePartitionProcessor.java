@@ -0,0 +1,62 @@
+package com.databasepreservation.common.server.jobs;
+
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.server.controller.JobController;
+import com.databasepreservation.common.transformers.DenormalizeTransformer;
+import com.databasepreservation.model.exception.ModuleException;
+
+/**
+ * Denormalizes the range of rows of a partition. The rows it reports as
+ * processed are kept in the step context, so a restarted partition first takes
+ * back the progress of its failed attempt.
+ */
+public class DenormalizePartitionProcessor implements Tasklet {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DenormalizePartitionProcessor.class);
+  private static final String REPORTED_ROWS = "denormalize.partition.reported";
+
+  @Override
+  public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws ModuleException {
+    StepExecution stepExecution = chunkContext.getStepContext().getStepExecution();
+    JobExecution jobExecution = stepExecution.getJobExecution();
+    ExecutionContext context = stepExecution.getExecutionContext();
+    String databaseUUID = stepExecution.getJobParameters().getString(ViewerConstants.CONTROLLER_DATABASE_ID_PARAM);
+    String tableUUID = stepExecution.getJobParameters().getString(ViewerConstants.CONTROLLER_TABLE_ID_PARAM);
+    String jobUUID = stepExecution.getJobParameters().getString(ViewerConstants.INDEX_ID);
+
+    JobProgressService progressService = JobProgressService.getInstance();
+    long previouslyReported = context.getLong(REPORTED_ROWS, 0);
+    if (previouslyReported > 0) {
+      progressService.addProcessedRows(jobUUID, -previouslyReported);
+      context.putLong(REPORTED_ROWS, 0);
+    }
+
+    try {
+      DenormalizeTransformer denormalizeTransformer = new DenormalizeTransformer(databaseUUID, tableUUID, jobUUID);
+      denormalizeTransformer.denormalize(context.getString(DenormalizePartitioner.PARTITION_FROM, null),
+        context.getString(DenormalizePartitioner.PARTITION_TO, null), processedRows -> {
+          progressService.addProcessedRows(jobUUID, processedRows);
+          context.putLong(REPORTED_ROWS, context.getLong(REPORTED_ROWS, 0) + processedRows);
+        });
+    } catch (ModuleException e) {
+      try {
+        JobController.setMessageToSolrBatchJob(jobExecution, e.getMessage());
+      } catch (NotFoundException | GenericException ex) {
+        LOGGER.error("Cannot update job on SOLR", ex);
+      }
+      throw e;
+    }
+    return RepeatStatus.FINISHED;
+  }
+}
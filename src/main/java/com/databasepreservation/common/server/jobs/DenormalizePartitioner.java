@@ -0,0 +1,54 @@
+package com.databasepreservation.common.server.jobs;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import com.databasepreservation.common.transformers.DenormalizeTransformer;
+import com.databasepreservation.model.exception.ModuleException;
+
+/**
+ * Splits the root table of a denormalization in disjoint ranges of row uuids,
+ * one for each worker step.
+ */
+public class DenormalizePartitioner implements Partitioner {
+  public static final String PARTITION_FROM = "denormalize.partition.from";
+  public static final String PARTITION_TO = "denormalize.partition.to";
+  private static final String PARTITION_NAME_PREFIX = "partition";
+
+  private final String databaseUUID;
+  private final String tableUUID;
+  private final String jobUUID;
+
+  public DenormalizePartitioner(String databaseUUID, String tableUUID, String jobUUID) {
+    this.databaseUUID = databaseUUID;
+    this.tableUUID = tableUUID;
+    this.jobUUID = jobUUID;
+  }
+
+  @Override
+  public Map<String, ExecutionContext> partition(int gridSize) {
+    List<String[]> ranges;
+    try {
+      ranges = new DenormalizeTransformer(databaseUUID, tableUUID, jobUUID).getPartitions(gridSize);
+    } catch (ModuleException e) {
+      throw new IllegalStateException("Could not partition table " + tableUUID, e);
+    }
+
+    Map<String, ExecutionContext> partitions = new HashMap<>();
+    for (int i = 0; i < ranges.size(); i++) {
+      ExecutionContext context = new ExecutionContext();
+      if (ranges.get(i)[0] != null) {
+        context.putString(PARTITION_FROM, ranges.get(i)[0]);
+      }
+      if (ranges.get(i)[1] != null) {
+        context.putString(PARTITION_TO, ranges.get(i)[1]);
+      }
+      partitions.put(PARTITION_NAME_PREFIX + i, context);
+    }
+    return partitions;
+  }
+}
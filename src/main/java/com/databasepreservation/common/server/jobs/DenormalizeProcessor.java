@@ -18,10 +18,14 @@ import org.springframework.batch.repeat.RepeatStatus;
 import com.databasepreservation.common.client.ViewerConstants;
 
 /**
+ * First step of a denormalization: reads the related tables into the join maps
+ * used by the partitions of the root table.
+ *
  * @author Gabriel Barros <gbarros@keep.pt>
  */
 public class DenormalizeProcessor implements Tasklet {
   private static final Logger LOGGER = LoggerFactory.getLogger(DenormalizeProcessor.class);
+  public static final String PREPARED = "denormalize.prepared";
 
   @Override
   public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws ModuleException {
@@ -34,6 +38,9 @@ public class DenormalizeProcessor implements Tasklet {
       .getString(ViewerConstants.INDEX_ID);
     try {
       DenormalizeTransformer denormalizeTransformer = new DenormalizeTransformer(databaseUUID, tableUUID, jobUUID);
+      denormalizeTransformer.prepare();
+      // a restarted job keeps its progress, see JobListener
+      jobExecution.getExecutionContext().put(PREPARED, true);
     } catch (ModuleException e) {
       try {
         chunkContext.getStepContext().getStepExecution().setTerminateOnly();
@@ -0,0 +1,244 @@
+package com.databasepreservation.common.server.jobs;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.common.api.common.ConsumesOutputStream;
+import com.databasepreservation.common.exceptions.ViewerException;
+import com.databasepreservation.common.server.ViewerConfiguration;
+import com.databasepreservation.common.server.index.utils.JsonTransformer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Folder under the viewer home where the export jobs write their files, one
+ * folder per job with the request and, once the job is done, the exported
+ * file.
+ *
+ * Exported files are deleted <code>export.jobs.retention_hours</code> after
+ * they were written. When the folder goes over
+ * <code>export.jobs.quota_mb</code>, the oldest exported files are deleted to
+ * make room for a new job, which is refused if that is not enough. Files being
+ * written count towards the quota but are never deleted; the job writing one
+ * fails instead when the folder goes over the quota.
+ */
+public final class ExportArea {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExportArea.class);
+  private static final String REQUEST_FILE = "request.json";
+  private static final String RESULT_FILE = "export";
+  private static final String PARTIAL_SUFFIX = ".part";
+  private static final long CLEANUP_INTERVAL_MINUTES = 10;
+  private static final Pattern JOB_UUID = Pattern.compile("[\\w-]+");
+
+  private static ExportArea instance = null;
+
+  private final Path path;
+  private final long retentionMs;
+  private final long quotaBytes;
+  private final Set<String> cancelled = ConcurrentHashMap.newKeySet();
+
+  private ExportArea() {
+    ViewerConfiguration configuration = ViewerConfiguration.getInstance();
+    path = configuration.getExportsPath();
+    retentionMs = TimeUnit.HOURS.toMillis(Math.max(1,
+      configuration.getViewerConfigurationAsInt(24, ViewerConfiguration.PROPERTY_EXPORT_JOBS_RETENTION_HOURS)));
+    quotaBytes = Math.max(1, configuration.getViewerConfigurationAsInt(10240,
+      ViewerConfiguration.PROPERTY_EXPORT_JOBS_QUOTA_MB)) * FileUtils.ONE_MB;
+
+    ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("export-area-cleaner").setDaemon(true).build());
+    cleaner.scheduleWithFixedDelay(this::deleteExpired, CLEANUP_INTERVAL_MINUTES, CLEANUP_INTERVAL_MINUTES,
+      TimeUnit.MINUTES);
+  }
+
+  public static synchronized ExportArea getInstance() {
+    if (instance == null) {
+      instance = new ExportArea();
+    }
+    return instance;
+  }
+
+  /**
+   * Creates the folder of a new export job with its request, deleting expired
+   * and, if needed, the oldest exported files first.
+   *
+   * @return false if there is no room for the job
+   */
+  public synchronized boolean addJob(String jobUUID, ExportJobRequest request) throws ViewerException {
+    deleteExpired();
+    if (makeRoom() >= quotaBytes) {
+      return false;
+    }
+
+    try {
+      Path jobPath = getJobPath(jobUUID);
+      Files.createDirectories(jobPath);
+      JsonTransformer.writeObjectToFile(request, jobPath.resolve(REQUEST_FILE));
+      return true;
+    } catch (IOException | NotFoundException e) {
+      throw new ViewerException(e);
+    }
+  }
+
+  /**
+   * Deletes the oldest exported files if the folder went over quota.
+   *
+   * @return true if the folder is still over quota, counting the files being
+   *         written
+   */
+  public synchronized boolean isOverQuota() {
+    return makeRoom() > quotaBytes;
+  }
+
+  public ExportJobRequest getRequest(String jobUUID) throws ViewerException, NotFoundException {
+    Path requestFile = getJobPath(jobUUID).resolve(REQUEST_FILE);
+    if (!Files.exists(requestFile)) {
+      throw new NotFoundException("Export job " + jobUUID + " not found");
+    }
+    return JsonTransformer.readObjectFromFile(requestFile, ExportJobRequest.class);
+  }
+
+  /**
+   * Writes the exported file of a job. It is only available to download once
+   * completely written.
+   */
+  public void write(String jobUUID, ConsumesOutputStream output) throws IOException, NotFoundException {
+    Path jobPath = getJobPath(jobUUID);
+    Path partial = jobPath.resolve(RESULT_FILE + PARTIAL_SUFFIX);
+    try {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial))) {
+        output.consumeOutputStream(out);
+      }
+      Files.move(partial, jobPath.resolve(RESULT_FILE), StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(partial);
+    }
+  }
+
+  /**
+   * @return the exported file of a job that completed
+   * @throws NotFoundException
+   *           if the job is not known, did not complete or its file expired
+   */
+  public Path getResult(String jobUUID) throws NotFoundException {
+    Path result = getJobPath(jobUUID).resolve(RESULT_FILE);
+    if (!Files.isRegularFile(result)) {
+      throw new NotFoundException("No exported file for job " + jobUUID);
+    }
+    return result;
+  }
+
+  public void delete(String jobUUID) {
+    try {
+      FileUtils.deleteQuietly(getJobPath(jobUUID).toFile());
+    } catch (NotFoundException e) {
+      LOGGER.debug("Not an export job {}", jobUUID, e);
+    }
+  }
+
+  public void cancel(String jobUUID) {
+    cancelled.add(jobUUID);
+  }
+
+  public boolean isCancelled(String jobUUID) {
+    return cancelled.contains(jobUUID);
+  }
+
+  public void clearCancelled(String jobUUID) {
+    cancelled.remove(jobUUID);
+  }
+
+  private Path getJobPath(String jobUUID) throws NotFoundException {
+    if (jobUUID == null || !JOB_UUID.matcher(jobUUID).matches()) {
+      throw new NotFoundException("Export job " + jobUUID + " not found");
+    }
+    return path.resolve(jobUUID);
+  }
+
+  private List<Path> listJobs() {
+    if (!Files.isDirectory(path)) {
+      return new ArrayList<>();
+    }
+    try (Stream<Path> jobs = Files.list(path)) {
+      return jobs.filter(Files::isDirectory).collect(Collectors.toList());
+    } catch (IOException e) {
+      LOGGER.warn("Could not list the export jobs in {}", path, e);
+      return new ArrayList<>();
+    }
+  }
+
+  /**
+   * Deletes the jobs whose file was written, or that failed, longer than the
+   * retention ago.
+   */
+  private synchronized void deleteExpired() {
+    long expiredBefore = System.currentTimeMillis() - retentionMs;
+    for (Path jobPath : listJobs()) {
+      if (Files.exists(jobPath.resolve(RESULT_FILE + PARTIAL_SUFFIX))) {
+        continue;
+      }
+      Path result = jobPath.resolve(RESULT_FILE);
+      Path reference = Files.exists(result) ? result : jobPath.resolve(REQUEST_FILE);
+      if (getLastModified(reference) < expiredBefore) {
+        LOGGER.debug("Deleting expired export {}", jobPath);
+        FileUtils.deleteQuietly(jobPath.toFile());
+      }
+    }
+  }
+
+  /**
+   * Deletes the oldest exported files until the folder is under quota.
+   *
+   * @return the space used by the folder at the end
+   */
+  private long makeRoom() {
+    List<Path> jobs = listJobs();
+    long usage = 0;
+    for (Path jobPath : jobs) {
+      usage += FileUtils.sizeOfDirectory(jobPath.toFile());
+    }
+
+    List<Path> results = jobs.stream().map(jobPath -> jobPath.resolve(RESULT_FILE)).filter(Files::isRegularFile)
+      .sorted(Comparator.comparingLong(ExportArea::getLastModified)).collect(Collectors.toList());
+    for (Path result : results) {
+      if (usage < quotaBytes) {
+        break;
+      }
+      File jobFolder = result.getParent().toFile();
+      long size = FileUtils.sizeOfDirectory(jobFolder);
+      LOGGER.info("Deleting export {} to stay under the export quota", jobFolder);
+      if (FileUtils.deleteQuietly(jobFolder)) {
+        usage -= size;
+      }
+    }
+    return usage;
+  }
+
+  private static long getLastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.databasepreservation.common.server.jobs;
+
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.databasepreservation.common.server.ViewerConfiguration;
+
+/**
+ * Exports of table rows as background jobs, written to the {@link ExportArea}
+ * to be downloaded later. Jobs run on their own executor, so at most
+ * <code>export.jobs.concurrency</code> exports run at the same time and the
+ * remaining ones wait, in submission order, in a bounded queue.
+ */
+@Configuration
+public class ExportBatchConfiguration {
+  public static final String EXPORT_JOB = "exportJob";
+
+  @Autowired
+  public JobBuilderFactory jobBuilderFactory;
+
+  @Autowired
+  public StepBuilderFactory stepBuilderFactory;
+
+  @Bean(name = "exportTaskExecutor")
+  public ThreadPoolTaskExecutor exportTaskExecutor() {
+    int concurrency = ViewerConfiguration.getInstance().getViewerConfigurationAsInt(2,
+      ViewerConfiguration.PROPERTY_EXPORT_JOBS_CONCURRENCY);
+    ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+    taskExecutor.setCorePoolSize(concurrency);
+    taskExecutor.setMaxPoolSize(concurrency);
+    taskExecutor.setQueueCapacity(ViewerConfiguration.getInstance().getViewerConfigurationAsInt(20,
+      ViewerConfiguration.PROPERTY_EXPORT_JOBS_QUEUE_CAPACITY));
+    taskExecutor.setThreadNamePrefix("export-job-");
+    return taskExecutor;
+  }
+
+  @Bean(name = "exportJobLauncher")
+  public JobLauncher exportJobLauncher(@Qualifier("exportTaskExecutor") ThreadPoolTaskExecutor taskExecutor,
+    JobRepository jobRepository) {
+    SimpleJobLauncher jobLauncher = new SimpleJobLauncher();
+    jobLauncher.setTaskExecutor(taskExecutor);
+    jobLauncher.setJobRepository(jobRepository);
+    return jobLauncher;
+  }
+
+  @Bean(name = EXPORT_JOB)
+  public Job exportJob(ExportJobListener listener, @Qualifier("exportStep") Step exportStep) {
+    return jobBuilderFactory.get(EXPORT_JOB).incrementer(new RunIdIncrementer()).listener(listener).flow(exportStep)
+      .end().build();
+  }
+
+  @Bean(name = "exportStep")
+  public Step exportStep() {
+    return stepBuilderFactory.get("exportStep").tasklet(new ExportProcessor()).build();
+  }
+}
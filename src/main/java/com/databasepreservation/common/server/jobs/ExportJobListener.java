@@ -0,0 +1,47 @@
+package com.databasepreservation.common.server.jobs;
+
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.listener.JobExecutionListenerSupport;
+import org.springframework.stereotype.Component;
+
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.server.controller.JobController;
+
+/**
+ * Keeps the export job in the batch jobs collection up to date. The job is
+ * added there when it is submitted, as it may wait in the queue for a while.
+ */
+@Component
+public class ExportJobListener extends JobExecutionListenerSupport {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExportJobListener.class);
+
+  @Override
+  public void beforeJob(JobExecution jobExecution) {
+    super.beforeJob(jobExecution);
+    try {
+      JobController.editSolrBatchJob(jobExecution);
+      LOGGER.info("Export job STARTED for table "
+        + jobExecution.getJobParameters().getString(ViewerConstants.CONTROLLER_TABLE_ID_PARAM));
+    } catch (GenericException | NotFoundException e) {
+      LOGGER.error("Cannot update job on SOLR", e);
+    }
+  }
+
+  @Override
+  public void afterJob(JobExecution jobExecution) {
+    String jobUUID = jobExecution.getJobParameters().getString(ViewerConstants.INDEX_ID);
+    ExportArea.getInstance().clearCancelled(jobUUID);
+    JobProgressService.getInstance().finish(jobUUID);
+    try {
+      JobController.editSolrBatchJob(jobExecution);
+      LOGGER.info("Export job " + jobExecution.getStatus() + " for table "
+        + jobExecution.getJobParameters().getString(ViewerConstants.CONTROLLER_TABLE_ID_PARAM));
+    } catch (NotFoundException | GenericException e) {
+      LOGGER.error("Cannot update job on SOLR", e);
+    }
+  }
+}
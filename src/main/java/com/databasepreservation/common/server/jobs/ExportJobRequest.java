@@ -0,0 +1,130 @@
+package com.databasepreservation.common.server.jobs;
+
+import java.io.Serializable;
+
+/**
+ * What an export job exports, kept in the export area next to the file it
+ * produces.
+ */
+public class ExportJobRequest implements Serializable {
+  private static final long serialVersionUID = 6184419253360522875L;
+
+  private String databaseUUID;
+  private String collectionUUID;
+  private String tableId;
+  private String findRequestJson;
+  private String filename;
+  private String zipFilename;
+  private boolean exportDescriptions;
+  private boolean exportLobs;
+  private String fieldsToHeader;
+  private String downloadFilename;
+  private String mediaType;
+  private String owner;
+
+  public ExportJobRequest() {
+  }
+
+  public String getDatabaseUUID() {
+    return databaseUUID;
+  }
+
+  public void setDatabaseUUID(String databaseUUID) {
+    this.databaseUUID = databaseUUID;
+  }
+
+  public String getCollectionUUID() {
+    return collectionUUID;
+  }
+
+  public void setCollectionUUID(String collectionUUID) {
+    this.collectionUUID = collectionUUID;
+  }
+
+  public String getTableId() {
+    return tableId;
+  }
+
+  public void setTableId(String tableId) {
+    this.tableId = tableId;
+  }
+
+  public String getFindRequestJson() {
+    return findRequestJson;
+  }
+
+  public void setFindRequestJson(String findRequestJson) {
+    this.findRequestJson = findRequestJson;
+  }
+
+  public String getFilename() {
+    return filename;
+  }
+
+  public void setFilename(String filename) {
+    this.filename = filename;
+  }
+
+  public String getZipFilename() {
+    return zipFilename;
+  }
+
+  public void setZipFilename(String zipFilename) {
+    this.zipFilename = zipFilename;
+  }
+
+  public boolean isExportDescriptions() {
+    return exportDescriptions;
+  }
+
+  public void setExportDescriptions(boolean exportDescriptions) {
+    this.exportDescriptions = exportDescriptions;
+  }
+
+  public boolean isExportLobs() {
+    return exportLobs;
+  }
+
+  public void setExportLobs(boolean exportLobs) {
+    this.exportLobs = exportLobs;
+  }
+
+  public String getFieldsToHeader() {
+    return fieldsToHeader;
+  }
+
+  public void setFieldsToHeader(String fieldsToHeader) {
+    this.fieldsToHeader = fieldsToHeader;
+  }
+
+  /**
+   * @return the name of the file given to the client that downloads the export
+   */
+  public String getDownloadFilename() {
+    return downloadFilename;
+  }
+
+  public void setDownloadFilename(String downloadFilename) {
+    this.downloadFilename = downloadFilename;
+  }
+
+  public String getMediaType() {
+    return mediaType;
+  }
+
+  public void setMediaType(String mediaType) {
+    this.mediaType = mediaType;
+  }
+
+  /**
+   * @return the name of the user that submitted the job, the only one besides
+   *         the administrators that may follow or download it
+   */
+  public String getOwner() {
+    return owner;
+  }
+
+  public void setOwner(String owner) {
+    this.owner = owner;
+  }
+}
@@ -0,0 +1,110 @@
+package com.databasepreservation.common.server.jobs;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.utils.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import com.databasepreservation.common.api.v1.utils.ExportOutputStreams;
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.client.index.FindRequest;
+import com.databasepreservation.common.client.models.status.collection.CollectionStatus;
+import com.databasepreservation.common.client.models.status.collection.TableStatus;
+import com.databasepreservation.common.client.models.structure.ViewerDatabase;
+import com.databasepreservation.common.client.models.structure.ViewerJobStatus;
+import com.databasepreservation.common.exceptions.ViewerException;
+import com.databasepreservation.common.server.ViewerFactory;
+import com.databasepreservation.common.server.controller.JobController;
+import com.databasepreservation.common.server.index.DatabaseRowsSolrManager;
+import com.databasepreservation.model.exception.ModuleException;
+
+/**
+ * Writes the export described by the request of the job to the export area.
+ * The progress is counted in exported rows; a job that is stopped gives up at
+ * the next row, and one that takes the export area over its quota fails.
+ */
+public class ExportProcessor implements Tasklet {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExportProcessor.class);
+  // measuring the export area walks its folders, so not on every row
+  private static final long QUOTA_CHECK_ROWS = 1000;
+
+  @Override
+  public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws ModuleException {
+    StepExecution stepExecution = chunkContext.getStepContext().getStepExecution();
+    JobExecution jobExecution = stepExecution.getJobExecution();
+    String jobUUID = stepExecution.getJobParameters().getString(ViewerConstants.INDEX_ID);
+    ExportArea exportArea = ExportArea.getInstance();
+
+    if (exportArea.isCancelled(jobUUID)) {
+      // cancelled while waiting in the queue
+      stepExecution.setTerminateOnly();
+      stepExecution.setExitStatus(new ExitStatus(ViewerJobStatus.STOPPED.name(), "Cancelled before starting"));
+      return RepeatStatus.FINISHED;
+    }
+
+    try {
+      ExportJobRequest exportRequest = exportArea.getRequest(jobUUID);
+      String databaseUUID = exportRequest.getDatabaseUUID();
+      DatabaseRowsSolrManager solrManager = ViewerFactory.getSolrManager();
+      ViewerDatabase database = solrManager.retrieve(ViewerDatabase.class, databaseUUID);
+      CollectionStatus configurationCollection = ViewerFactory.getConfigurationManager()
+        .getConfigurationCollection(databaseUUID, databaseUUID);
+      TableStatus configTable = configurationCollection.getTableStatusByTableId(exportRequest.getTableId());
+      FindRequest findRequest = JsonUtils.getObjectFromJson(exportRequest.getFindRequestJson(), FindRequest.class);
+
+      long rowsToProcess = solrManager.countRows(databaseUUID, findRequest.filter);
+      if (findRequest.sublist != null) {
+        rowsToProcess = Math.max(0, Math.min(rowsToProcess - findRequest.sublist.getFirstElementIndex(),
+          findRequest.sublist.getMaximumElementCount()));
+      }
+      JobProgressService progress = JobProgressService.getInstance();
+      progress.start(jobUUID, rowsToProcess, 0);
+      final AtomicLong exportedRows = new AtomicLong();
+
+      // a page of rows is fetched at once, only the scans of all the rows are
+      // followed row by row
+      exportArea.write(jobUUID,
+        ExportOutputStreams.create(solrManager, configurationCollection, database, configTable, findRequest,
+          exportRequest.getFilename(), exportRequest.getZipFilename(), exportRequest.isExportDescriptions(),
+          exportRequest.isExportLobs(), exportRequest.getFieldsToHeader(), () -> {
+            if (exportArea.isCancelled(jobUUID)) {
+              throw new CancellationException("Export job " + jobUUID + " was stopped");
+            }
+            if (exportedRows.incrementAndGet() % QUOTA_CHECK_ROWS == 0 && exportArea.isOverQuota()) {
+              throw new ExportQuotaExceededException("Export job " + jobUUID + " went over the export quota");
+            }
+            progress.addProcessedRows(jobUUID, 1);
+          }));
+      if (findRequest.sublist != null) {
+        progress.addProcessedRows(jobUUID, rowsToProcess);
+      }
+    } catch (CancellationException e) {
+      stepExecution.setTerminateOnly();
+      stepExecution.setExitStatus(new ExitStatus(ViewerJobStatus.STOPPED.name(), "Cancelled"));
+    } catch (ViewerException | GenericException | NotFoundException | RequestNotValidException | IOException
+      | ExportQuotaExceededException e) {
+      stepExecution.setTerminateOnly();
+      stepExecution.setExitStatus(new ExitStatus(ViewerJobStatus.FAILED.name(), e.getMessage()));
+      try {
+        JobController.setMessageToSolrBatchJob(jobExecution, e.getMessage());
+      } catch (NotFoundException | GenericException ex) {
+        LOGGER.error("Cannot update job on SOLR", ex);
+      }
+      throw new ModuleException().withMessage("Could not export job " + jobUUID).withCause(e);
+    }
+    return RepeatStatus.FINISHED;
+  }
+}
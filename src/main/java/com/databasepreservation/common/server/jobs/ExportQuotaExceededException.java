@@ -0,0 +1,12 @@
+package com.databasepreservation.common.server.jobs;
+
+/**
+ * Thrown while writing an export when the export area goes over its quota.
+ */
+public class ExportQuotaExceededException extends RuntimeException {
+  private static final long serialVersionUID = -2730419157283642271L;
+
+  public ExportQuotaExceededException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,67 @@
+package com.databasepreservation.common.server.jobs;
+
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.databasepreservation.common.server.ViewerConfiguration;
+
+/**
+ * Ingestion of SIARD files as background jobs. Jobs run on their own
+ * executor, so at most <code>ingest.jobs.concurrency</code> conversions run at
+ * the same time and the remaining ones wait, in submission order, in a bounded
+ * queue.
+ */
+@Configuration
+public class IngestBatchConfiguration {
+  public static final String INGEST_JOB = "ingestJob";
+
+  @Autowired
+  public JobBuilderFactory jobBuilderFactory;
+
+  @Autowired
+  public StepBuilderFactory stepBuilderFactory;
+
+  @Bean(name = "ingestTaskExecutor")
+  public ThreadPoolTaskExecutor ingestTaskExecutor() {
+    int concurrency = ViewerConfiguration.getInstance().getViewerConfigurationAsInt(2,
+      ViewerConfiguration.PROPERTY_INGEST_JOBS_CONCURRENCY);
+    ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+    taskExecutor.setCorePoolSize(concurrency);
+    taskExecutor.setMaxPoolSize(concurrency);
+    taskExecutor.setQueueCapacity(ViewerConfiguration.getInstance().getViewerConfigurationAsInt(20,
+      ViewerConfiguration.PROPERTY_INGEST_JOBS_QUEUE_CAPACITY));
+    taskExecutor.setThreadNamePrefix("ingest-job-");
+    return taskExecutor;
+  }
+
+  @Bean(name = "ingestJobLauncher")
+  public JobLauncher ingestJobLauncher(@Qualifier("ingestTaskExecutor") ThreadPoolTaskExecutor taskExecutor,
+    JobRepository jobRepository) {
+    SimpleJobLauncher jobLauncher = new SimpleJobLauncher();
+    jobLauncher.setTaskExecutor(taskExecutor);
+    jobLauncher.setJobRepository(jobRepository);
+    return jobLauncher;
+  }
+
+  @Bean(name = INGEST_JOB)
+  public Job ingestJob(IngestJobListener listener, @Qualifier("ingestStep") Step ingestStep) {
+    return jobBuilderFactory.get(INGEST_JOB).incrementer(new RunIdIncrementer()).listener(listener).flow(ingestStep)
+      .end().build();
+  }
+
+  @Bean(name = "ingestStep")
+  public Step ingestStep() {
+    return stepBuilderFactory.get("ingestStep").tasklet(new IngestProcessor()).build();
+  }
+}
@@ -0,0 +1,29 @@
+package com.databasepreservation.common.server.jobs;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Databases whose ingestion was asked to stop. A queued ingestion job that
+ * was cancelled never starts, a running one is interrupted by the export
+ * module at the next check, leaving its checkpoints behind so it can be
+ * resumed later.
+ */
+public final class IngestCancellationRegistry {
+  private static final Set<String> CANCELLED = ConcurrentHashMap.newKeySet();
+
+  private IngestCancellationRegistry() {
+  }
+
+  public static void cancel(String databaseUUID) {
+    CANCELLED.add(databaseUUID);
+  }
+
+  public static boolean isCancelled(String databaseUUID) {
+    return CANCELLED.contains(databaseUUID);
+  }
+
+  public static void clear(String databaseUUID) {
+    CANCELLED.remove(databaseUUID);
+  }
+}
@@ -0,0 +1,45 @@
+package com.databasepreservation.common.server.jobs;
+
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.listener.JobExecutionListenerSupport;
+import org.springframework.stereotype.Component;
+
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.server.controller.JobController;
+
+/**
+ * Keeps the ingestion job in the batch jobs collection up to date. The job is
+ * added there when it is submitted, as it may wait in the queue for a while.
+ */
+@Component
+public class IngestJobListener extends JobExecutionListenerSupport {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IngestJobListener.class);
+
+  @Override
+  public void beforeJob(JobExecution jobExecution) {
+    super.beforeJob(jobExecution);
+    try {
+      JobController.editSolrBatchJob(jobExecution);
+      LOGGER.info("Ingestion job STARTED for database "
+        + jobExecution.getJobParameters().getString(ViewerConstants.CONTROLLER_DATABASE_ID_PARAM));
+    } catch (GenericException | NotFoundException e) {
+      LOGGER.error("Cannot update job on SOLR", e);
+    }
+  }
+
+  @Override
+  public void afterJob(JobExecution jobExecution) {
+    String databaseUUID = jobExecution.getJobParameters().getString(ViewerConstants.CONTROLLER_DATABASE_ID_PARAM);
+    IngestCancellationRegistry.clear(databaseUUID);
+    try {
+      JobController.editSolrBatchJob(jobExecution);
+      LOGGER.info("Ingestion job " + jobExecution.getStatus() + " for database " + databaseUUID);
+    } catch (NotFoundException | GenericException e) {
+      LOGGER.error("Cannot update job on SOLR", e);
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package com.databasepreservation.common.server.jobs;
+
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.client.models.structure.ViewerDatabase;
+import com.databasepreservation.common.client.models.structure.ViewerDatabaseStatus;
+import com.databasepreservation.common.client.models.structure.ViewerJobStatus;
+import com.databasepreservation.common.server.ViewerFactory;
+import com.databasepreservation.common.server.controller.JobController;
+import com.databasepreservation.common.server.controller.SIARDController;
+import com.databasepreservation.model.exception.ModuleException;
+
+/**
+ * Converts the SIARD file of a database into its rows collection.
+ */
+public class IngestProcessor implements Tasklet {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IngestProcessor.class);
+
+  @Override
+  public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws ModuleException {
+    StepExecution stepExecution = chunkContext.getStepContext().getStepExecution();
+    JobExecution jobExecution = stepExecution.getJobExecution();
+    String databaseUUID = stepExecution.getJobParameters().getString(ViewerConstants.CONTROLLER_DATABASE_ID_PARAM);
+
+    if (IngestCancellationRegistry.isCancelled(databaseUUID)) {
+      // cancelled while waiting in the queue
+      stepExecution.setTerminateOnly();
+      stepExecution.setExitStatus(new ExitStatus(ViewerJobStatus.STOPPED.name(), "Cancelled before starting"));
+      return RepeatStatus.FINISHED;
+    }
+
+    try {
+      ViewerDatabase database = ViewerFactory.getSolrManager().retrieve(ViewerDatabase.class, databaseUUID);
+      SIARDController.loadFromLocal(database.getPath(), databaseUUID);
+    } catch (GenericException | NotFoundException e) {
+      ViewerFactory.getSolrManager().markDatabaseCollection(databaseUUID, ViewerDatabaseStatus.ERROR);
+      stepExecution.setTerminateOnly();
+      if (IngestCancellationRegistry.isCancelled(databaseUUID)) {
+        stepExecution.setExitStatus(new ExitStatus(ViewerJobStatus.STOPPED.name(), "Cancelled"));
+        return RepeatStatus.FINISHED;
+      }
+
+      stepExecution.setExitStatus(new ExitStatus(ViewerJobStatus.FAILED.name(), e.getMessage()));
+      try {
+        JobController.setMessageToSolrBatchJob(jobExecution, e.getMessage());
+      } catch (NotFoundException | GenericException ex) {
+        LOGGER.error("Cannot update job on SOLR", ex);
+      }
+      throw new ModuleException().withMessage("Could not ingest database " + databaseUUID).withCause(e);
+    }
+    return RepeatStatus.FINISHED;
+  }
+}
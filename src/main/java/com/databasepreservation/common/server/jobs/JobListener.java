@@ -16,9 +16,11 @@ import org.springframework.stereotype.Component;
 
 import com.databasepreservation.common.client.ViewerConstants;
 import com.databasepreservation.common.client.models.status.denormalization.DenormalizeConfiguration;
+import com.databasepreservation.common.client.models.structure.ViewerJob;
 import com.databasepreservation.common.client.models.structure.ViewerJobStatus;
 import com.databasepreservation.common.exceptions.ViewerException;
 import com.databasepreservation.common.server.ViewerConfiguration;
+import com.databasepreservation.common.server.ViewerFactory;
 import com.databasepreservation.common.server.controller.JobController;
 import com.databasepreservation.common.server.index.utils.JsonTransformer;
 
@@ -33,7 +35,16 @@ public class JobListener extends JobExecutionListenerSupport {
   public void beforeJob(JobExecution jobExecution) {
     super.beforeJob(jobExecution);
     try {
-      JobController.addSolrBatchJob(jobExecution);
+      if (jobExecution.getExecutionContext().containsKey(DenormalizeProcessor.PREPARED)) {
+        // a restarted job keeps the progress of the partitions that completed
+        JobController.editSolrBatchJob(jobExecution);
+        String jobUUID = jobExecution.getJobParameters().getString(ViewerConstants.INDEX_ID);
+        ViewerJob job = ViewerFactory.getSolrManager().retrieve(ViewerJob.class, jobUUID);
+        JobProgressService.getInstance().start(jobUUID, job.getRowsToProcess() != null ? job.getRowsToProcess() : 0,
+          job.getProcessRows() != null ? job.getProcessRows() : 0);
+      } else {
+        JobController.addSolrBatchJob(jobExecution);
+      }
       String databaseUUID = jobExecution.getJobParameters().getString(ViewerConstants.CONTROLLER_DATABASE_ID_PARAM);
       String tableUUID = jobExecution.getJobParameters().getString(ViewerConstants.CONTROLLER_TABLE_ID_PARAM);
       updateConfigurationFile(databaseUUID, tableUUID, ViewerJobStatus.valueOf(jobExecution.getStatus().name()),
@@ -48,6 +59,7 @@ public class JobListener extends JobExecutionListenerSupport {
 
   @Override
   public void afterJob(JobExecution jobExecution) {
+    JobProgressService.getInstance().finish(jobExecution.getJobParameters().getString(ViewerConstants.INDEX_ID));
     try {
       JobController.editSolrBatchJob(jobExecution);
       if (jobExecution.getStatus() == BatchStatus.COMPLETED) {
@@ -0,0 +1,175 @@
+package com.databasepreservation.common.server.jobs;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.common.client.models.structure.ViewerJob;
+import com.databasepreservation.common.server.ViewerConfiguration;
+import com.databasepreservation.common.server.ViewerFactory;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Keeps the progress of the running batch jobs in memory. Workers only
+ * increment counters; the progress, with the throughput and the estimated time
+ * remaining, is written to the batch jobs collection every few seconds or
+ * every so many rows, whichever comes first. {@link #fillProgress(ViewerJob)}
+ * gives the live values of a job without going to Solr.
+ */
+public final class JobProgressService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(JobProgressService.class);
+
+  private static JobProgressService instance = null;
+
+  private final Map<String, JobProgress> jobs = new ConcurrentHashMap<>();
+  private final long flushRows;
+  private final ScheduledExecutorService flusher;
+
+  private JobProgressService() {
+    ViewerConfiguration configuration = ViewerConfiguration.getInstance();
+    long flushIntervalMs = Math.max(100, configuration.getViewerConfigurationAsInt(2000,
+      ViewerConfiguration.PROPERTY_JOBS_PROGRESS_FLUSH_INTERVAL_MS));
+    flushRows = Math.max(1,
+      configuration.getViewerConfigurationAsInt(50000, ViewerConfiguration.PROPERTY_JOBS_PROGRESS_FLUSH_ROWS));
+
+    flusher = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("job-progress-flusher").setDaemon(true).build());
+    flusher.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  public static synchronized JobProgressService getInstance() {
+    if (instance == null) {
+      instance = new JobProgressService();
+    }
+    return instance;
+  }
+
+  /**
+   * Starts following a job, replacing what was known about it, and writes its
+   * progress right away.
+   *
+   * @param processedRows
+   *          rows already processed, for a job that is resumed
+   */
+  public void start(String jobUUID, long rowsToProcess, long processedRows) {
+    JobProgress progress = new JobProgress(rowsToProcess, processedRows);
+    jobs.put(jobUUID, progress);
+    flush(jobUUID, progress);
+  }
+
+  public void setRowsToProcess(String jobUUID, long rowsToProcess) {
+    JobProgress progress = jobs.computeIfAbsent(jobUUID, k -> new JobProgress(0, 0));
+    progress.rowsToProcess.set(rowsToProcess);
+    flush(jobUUID, progress);
+  }
+
+  /**
+   * Adds to the processed rows of a job. A negative number takes back rows that
+   * will be processed again.
+   */
+  public void addProcessedRows(String jobUUID, long rows) {
+    JobProgress progress = jobs.computeIfAbsent(jobUUID, k -> new JobProgress(0, 0));
+    progress.processedRows.addAndGet(rows);
+    progress.dirty.set(true);
+    if (progress.unflushedRows.addAndGet(Math.abs(rows)) >= flushRows) {
+      flush(jobUUID, progress);
+    }
+  }
+
+  /**
+   * Writes the last progress of a job and stops following it.
+   */
+  public void finish(String jobUUID) {
+    JobProgress progress = jobs.remove(jobUUID);
+    if (progress != null) {
+      flush(jobUUID, progress);
+    }
+  }
+
+  /**
+   * Replaces the progress of the job with the live one, if the job is being
+   * followed.
+   */
+  public void fillProgress(ViewerJob job) {
+    JobProgress progress = jobs.get(job.getUuid());
+    if (progress != null) {
+      long processedRows = progress.processedRows.get();
+      job.setRowsToProcess(progress.rowsToProcess.get());
+      job.setProcessRows(processedRows);
+      job.setRowsPerSecond(progress.getRowsPerSecond(processedRows));
+      job.setEstimatedSecondsRemaining(progress.getEstimatedSecondsRemaining(processedRows));
+    }
+  }
+
+  private void flushAll() {
+    for (Map.Entry<String, JobProgress> entry : jobs.entrySet()) {
+      if (entry.getValue().dirty.get()) {
+        flush(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private void flush(String jobUUID, JobProgress progress) {
+    // one flush of the same job at a time, so an older value never overwrites
+    // a newer one
+    synchronized (progress) {
+      progress.dirty.set(false);
+      progress.unflushedRows.set(0);
+      long processedRows = progress.processedRows.get();
+      try {
+        ViewerFactory.getSolrManager().editBatchJobProgress(jobUUID, progress.rowsToProcess.get(), processedRows,
+          progress.getRowsPerSecond(processedRows), progress.getEstimatedSecondsRemaining(processedRows));
+      } catch (RuntimeException e) {
+        LOGGER.warn("Could not write the progress of job {}", jobUUID, e);
+      }
+    }
+  }
+
+  private static class JobProgress {
+    private final AtomicLong rowsToProcess;
+    private final AtomicLong processedRows;
+    private final AtomicLong unflushedRows = new AtomicLong(0);
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    // the throughput only counts the rows processed since the job (re)started
+    private final long startRows;
+    private final long startTime = System.currentTimeMillis();
+
+    JobProgress(long rowsToProcess, long processedRows) {
+      this.rowsToProcess = new AtomicLong(rowsToProcess);
+      this.processedRows = new AtomicLong(processedRows);
+      this.startRows = processedRows;
+    }
+
+    long getRowsPerSecond(long processedRows) {
+      long elapsedMs = System.currentTimeMillis() - startTime;
+      if (elapsedMs <= 0) {
+        return 0;
+      }
+      return Math.max(0, (processedRows - startRows) * 1000 / elapsedMs);
+    }
+
+    /**
+     * @return the seconds left at the current throughput, null while there is
+     *         no throughput yet
+     */
+    Long getEstimatedSecondsRemaining(long processedRows) {
+      long remainingRows = Math.max(0, rowsToProcess.get() - processedRows);
+      long elapsedMs = System.currentTimeMillis() - startTime;
+      long rowsDone = processedRows - startRows;
+      if (remainingRows == 0) {
+        return 0L;
+      }
+      if (rowsDone <= 0 || elapsedMs <= 0) {
+        return null;
+      }
+      return remainingRows * elapsedMs / rowsDone / 1000;
+    }
+  }
+}
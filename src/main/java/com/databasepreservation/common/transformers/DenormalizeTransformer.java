@@ -1,22 +1,43 @@
 package com.databasepreservation.common.transformers;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 
+import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.common.SolrInputDocument;
+import org.mapdb.DB;
+import org.mapdb.DBException;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
 import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.v2.index.sublist.Sublist;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.databasepreservation.common.client.ViewerConstants;
-import com.databasepreservation.common.client.index.filter.AndFiltersParameters;
+import com.databasepreservation.common.client.index.IndexResult;
+import com.databasepreservation.common.client.index.facets.Facets;
 import com.databasepreservation.common.client.index.filter.Filter;
-import com.databasepreservation.common.client.index.filter.FilterParameter;
-import com.databasepreservation.common.client.index.filter.SimpleFilterParameter;
+import com.databasepreservation.common.client.index.filter.StringRangeFilterParameter;
+import com.databasepreservation.common.client.index.sort.SortParameter;
+import com.databasepreservation.common.client.index.sort.Sorter;
 import com.databasepreservation.common.client.models.status.collection.NestedColumnStatus;
 import com.databasepreservation.common.client.models.status.denormalization.DenormalizeConfiguration;
 import com.databasepreservation.common.client.models.status.denormalization.ReferencesConfiguration;
@@ -30,14 +51,46 @@ import com.databasepreservation.common.client.tools.FilterUtils;
 import com.databasepreservation.common.server.ViewerConfiguration;
 import com.databasepreservation.common.server.ViewerFactory;
 import com.databasepreservation.common.server.index.DatabaseRowsSolrManager;
+import com.databasepreservation.common.server.index.RowsBulkIndexer;
 import com.databasepreservation.common.server.index.utils.IterableIndexResult;
 import com.databasepreservation.common.server.index.utils.JsonTransformer;
+import com.databasepreservation.common.server.jobs.JobProgressService;
 import com.databasepreservation.model.exception.ModuleException;
 
 /**
+ * Adds to each row of a table the rows of its related tables as nested
+ * documents.
+ *
+ * {@link #prepare()} reads each related table once and keeps its rows in a disk
+ * backed map (under the MapDB folder), ordered by the values of the columns
+ * that join it to its parent table. {@link #denormalize(String, String, LongConsumer)}
+ * then reads a range of rows of the root table, looks up their nested documents
+ * in those maps and sends them to Solr in bulk. Several ranges can be
+ * denormalized at the same time. {@link #finish()} commits the rows, updates
+ * the collection status and keeps a copy of the configuration it applied.
+ *
+ * When such a copy exists, {@link #prepare()} compares it with the new
+ * configuration and only the related tables whose nested documents change are
+ * read, deleted and rebuilt. The nested documents of the other related tables
+ * are left in place, but as their search tokens are not stored every row gets
+ * them set again from the nested documents it keeps.
+ *
  * @author Gabriel Barros <gbarros@keep.pt>
  */
 public class DenormalizeTransformer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DenormalizeTransformer.class);
+
+  // join key values are separated by KEY_SEPARATOR and followed by
+  // ROW_SEPARATOR and the row uuid, so all rows of a key form a range
+  private static final char KEY_SEPARATOR = '\u0001';
+  private static final char ROW_SEPARATOR = '\u0000';
+  private static final int PROGRESS_UPDATE_ROWS = 1000;
+  // what prepare() decided, kept in the map file next to the join maps
+  private static final String INCREMENTAL = "incremental";
+  private static final String REBUILT_RELATIONS = "rebuilt";
+  private static final String DELETED_RELATIONS = "deleted";
+  private static final String KEPT_NESTED_DOCUMENTS = "[child limit=-1 fl=*]";
+
   private final DatabaseRowsSolrManager solrManager;
   private final DenormalizeConfiguration denormalizeConfiguration;
   private final ViewerDatabase database;
@@ -55,24 +108,249 @@ public class DenormalizeTransformer {
       denormalizeConfiguration = getConfiguration(
         Paths.get(ViewerConstants.DENORMALIZATION_STATUS_PREFIX + tableUUID + ViewerConstants.JSON_EXTENSION),
         DenormalizeConfiguration.class);
-      cleanNestedDocuments();
-      queryOverRootTable();
-      updateCollectionStatus();
     } catch (NotFoundException | GenericException e) {
       throw new ModuleException().withMessage("Cannot retrieved database from solr");
     }
   }
 
-  private void cleanNestedDocuments() {
-    Filter filter = FilterUtils.filterByTable(new Filter(), denormalizeConfiguration.getTableID());
+  /**
+   * Finds the related tables to rebuild, reads them into the join maps and
+   * resets the job progress.
+   */
+  public void prepare() throws ModuleException {
+    Path appliedFile = getAppliedConfigurationFile();
+    DenormalizeConfiguration appliedConfiguration = null;
+    if (Files.exists(appliedFile)) {
+      appliedConfiguration = JsonTransformer.readObjectFromFile(appliedFile, DenormalizeConfiguration.class);
+    }
 
-    IterableIndexResult allRows = solrManager.findAllRows(databaseUUID, filter, null, new ArrayList<>());
-    for (ViewerRow row : allRows) {
-      solrManager.deleteNestedDocuments(databaseUUID, row.getUuid());
+    Set<String> rebuiltRelations = new HashSet<>();
+    Set<String> deletedRelations = new HashSet<>();
+    if (appliedConfiguration != null) {
+      Map<String, RelatedTablesConfiguration> appliedRelations = new HashMap<>();
+      Map<String, String> appliedParents = new HashMap<>();
+      collectRelations(appliedConfiguration.getRelatedTables(), null, appliedRelations, appliedParents);
+      findChangedRelations(denormalizeConfiguration.getRelatedTables(), null, false, appliedRelations,
+        appliedParents, rebuiltRelations);
+      // what is left was removed from the configuration
+      deletedRelations.addAll(appliedRelations.keySet());
+      deletedRelations.addAll(rebuiltRelations);
+      LOGGER.info("Denormalization of table {} rebuilds {} related tables and removes {}", tableUUID,
+        rebuiltRelations.size(), appliedRelations.size());
+    } else {
+      Map<String, RelatedTablesConfiguration> relations = new HashMap<>();
+      collectRelations(denormalizeConfiguration.getRelatedTables(), null, relations, new HashMap<>());
+      rebuiltRelations.addAll(relations.keySet());
     }
 
-    for (RelatedTablesConfiguration relatedTable : denormalizeConfiguration.getRelatedTables()) {
-      solrManager.deleteNestedDocuments(databaseUUID, relatedTable.getUuid());
+    Path mapDBFile = getMapDBFile();
+    try {
+      Files.createDirectories(mapDBFile.getParent());
+      Files.deleteIfExists(mapDBFile);
+    } catch (IOException e) {
+      throw new ModuleException().withMessage("Could not prepare " + mapDBFile).withCause(e);
+    }
+
+    DB db = DBMaker.fileDB(mapDBFile.toFile()).fileMmapEnableIfSupported().make();
+    try {
+      db.atomicBoolean(INCREMENTAL, appliedConfiguration != null).create();
+      db.hashSet(REBUILT_RELATIONS, Serializer.STRING).create().addAll(rebuiltRelations);
+      db.hashSet(DELETED_RELATIONS, Serializer.STRING).create().addAll(deletedRelations);
+      for (RelatedTableLookup lookup : getLookups(rebuiltRelations)) {
+        fillLookup(db, lookup);
+      }
+    } catch (DBException e) {
+      throw new ModuleException().withMessage("Could not write the denormalization map " + mapDBFile).withCause(e);
+    } finally {
+      db.close();
+    }
+
+    // the nested documents no longer match the applied configuration from now
+    // on, if this run does not finish the next one rebuilds everything
+    try {
+      Files.deleteIfExists(appliedFile);
+    } catch (IOException e) {
+      throw new ModuleException().withMessage("Could not delete " + appliedFile).withCause(e);
+    }
+
+    try {
+      long rowsToProcess = solrManager.countRows(databaseUUID, getRootTableFilter(null, null));
+      JobProgressService.getInstance().start(jobUUID, rowsToProcess, 0);
+    } catch (GenericException | RequestNotValidException e) {
+      throw new ModuleException().withMessage("Could not count the rows of table " + tableUUID).withCause(e);
+    }
+  }
+
+  /**
+   * Denormalizes the rows of the root table whose uuid is in the given range.
+   * The nested documents of these rows that are rebuilt (all of them, unless
+   * the run is incremental) are removed first, so a range can be denormalized
+   * again after a failure.
+   *
+   * @param fromRowUUID
+   *          first row uuid of the range (inclusive), null for no lower bound
+   * @param toRowUUID
+   *          last row uuid of the range (inclusive), null for no upper bound
+   * @param progress
+   *          receives the number of rows processed since its previous call
+   */
+  public void denormalize(String fromRowUUID, String toRowUUID, LongConsumer progress) throws ModuleException {
+    Filter filter = getRootTableFilter(fromRowUUID, toRowUUID);
+    List<String> fieldsToReturn = new ArrayList<>();
+    fieldsToReturn.add(ViewerConstants.INDEX_ID);
+
+    Path mapDBFile = getMapDBFile();
+    // the map is shared by every range being denormalized
+    DB db = DBMaker.fileDB(mapDBFile.toFile()).readOnly().fileMmapEnableIfSupported().fileLockDisable().make();
+    try (RowsBulkIndexer bulkIndexer = solrManager.createRowsBulkIndexer(databaseUUID)) {
+      boolean incremental = db.atomicBoolean(INCREMENTAL).open().get();
+      Set<String> rebuiltRelations = db.hashSet(REBUILT_RELATIONS, Serializer.STRING).open();
+      Set<String> deletedRelations = db.hashSet(DELETED_RELATIONS, Serializer.STRING).open();
+      List<RelatedTableLookup> lookups = getLookups(rebuiltRelations);
+      for (RelatedTableLookup lookup : lookups) {
+        openLookup(db, lookup);
+        fieldsToReturn.addAll(lookup.parentColumns);
+      }
+
+      if (incremental) {
+        if (deletedRelations.isEmpty()) {
+          // nothing changed, the rows of the range are done
+          progress.accept(solrManager.countRows(databaseUUID, filter));
+          return;
+        }
+        solrManager.deleteNestedDocuments(databaseUUID, new ArrayList<>(deletedRelations), fromRowUUID, toRowUUID);
+        commit();
+        // the nested documents left are the ones kept, their search tokens
+        // are set again together with the ones of the rebuilt documents
+        fieldsToReturn.add(KEPT_NESTED_DOCUMENTS);
+      } else {
+        try (IterableIndexResult rows = solrManager.findAllRows(databaseUUID, filter, null,
+          Collections.singletonList(ViewerConstants.INDEX_ID))) {
+          for (ViewerRow row : rows) {
+            bulkIndexer.add(solrManager.createDeleteNestedDocumentsUpdate(row.getUuid()));
+          }
+        }
+        // the nested documents are added back to the same rows
+        bulkIndexer.flush();
+      }
+
+      long processedRows = 0;
+      try (IterableIndexResult rows = solrManager.findAllRows(databaseUUID, filter, null, fieldsToReturn)) {
+        for (ViewerRow row : rows) {
+          Map<String, ViewerCell> cells = row.getCells();
+          Function<String, String> values = column -> {
+            ViewerCell cell = cells.get(column);
+            return cell != null ? cell.getValue() : null;
+          };
+
+          List<SolrInputDocument> nestedDocuments = new ArrayList<>();
+          for (RelatedTableLookup lookup : lookups) {
+            addNestedDocuments(lookup, values, nestedDocuments);
+          }
+
+          if (incremental) {
+            List<ViewerRow> keptNestedRows = row.getNestedRowList() != null ? row.getNestedRowList()
+              : Collections.emptyList();
+            bulkIndexer
+              .add(solrManager.createAddNestedDocumentsUpdate(row.getUuid(), nestedDocuments, keptNestedRows));
+          } else if (!nestedDocuments.isEmpty()) {
+            bulkIndexer.add(solrManager.createAddNestedDocumentsUpdate(row.getUuid(), nestedDocuments));
+          }
+          if (++processedRows == PROGRESS_UPDATE_ROWS) {
+            progress.accept(processedRows);
+            processedRows = 0;
+          }
+        }
+      }
+      bulkIndexer.flush();
+      progress.accept(processedRows);
+    } catch (DBException e) {
+      throw new ModuleException().withMessage("Could not read the denormalization map " + mapDBFile).withCause(e);
+    } catch (GenericException | RequestNotValidException e) {
+      throw new ModuleException().withMessage("Could not denormalize the rows of table " + tableUUID)
+        .withCause(e);
+    } finally {
+      db.close();
+    }
+    commit();
+  }
+
+  /**
+   * Commits the rows, registers the nested columns in the collection status,
+   * keeps the configuration that was applied and removes the join maps.
+   */
+  public void finish() throws ModuleException {
+    commit();
+    try {
+      updateCollectionStatus();
+    } catch (GenericException e) {
+      throw new ModuleException().withMessage("Could not update the collection status").withCause(e);
+    }
+    JsonTransformer.writeObjectToFile(denormalizeConfiguration, getAppliedConfigurationFile());
+    try {
+      Files.deleteIfExists(getMapDBFile());
+    } catch (IOException e) {
+      LOGGER.warn("Could not delete the denormalization map {}", getMapDBFile(), e);
+    }
+  }
+
+  /**
+   * Splits the rows of the root table in at most the given number of ranges of
+   * row uuids with about the same number of rows.
+   *
+   * @return the first and last row uuid of each range, null standing for an
+   *         open end
+   */
+  public List<String[]> getPartitions(int partitions) throws ModuleException {
+    List<String[]> ranges = new ArrayList<>();
+    Filter filter = getRootTableFilter(null, null);
+    Sorter sorter = new Sorter(new SortParameter(ViewerConstants.INDEX_ID, false));
+    List<String> fieldsToReturn = Collections.singletonList(ViewerConstants.INDEX_ID);
+
+    try {
+      long count = solrManager.countRows(databaseUUID, filter);
+      String from = null;
+      for (int i = 1; i < partitions && count >= partitions; i++) {
+        // the last row of a range and the first of the next one
+        IndexResult<ViewerRow> boundary = solrManager.findRows(databaseUUID, filter, sorter,
+          new Sublist((int) (i * count / partitions) - 1, 2), Facets.NONE, fieldsToReturn);
+        if (boundary.getResults().size() < 2) {
+          break;
+        }
+        ranges.add(new String[] {from, boundary.getResults().get(0).getUuid()});
+        from = boundary.getResults().get(1).getUuid();
+      }
+      ranges.add(new String[] {from, null});
+    } catch (GenericException | RequestNotValidException e) {
+      throw new ModuleException().withMessage("Could not split the rows of table " + tableUUID).withCause(e);
+    }
+    return ranges;
+  }
+
+  private Filter getRootTableFilter(String fromRowUUID, String toRowUUID) {
+    Filter filter = FilterUtils.filterByTable(new Filter(), denormalizeConfiguration.getTableID());
+    if (fromRowUUID != null || toRowUUID != null) {
+      filter.add(new StringRangeFilterParameter(ViewerConstants.INDEX_ID, fromRowUUID, toRowUUID));
+    }
+    return filter;
+  }
+
+  private Path getAppliedConfigurationFile() {
+    return ViewerConfiguration.getInstance().getDatabasesPath().resolve(databaseUUID)
+      .resolve(ViewerConstants.DENORMALIZATION_APPLIED_PREFIX + tableUUID + ViewerConstants.JSON_EXTENSION);
+  }
+
+  private Path getMapDBFile() {
+    return ViewerConfiguration.getInstance().getMapDBPath().resolve("denormalize-" + jobUUID + ".db");
+  }
+
+  private void commit() throws ModuleException {
+    try {
+      ViewerFactory.getSolrClient().commit(ViewerConstants.SOLR_INDEX_ROW_COLLECTION_NAME_PREFIX + databaseUUID);
+      ViewerFactory.getSolrManager()
+        .invalidateQueryCache(ViewerConstants.SOLR_INDEX_ROW_COLLECTION_NAME_PREFIX + databaseUUID);
+    } catch (SolrServerException | IOException e) {
+      throw new ModuleException().withMessage("Could not commit the rows collection").withCause(e);
     }
   }
 
@@ -152,118 +430,230 @@ public class DenormalizeTransformer {
     return list.toString().replace("[", "").replace("]", "");
   }
 
-  private void queryOverRootTable() throws ModuleException {
-    String tableID = denormalizeConfiguration.getTableID();
-    Filter filter = FilterUtils.filterByTable(new Filter(), tableID);
+  /**
+   * @return the lookups needed to reach the related tables to rebuild, from
+   *         the root table
+   */
+  private List<RelatedTableLookup> getLookups(Set<String> rebuiltRelations) {
+    List<RelatedTableLookup> lookups = new ArrayList<>();
+    for (RelatedTablesConfiguration relatedTable : denormalizeConfiguration.getRelatedTables()) {
+      if (RelatedTableLookup.isNeeded(relatedTable, rebuiltRelations)) {
+        lookups.add(new RelatedTableLookup(relatedTable, rebuiltRelations));
+      }
+    }
+    return lookups;
+  }
 
-    List<RelatedTablesConfiguration> relatedTables = denormalizeConfiguration.getRelatedTables();
-    List<String> fieldsToReturn = new ArrayList<>();
-    fieldsToReturn.add(ViewerConstants.INDEX_ID);
+  private static void collectRelations(List<RelatedTablesConfiguration> relatedTables, String parentUUID,
+    Map<String, RelatedTablesConfiguration> relations, Map<String, String> parents) {
+    for (RelatedTablesConfiguration relatedTable : relatedTables) {
+      relations.put(relatedTable.getUuid(), relatedTable);
+      parents.put(relatedTable.getUuid(), parentUUID);
+      collectRelations(relatedTable.getRelatedTables(), relatedTable.getUuid(), relations, parents);
+    }
+  }
 
+  /**
+   * Compares the related tables with the applied ones of the same uuid. A
+   * related table is rebuilt when its columns changed, or when the way it is
+   * joined to the root table changed (its own references or the ones of any
+   * table above it). Every applied related table found is removed from
+   * appliedRelations.
+   */
+  private static void findChangedRelations(List<RelatedTablesConfiguration> relatedTables, String parentUUID,
+    boolean parentJoinChanged, Map<String, RelatedTablesConfiguration> appliedRelations,
+    Map<String, String> appliedParents, Set<String> rebuiltRelations) {
     for (RelatedTablesConfiguration relatedTable : relatedTables) {
-      for (ReferencesConfiguration reference : relatedTable.getReferences()) {
-        fieldsToReturn.add(reference.getReferencedTable().getSolrName());
+      RelatedTablesConfiguration applied = appliedRelations.remove(relatedTable.getUuid());
+      boolean joinChanged = parentJoinChanged || applied == null
+        || !Objects.equals(parentUUID, appliedParents.get(relatedTable.getUuid()))
+        || !getJoin(applied).equals(getJoin(relatedTable));
+      if (joinChanged || !getColumns(applied).equals(getColumns(relatedTable))) {
+        rebuiltRelations.add(relatedTable.getUuid());
       }
+      findChangedRelations(relatedTable.getRelatedTables(), relatedTable.getUuid(), joinChanged, appliedRelations,
+        appliedParents, rebuiltRelations);
     }
+  }
 
-    IterableIndexResult sourceRows = solrManager.findAllRows(databaseUUID, filter, null, fieldsToReturn);
-    long processedRows = 0;
-    long rowToProcess = sourceRows.getTotalCount();
-
-    solrManager.editBatchJob(jobUUID, rowToProcess, processedRows);
-    for (ViewerRow row : sourceRows) {
-      List<SolrInputDocument> nestedDocuments = new ArrayList<>();
-      for (RelatedTablesConfiguration relatedTable : denormalizeConfiguration.getRelatedTables()) {
-        queryOverRelatedTables(row, relatedTable, nestedDocuments);
-      }
+  private static List<String> getJoin(RelatedTablesConfiguration relatedTable) {
+    List<String> join = new ArrayList<>();
+    join.add(relatedTable.getTableID());
+    for (ReferencesConfiguration reference : relatedTable.getReferences()) {
+      join.add(reference.getSourceTable().getSolrName() + KEY_SEPARATOR + reference.getReferencedTable().getSolrName());
+    }
+    return join;
+  }
 
-      if (!nestedDocuments.isEmpty()) {
-        solrManager.addDatabaseField(databaseUUID, row.getUuid(), nestedDocuments);
-      }
-      solrManager.editBatchJob(jobUUID, rowToProcess, ++processedRows);
+  private static Set<String> getColumns(RelatedTablesConfiguration relatedTable) {
+    Set<String> columns = new HashSet<>();
+    for (RelatedColumnConfiguration column : relatedTable.getColumnsIncluded()) {
+      columns.add(column.getSolrName());
     }
+    return columns;
   }
 
-  private void queryOverRelatedTables(ViewerRow row, RelatedTablesConfiguration relatedTable,
-    List<SolrInputDocument> nestedDocuments) {
-    String tableId = relatedTable.getTableID();
-    Filter resultingFilter = new Filter();
-    List<FilterParameter> filterParameterList = new ArrayList<>();
-    List<String> fieldsToReturn = new ArrayList<>();
+  /**
+   * Reads every row of a related table (and, recursively, of the tables
+   * related to it) into a map ordered by the values that join it to the parent
+   * table.
+   */
+  private void fillLookup(DB db, RelatedTableLookup lookup) {
+    for (RelatedTableLookup child : lookup.children) {
+      fillLookup(db, child);
+    }
 
+    RelatedTablesConfiguration relatedTable = lookup.configuration;
+    List<String> fieldsToReturn = new ArrayList<>();
     fieldsToReturn.add(ViewerConstants.INDEX_ID);
-    fieldsToReturn.add(ViewerConstants.SOLR_ROWS_TABLE_ID);
-    fieldsToReturn.add(String.format("%s:\"%s\"", ViewerConstants.SOLR_ROWS_NESTED_UUID, relatedTable.getUuid()));
-    fieldsToReturn
-      .add(String.format("%s:%s", ViewerConstants.SOLR_ROWS_NESTED_ORIGINAL_UUID, ViewerConstants.INDEX_ID));
-    fieldsToReturn
-      .add(String.format("%s:%s", ViewerConstants.SOLR_ROWS_NESTED_TABLE_ID, ViewerConstants.SOLR_ROWS_TABLE_ID));
-
-    filterParameterList.add(new SimpleFilterParameter(ViewerConstants.SOLR_ROWS_TABLE_ID, tableId));
-    for (ReferencesConfiguration reference : relatedTable.getReferences()) {
-      String sourceSolrName = reference.getSourceTable().getSolrName();
-      String referencedSolrName = reference.getReferencedTable().getSolrName();
-      String value = null;
-      Map<String, ViewerCell> cells = row.getCells();
-      for (Map.Entry<String, ViewerCell> entry : cells.entrySet()) {
-        if (entry.getKey().equals(referencedSolrName)) {
-          value = entry.getValue().getValue();
-          break;
+    fieldsToReturn.addAll(lookup.sourceColumns);
+    fieldsToReturn.addAll(lookup.columnIndexes.keySet());
+
+    lookup.rows = db.treeMap(relatedTable.getUuid(), Serializer.STRING, Serializer.JAVA).createOrOpen();
+
+    Filter filter = FilterUtils.filterByTable(new Filter(), relatedTable.getTableID());
+    long count = 0;
+    try (IterableIndexResult rows = solrManager.findAllRows(databaseUUID, filter, null, fieldsToReturn)) {
+      for (ViewerRow row : rows) {
+        Map<String, ViewerCell> cells = row.getCells();
+        Function<String, String> values = column -> {
+          ViewerCell cell = cells.get(column);
+          return cell != null ? cell.getValue() : null;
+        };
+
+        String key = getJoinKey(lookup.sourceColumns, values);
+        if (key != null) {
+          String[] record = new String[lookup.columnIndexes.size() + 1];
+          record[0] = row.getUuid();
+          for (Map.Entry<String, Integer> column : lookup.columnIndexes.entrySet()) {
+            record[column.getValue()] = values.apply(column.getKey());
+          }
+          lookup.rows.put(key + ROW_SEPARATOR + row.getUuid(), record);
+          count++;
         }
       }
-      if (value == null)
-        return;
-      filterParameterList.add(new SimpleFilterParameter(sourceSolrName, value));
     }
+    LOGGER.debug("Denormalization of table {} read {} rows of related table {}", tableUUID, count,
+      relatedTable.getTableID());
+  }
 
-    resultingFilter.add(new AndFiltersParameters(filterParameterList));
-
-    for (RelatedTablesConfiguration innerRelatedTable : relatedTable.getRelatedTables()) {
-      for (ReferencesConfiguration reference : innerRelatedTable.getReferences()) {
-        fieldsToReturn.add(reference.getReferencedTable().getSolrName());
-      }
+  private void openLookup(DB db, RelatedTableLookup lookup) {
+    lookup.rows = db.treeMap(lookup.configuration.getUuid(), Serializer.STRING, Serializer.JAVA).open();
+    for (RelatedTableLookup child : lookup.children) {
+      openLookup(db, child);
     }
+  }
 
-    List<String> auxColumns = new ArrayList<>();
-    for (ReferencesConfiguration reference : relatedTable.getReferences()) {
-      auxColumns.add(reference.getReferencedTable().getSolrName());
+  private void addNestedDocuments(RelatedTableLookup lookup, Function<String, String> parentValues,
+    List<SolrInputDocument> nestedDocuments) {
+    String key = getJoinKey(lookup.parentColumns, parentValues);
+    if (key == null) {
+      return;
     }
 
-    List<String> columnsToDisplay = new ArrayList<>();
-    for (RelatedColumnConfiguration relatedColumnConfiguration : relatedTable.getColumnsIncluded()) {
-      columnsToDisplay.add(relatedColumnConfiguration.getSolrName());
+    for (Object value : lookup.rows.subMap(key + ROW_SEPARATOR, key + KEY_SEPARATOR).values()) {
+      String[] record = (String[]) value;
+      Function<String, String> values = column -> record[lookup.columnIndexes.get(column)];
+
+      for (RelatedTableLookup child : lookup.children) {
+        addNestedDocuments(child, values, nestedDocuments);
+      }
+      if (!lookup.columnsToDisplay.isEmpty()) {
+        createdNestedDocument(lookup, record, values, nestedDocuments);
+      }
     }
+  }
 
-    fieldsToReturn.addAll(auxColumns);
-    fieldsToReturn.addAll(columnsToDisplay);
+  private void createdNestedDocument(RelatedTableLookup lookup, String[] record, Function<String, String> values,
+    List<SolrInputDocument> nestedDocuments) {
+    RelatedTablesConfiguration relatedTable = lookup.configuration;
+    Map<String, Object> fields = new HashMap<>();
+    for (String column : lookup.columnsToDisplay) {
+      String value = values.apply(column);
+      if (value != null) {
+        fields.put(column, value);
+      }
+    }
+    if (!fields.isEmpty()) {
+      nestedDocuments.add(solrManager.createNestedDocument(relatedTable.getUuid(), record[0], record[0], fields,
+        relatedTable.getTableID(), relatedTable.getUuid()));
+    }
+  }
 
-    IterableIndexResult nestedRows = solrManager.findAllRows(databaseUUID, resultingFilter, null, fieldsToReturn);
-    for (ViewerRow nestedRow : nestedRows) {
-      for (RelatedTablesConfiguration innerRelatedTable : relatedTable.getRelatedTables()) {
-        queryOverRelatedTables(nestedRow, innerRelatedTable, nestedDocuments);
+  /**
+   * @return the join values separated by KEY_SEPARATOR, or null if any of them
+   *         is missing (such a row is not related to any other)
+   */
+  private static String getJoinKey(List<String> columns, Function<String, String> values) {
+    StringBuilder key = new StringBuilder();
+    for (String column : columns) {
+      String value = values.apply(column);
+      if (value == null) {
+        return null;
       }
-      if (!columnsToDisplay.isEmpty()) {
-        createdNestedDocument(nestedRow, row.getUuid(), nestedDocuments, columnsToDisplay);
+      if (key.length() > 0) {
+        key.append(KEY_SEPARATOR);
       }
+      key.append(value);
     }
+    return key.toString();
   }
 
-  private void createdNestedDocument(ViewerRow row, String parentUUID, List<SolrInputDocument> nestedDocuments,
-    List<String> columnsToDisplay) {
-    Map<String, ViewerCell> cells = row.getCells();
-    String uuid = row.getNestedUUID();
+  /**
+   * Rows of a related table indexed by their join key. Each value holds the
+   * row uuid followed by the values of the columns in columnIndexes, which are
+   * the ones joining the tables related to it and the ones to display. Only the
+   * related tables being rebuilt have columns to display, the others are only
+   * there to reach them.
+   */
+  private static class RelatedTableLookup {
+    private final RelatedTablesConfiguration configuration;
+    // columns of this table that reference the parent table
+    private final List<String> sourceColumns = new ArrayList<>();
+    // columns of the parent table that are referenced
+    private final List<String> parentColumns = new ArrayList<>();
+    private final List<String> columnsToDisplay = new ArrayList<>();
+    private final Map<String, Integer> columnIndexes = new LinkedHashMap<>();
+    private final List<RelatedTableLookup> children = new ArrayList<>();
+    private NavigableMap<String, Object> rows;
+
+    RelatedTableLookup(RelatedTablesConfiguration configuration, Set<String> rebuiltRelations) {
+      this.configuration = configuration;
+      for (ReferencesConfiguration reference : configuration.getReferences()) {
+        sourceColumns.add(reference.getSourceTable().getSolrName());
+        parentColumns.add(reference.getReferencedTable().getSolrName());
+      }
+      if (rebuiltRelations.contains(configuration.getUuid())) {
+        for (RelatedColumnConfiguration column : configuration.getColumnsIncluded()) {
+          columnsToDisplay.add(column.getSolrName());
+        }
+      }
+      for (RelatedTablesConfiguration innerRelatedTable : configuration.getRelatedTables()) {
+        if (isNeeded(innerRelatedTable, rebuiltRelations)) {
+          children.add(new RelatedTableLookup(innerRelatedTable, rebuiltRelations));
+        }
+      }
 
-    Map<String, Object> fields = new HashMap<>();
-    for (Map.Entry<String, ViewerCell> cell : cells.entrySet()) {
-      String key = cell.getKey();
-      if (columnsToDisplay.contains(key)) {
-        ViewerCell cellValue = cell.getValue();
-        fields.put(key, cellValue.getValue());
+      Set<String> storedColumns = new LinkedHashSet<>();
+      for (RelatedTableLookup child : children) {
+        storedColumns.addAll(child.parentColumns);
+      }
+      storedColumns.addAll(columnsToDisplay);
+      for (String column : storedColumns) {
+        columnIndexes.put(column, columnIndexes.size() + 1);
       }
     }
-    if (!fields.isEmpty()) {
-      nestedDocuments.add(solrManager.createNestedDocument(uuid, row.getUuid(), row.getNestedOriginalUUID(), fields,
-        row.getTableId(), row.getNestedUUID()));
+
+    static boolean isNeeded(RelatedTablesConfiguration configuration, Set<String> rebuiltRelations) {
+      if (rebuiltRelations.contains(configuration.getUuid())) {
+        return true;
+      }
+      for (RelatedTablesConfiguration innerRelatedTable : configuration.getRelatedTables()) {
+        if (isNeeded(innerRelatedTable, rebuiltRelations)) {
+          return true;
+        }
+      }
+      return false;
     }
   }
 }
@@ -0,0 +1,207 @@
+package com.databasepreservation.common.transformers;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.client.models.status.collection.CollectionStatus;
+import com.databasepreservation.common.client.models.status.collection.ColumnStatus;
+import com.databasepreservation.common.client.models.status.collection.TableStatus;
+import com.databasepreservation.common.client.models.structure.ViewerColumn;
+import com.databasepreservation.common.client.models.structure.ViewerTable;
+import com.databasepreservation.common.client.models.structure.ViewerType;
+import com.databasepreservation.common.exceptions.ViewerException;
+import com.databasepreservation.common.io.providers.PathInputStreamProvider;
+import com.databasepreservation.common.server.ViewerFactory;
+import com.databasepreservation.common.server.index.utils.SolrUtils;
+import com.databasepreservation.model.data.BinaryCell;
+import com.databasepreservation.model.data.Cell;
+import com.databasepreservation.model.data.ComposedCell;
+import com.databasepreservation.model.data.NullCell;
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.model.data.SimpleCell;
+import com.databasepreservation.utils.JodaUtils;
+
+/**
+ * Converts the rows of one table straight into Solr documents of the rows
+ * collection. Everything that depends only on the table (Solr field names,
+ * column types, column statuses) is resolved once when the converter is built,
+ * and no intermediate {@link com.databasepreservation.common.client.models.structure.ViewerRow}
+ * is created. The documents are the same as the ones produced by
+ * {@link ToolkitStructure2ViewerStructure#getRow} followed by
+ * {@link com.databasepreservation.common.server.index.schema.collections.RowsCollection#toSolrDocument}.
+ */
+public class ToolkitRowConverter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ToolkitRowConverter.class);
+
+  // distinct values remembered per date column before the cache is emptied
+  private static final int DATE_CACHE_SIZE = 4096;
+
+  private final String tableId;
+  private final String tableUUID;
+  private final String[] solrNames;
+  private final ViewerType.dbTypes[] dbTypes;
+  private final ColumnStatus[] columnStatuses;
+  private final Map<String, String>[] dateCaches;
+  private final Path siardFilesPath;
+
+  public ToolkitRowConverter(CollectionStatus collectionConfiguration, ViewerTable table) {
+    this(collectionConfiguration, table, ViewerFactory.getViewerConfiguration().getSIARDFilesPath());
+  }
+
+  /**
+   * @param siardFilesPath
+   *          folder the paths of the LOBs outside the SIARD are made relative to
+   */
+  @SuppressWarnings("unchecked")
+  public ToolkitRowConverter(CollectionStatus collectionConfiguration, ViewerTable table, Path siardFilesPath) {
+    this.tableId = table.getId();
+    this.tableUUID = table.getUuid();
+    this.siardFilesPath = siardFilesPath;
+
+    List<ViewerColumn> columns = table.getColumns();
+    TableStatus tableStatus = collectionConfiguration.getTableStatusByTableId(tableId);
+    solrNames = new String[columns.size()];
+    dbTypes = new ViewerType.dbTypes[columns.size()];
+    columnStatuses = new ColumnStatus[columns.size()];
+    dateCaches = new Map[columns.size()];
+
+    for (int i = 0; i < columns.size(); i++) {
+      ViewerColumn column = columns.get(i);
+      solrNames[i] = column.getSolrName();
+      dbTypes[i] = column.getType().getDbType();
+      columnStatuses[i] = tableStatus != null ? tableStatus.getColumnByIndex(i) : null;
+      if (isDateType(dbTypes[i])) {
+        dateCaches[i] = new HashMap<>();
+      }
+    }
+  }
+
+  /**
+   * The uuid of a row only depends on its table and its position in the table,
+   * so a table ingested again, alone or with others, gets the same row uuids.
+   */
+  public static String getRowUUID(String tableUUID, long rowIndex) {
+    return SolrUtils.UUIDFromString(tableUUID + "." + rowIndex);
+  }
+
+  /**
+   * @param rowIndex
+   *          index of the row in its table, starting at 1
+   */
+  public SolrInputDocument toSolrDocument(Row row, long rowIndex) {
+    SolrInputDocument doc = new SolrInputDocument();
+    doc.addField(ViewerConstants.INDEX_ID, getRowUUID(tableUUID, rowIndex));
+    doc.addField(ViewerConstants.SOLR_ROWS_TABLE_ID, tableId);
+    doc.addField(ViewerConstants.SOLR_ROWS_TABLE_UUID, tableUUID);
+
+    List<Cell> cells = row.getCells();
+    for (int colIndex = 0; colIndex < solrNames.length; colIndex++) {
+      try {
+        String value = getCellValue(cells.get(colIndex), colIndex);
+        if (value != null) {
+          doc.addField(solrNames[colIndex], value);
+        }
+      } catch (ViewerException e) {
+        LOGGER.error("Problem converting cell, omitted it (as if it were NULL)", e);
+      }
+    }
+
+    return doc;
+  }
+
+  private String getCellValue(Cell cell, int colIndex) throws ViewerException {
+    if (cell instanceof SimpleCell) {
+      String simpleData = ((SimpleCell) cell).getSimpleData();
+      if (simpleData == null) {
+        return null;
+      }
+      return isDateType(dbTypes[colIndex]) ? getDateValue(simpleData, colIndex)
+        : ToolkitStructure2ViewerStructure.removeUnicode(simpleData);
+    } else if (cell instanceof BinaryCell) {
+      BinaryCell binaryCell = (BinaryCell) cell;
+      if (binaryCell.getInputStreamProvider() instanceof PathInputStreamProvider) {
+        Path lobPath = ((PathInputStreamProvider) binaryCell.getInputStreamProvider()).getPath();
+        setExternalLob(colIndex, true);
+        return siardFilesPath.relativize(lobPath).normalize().toString();
+      } else {
+        setExternalLob(colIndex, false);
+        return ViewerConstants.SIARD_RECORD_PREFIX + ToolkitStructure2ViewerStructure.getRowIndex(cell.getId())
+          + ViewerConstants.SIARD_LOB_FILE_EXTENSION;
+      }
+    } else if (cell instanceof ComposedCell) {
+      LOGGER.debug("composed cell not supported yet");
+      return null;
+    } else if (!(cell instanceof NullCell)) {
+      throw new ViewerException("Unexpected cell type");
+    }
+    return null;
+  }
+
+  private void setExternalLob(int colIndex, boolean externalLob) {
+    ColumnStatus columnStatus = columnStatuses[colIndex];
+    if (columnStatus != null) {
+      columnStatus.setExternalLob(externalLob);
+    }
+  }
+
+  private String getDateValue(String simpleData, int colIndex) {
+    // values already in the normalized UTC form are kept as they are
+    if (dbTypes[colIndex] == ViewerType.dbTypes.DATETIME && isNormalizedDateTime(simpleData)) {
+      return simpleData;
+    }
+
+    Map<String, String> cache = dateCaches[colIndex];
+    String value = cache.get(simpleData);
+    if (value == null) {
+      value = parseDate(simpleData, dbTypes[colIndex]);
+      if (cache.size() >= DATE_CACHE_SIZE) {
+        cache.clear();
+      }
+      cache.put(simpleData, value);
+    }
+    return value;
+  }
+
+  private static String parseDate(String simpleData, ViewerType.dbTypes dbType) {
+    switch (dbType) {
+      case DATETIME_JUST_DATE:
+        return JodaUtils.xsDateParse(simpleData).withTime(0, 0, 0, 0).withZone(DateTimeZone.UTC).toString();
+      case DATETIME_JUST_TIME:
+        return JodaUtils.xsTimeParse(simpleData).withDate(1970, 1, 1).withZone(DateTimeZone.UTC).toString();
+      case DATETIME:
+      default:
+        return JodaUtils.xsDatetimeParse(simpleData).withZone(DateTimeZone.UTC).toString();
+    }
+  }
+
+  /**
+   * Whether the value is exactly what Joda prints for a UTC date time, e.g.
+   * 2019-01-31T10:20:30.000Z
+   */
+  private static boolean isNormalizedDateTime(String value) {
+    if (value.length() != 24 || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != 'T'
+      || value.charAt(13) != ':' || value.charAt(16) != ':' || value.charAt(19) != '.' || value.charAt(23) != 'Z') {
+      return false;
+    }
+    for (int i = 0; i < 23; i++) {
+      char c = value.charAt(i);
+      if (i != 4 && i != 7 && i != 10 && i != 13 && i != 16 && i != 19 && (c < '0' || c > '9')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isDateType(ViewerType.dbTypes dbType) {
+    return dbType == ViewerType.dbTypes.DATETIME || dbType == ViewerType.dbTypes.DATETIME_JUST_DATE
+      || dbType == ViewerType.dbTypes.DATETIME_JUST_TIME;
+  }
+}
@@ -92,6 +92,7 @@ public class ToolkitStructure2ViewerStructure {
   private static final Logger LOGGER = LoggerFactory.getLogger(ToolkitStructure2ViewerStructure.class);
   private static boolean simpleMetadata = false;
   private static Pattern rowIndexPattern = Pattern.compile("^(.*\\.)?(\\d+)$");
+  private static final Pattern OTHER_CHARACTERS_PATTERN = Pattern.compile("\\p{C}");
 
   /**
    * Private empty constructor
@@ -639,8 +640,7 @@ public class ToolkitStructure2ViewerStructure {
 
   public static ViewerRow getRow(CollectionStatus collectionConfiguration, ViewerTable table, Row row, long rowIndex) {
     ViewerRow result = new ViewerRow();
-    // String rowUUID = SolrUtils.UUIDFromString(table.getUuid() + "." + rowIndex);
-    String rowUUID = String.valueOf(rowIndex);
+    String rowUUID = ToolkitRowConverter.getRowUUID(table.getUuid(), rowIndex);
     result.setTableId(table.getId());
     result.setTableUUID(table.getUuid());
     result.setUuid(rowUUID);
@@ -714,7 +714,7 @@ public class ToolkitStructure2ViewerStructure {
     return result;
   }
 
-  private static String getRowIndex(String cellId) throws ViewerException {
+  static String getRowIndex(String cellId) throws ViewerException {
     final Matcher matcher = rowIndexPattern.matcher(cellId);
     if (matcher.matches()) {
       return matcher.group(2);
@@ -723,12 +723,39 @@ public class ToolkitStructure2ViewerStructure {
     throw new ViewerException("Could not obtain row index for cell with id: " + cellId);
   }
 
-  private static String removeUnicode(String string) {
+  static String removeUnicode(String string) {
     // remove any invisible control characters and unused code characters.
     // based on: http://stackoverflow.com/a/11021262/1483200
     // more info:
     // https://en.wikipedia.org/wiki/Unicode_character_property#General_Category
-    return string.replaceAll("\\p{C}", "");
+    // most values have none of them, so only run the regex when needed
+    for (int i = 0; i < string.length();) {
+      char c = string.charAt(i);
+      if (c >= 0x20 && c < 0x7F) {
+        i++;
+        continue;
+      }
+
+      int codePoint = string.codePointAt(i);
+      if (isOtherCharacter(codePoint)) {
+        return OTHER_CHARACTERS_PATTERN.matcher(string).replaceAll("");
+      }
+      i += Character.charCount(codePoint);
+    }
+    return string;
+  }
+
+  private static boolean isOtherCharacter(int codePoint) {
+    switch (Character.getType(codePoint)) {
+      case Character.CONTROL:
+      case Character.FORMAT:
+      case Character.SURROGATE:
+      case Character.PRIVATE_USE:
+      case Character.UNASSIGNED:
+        return true;
+      default:
+        return false;
+    }
   }
 
   /**
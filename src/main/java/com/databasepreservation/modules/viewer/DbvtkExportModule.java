@@ -1,6 +1,8 @@
 package com.databasepreservation.modules.viewer;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -9,13 +11,18 @@ import org.roda.core.data.exceptions.GenericException;
 import org.roda.core.data.exceptions.NotFoundException;
 
 import com.databasepreservation.common.client.models.status.collection.CollectionStatus;
+import com.databasepreservation.common.client.models.status.collection.IngestCheckpoint;
 import com.databasepreservation.common.client.models.status.collection.LargeObjectConsolidateProperty;
+import com.databasepreservation.common.client.models.status.collection.TableIngestCheckpoint;
 import com.databasepreservation.common.client.models.structure.ViewerDatabase;
 import com.databasepreservation.common.client.models.structure.ViewerTable;
+import com.databasepreservation.common.server.ViewerConfiguration;
 import com.databasepreservation.common.server.ViewerFactory;
 import com.databasepreservation.common.server.index.DatabaseRowsSolrManager;
+import com.databasepreservation.common.server.index.RowsBulkIndexer;
 import com.databasepreservation.common.server.index.schema.SolrRowsCollectionRegistry;
-import com.databasepreservation.common.transformers.ToolkitStructure2ViewerStructure;
+import com.databasepreservation.common.server.jobs.IngestCancellationRegistry;
+import com.databasepreservation.common.transformers.ToolkitRowConverter;
 import com.databasepreservation.model.data.Row;
 import com.databasepreservation.model.exception.ModuleException;
 import com.databasepreservation.model.exception.UnknownTypeException;
@@ -28,23 +35,47 @@ import com.databasepreservation.modules.DefaultExceptionNormalizer;
  * @author Bruno Ferreira <bferreira@keep.pt>
  */
 public class DbvtkExportModule implements DatabaseFilterModule {
+  private static final long CANCELLATION_CHECK_ROWS = 1000;
+
   private final DatabaseRowsSolrManager solrManager;
+  private RowsBulkIndexer bulkIndexer;
   private CollectionStatus collectionConfiguration;
   private ViewerDatabase retrieved;
   private ViewerTable currentTable;
+  private ToolkitRowConverter currentRowConverter;
   private String databaseUUID;
+  // index of the row in its table, the row uuid is derived from it
   private long rowIndex = 1;
 
+  // partial ingestion: only some of the tables are sent to this module, the
+  // rows collection already exists and other modules fill the other tables
+  private final boolean partial;
+  private final Set<String> handledTableIds = new HashSet<>();
+
+  // checkpoints of a previous run of this ingestion, if it was interrupted
+  private IngestCheckpoint checkpoint;
+  private final long checkpointInterval;
+  private long rowsToSkip = 0;
+  private long rowsSinceCheckpoint = 0;
+
   public DbvtkExportModule(String databaseUUID) {
+    this(databaseUUID, false);
+  }
+
+  public DbvtkExportModule(String databaseUUID, boolean partial) {
+    this.partial = partial;
     solrManager = ViewerFactory.getSolrManager();
     try {
       retrieved = solrManager.retrieve(ViewerDatabase.class, databaseUUID);
       collectionConfiguration = ViewerFactory.getConfigurationManager().getConfigurationCollection(databaseUUID,
         databaseUUID);
+      checkpoint = ViewerFactory.getConfigurationManager().getIngestCheckpoint(databaseUUID);
     } catch (NotFoundException | GenericException e) {
       retrieved = null;
     }
     this.databaseUUID = databaseUUID;
+    this.checkpointInterval = ViewerConfiguration.getInstance().getViewerConfigurationAsInt(500000,
+      ViewerConfiguration.PROPERTY_INGEST_CHECKPOINT_ROWS);
   }
 
   /**
@@ -81,7 +112,14 @@ public class DbvtkExportModule implements DatabaseFilterModule {
    */
   @Override
   public void handleStructure(DatabaseStructure structure) throws ModuleException {
-    solrManager.addDatabaseRowCollection(databaseUUID);
+    if (!partial) {
+      if (checkpoint != null) {
+        solrManager.resumeDatabaseRowCollection(databaseUUID);
+      } else {
+        solrManager.addDatabaseRowCollection(databaseUUID);
+      }
+    }
+    bulkIndexer = solrManager.createRowsBulkIndexer(databaseUUID);
   }
 
   /**
@@ -109,9 +147,20 @@ public class DbvtkExportModule implements DatabaseFilterModule {
    */
   @Override
   public void handleDataOpenTable(String tableId) throws ModuleException {
+    checkCancelled();
     currentTable = retrieved.getMetadata().getTableById(tableId);
     solrManager.addTable(retrieved.getUuid(), currentTable);
-    // rowIndex = 1;
+    currentRowConverter = new ToolkitRowConverter(collectionConfiguration, currentTable);
+    // rows are numbered within their table, so their uuids do not depend on the
+    // other tables nor on the order in which the tables are ingested
+    rowIndex = 1;
+    if (partial) {
+      handledTableIds.add(tableId);
+    }
+    TableIngestCheckpoint tableCheckpoint = checkpoint != null ? checkpoint.getTable(tableId) : null;
+    // rows already committed by a previous run are read again but not indexed
+    rowsToSkip = tableCheckpoint != null ? tableCheckpoint.getCommittedRows() : 0;
+    rowsSinceCheckpoint = 0;
   }
 
   /**
@@ -124,8 +173,20 @@ public class DbvtkExportModule implements DatabaseFilterModule {
    */
   @Override
   public void handleDataRow(Row row) throws ModuleException {
-    solrManager.addRow(retrieved.getUuid(),
-      ToolkitStructure2ViewerStructure.getRow(collectionConfiguration, currentTable, row, rowIndex++));
+    if (rowIndex % CANCELLATION_CHECK_ROWS == 0) {
+      checkCancelled();
+    }
+    if (rowsToSkip > 0) {
+      rowsToSkip--;
+      rowIndex++;
+      return;
+    }
+
+    bulkIndexer.add(currentRowConverter.toSolrDocument(row, rowIndex++));
+
+    if (++rowsSinceCheckpoint >= checkpointInterval) {
+      saveCheckpoint(false);
+    }
   }
 
   /**
@@ -138,7 +199,45 @@ public class DbvtkExportModule implements DatabaseFilterModule {
    */
   @Override
   public void handleDataCloseTable(String tableId) throws ModuleException {
-    // committing + optimizing after whole database
+    // make sure every row of the table is durable in Solr before marking it
+    // as finished, optimizing after whole database
+    saveCheckpoint(true);
+  }
+
+  /**
+   * Records how far the current table got. The checkpoint only advances after
+   * the rows sent so far are committed, so a resumed ingestion never skips rows
+   * that are not in the collection.
+   */
+  private void saveCheckpoint(boolean finished) throws ModuleException {
+    if (rowsSinceCheckpoint > 0) {
+      bulkIndexer.flush();
+      commit();
+      rowsSinceCheckpoint = 0;
+      // keep the LOB information of the committed rows for a resumed ingestion
+      ViewerFactory.getConfigurationManager().updateTableStatuses(databaseUUID, collectionConfiguration,
+        Collections.singleton(currentTable.getId()));
+    }
+
+    ViewerFactory.getConfigurationManager().updateTableIngestCheckpoint(databaseUUID, new TableIngestCheckpoint(
+      currentTable.getId(), rowIndex - 1, finished));
+  }
+
+  private void checkCancelled() throws ModuleException {
+    if (IngestCancellationRegistry.isCancelled(databaseUUID)) {
+      // the migration does not finish the module when it fails
+      abort();
+      throw new ModuleException().withMessage("The ingestion of database " + databaseUUID + " was cancelled");
+    }
+  }
+
+  private void commit() throws ModuleException {
+    try {
+      ViewerFactory.getSolrClient().commit(bulkIndexer.getIndexName());
+      ViewerFactory.getSolrManager().invalidateQueryCache(bulkIndexer.getIndexName());
+    } catch (SolrServerException | IOException e) {
+      throw new ModuleException().withMessage("Could not commit the rows collection").withCause(e);
+    }
   }
 
   /**
@@ -152,9 +251,14 @@ public class DbvtkExportModule implements DatabaseFilterModule {
   @Override
   public void handleDataCloseSchema(String schemaName) throws ModuleException {
     // committing + optimizing after whole database
+    if (partial) {
+      return;
+    }
 
     try {
       ViewerFactory.getSolrClient().commit(SolrRowsCollectionRegistry.get(databaseUUID).getIndexName());
+      ViewerFactory.getSolrManager()
+        .invalidateQueryCache(SolrRowsCollectionRegistry.get(databaseUUID).getIndexName());
     } catch (SolrServerException | IOException e) {
       e.printStackTrace();
     }
@@ -168,9 +272,35 @@ public class DbvtkExportModule implements DatabaseFilterModule {
    */
   @Override
   public void finishDatabase() throws ModuleException {
+    if (bulkIndexer != null) {
+      bulkIndexer.close();
+    }
+    if (partial) {
+      // commit and status are handled once all the partial ingestions finish
+      ViewerFactory.getConfigurationManager().updateTableStatuses(databaseUUID, collectionConfiguration,
+        handledTableIds);
+      return;
+    }
+    solrManager.finishDatabaseRowCollection(databaseUUID);
     solrManager.markDatabaseAsReady(databaseUUID);
     collectionConfiguration.setConsolidateProperty(LargeObjectConsolidateProperty.NOT_CONSOLIDATED);
     ViewerFactory.getConfigurationManager().updateCollectionStatus(databaseUUID, collectionConfiguration);
+    try {
+      ViewerFactory.getConfigurationManager().deleteIngestCheckpoint(databaseUUID);
+    } catch (GenericException e) {
+      throw new ModuleException().withMessage(e.getMessage()).withCause(e);
+    }
+  }
+
+  /**
+   * Stops the bulk indexer if the conversion ended before
+   * {@link #finishDatabase()}, so its sender threads and pending batches are
+   * not left behind.
+   */
+  public void abort() {
+    if (bulkIndexer != null) {
+      bulkIndexer.abort();
+    }
   }
 
   @Override
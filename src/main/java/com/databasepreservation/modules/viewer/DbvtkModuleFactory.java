@@ -3,7 +3,6 @@ package com.databasepreservation.modules.viewer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -24,10 +23,17 @@ import com.databasepreservation.model.reporters.Reporter;
  */
 public class DbvtkModuleFactory implements DatabaseModuleFactory {
   public static final String PARAMETER_DATABASE_UUID = "database-id";
+  public static final String PARAMETER_PARTIAL = "partial";
 
   private static final Parameter databaseUUID = new Parameter().longName(PARAMETER_DATABASE_UUID).shortName("dbid")
     .description("Database UUID to use in Solr").required(false).hasArgument(true).setOptionalArgument(false);
 
+  private static final Parameter partial = new Parameter().longName(PARAMETER_PARTIAL).shortName("p")
+    .description("Ingest a subset of the tables into an already created rows collection").required(false)
+    .hasArgument(true).setOptionalArgument(false);
+
+  private DbvtkExportModule exportModule = null;
+
   @Override
   public boolean producesImportModules() {
     return false;
@@ -52,6 +58,7 @@ public class DbvtkModuleFactory implements DatabaseModuleFactory {
   public Map<String, Parameter> getAllParameters() {
     HashMap<String, Parameter> parameterHashMap = new HashMap<>();
     parameterHashMap.put(databaseUUID.longName(), databaseUUID);
+    parameterHashMap.put(partial.longName(), partial);
     return parameterHashMap;
   }
 
@@ -67,7 +74,7 @@ public class DbvtkModuleFactory implements DatabaseModuleFactory {
 
   @Override
   public Parameters getExportModuleParameters() {
-    return new Parameters(Collections.singletonList(databaseUUID), null);
+    return new Parameters(Arrays.asList(databaseUUID, partial), null);
   }
 
   @Override
@@ -79,13 +86,25 @@ public class DbvtkModuleFactory implements DatabaseModuleFactory {
   @Override
   public DatabaseFilterModule buildExportModule(Map<Parameter, String> parameters, Reporter reporter) throws ModuleException{
     String pDatabaseUUID = parameters.get(databaseUUID);
+    boolean pPartial = Boolean.parseBoolean(parameters.get(partial));
 
     reporter.exportModuleParameters(getModuleName(), PARAMETER_DATABASE_UUID, pDatabaseUUID);
 
     if (StringUtils.isBlank(pDatabaseUUID)) {
       throw new ModuleException().withMessage("Unable to obtain the database to ingest the data");
     } else {
-      return new DbvtkExportModule(pDatabaseUUID);
+      exportModule = new DbvtkExportModule(pDatabaseUUID, pPartial);
+      return exportModule;
+    }
+  }
+
+  /**
+   * Stops the export module built by this factory, if the conversion did not
+   * finish it.
+   */
+  public void abortExportModule() {
+    if (exportModule != null) {
+      exportModule.abort();
     }
   }
 }
@@ -0,0 +1,154 @@
+package com.databasepreservation.common.api.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Downloads send the byte range asked in the Range header, the whole file when
+ * the If-Range tag does not match or the range is not supported, and nothing
+ * when the If-None-Match tag matches.
+ */
+@Test(groups = {"unit"})
+public class ApiUtilsRangeResponseTest {
+  private static final int SIZE = 100;
+  private static final String MEDIA_TYPE = "application/zip";
+
+  private Path folder;
+  private Path file;
+  private byte[] content;
+
+  @BeforeMethod
+  public void createFile() throws IOException {
+    folder = Files.createTempDirectory("range-response");
+    file = folder.resolve("export");
+    content = new byte[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      content[i] = (byte) i;
+    }
+    Files.write(file, content);
+  }
+
+  @AfterMethod
+  public void deleteFolder() {
+    FileUtils.deleteQuietly(folder.toFile());
+  }
+
+  private Response download(String range, String ifRange, String ifNoneMatch) throws IOException {
+    return ApiUtils.rangeResponse(file, "export.zip", MEDIA_TYPE, range, ifRange, ifNoneMatch);
+  }
+
+  private static byte[] body(Response response) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((StreamingOutput) response.getEntity()).write(out);
+    return out.toByteArray();
+  }
+
+  private String tag() throws IOException {
+    return download(null, null, null).getEntityTag().getValue();
+  }
+
+  @Test
+  public void testWholeFileWithoutRange() throws IOException {
+    Response response = download(null, null, null);
+
+    assertThat(response.getStatus(), equalTo(Response.Status.OK.getStatusCode()));
+    assertThat(response.getHeaderString(HttpHeaders.CONTENT_LENGTH), equalTo(String.valueOf(SIZE)));
+    assertThat(response.getHeaderString("Accept-Ranges"), equalTo("bytes"));
+    assertThat(response.getHeaderString("Content-Range"), nullValue());
+    assertThat(body(response), equalTo(content));
+  }
+
+  @Test
+  public void testClosedRange() throws IOException {
+    Response response = download("bytes=10-19", null, null);
+
+    assertThat(response.getStatus(), equalTo(Response.Status.PARTIAL_CONTENT.getStatusCode()));
+    assertThat(response.getHeaderString("Content-Range"), equalTo("bytes 10-19/" + SIZE));
+    assertThat(response.getHeaderString(HttpHeaders.CONTENT_LENGTH), equalTo("10"));
+    assertThat(body(response), equalTo(Arrays.copyOfRange(content, 10, 20)));
+  }
+
+  @Test
+  public void testOpenRangeAndRangePastTheEnd() throws IOException {
+    Response open = download("bytes=95-", null, null);
+    assertThat(open.getHeaderString("Content-Range"), equalTo("bytes 95-99/" + SIZE));
+    assertThat(body(open), equalTo(Arrays.copyOfRange(content, 95, SIZE)));
+
+    Response pastTheEnd = download("bytes=90-1000", null, null);
+    assertThat(pastTheEnd.getHeaderString("Content-Range"), equalTo("bytes 90-99/" + SIZE));
+  }
+
+  @Test
+  public void testSuffixRange() throws IOException {
+    Response response = download("bytes=-10", null, null);
+
+    assertThat(response.getStatus(), equalTo(Response.Status.PARTIAL_CONTENT.getStatusCode()));
+    assertThat(response.getHeaderString("Content-Range"), equalTo("bytes 90-99/" + SIZE));
+    assertThat(body(response), equalTo(Arrays.copyOfRange(content, 90, SIZE)));
+
+    Response longerThanFile = download("bytes=-1000", null, null);
+    assertThat(longerThanFile.getHeaderString("Content-Range"), equalTo("bytes 0-99/" + SIZE));
+  }
+
+  @Test
+  public void testUnsatisfiableRange() throws IOException {
+    for (String range : Arrays.asList("bytes=100-", "bytes=50-40", "bytes=99999999999999999999-")) {
+      Response response = download(range, null, null);
+
+      assertThat(range, response.getStatus(),
+        equalTo(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode()));
+      assertThat(range, response.getHeaderString("Content-Range"), equalTo("bytes */" + SIZE));
+    }
+  }
+
+  @Test
+  public void testUnsupportedRangeSendsWholeFile() throws IOException {
+    for (String range : Arrays.asList("bytes=0-1,5-6", "bytes=-", "items=0-10", "bytes=a-b")) {
+      Response response = download(range, null, null);
+
+      assertThat(range, response.getStatus(), equalTo(Response.Status.OK.getStatusCode()));
+      assertThat(range, response.getHeaderString(HttpHeaders.CONTENT_LENGTH), equalTo(String.valueOf(SIZE)));
+    }
+  }
+
+  @Test
+  public void testIfRange() throws IOException {
+    Response sameFile = download("bytes=10-19", "\"" + tag() + "\"", null);
+    assertThat(sameFile.getStatus(), equalTo(Response.Status.PARTIAL_CONTENT.getStatusCode()));
+
+    Response changedFile = download("bytes=10-19", "\"0-0\"", null);
+    assertThat(changedFile.getStatus(), equalTo(Response.Status.OK.getStatusCode()));
+    assertThat(body(changedFile), equalTo(content));
+  }
+
+  @Test
+  public void testIfNoneMatch() throws IOException {
+    String tag = tag();
+    for (String ifNoneMatch : Arrays.asList("\"" + tag + "\"", "W/\"" + tag + "\"", "\"0-0\", \"" + tag + "\"",
+      "*")) {
+      Response response = download("bytes=10-19", null, ifNoneMatch);
+
+      assertThat(ifNoneMatch, response.getStatus(), equalTo(Response.Status.NOT_MODIFIED.getStatusCode()));
+      assertThat(ifNoneMatch, response.getEntity(), nullValue());
+    }
+
+    Response otherTag = download(null, null, "\"0-0\"");
+    assertThat(otherTag.getStatus(), equalTo(Response.Status.OK.getStatusCode()));
+  }
+}
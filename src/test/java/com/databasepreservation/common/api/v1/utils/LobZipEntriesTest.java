@@ -0,0 +1,137 @@
+package com.databasepreservation.common.api.v1.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * LOBs of the SIARD archive are copied to the export with their compressed
+ * bytes, and the ones whose media type is already compressed are stored.
+ */
+@Test(groups = {"unit"})
+public class LobZipEntriesTest {
+  private static final String LOB_NAME = "content/schema0/table1/lob3/record1.bin";
+
+  private Path folder;
+
+  @BeforeMethod
+  public void createFolder() throws IOException {
+    folder = Files.createTempDirectory("lob-zip-entries");
+  }
+
+  @AfterMethod
+  public void deleteFolder() {
+    FileUtils.deleteQuietly(folder.toFile());
+  }
+
+  private static byte[] lobContent() {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      content.append("row ").append(i).append(" of a compressible LOB\n");
+    }
+    return content.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private Path createSiard(int method, byte[] content) throws IOException {
+    Path siard = folder.resolve("archive.siard");
+    try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(siard.toFile())) {
+      ZipArchiveEntry entry = new ZipArchiveEntry(LOB_NAME);
+      entry.setMethod(method);
+      out.putArchiveEntry(entry);
+      out.write(content);
+      out.closeArchiveEntry();
+    }
+    return siard;
+  }
+
+  private Path copyToExport(Path siard, String applicationType) throws IOException {
+    Path export = folder.resolve("export.zip");
+    try (ZipFile archive = new ZipFile(siard.toFile());
+      ZipArchiveOutputStream out = new ZipArchiveOutputStream(export.toFile())) {
+      LobZipEntries.copyEntry(out, archive, archive.getEntry(LOB_NAME), "lob.bin", applicationType);
+    }
+    return export;
+  }
+
+  private static byte[] read(ZipFile zip, ZipArchiveEntry entry) throws IOException {
+    try (InputStream in = zip.getInputStream(entry)) {
+      return IOUtils.toByteArray(in);
+    }
+  }
+
+  @Test
+  public void testDeflatedEntryIsCopiedWithItsCompressedBytes() throws IOException {
+    byte[] content = lobContent();
+    Path siard = createSiard(ZipArchiveEntry.DEFLATED, content);
+    Path export = copyToExport(siard, "text/plain");
+
+    try (ZipFile source = new ZipFile(siard.toFile()); ZipFile copy = new ZipFile(export.toFile())) {
+      ZipArchiveEntry sourceEntry = source.getEntry(LOB_NAME);
+      ZipArchiveEntry copiedEntry = copy.getEntry("lob.bin");
+
+      assertThat(copiedEntry.getMethod(), equalTo(ZipArchiveEntry.DEFLATED));
+      assertThat(copiedEntry.getCrc(), equalTo(sourceEntry.getCrc()));
+      assertThat(copiedEntry.getCompressedSize(), equalTo(sourceEntry.getCompressedSize()));
+      try (InputStream sourceRaw = source.getRawInputStream(sourceEntry);
+        InputStream copiedRaw = copy.getRawInputStream(copiedEntry)) {
+        assertThat(IOUtils.contentEquals(sourceRaw, copiedRaw), equalTo(true));
+      }
+      assertThat(read(copy, copiedEntry), equalTo(content));
+    }
+  }
+
+  @Test
+  public void testStoredEntryIsCopiedAsItIs() throws IOException {
+    byte[] content = lobContent();
+    Path siard = createSiard(ZipArchiveEntry.STORED, content);
+    Path export = copyToExport(siard, null);
+
+    try (ZipFile copy = new ZipFile(export.toFile())) {
+      ZipArchiveEntry copiedEntry = copy.getEntry("lob.bin");
+
+      assertThat(copiedEntry.getMethod(), equalTo(ZipArchiveEntry.STORED));
+      assertThat(copiedEntry.getSize(), equalTo((long) content.length));
+      assertThat(read(copy, copiedEntry), equalTo(content));
+    }
+  }
+
+  @Test
+  public void testIncompressibleFileIsStored() throws IOException {
+    byte[] content = lobContent();
+    Path lob = folder.resolve("lob.png");
+    Files.write(lob, content);
+    Path export = folder.resolve("export.zip");
+    try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(export.toFile())) {
+      LobZipEntries.addEntry(out, lob, "lob.png", "image/png");
+    }
+
+    try (ZipFile copy = new ZipFile(export.toFile())) {
+      ZipArchiveEntry copiedEntry = copy.getEntry("lob.png");
+
+      assertThat(copiedEntry.getMethod(), equalTo(ZipArchiveEntry.STORED));
+      assertThat(read(copy, copiedEntry), equalTo(content));
+    }
+  }
+
+  @Test
+  public void testIncompressibleMediaTypes() {
+    assertThat(LobZipEntries.isIncompressible("image/JPEG; charset=binary"), equalTo(true));
+    assertThat(LobZipEntries.isIncompressible("video/mp4"), equalTo(true));
+    assertThat(LobZipEntries.isIncompressible("text/plain"), equalTo(false));
+    assertThat(LobZipEntries.isIncompressible(null), equalTo(false));
+  }
+}
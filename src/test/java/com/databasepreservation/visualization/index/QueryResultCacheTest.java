@@ -0,0 +1,118 @@
+package com.databasepreservation.visualization.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.testng.annotations.Test;
+
+import com.databasepreservation.common.client.index.IndexResult;
+import com.databasepreservation.common.server.index.QueryResultCache;
+
+/**
+ * A cached result must never be served once its collection changed, and
+ * callers must not see each other's changes to the results they got.
+ */
+@Test(groups = {"unit"})
+public class QueryResultCacheTest {
+  private static final String COLLECTION = "dbv-database-test";
+
+  private static QueryResultCache.Query<IndexResult<String>> countingQuery(AtomicInteger runs) {
+    return () -> {
+      runs.incrementAndGet();
+      return new IndexResult<>(0, 10, 1, new ArrayList<>(Collections.singletonList("row")), new ArrayList<>());
+    };
+  }
+
+  @Test
+  public void testSameQueryIsOnlyRunOnce() throws GenericException, RequestNotValidException {
+    QueryResultCache cache = new QueryResultCache(100, 60);
+    AtomicInteger runs = new AtomicInteger();
+
+    cache.get(COLLECTION, countingQuery(runs), "find", "a");
+    cache.get(COLLECTION, countingQuery(runs), "find", "a");
+    cache.get(COLLECTION, countingQuery(runs), "find", "b");
+
+    assertThat(runs.get(), equalTo(2));
+  }
+
+  @Test
+  public void testEveryCallerGetsItsOwnCopy() throws GenericException, RequestNotValidException {
+    QueryResultCache cache = new QueryResultCache(100, 60);
+    AtomicInteger runs = new AtomicInteger();
+
+    IndexResult<String> first = cache.get(COLLECTION, countingQuery(runs), "find");
+    first.getResults().set(0, "changed");
+    IndexResult<String> second = cache.get(COLLECTION, countingQuery(runs), "find");
+    second.setTotalCount(5);
+    IndexResult<String> third = cache.get(COLLECTION, countingQuery(runs), "find");
+
+    assertThat(runs.get(), equalTo(1));
+    assertThat(second, not(sameInstance(third)));
+    assertThat(third.getResults().get(0), equalTo("row"));
+    assertThat(third.getTotalCount(), equalTo(1L));
+  }
+
+  @Test
+  public void testInvalidateDropsOnlyTheChangedCollection() throws GenericException, RequestNotValidException {
+    QueryResultCache cache = new QueryResultCache(100, 60);
+    AtomicInteger changedRuns = new AtomicInteger();
+    AtomicInteger otherRuns = new AtomicInteger();
+
+    cache.get(COLLECTION, countingQuery(changedRuns), "find");
+    cache.get("dbv-database-other", countingQuery(otherRuns), "find");
+    cache.invalidate(COLLECTION, 0);
+    cache.get(COLLECTION, countingQuery(changedRuns), "find");
+    cache.get("dbv-database-other", countingQuery(otherRuns), "find");
+
+    assertThat(changedRuns.get(), equalTo(2));
+    assertThat(otherRuns.get(), equalTo(1));
+  }
+
+  @Test
+  public void testNothingIsKeptUntilTheChangeIsVisible() throws GenericException, RequestNotValidException {
+    QueryResultCache cache = new QueryResultCache(100, 60);
+    AtomicInteger runs = new AtomicInteger();
+
+    cache.invalidate(COLLECTION, 60000);
+    cache.get(COLLECTION, countingQuery(runs), "find");
+    cache.get(COLLECTION, countingQuery(runs), "find");
+
+    assertThat(runs.get(), equalTo(2));
+  }
+
+  @Test
+  public void testResultReadDuringAChangeIsNotKept() throws GenericException, RequestNotValidException {
+    QueryResultCache cache = new QueryResultCache(100, 60);
+    AtomicInteger runs = new AtomicInteger();
+    QueryResultCache.Query<IndexResult<String>> query = countingQuery(runs);
+
+    cache.get(COLLECTION, () -> {
+      IndexResult<String> result = query.run();
+      cache.invalidate(COLLECTION, 0);
+      return result;
+    }, "find");
+    cache.get(COLLECTION, query, "find");
+
+    assertThat(runs.get(), equalTo(2));
+  }
+
+  @Test
+  public void testDisabledCacheAlwaysRunsTheQuery() throws GenericException, RequestNotValidException {
+    QueryResultCache cache = new QueryResultCache(0, 60);
+    AtomicInteger runs = new AtomicInteger();
+
+    cache.get(COLLECTION, countingQuery(runs), "find");
+    cache.get(COLLECTION, countingQuery(runs), "find");
+
+    assertThat(cache.isEnabled(), equalTo(false));
+    assertThat(runs.get(), equalTo(2));
+  }
+}
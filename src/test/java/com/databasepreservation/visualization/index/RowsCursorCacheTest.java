@@ -0,0 +1,121 @@
+package com.databasepreservation.visualization.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.testng.annotations.Test;
+
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.client.index.filter.BasicSearchFilterParameter;
+import com.databasepreservation.common.client.index.filter.Filter;
+import com.databasepreservation.common.client.index.sort.Sorter;
+import com.databasepreservation.common.server.index.RowsCursorCache;
+
+/**
+ * Cursor tokens only give back the offset of the query they were made for,
+ * and the positions kept for a query are the ones around the page being read.
+ */
+@Test(groups = {"unit"})
+public class RowsCursorCacheTest {
+  private static final String DATABASE_UUID = "database";
+
+  private static String queryKey(String searchText) throws GenericException {
+    return RowsCursorCache.getQueryKey(DATABASE_UUID,
+      new Filter(new BasicSearchFilterParameter(ViewerConstants.INDEX_SEARCH, searchText)), new Sorter(),
+      Collections.singletonList(ViewerConstants.INDEX_ID), null);
+  }
+
+  private static String encode(String token) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testTokenGivesBackItsOffset() throws GenericException, RequestNotValidException {
+    String key = queryKey("a");
+
+    assertThat(RowsCursorCache.getOffset(RowsCursorCache.getToken(key, 0), key), equalTo(0L));
+    assertThat(RowsCursorCache.getOffset(RowsCursorCache.getToken(key, 12345), key), equalTo(12345L));
+  }
+
+  @Test
+  public void testQueryKeyDependsOnTheQueryOnly() throws GenericException {
+    Map<String, String> parameters = new LinkedHashMap<>();
+    parameters.put("a", "1");
+    parameters.put("b", "2");
+    Map<String, String> sameParametersInOtherOrder = new LinkedHashMap<>();
+    sameParametersInOtherOrder.put("b", "2");
+    sameParametersInOtherOrder.put("a", "1");
+    Filter filter = new Filter(new BasicSearchFilterParameter(ViewerConstants.INDEX_SEARCH, "a"));
+
+    assertThat(RowsCursorCache.getQueryKey(DATABASE_UUID, filter, new Sorter(), null, parameters),
+      equalTo(RowsCursorCache.getQueryKey(DATABASE_UUID, filter, new Sorter(), null, sameParametersInOtherOrder)));
+    assertThat(queryKey("a"), equalTo(queryKey("a")));
+    assertThat(queryKey("a"), not(equalTo(queryKey("b"))));
+  }
+
+  @Test(expectedExceptions = RequestNotValidException.class)
+  public void testTokenOfAnotherQueryIsRefused() throws GenericException, RequestNotValidException {
+    RowsCursorCache.getOffset(RowsCursorCache.getToken(queryKey("a"), 20), queryKey("b"));
+  }
+
+  @Test
+  public void testMalformedTokensAreRefused() throws GenericException {
+    String key = queryKey("a");
+    String[] tokens = {"not base64!", encode(key), encode(key + ":twenty"), encode(key + ":-20"),
+      encode("other:" + key + ":20")};
+    for (String token : tokens) {
+      try {
+        RowsCursorCache.getOffset(token, key);
+        throw new AssertionError("Token accepted: " + token);
+      } catch (RequestNotValidException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testClosestPosition() throws GenericException {
+    RowsCursorCache cache = new RowsCursorCache();
+    String key = queryKey("a");
+
+    assertThat(cache.getClosestPosition(key, 100).getKey(), equalTo(0L));
+    assertThat(cache.getClosestPosition(key, 100).getValue(), equalTo(RowsCursorCache.FIRST_CURSOR_MARK));
+
+    cache.putPosition(key, 20, "mark20");
+    cache.putPosition(key, 40, "mark40");
+
+    assertThat(cache.getClosestPosition(key, 39).getValue(), equalTo("mark20"));
+    assertThat(cache.getClosestPosition(key, 40).getValue(), equalTo("mark40"));
+    assertThat(cache.getClosestPosition(key, 1000).getValue(), equalTo("mark40"));
+    assertThat(cache.getClosestPosition(queryKey("b"), 1000).getKey(), equalTo(0L));
+  }
+
+  @Test
+  public void testPositionsFarFromTheOneReadAreForgotten() throws GenericException {
+    RowsCursorCache cache = new RowsCursorCache();
+    String key = queryKey("a");
+
+    // reading forward forgets the first pages, but never the start
+    for (long offset = 10; offset <= 1300; offset += 10) {
+      cache.putPosition(key, offset, "mark" + offset);
+    }
+    assertThat(cache.getClosestPosition(key, 35).getKey(), equalTo(0L));
+    assertThat(cache.getClosestPosition(key, 45).getKey(), equalTo(40L));
+    assertThat(cache.getClosestPosition(key, 1300).getKey(), equalTo(1300L));
+
+    // going back to the beginning forgets the last pages
+    cache.putPosition(key, 5, "mark5");
+    assertThat(cache.getClosestPosition(key, 5).getKey(), equalTo(5L));
+    assertThat(cache.getClosestPosition(key, 1300).getKey(), equalTo(1290L));
+    assertThat(cache.getClosestPosition(key, 45).getKey(), equalTo(40L));
+  }
+}
@@ -0,0 +1,89 @@
+package com.databasepreservation.visualization.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.util.Arrays;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.testng.annotations.Test;
+
+import com.databasepreservation.common.client.index.filter.BasicSearchFilterParameter;
+import com.databasepreservation.common.client.index.filter.Filter;
+import com.databasepreservation.common.client.index.filter.OneOfManyFilterParameter;
+import com.databasepreservation.common.client.index.filter.OrFiltersParameters;
+import com.databasepreservation.common.client.index.filter.SimpleFilterParameter;
+import com.databasepreservation.common.client.index.filter.StringRangeFilterParameter;
+import com.databasepreservation.common.server.index.utils.SolrUtils;
+
+/**
+ * Restricting filter parameters are sent as filter queries written in a
+ * canonical form, the ones that score the results stay in the main query.
+ */
+@Test(groups = {"unit"})
+public class SolrFilterQueryTest {
+
+  private static SolrQuery toQuery(Filter filter) throws RequestNotValidException {
+    SolrQuery query = new SolrQuery();
+    SolrUtils.setFilter(query, filter);
+    return query;
+  }
+
+  @Test
+  public void testExactMatchesBecomeFilterQueries() throws RequestNotValidException {
+    SolrQuery query = toQuery(new Filter(new SimpleFilterParameter("tableId", "public.a"),
+      new SimpleFilterParameter("col1_s", "x")));
+
+    assertThat(query.getQuery(), equalTo("*:*"));
+    assertThat(query.getFilterQueries(), arrayContaining("(col1_s: \"x\")", "(tableId: \"public.a\")"));
+  }
+
+  @Test
+  public void testSearchStaysInTheMainQuery() throws RequestNotValidException {
+    SolrQuery query = toQuery(new Filter(new SimpleFilterParameter("tableId", "public.a"),
+      new BasicSearchFilterParameter("search", "needle")));
+
+    assertThat(query.getQuery(), containsString("needle"));
+    assertThat(query.getFilterQueries(), arrayContaining("(tableId: \"public.a\")"));
+  }
+
+  @Test
+  public void testOneOfManyIsWrittenInTheSameWayWhateverTheOrder() throws RequestNotValidException {
+    SolrQuery first = toQuery(new Filter(new OneOfManyFilterParameter("tableId", Arrays.asList("b", "a", "b"))));
+    SolrQuery second = toQuery(new Filter(new OneOfManyFilterParameter("tableId", Arrays.asList("a", "b"))));
+
+    assertThat(first.getFilterQueries(), arrayContaining("((tableId: \"a\") OR (tableId: \"b\"))"));
+    assertThat(first.getFilterQueries(), equalTo(second.getFilterQueries()));
+  }
+
+  @Test
+  public void testRangesAreNotCached() throws RequestNotValidException {
+    SolrQuery query = toQuery(new Filter(new StringRangeFilterParameter("uuid", "a", "m")));
+
+    assertThat(query.getFilterQueries().length, equalTo(1));
+    assertThat(query.getFilterQueries()[0], startsWith("{!cache=false cost=50}(uuid:["));
+  }
+
+  @Test
+  public void testParameterMarkedNotCacheableIsNotCached() throws RequestNotValidException {
+    SimpleFilterParameter parameter = new SimpleFilterParameter("col1_s", "x");
+    parameter.setCacheable(false);
+    SolrQuery query = toQuery(new Filter(parameter));
+
+    assertThat(query.getFilterQueries(), arrayContaining("{!cache=false cost=50}(col1_s: \"x\")"));
+  }
+
+  @Test
+  public void testGroupWithASearchStaysInTheMainQuery() throws RequestNotValidException {
+    SolrQuery query = toQuery(new Filter(new OrFiltersParameters(
+      Arrays.asList(new SimpleFilterParameter("col1_s", "x"), new BasicSearchFilterParameter("search", "needle")))));
+
+    assertThat(query.getQuery(), containsString("needle"));
+    assertThat(query.getFilterQueries(), nullValue());
+  }
+}
@@ -0,0 +1,55 @@
+package com.databasepreservation.visualization.models;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import org.testng.annotations.Test;
+
+import com.databasepreservation.common.client.models.status.collection.IngestCheckpoint;
+import com.databasepreservation.common.client.models.status.collection.TableIngestCheckpoint;
+import com.databasepreservation.common.exceptions.ViewerException;
+import com.databasepreservation.common.server.index.utils.JsonTransformer;
+
+/**
+ * The checkpoints of an interrupted ingestion decide which tables are read
+ * again and how many rows of each are skipped when it is resumed.
+ */
+@Test(groups = {"unit"})
+public class IngestCheckpointTest {
+
+  @Test
+  public void testOnlyFinishedTablesAreFinished() {
+    IngestCheckpoint checkpoint = new IngestCheckpoint("db");
+    checkpoint.putTable(new TableIngestCheckpoint("public.a", 100, true));
+    checkpoint.putTable(new TableIngestCheckpoint("public.b", 50, false));
+
+    assertThat(checkpoint.isTableFinished("public.a"), equalTo(true));
+    assertThat(checkpoint.isTableFinished("public.b"), equalTo(false));
+    assertThat(checkpoint.isTableFinished("public.c"), equalTo(false));
+  }
+
+  @Test
+  public void testLaterCheckpointOfATableReplacesTheEarlierOne() {
+    IngestCheckpoint checkpoint = new IngestCheckpoint("db");
+    checkpoint.putTable(new TableIngestCheckpoint("public.a", 50, false));
+    checkpoint.putTable(new TableIngestCheckpoint("public.a", 80, false));
+
+    assertThat(checkpoint.getTables().size(), equalTo(1));
+    assertThat(checkpoint.getTable("public.a").getCommittedRows(), equalTo(80L));
+  }
+
+  @Test
+  public void testCheckpointSurvivesJson() throws ViewerException {
+    IngestCheckpoint checkpoint = new IngestCheckpoint("db");
+    checkpoint.putTable(new TableIngestCheckpoint("public.a", 100, true));
+    checkpoint.putTable(new TableIngestCheckpoint("public.b", 50, false));
+
+    IngestCheckpoint read = JsonTransformer.getObjectFromJson(JsonTransformer.getJsonFromObject(checkpoint),
+      IngestCheckpoint.class);
+
+    assertThat(read.getDatabaseUUID(), equalTo("db"));
+    assertThat(read.isTableFinished("public.a"), equalTo(true));
+    assertThat(read.getTable("public.b").getCommittedRows(), equalTo(50L));
+    assertThat(read.getTable("public.b").isFinished(), equalTo(false));
+  }
+}
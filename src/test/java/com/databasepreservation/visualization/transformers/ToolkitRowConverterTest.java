@@ -0,0 +1,177 @@
+package com.databasepreservation.visualization.transformers;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.testng.annotations.Test;
+
+import com.databasepreservation.common.client.ViewerConstants;
+import com.databasepreservation.common.client.models.status.collection.CollectionStatus;
+import com.databasepreservation.common.client.models.structure.ViewerCell;
+import com.databasepreservation.common.client.models.structure.ViewerColumn;
+import com.databasepreservation.common.client.models.structure.ViewerRow;
+import com.databasepreservation.common.client.models.structure.ViewerTable;
+import com.databasepreservation.common.client.models.structure.ViewerType;
+import com.databasepreservation.common.transformers.ToolkitRowConverter;
+import com.databasepreservation.common.transformers.ToolkitStructure2ViewerStructure;
+import com.databasepreservation.model.data.Cell;
+import com.databasepreservation.model.data.NullCell;
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.model.data.SimpleCell;
+
+/**
+ * Row uuids must not depend on how the tables of a database are ingested, so
+ * that a table resumed in another mode gets the same uuids, and the documents
+ * built straight from the SIARD rows must hold the same values as the ones
+ * built from the viewer rows.
+ */
+@Test(groups = {"unit"})
+public class ToolkitRowConverterTest {
+  private static final ViewerType.dbTypes[] COLUMN_TYPES = {ViewerType.dbTypes.STRING,
+    ViewerType.dbTypes.DATETIME, ViewerType.dbTypes.DATETIME_JUST_DATE, ViewerType.dbTypes.DATETIME_JUST_TIME};
+
+  private static ViewerTable createTable() {
+    List<ViewerColumn> columns = new ArrayList<>();
+    for (int i = 0; i < COLUMN_TYPES.length; i++) {
+      ViewerType type = new ViewerType();
+      type.setDbType(COLUMN_TYPES[i]);
+      ViewerColumn column = new ViewerColumn();
+      column.setSolrName("col" + i + "_field");
+      column.setType(type);
+      columns.add(column);
+    }
+
+    ViewerTable table = new ViewerTable();
+    table.setId("schema.table");
+    table.setUuid("table-uuid");
+    table.setColumns(columns);
+    return table;
+  }
+
+  private static Cell cell(int colIndex, long rowIndex, String value) {
+    String id = "schema.table." + colIndex + "." + rowIndex;
+    return value == null ? new NullCell(id) : new SimpleCell(id, value);
+  }
+
+  /**
+   * Converts the rows both ways and checks every field has the same value.
+   */
+  private static void assertSameAsViewerRows(List<String[]> values) {
+    CollectionStatus status = new CollectionStatus();
+    ViewerTable table = createTable();
+    ToolkitRowConverter converter = new ToolkitRowConverter(status, table, Paths.get("siard-files"));
+
+    long rowIndex = 0;
+    for (String[] rowValues : values) {
+      rowIndex++;
+      List<Cell> cells = new ArrayList<>();
+      for (int i = 0; i < rowValues.length; i++) {
+        cells.add(cell(i, rowIndex, rowValues[i]));
+      }
+      Row row = new Row(rowIndex, cells);
+
+      SolrInputDocument doc = converter.toSolrDocument(row, rowIndex);
+      ViewerRow viewerRow = ToolkitStructure2ViewerStructure.getRow(status, table, row, rowIndex);
+
+      assertThat(doc.getFieldValue(ViewerConstants.INDEX_ID), equalTo(viewerRow.getUuid()));
+      assertThat(doc.getFieldValue(ViewerConstants.SOLR_ROWS_TABLE_ID), equalTo(viewerRow.getTableId()));
+      assertThat(doc.getFieldValue(ViewerConstants.SOLR_ROWS_TABLE_UUID), equalTo(viewerRow.getTableUUID()));
+      for (Map.Entry<String, ViewerCell> entry : viewerRow.getCells().entrySet()) {
+        assertThat(Arrays.toString(rowValues), doc.getFieldValue(entry.getKey()),
+          equalTo(entry.getValue().getValue()));
+      }
+    }
+  }
+
+  @Test
+  public void testDocumentHasTheValuesOfTheViewerRow() {
+    assertSameAsViewerRows(Arrays.asList(new String[] {"text", "2019-01-31T10:20:30+01:00", "2019-01-31", "10:20:30"},
+      new String[] {"", "2019-01-31T10:20:30", "1970-01-01", "00:00:00"},
+      new String[] {null, null, null, null}));
+  }
+
+  @Test
+  public void testNormalizedDateTimeIsKept() {
+    String normalized = "2019-01-31T10:20:30.000Z";
+    assertSameAsViewerRows(Arrays.asList(new String[] {"a", normalized, "2019-01-31", "10:20:30"},
+      // almost normalized, must still be parsed
+      new String[] {"a", "2019-01-31T10:20:30.000+01:00", "2019-01-31", "10:20:30"}));
+
+    ToolkitRowConverter converter = new ToolkitRowConverter(new CollectionStatus(), createTable(),
+      Paths.get("siard-files"));
+    SolrInputDocument doc = converter.toSolrDocument(
+      new Row(1, Arrays.asList(cell(0, 1, null), cell(1, 1, normalized), cell(2, 1, null), cell(3, 1, null))), 1);
+    assertThat(doc.getFieldValue("col1_field"), equalTo(normalized));
+  }
+
+  @Test
+  public void testCachedDatesAreTheParsedOnes() {
+    // more distinct values than the cache keeps, each seen twice
+    List<String[]> values = new ArrayList<>();
+    DateTime start = new DateTime(2000, 1, 1, 10, 20, 30, DateTimeZone.forOffsetHours(2));
+    for (int i = 0; i < 5000; i++) {
+      DateTime date = start.plusDays(i).plusSeconds(i);
+      String[] rowValues = {"a", date.toString(), date.toLocalDate().toString(), date.toLocalTime().toString()};
+      values.add(rowValues);
+      values.add(rowValues);
+    }
+    assertSameAsViewerRows(values);
+  }
+
+  @Test
+  public void testOtherCharactersAreRemoved() {
+    String[] strings = {"plain ASCII text", "tab\tnew line\ncarriage return\r", "nul\u0000bell\u0007",
+      "delete\u007F", "next line\u0085", "zero\u200Bwidth\u200Djoiner", "byte order mark\uFEFF",
+      "accents \u00E1\u00E7\u00F5 and \u6F22\u5B57", "emoji \uD83D\uDE00 outside the BMP", "lone \uD800 surrogate",
+      "private \uE000 use", "unassigned \u0378", "\uD83D\uDE00\u0000"};
+
+    List<String[]> values = new ArrayList<>();
+    for (String string : strings) {
+      values.add(new String[] {string, null, null, null});
+    }
+    assertSameAsViewerRows(values);
+
+    ToolkitRowConverter converter = new ToolkitRowConverter(new CollectionStatus(), createTable(),
+      Paths.get("siard-files"));
+    for (String string : strings) {
+      SolrInputDocument doc = converter.toSolrDocument(
+        new Row(1, Arrays.asList(cell(0, 1, string), cell(1, 1, null), cell(2, 1, null), cell(3, 1, null))), 1);
+      // what the whole value went through before the scan skipped the regex
+      assertThat(string, doc.getFieldValue("col0_field"), equalTo(string.replaceAll("\\p{C}", "")));
+    }
+  }
+
+  @Test
+  public void testRowUUIDIsStable() {
+    assertThat(ToolkitRowConverter.getRowUUID("table-a", 42), equalTo(ToolkitRowConverter.getRowUUID("table-a", 42)));
+  }
+
+  @Test
+  public void testRowUUIDDependsOnTableAndIndex() {
+    assertThat(ToolkitRowConverter.getRowUUID("table-a", 1),
+      not(equalTo(ToolkitRowConverter.getRowUUID("table-b", 1))));
+    assertThat(ToolkitRowConverter.getRowUUID("table-a", 1),
+      not(equalTo(ToolkitRowConverter.getRowUUID("table-a", 2))));
+  }
+
+  @Test
+  public void testRowUUIDsOfATableAreUnique() {
+    Set<String> uuids = new HashSet<>();
+    for (long rowIndex = 1; rowIndex <= 10000; rowIndex++) {
+      uuids.add(ToolkitRowConverter.getRowUUID("table-a", rowIndex));
+    }
+    assertThat(uuids.size(), equalTo(10000));
+  }
+}